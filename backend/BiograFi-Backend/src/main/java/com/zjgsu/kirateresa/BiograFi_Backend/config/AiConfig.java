@@ -1,9 +1,14 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.config;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * AI 配置类，管理 DeepSeek API 相关参数
  */
@@ -24,6 +29,88 @@ public class AiConfig {
     private Double topP = 0.9;
     private Integer timeout = 60; // 请求超时时间（秒）
 
+    // 并发控制配置
+    private Integer maxConcurrentRequests = 16; // 同时进行的上游请求数上限
+    private Integer maxQueuedRequests = 64; // 等待队列长度上限，超出后直接拒绝
+    private Integer asyncTimeout = 120; // 异步请求整体超时时间（秒），包含排队时间
+    private Integer perUserMaxConcurrent = 4; // 单个用户同时进行的上游请求数上限
+    private Integer perUserMaxQueued = 32; // 单个用户排队请求数上限
+    private Integer bulkMaxConcurrent; // 批量类请求可占用的并发数上限，未配置时为全局上限的四分之三
+
+    // 响应缓存配置
+    private Boolean cacheEnabled = true;
+    private Integer cacheMaxEntries = 1000; // 内存层最大条目数
+    private Integer cacheTtl = 3600; // 内存层过期时间（秒）
+    private Integer cachePersistentTtlDays = 30; // 数据库层过期时间（天）
+    private Boolean nearDuplicateEnabled = true; // 文本分析是否复用相近文本的结果
+    private Double nearDuplicateThreshold = 0.85; // 复用所需的最低 Jaccard 相似度
+    private Integer nearDuplicateMinChars = 30; // 规范化后短于该长度的文本不参与近似匹配
+    private Integer nearDuplicateMaxEntries = 5000; // 近似匹配索引的最大条目数
+
+    // 长文本分块标注配置
+    private Integer chunkMaxChars; // 每块最大字符数（不小于 50），未配置时按 maxTokens 估算
+    private Integer chunkParallelism = 4; // 分块并行调用数上限
+    private Integer chunkPerUserMaxConcurrent = 2; // 单个用户同时进行的分块调用数上限
+    private Integer chunkMaxQueued = 256; // 分块等待队列长度上限，超出后由父任务所在线程直接执行
+
+    // 问答段落检索配置
+    private Integer qaContextMaxChars = 3000; // 问答提示词中原文的字符数上限，超出时只发送检索到的段落
+    private Integer passageMaxChars = 300; // 段落切分的最大字符数
+    private Integer qaTopK = 8; // 检索段落数上限
+
+    // 批量接口配置
+    private Integer batchMaxItems = 50; // 单次批量请求的条目数上限
+    private Integer batchQuestionsPerPrompt = 5; // 同一原文的问题合并进一个提示词的数量上限
+
+    // 后台标注任务配置
+    private Integer jobMaxRunning = 2; // 同时运行的标注任务数上限
+    private Integer jobParallelism = 2; // 单个任务同时标注的文档数上限
+    private Integer jobRetryDelayMs = 2000; // 调度队列已满时重新提交的等待时间（毫秒）
+
+    // 预取标注配置（需在项目 AI 设置中开启）
+    private Boolean prefetchEnabled = true; // 全局开关，关闭后忽略项目设置
+    private Integer prefetchMaxConcurrent = 1; // 同时进行的预取调用数上限
+    private Double prefetchLoadThreshold = 0.5; // 交互式调用占全局并发的比例达到该值时暂停预取
+    private Integer prefetchMaxPending = 200; // 等待预取的文档数上限，超出时丢弃新文档
+    private Integer prefetchRetryDelayMs = 5000; // 调度队列已满时重新提交的等待时间（毫秒）
+
+    // HTTP 传输层配置
+    private Integer connectTimeout = 10; // 建立连接超时时间（秒）
+    private Integer connectionPoolMaxIdle = 16; // 连接池最大空闲连接数
+    private Integer connectionPoolKeepAlive = 300; // 空闲连接保活时间（秒）
+    private Integer dispatcherMaxRequests = 64; // 同时进行的上游请求数上限（流式请求持续到响应关闭）
+    private Integer dispatcherMaxRequestsPerHost = 32; // 同一主机同时进行的上游请求数上限
+    private Integer maxRetries = 2; // 可重试错误（429/5xx/网络异常）的最大重试次数
+    private Integer retryBackoffMs = 500; // 指数退避基础间隔（毫秒）
+    private Integer retryMaxBackoffMs = 8000; // 指数退避最大间隔（毫秒）
+    private Integer retryMinAttemptMs = 1000; // 整体截止时间前剩余时间不足退避间隔加该值时不再重试（毫秒）
+    private Integer breakerFailureThreshold = 5; // 连续失败多少次后熔断
+    private Integer breakerOpenSeconds = 30; // 熔断持续时间（秒）
+
+    // 多端点路由配置
+    private List<Endpoint> endpoints = new ArrayList<>(); // 上游端点列表，未配置 AI_ENDPOINTS 时只有 DEEPSEEK_API_URL 一个端点
+    private Double routingEwmaAlpha = 0.2; // 端点延迟与错误率的指数加权平滑系数
+    private Double routingExploreRate = 0.05; // 不按评分、随机按权重选择端点的概率，使恢复后的端点能重新获得流量
+
+    // 对冲请求与截止时间配置
+    private Boolean hedgeEnabled = true; // 交互式非流式调用超过对冲延迟仍未返回时，再向其他端点发起一次请求，取先返回者
+    private Integer hedgeMinDelayMs = 1500; // 对冲延迟下限（毫秒）
+    private Double hedgeLatencyFactor = 2.0; // 对冲延迟为所选端点近期延迟 EWMA 的倍数
+    private Double hedgeMaxRatio = 0.1; // 对冲请求数占交互式调用数的比例上限，避免上游整体变慢时负载翻倍
+    private Integer autoAnnotateDeadlineMs = 3000; // 自动标注的截止时间（毫秒），从开始执行时计算，超时后改用项目词典在本地标注，0 表示不限
+    private Integer analyzeDeadlineMs = 30000; // 文本分析的截止时间（毫秒），从开始执行时计算，超时后返回 504，0 表示不限
+    private Integer qaDeadlineMs = 60000; // 问答（含项目范围问答）的截止时间（毫秒），从开始执行时计算，超时后返回 504，0 表示不限
+
+    // 用量记录与预算配置
+    private Long dailyTokenBudget = 0L; // 每个调用方每日可用的 token 数（提示词与生成之和），0 表示不限；预取不受限制
+    private Integer usageFlushIntervalMs = 1000; // 用量记录攒批写入数据库的最长间隔（毫秒）
+    private Integer usageBatchSize = 200; // 用量记录每批写入的最大条数
+    private Integer usageQueueCapacity = 10000; // 待写入用量记录的队列容量，数据库长时间不可用时丢弃新记录
+
+    // 本地替身服务器配置（离线测试与压测）
+    private Boolean stubEnabled = false;
+    private Integer stubPort = 18080;
+
     /**
      * 构造函数，从环境变量或 .env 文件加载配置
      */
@@ -53,5 +140,261 @@ public class AiConfig {
         if (dotenv.get("TIMEOUT") != null) {
             this.timeout = Integer.parseInt(dotenv.get("TIMEOUT"));
         }
+        if (dotenv.get("AI_MAX_CONCURRENT_REQUESTS") != null) {
+            this.maxConcurrentRequests = Integer.parseInt(dotenv.get("AI_MAX_CONCURRENT_REQUESTS"));
+        }
+        if (dotenv.get("AI_MAX_QUEUED_REQUESTS") != null) {
+            this.maxQueuedRequests = Integer.parseInt(dotenv.get("AI_MAX_QUEUED_REQUESTS"));
+        }
+        if (dotenv.get("AI_ASYNC_TIMEOUT") != null) {
+            this.asyncTimeout = Integer.parseInt(dotenv.get("AI_ASYNC_TIMEOUT"));
+        }
+        if (dotenv.get("AI_PER_USER_MAX_CONCURRENT") != null) {
+            this.perUserMaxConcurrent = Integer.parseInt(dotenv.get("AI_PER_USER_MAX_CONCURRENT"));
+        }
+        if (dotenv.get("AI_PER_USER_MAX_QUEUED") != null) {
+            this.perUserMaxQueued = Integer.parseInt(dotenv.get("AI_PER_USER_MAX_QUEUED"));
+        }
+        if (dotenv.get("AI_BULK_MAX_CONCURRENT") != null) {
+            this.bulkMaxConcurrent = Integer.parseInt(dotenv.get("AI_BULK_MAX_CONCURRENT"));
+        }
+        if (dotenv.get("AI_CACHE_ENABLED") != null) {
+            this.cacheEnabled = Boolean.parseBoolean(dotenv.get("AI_CACHE_ENABLED"));
+        }
+        if (dotenv.get("AI_CACHE_MAX_ENTRIES") != null) {
+            this.cacheMaxEntries = Integer.parseInt(dotenv.get("AI_CACHE_MAX_ENTRIES"));
+        }
+        if (dotenv.get("AI_CACHE_TTL") != null) {
+            this.cacheTtl = Integer.parseInt(dotenv.get("AI_CACHE_TTL"));
+        }
+        if (dotenv.get("AI_CACHE_PERSISTENT_TTL_DAYS") != null) {
+            this.cachePersistentTtlDays = Integer.parseInt(dotenv.get("AI_CACHE_PERSISTENT_TTL_DAYS"));
+        }
+        if (dotenv.get("AI_NEAR_DUPLICATE_ENABLED") != null) {
+            this.nearDuplicateEnabled = Boolean.parseBoolean(dotenv.get("AI_NEAR_DUPLICATE_ENABLED"));
+        }
+        if (dotenv.get("AI_NEAR_DUPLICATE_THRESHOLD") != null) {
+            this.nearDuplicateThreshold = Double.parseDouble(dotenv.get("AI_NEAR_DUPLICATE_THRESHOLD"));
+        }
+        if (dotenv.get("AI_NEAR_DUPLICATE_MIN_CHARS") != null) {
+            this.nearDuplicateMinChars = Integer.parseInt(dotenv.get("AI_NEAR_DUPLICATE_MIN_CHARS"));
+        }
+        if (dotenv.get("AI_NEAR_DUPLICATE_MAX_ENTRIES") != null) {
+            this.nearDuplicateMaxEntries = Integer.parseInt(dotenv.get("AI_NEAR_DUPLICATE_MAX_ENTRIES"));
+        }
+        if (dotenv.get("AI_CHUNK_MAX_CHARS") != null) {
+            this.chunkMaxChars = Integer.parseInt(dotenv.get("AI_CHUNK_MAX_CHARS"));
+        }
+        if (dotenv.get("AI_CHUNK_PARALLELISM") != null) {
+            this.chunkParallelism = Integer.parseInt(dotenv.get("AI_CHUNK_PARALLELISM"));
+        }
+        if (dotenv.get("AI_CHUNK_PER_USER_MAX_CONCURRENT") != null) {
+            this.chunkPerUserMaxConcurrent = Integer.parseInt(dotenv.get("AI_CHUNK_PER_USER_MAX_CONCURRENT"));
+        }
+        if (dotenv.get("AI_CHUNK_MAX_QUEUED") != null) {
+            this.chunkMaxQueued = Integer.parseInt(dotenv.get("AI_CHUNK_MAX_QUEUED"));
+        }
+        if (dotenv.get("AI_QA_CONTEXT_MAX_CHARS") != null) {
+            this.qaContextMaxChars = Integer.parseInt(dotenv.get("AI_QA_CONTEXT_MAX_CHARS"));
+        }
+        if (dotenv.get("AI_PASSAGE_MAX_CHARS") != null) {
+            this.passageMaxChars = Integer.parseInt(dotenv.get("AI_PASSAGE_MAX_CHARS"));
+        }
+        if (dotenv.get("AI_QA_TOP_K") != null) {
+            this.qaTopK = Integer.parseInt(dotenv.get("AI_QA_TOP_K"));
+        }
+        if (dotenv.get("AI_BATCH_MAX_ITEMS") != null) {
+            this.batchMaxItems = Integer.parseInt(dotenv.get("AI_BATCH_MAX_ITEMS"));
+        }
+        if (dotenv.get("AI_BATCH_QUESTIONS_PER_PROMPT") != null) {
+            this.batchQuestionsPerPrompt = Integer.parseInt(dotenv.get("AI_BATCH_QUESTIONS_PER_PROMPT"));
+        }
+        if (dotenv.get("AI_JOB_MAX_RUNNING") != null) {
+            this.jobMaxRunning = Integer.parseInt(dotenv.get("AI_JOB_MAX_RUNNING"));
+        }
+        if (dotenv.get("AI_JOB_PARALLELISM") != null) {
+            this.jobParallelism = Integer.parseInt(dotenv.get("AI_JOB_PARALLELISM"));
+        }
+        if (dotenv.get("AI_JOB_RETRY_DELAY_MS") != null) {
+            this.jobRetryDelayMs = Integer.parseInt(dotenv.get("AI_JOB_RETRY_DELAY_MS"));
+        }
+        if (dotenv.get("AI_PREFETCH_ENABLED") != null) {
+            this.prefetchEnabled = Boolean.parseBoolean(dotenv.get("AI_PREFETCH_ENABLED"));
+        }
+        if (dotenv.get("AI_PREFETCH_MAX_CONCURRENT") != null) {
+            this.prefetchMaxConcurrent = Integer.parseInt(dotenv.get("AI_PREFETCH_MAX_CONCURRENT"));
+        }
+        if (dotenv.get("AI_PREFETCH_LOAD_THRESHOLD") != null) {
+            this.prefetchLoadThreshold = Double.parseDouble(dotenv.get("AI_PREFETCH_LOAD_THRESHOLD"));
+        }
+        if (dotenv.get("AI_PREFETCH_MAX_PENDING") != null) {
+            this.prefetchMaxPending = Integer.parseInt(dotenv.get("AI_PREFETCH_MAX_PENDING"));
+        }
+        if (dotenv.get("AI_PREFETCH_RETRY_DELAY_MS") != null) {
+            this.prefetchRetryDelayMs = Integer.parseInt(dotenv.get("AI_PREFETCH_RETRY_DELAY_MS"));
+        }
+        if (dotenv.get("AI_CONNECT_TIMEOUT") != null) {
+            this.connectTimeout = Integer.parseInt(dotenv.get("AI_CONNECT_TIMEOUT"));
+        }
+        if (dotenv.get("AI_POOL_MAX_IDLE") != null) {
+            this.connectionPoolMaxIdle = Integer.parseInt(dotenv.get("AI_POOL_MAX_IDLE"));
+        }
+        if (dotenv.get("AI_POOL_KEEP_ALIVE") != null) {
+            this.connectionPoolKeepAlive = Integer.parseInt(dotenv.get("AI_POOL_KEEP_ALIVE"));
+        }
+        if (dotenv.get("AI_DISPATCHER_MAX_REQUESTS") != null) {
+            this.dispatcherMaxRequests = Integer.parseInt(dotenv.get("AI_DISPATCHER_MAX_REQUESTS"));
+        }
+        if (dotenv.get("AI_DISPATCHER_MAX_REQUESTS_PER_HOST") != null) {
+            this.dispatcherMaxRequestsPerHost = Integer.parseInt(dotenv.get("AI_DISPATCHER_MAX_REQUESTS_PER_HOST"));
+        }
+        if (dotenv.get("AI_MAX_RETRIES") != null) {
+            this.maxRetries = Integer.parseInt(dotenv.get("AI_MAX_RETRIES"));
+        }
+        if (dotenv.get("AI_RETRY_BACKOFF_MS") != null) {
+            this.retryBackoffMs = Integer.parseInt(dotenv.get("AI_RETRY_BACKOFF_MS"));
+        }
+        if (dotenv.get("AI_RETRY_MAX_BACKOFF_MS") != null) {
+            this.retryMaxBackoffMs = Integer.parseInt(dotenv.get("AI_RETRY_MAX_BACKOFF_MS"));
+        }
+        if (dotenv.get("AI_RETRY_MIN_ATTEMPT_MS") != null) {
+            this.retryMinAttemptMs = Integer.parseInt(dotenv.get("AI_RETRY_MIN_ATTEMPT_MS"));
+        }
+        if (dotenv.get("AI_BREAKER_FAILURE_THRESHOLD") != null) {
+            this.breakerFailureThreshold = Integer.parseInt(dotenv.get("AI_BREAKER_FAILURE_THRESHOLD"));
+        }
+        if (dotenv.get("AI_BREAKER_OPEN_SECONDS") != null) {
+            this.breakerOpenSeconds = Integer.parseInt(dotenv.get("AI_BREAKER_OPEN_SECONDS"));
+        }
+        if (dotenv.get("AI_ROUTING_EWMA_ALPHA") != null) {
+            this.routingEwmaAlpha = Double.parseDouble(dotenv.get("AI_ROUTING_EWMA_ALPHA"));
+        }
+        if (dotenv.get("AI_ROUTING_EXPLORE_RATE") != null) {
+            this.routingExploreRate = Double.parseDouble(dotenv.get("AI_ROUTING_EXPLORE_RATE"));
+        }
+        if (dotenv.get("AI_HEDGE_ENABLED") != null) {
+            this.hedgeEnabled = Boolean.parseBoolean(dotenv.get("AI_HEDGE_ENABLED"));
+        }
+        if (dotenv.get("AI_HEDGE_MIN_DELAY_MS") != null) {
+            this.hedgeMinDelayMs = Integer.parseInt(dotenv.get("AI_HEDGE_MIN_DELAY_MS"));
+        }
+        if (dotenv.get("AI_HEDGE_LATENCY_FACTOR") != null) {
+            this.hedgeLatencyFactor = Double.parseDouble(dotenv.get("AI_HEDGE_LATENCY_FACTOR"));
+        }
+        if (dotenv.get("AI_HEDGE_MAX_RATIO") != null) {
+            this.hedgeMaxRatio = Double.parseDouble(dotenv.get("AI_HEDGE_MAX_RATIO"));
+        }
+        if (dotenv.get("AI_AUTO_ANNOTATE_DEADLINE_MS") != null) {
+            this.autoAnnotateDeadlineMs = Integer.parseInt(dotenv.get("AI_AUTO_ANNOTATE_DEADLINE_MS"));
+        }
+        if (dotenv.get("AI_ANALYZE_DEADLINE_MS") != null) {
+            this.analyzeDeadlineMs = Integer.parseInt(dotenv.get("AI_ANALYZE_DEADLINE_MS"));
+        }
+        if (dotenv.get("AI_QA_DEADLINE_MS") != null) {
+            this.qaDeadlineMs = Integer.parseInt(dotenv.get("AI_QA_DEADLINE_MS"));
+        }
+        if (dotenv.get("AI_DAILY_TOKEN_BUDGET") != null) {
+            this.dailyTokenBudget = Long.parseLong(dotenv.get("AI_DAILY_TOKEN_BUDGET"));
+        }
+        if (dotenv.get("AI_USAGE_FLUSH_INTERVAL_MS") != null) {
+            this.usageFlushIntervalMs = Integer.parseInt(dotenv.get("AI_USAGE_FLUSH_INTERVAL_MS"));
+        }
+        if (dotenv.get("AI_USAGE_BATCH_SIZE") != null) {
+            this.usageBatchSize = Integer.parseInt(dotenv.get("AI_USAGE_BATCH_SIZE"));
+        }
+        if (dotenv.get("AI_USAGE_QUEUE_CAPACITY") != null) {
+            this.usageQueueCapacity = Integer.parseInt(dotenv.get("AI_USAGE_QUEUE_CAPACITY"));
+        }
+        if (dotenv.get("AI_STUB_ENABLED") != null) {
+            this.stubEnabled = Boolean.parseBoolean(dotenv.get("AI_STUB_ENABLED"));
+        }
+        if (dotenv.get("AI_STUB_PORT") != null) {
+            this.stubPort = Integer.parseInt(dotenv.get("AI_STUB_PORT"));
+        }
+
+        // 启用替身服务器且未显式指定 API URL 时，请求发往本地替身
+        if (this.stubEnabled) {
+            if (dotenv.get("DEEPSEEK_API_URL") == null) {
+                this.deepSeekApiUrl = "http://127.0.0.1:" + this.stubPort + "/v1/chat/completions";
+            }
+            if (this.deepSeekApiKey == null || this.deepSeekApiKey.isEmpty()) {
+                this.deepSeekApiKey = "stub";
+            }
+        }
+
+        // 多端点配置，格式为 url|model|weight|maxInputChars[|apiKey]，多个端点以分号分隔
+        String endpointList = dotenv.get("AI_ENDPOINTS");
+        if (endpointList != null) {
+            for (String spec : endpointList.split("[;\\n]")) {
+                if (!spec.isBlank()) {
+                    this.endpoints.add(Endpoint.parse(spec.trim(), this.deepSeekModel, this.deepSeekApiKey));
+                }
+            }
+        }
+        if (this.endpoints.isEmpty()) {
+            this.endpoints.add(new Endpoint(this.deepSeekApiUrl, this.deepSeekModel, 1.0, 0, this.deepSeekApiKey));
+        }
+    }
+
+    /**
+     * 上游端点配置（OpenAI 兼容的聊天补全接口）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Endpoint {
+        private String url;
+        private String model;
+        private double weight = 1.0; // 权重，评分相近时权重高的端点承担更多流量
+        private int maxInputChars; // 可接受的提示词字符数上限，0 表示不限
+        private String apiKey;
+
+        /**
+         * 解析端点配置，省略的字段取默认值
+         * @param spec url|model|weight|maxInputChars[|apiKey]
+         * @param defaultModel 默认模型
+         * @param defaultApiKey 默认 API Key
+         * @return 端点配置
+         */
+        static Endpoint parse(String spec, String defaultModel, String defaultApiKey) {
+            String[] fields = spec.split("\\|", -1);
+            if (fields[0].isBlank() || fields.length > 5) {
+                throw new IllegalArgumentException("AI_ENDPOINTS 格式错误: " + spec);
+            }
+            Endpoint endpoint = new Endpoint(fields[0].trim(), defaultModel, 1.0, 0, defaultApiKey);
+            try {
+                if (fields.length > 1 && !fields[1].isBlank()) {
+                    endpoint.model = fields[1].trim();
+                }
+                if (fields.length > 2 && !fields[2].isBlank()) {
+                    endpoint.weight = Double.parseDouble(fields[2].trim());
+                }
+                if (fields.length > 3 && !fields[3].isBlank()) {
+                    endpoint.maxInputChars = Integer.parseInt(fields[3].trim());
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("AI_ENDPOINTS 格式错误: " + spec, e);
+            }
+            if (fields.length > 4 && !fields[4].isBlank()) {
+                endpoint.apiKey = fields[4].trim();
+            }
+            if (endpoint.weight <= 0) {
+                throw new IllegalArgumentException("AI_ENDPOINTS 端点权重必须为正数: " + spec);
+            }
+            return endpoint;
+        }
+    }
+
+    /**
+     * 获取自动标注每块的最大字符数
+     * 标注结果以 JSON 输出，输出长度随输入增长，未显式配置时按输出 token 上限的四分之三估算
+     * @return 每块最大字符数
+     */
+    public int getEffectiveChunkMaxChars() {
+        if (chunkMaxChars != null && chunkMaxChars > 0) {
+            // 过小的分块会把一篇文档拆成大量调用，且无法容纳一个完整的实体
+            return Math.max(50, chunkMaxChars);
+        }
+        return Math.max(200, maxTokens * 3 / 4);
     }
 }
@@ -1,14 +1,36 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.controller;
 
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.*;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiBudgetExceededException;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiServiceBusyException;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiUpstreamUnavailableException;
 import com.zjgsu.kirateresa.BiograFi_Backend.service.AiService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AnnotationPrefetchService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * AI 控制器，处理 AI 相关的 HTTP 请求
+ * 分析、问答、自动标注接口均为异步接口，AI 调用在独立的受限线程池中执行，不占用 Tomcat 请求线程
  */
 @RestController
 @RequestMapping("/api/ai")
@@ -18,37 +40,42 @@ public class AiController {
     @Autowired
     private AiService aiService;
 
+    @Autowired
+    private AnnotationPrefetchService annotationPrefetchService;
+
+    @Autowired
+    private AiConfig aiConfig;
+
     /**
      * 文本分析接口
      * @param request AI 分析请求
      * @return 分析结果
      */
     @PostMapping("/analyze")
-    public ResponseEntity<ApiResponse<AiResponse>> analyzeText(@RequestBody AiAnalyzeRequest request) {
-        try {
-            // 参数验证
-            if (request.getText() == null || request.getText().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("请提供要分析的文本"));
-            }
-
-            // 调用服务层
-            String result = aiService.analyzeText(request.getText(), request.getModel());
+    public DeferredResult<ResponseEntity<ApiResponse<AiResponse>>> analyzeText(@RequestBody AiAnalyzeRequest request,
+                                                                          HttpServletRequest httpRequest) {
+        DeferredResult<ResponseEntity<ApiResponse<AiResponse>>> deferred = newDeferredResult("分析");
 
-            // 构建响应
-            AiResponse response = new AiResponse();
-            response.setResult(result);
-
-            return ResponseEntity.ok(ApiResponse.success("分析成功", response));
-        } catch (IllegalArgumentException e) {
-            // 参数错误
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            // 其他异常
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("分析失败: " + e.getMessage()));
+        // 参数验证
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            deferred.setResult(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("请提供要分析的文本")));
+            return deferred;
         }
+
+        // 调用服务层
+        boolean allowApproximate = !Boolean.FALSE.equals(request.getAllowApproximate());
+        CompletableFuture<AiResponse> future =
+                aiService.analyzeTextAsync(request.getText(), request.getModel(), allowApproximate, caller(request.getUserId(), httpRequest));
+        cancelWithDeferredResult(deferred, "分析", future);
+        future.whenComplete((response, ex) -> {
+            if (ex != null) {
+                deferred.setResult(errorResponse(ex, "分析失败: "));
+                return;
+            }
+            deferred.setResult(ResponseEntity.ok(ApiResponse.success("分析成功", response)));
+        });
+        return deferred;
     }
 
     /**
@@ -57,68 +84,246 @@ public class AiController {
      * @return 回答结果
      */
     @PostMapping("/qa")
-    public ResponseEntity<ApiResponse<AiResponse>> qaText(@RequestBody AiQaRequest request) {
-        try {
-            // 参数验证
-            if (request.getText() == null || request.getText().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("请提供原文"));
-            }
-            if (request.getQuestion() == null || request.getQuestion().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("请提供问题"));
-            }
+    public DeferredResult<ResponseEntity<ApiResponse<AiResponse>>> qaText(@RequestBody AiQaRequest request,
+                                                                     HttpServletRequest httpRequest) {
+        DeferredResult<ResponseEntity<ApiResponse<AiResponse>>> deferred = newDeferredResult("问答");
 
-            // 调用服务层
-            String result = aiService.qaText(request.getText(), request.getQuestion(), request.getModel());
+        // 参数验证
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            deferred.setResult(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("请提供原文")));
+            return deferred;
+        }
+        if (request.getQuestion() == null || request.getQuestion().trim().isEmpty()) {
+            deferred.setResult(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("请提供问题")));
+            return deferred;
+        }
 
+        // 调用服务层
+        CompletableFuture<String> future =
+                aiService.qaTextAsync(request.getText(), request.getQuestion(), request.getModel(), caller(request.getUserId(), httpRequest));
+        cancelWithDeferredResult(deferred, "问答", future);
+        future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                deferred.setResult(errorResponse(ex, "问答失败: "));
+                return;
+            }
             // 构建响应
             AiResponse response = new AiResponse();
             response.setResult(result);
+            deferred.setResult(ResponseEntity.ok(ApiResponse.success("问答成功", response)));
+        });
+        return deferred;
+    }
 
-            return ResponseEntity.ok(ApiResponse.success("问答成功", response));
-        } catch (IllegalArgumentException e) {
-            // 参数错误
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            // 其他异常
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("问答失败: " + e.getMessage()));
+    /**
+     * 项目范围问答接口：在项目所有文档中检索相关段落后回答
+     * @param projectId 项目ID
+     * @param request 项目问答请求
+     * @return 回答及所依据的段落
+     */
+    @PostMapping("/projects/{projectId}/qa")
+    public DeferredResult<ResponseEntity<ApiResponse<AiProjectQaResponse>>> qaProject(@PathVariable String projectId,
+                                                                                   @RequestBody AiProjectQaRequest request,
+                                                                                   HttpServletRequest httpRequest) {
+        DeferredResult<ResponseEntity<ApiResponse<AiProjectQaResponse>>> deferred = newDeferredResult("问答");
+
+        // 参数验证
+        if (request.getQuestion() == null || request.getQuestion().trim().isEmpty()) {
+            deferred.setResult(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("请提供问题")));
+            return deferred;
         }
+
+        // 调用服务层
+        CompletableFuture<AiProjectQaResponse> future =
+                aiService.qaProjectAsync(projectId, request.getQuestion(), request.getModel(), caller(request.getUserId(), httpRequest));
+        cancelWithDeferredResult(deferred, "问答", future);
+        future.whenComplete((response, ex) -> {
+            if (ex != null) {
+                deferred.setResult(errorResponse(ex, "问答失败: "));
+                return;
+            }
+            deferred.setResult(ResponseEntity.ok(ApiResponse.success("问答成功", response)));
+        });
+        return deferred;
     }
 
     /**
      * 自动标注接口
+     * 提供 documentId 且该文档已有相同内容的预取结果时直接返回，不调用模型
      * @param request AI 自动标注请求
      * @return 标注结果
      */
     @PostMapping("/auto-annotate")
-    public ResponseEntity<ApiResponse<AutoAnnotationResponse>> autoAnnotate(@RequestBody AiAutoAnnotateRequest request) {
-        try {
-            // 参数验证
-            if (request.getText() == null || request.getText().trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("请提供要标注的文本"));
+    public DeferredResult<ResponseEntity<ApiResponse<AutoAnnotationResponse>>> autoAnnotate(@RequestBody AiAutoAnnotateRequest request,
+                                                                                           HttpServletRequest httpRequest) {
+        DeferredResult<ResponseEntity<ApiResponse<AutoAnnotationResponse>>> deferred = newDeferredResult("自动标注");
+
+        // 参数验证
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            deferred.setResult(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("请提供要标注的文本")));
+            return deferred;
+        }
+        Boolean incremental = incrementalMode(request.getMode());
+        if (incremental == null) {
+            deferred.setResult(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("mode 只能为 full 或 incremental")));
+            return deferred;
+        }
+        Optional<List<AutoAnnotationItem>> suggestion =
+                annotationPrefetchService.findSuggestion(request.getDocumentId(), request.getText());
+        if (suggestion.isPresent()) {
+            AutoAnnotationResponse response = new AutoAnnotationResponse();
+            response.setAnnotations(suggestion.get());
+            response.setSource(AutoAnnotationResponse.SOURCE_PREFETCH);
+            deferred.setResult(ResponseEntity.ok(ApiResponse.success("自动标注成功", response)));
+            return deferred;
+        }
+
+        // 调用服务层，超过截止时间时由服务层改用本地词典标注
+        CompletableFuture<AutoAnnotationResponse> future = aiService.autoAnnotateWithDeadlineAsync(request.getText(), incremental,
+                request.getProjectId(), request.getDocumentId(), caller(request.getUserId(), httpRequest));
+        cancelWithDeferredResult(deferred, "自动标注", future);
+        future.whenComplete((response, ex) -> {
+            if (ex != null) {
+                deferred.setResult(errorResponse(ex, "自动标注失败: "));
+                return;
             }
+            deferred.setResult(ResponseEntity.ok(ApiResponse.success("自动标注成功", response)));
+        });
+        return deferred;
+    }
 
-            // 调用服务层
-            var annotations = aiService.autoAnnotate(request.getText());
+    /**
+     * 流式文本分析接口（Server-Sent Events）
+     * 事件：token 为增量内容，done 表示完成，error 表示失败
+     * @param request AI 分析请求
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter analyzeTextStream(@RequestBody AiAnalyzeRequest request, HttpServletRequest httpRequest) {
+        SseEmitter emitter = new SseEmitter(aiConfig.getAsyncTimeout() * 1000L);
 
-            // 构建响应
-            AutoAnnotationResponse response = new AutoAnnotationResponse();
-            response.setAnnotations(annotations);
+        // 参数验证
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            sendErrorAndComplete(emitter, "请提供要分析的文本");
+            return emitter;
+        }
 
-            return ResponseEntity.ok(ApiResponse.success("自动标注成功", response));
-        } catch (IllegalArgumentException e) {
-            // 参数错误
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            // 其他异常
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("自动标注失败: " + e.getMessage()));
+        CompletableFuture<String> future = aiService.streamAnalyzeText(request.getText(), request.getModel(),
+                caller(request.getUserId(), httpRequest), token -> sendToken(emitter, token));
+        cancelWithEmitter(emitter, "分析", future);
+        future.whenComplete((result, ex) -> completeStream(emitter, ex, "分析失败: "));
+        return emitter;
+    }
+
+    /**
+     * 流式问答接口（Server-Sent Events）
+     * 事件：token 为增量内容，done 表示完成，error 表示失败
+     * @param request AI 问答请求
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/qa/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter qaTextStream(@RequestBody AiQaRequest request, HttpServletRequest httpRequest) {
+        SseEmitter emitter = new SseEmitter(aiConfig.getAsyncTimeout() * 1000L);
+
+        // 参数验证
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            sendErrorAndComplete(emitter, "请提供原文");
+            return emitter;
+        }
+        if (request.getQuestion() == null || request.getQuestion().trim().isEmpty()) {
+            sendErrorAndComplete(emitter, "请提供问题");
+            return emitter;
         }
+
+        CompletableFuture<String> future = aiService.streamQaText(request.getText(), request.getQuestion(), request.getModel(),
+                caller(request.getUserId(), httpRequest), token -> sendToken(emitter, token));
+        cancelWithEmitter(emitter, "问答", future);
+        future.whenComplete((result, ex) -> completeStream(emitter, ex, "问答失败: "));
+        return emitter;
+    }
+
+    /**
+     * 流式自动标注接口（Server-Sent Events）
+     * 事件：annotation 为一条已定位的标注，done 表示完成，error 表示失败；
+     * 使用预取结果时立即推送全部标注
+     * @param request AI 自动标注请求
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/auto-annotate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter autoAnnotateStream(@RequestBody AiAutoAnnotateRequest request, HttpServletRequest httpRequest) {
+        SseEmitter emitter = new SseEmitter(aiConfig.getAsyncTimeout() * 1000L);
+
+        // 参数验证
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            sendErrorAndComplete(emitter, "请提供要标注的文本");
+            return emitter;
+        }
+        Boolean incremental = incrementalMode(request.getMode());
+        if (incremental == null) {
+            sendErrorAndComplete(emitter, "mode 只能为 full 或 incremental");
+            return emitter;
+        }
+        Optional<List<AutoAnnotationItem>> suggestion =
+                annotationPrefetchService.findSuggestion(request.getDocumentId(), request.getText());
+        if (suggestion.isPresent()) {
+            Throwable error = null;
+            try {
+                suggestion.get().forEach(annotation -> sendEvent(emitter, "annotation", annotation));
+            } catch (UncheckedIOException e) {
+                error = e;
+            }
+            completeStream(emitter, error, "自动标注失败: ");
+            return emitter;
+        }
+
+        CompletableFuture<List<AutoAnnotationItem>> future = aiService.streamAutoAnnotate(request.getText(), incremental,
+                request.getDocumentId(), caller(request.getUserId(), httpRequest),
+                annotation -> sendEvent(emitter, "annotation", annotation));
+        cancelWithEmitter(emitter, "自动标注", future);
+        future.whenComplete((annotations, ex) -> completeStream(emitter, ex, "自动标注失败: "));
+        return emitter;
+    }
+
+    /**
+     * 批量分析与问答接口（Server-Sent Events）
+     * 事件：result 为单个条目的结果（含条目级错误），按完成顺序推送；done 携带成功与失败数量；error 表示整个批次失败
+     * @param request AI 批量请求
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter batch(@RequestBody AiBatchRequest request, HttpServletRequest httpRequest) {
+        SseEmitter emitter = new SseEmitter(aiConfig.getAsyncTimeout() * 1000L);
+
+        // 参数验证
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            sendErrorAndComplete(emitter, "请提供批量条目");
+            return emitter;
+        }
+
+        CompletableFuture<List<AiBatchItemResult>> future = aiService.batchAsync(request.getItems(), request.getModel(),
+                caller(request.getUserId(), httpRequest), result -> sendEvent(emitter, "result", result));
+        cancelWithEmitter(emitter, "批量请求", future);
+        future.whenComplete((results, ex) -> {
+            if (ex != null) {
+                completeStream(emitter, ex, "批量请求失败: ");
+                return;
+            }
+            long failed = results.stream().filter(result -> result.getError() != null).count();
+            try {
+                emitter.send(SseEmitter.event().name("done")
+                        .data(Map.of("total", results.size(), "succeeded", results.size() - failed, "failed", failed),
+                                MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
     }
 
     /**
@@ -135,4 +340,231 @@ public class AiController {
                     .body(ApiResponse.error("AI服务异常: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * AI 服务运行统计接口
+     * @return 调度队列、缓存命中、预取标注等统计信息
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getStats() {
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>(aiService.getStats());
+            stats.put("prefetch", annotationPrefetchService.getStats());
+            return ResponseEntity.ok(ApiResponse.success(stats));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * AI 上游调用指标接口
+     * @return 按操作类型和模型统计的耗时直方图、按状态分类的错误数及 token 用量
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getMetrics() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiService.getMetrics()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 解析自动标注模式
+     * @param mode 请求中的模式（可选）
+     * @return 是否为增量模式；模式无效时返回 null
+     */
+    private Boolean incrementalMode(String mode) {
+        if (mode == null || mode.isEmpty() || "full".equals(mode)) {
+            return false;
+        }
+        return "incremental".equals(mode) ? true : null;
+    }
+
+    /**
+     * 获取调用方标识，调度器据此为每个调用方维护独立队列
+     * @param userId 请求中的用户ID（可选）
+     * @param httpRequest HTTP 请求
+     * @return 调用方标识
+     */
+    private String caller(Integer userId, HttpServletRequest httpRequest) {
+        return userId != null ? "user:" + userId : "ip:" + httpRequest.getRemoteAddr();
+    }
+
+    /**
+     * 创建带整体超时的异步结果
+     * @param action 操作名称，用于超时提示
+     * @param <T> 响应数据类型
+     * @return 异步结果
+     */
+    private <T> DeferredResult<ResponseEntity<ApiResponse<T>>> newDeferredResult(String action) {
+        DeferredResult<ResponseEntity<ApiResponse<T>>> deferred =
+                new DeferredResult<>(aiConfig.getAsyncTimeout() * 1000L);
+        deferred.onTimeout(() -> deferred.setResult(timeoutResponse(action)));
+        return deferred;
+    }
+
+    /**
+     * 异步结果超时或结束（包括客户端断开）时取消服务层的调用：仍在排队的任务不再被调度，
+     * 已在执行的任务其结果被丢弃
+     * @param deferred 异步结果
+     * @param action 操作名称，用于超时提示
+     * @param future 服务层返回的异步调用
+     * @param <T> 响应数据类型
+     */
+    private <T> void cancelWithDeferredResult(DeferredResult<ResponseEntity<ApiResponse<T>>> deferred, String action,
+                                              CompletableFuture<?> future) {
+        deferred.onTimeout(() -> {
+            future.cancel(false);
+            deferred.setResult(timeoutResponse(action));
+        });
+        deferred.onCompletion(() -> future.cancel(false));
+    }
+
+    /**
+     * 事件流超时、结束或出错（包括客户端断开）时取消服务层的调用：仍在排队的任务不再被调度，
+     * 已在执行的任务在下一次推送时中止；超时时向客户端发送错误事件
+     * @param emitter SSE 发送器
+     * @param action 操作名称，用于超时提示
+     * @param future 服务层返回的异步调用
+     */
+    private void cancelWithEmitter(SseEmitter emitter, String action, CompletableFuture<?> future) {
+        emitter.onTimeout(() -> {
+            future.cancel(false);
+            sendErrorAndComplete(emitter, action + "超时，请稍后重试");
+        });
+        emitter.onCompletion(() -> future.cancel(false));
+        emitter.onError(error -> future.cancel(false));
+    }
+
+    private static <T> ResponseEntity<ApiResponse<T>> timeoutResponse(String action) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ApiResponse.error(action + "超时，请稍后重试"));
+    }
+
+    /**
+     * 向客户端推送一段增量内容
+     * 内容以 JSON 编码发送，避免其中的换行破坏 SSE 帧格式；客户端断开时抛出异常以中止上游读取
+     * @param emitter SSE 发送器
+     * @param token 增量内容
+     */
+    private void sendToken(SseEmitter emitter, String token) {
+        try {
+            emitter.send(SseEmitter.event().name("token").data(Map.of("content", token), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 向客户端推送一个 JSON 事件，客户端断开时抛出异常以中止后续处理
+     * @param emitter SSE 发送器
+     * @param name 事件名称
+     * @param data 事件数据
+     */
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 结束 SSE 事件流
+     * @param emitter SSE 发送器
+     * @param ex 异步调用的异常，成功时为 null
+     * @param prefix 错误信息前缀
+     */
+    private void completeStream(SseEmitter emitter, Throwable ex, String prefix) {
+        if (ex == null) {
+            try {
+                emitter.send(SseEmitter.event().name("done").data(Map.of(), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+            return;
+        }
+
+        if (unwrap(ex) instanceof CancellationException) {
+            // 事件流已超时或结束，调用随之取消
+            return;
+        }
+        if (unwrap(ex) instanceof UncheckedIOException) {
+            // 客户端已断开，无需再发送错误事件
+            emitter.complete();
+            return;
+        }
+        ResponseEntity<ApiResponse<Object>> error = errorResponse(ex, prefix);
+        sendErrorAndComplete(emitter, error.getBody().getError());
+    }
+
+    /**
+     * 发送错误事件并结束 SSE 事件流
+     * @param emitter SSE 发送器
+     * @param message 错误信息
+     */
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("error", message), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * 展开异步调用包装的异常
+     * @param ex 异常
+     * @return 原始异常
+     */
+    private Throwable unwrap(Throwable ex) {
+        Throwable cause = ex;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * 将异步调用的异常转换为 HTTP 响应
+     * @param ex 异常
+     * @param prefix 错误信息前缀
+     * @param <T> 响应数据类型
+     * @return 错误响应
+     */
+    private <T> ResponseEntity<ApiResponse<T>> errorResponse(Throwable ex, String prefix) {
+        Throwable cause = unwrap(ex);
+
+        if (cause instanceof AiBudgetExceededException) {
+            // 当日 token 用量已达预算，不占用上游名额
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(ApiResponse.error(cause.getMessage()));
+        }
+        if (cause instanceof AiServiceBusyException) {
+            // 并发和等待队列已满，快速拒绝
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(ApiResponse.error(cause.getMessage()));
+        }
+        if (cause instanceof AiUpstreamUnavailableException) {
+            // 上游故障，熔断期间快速失败
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error(cause.getMessage()));
+        }
+        if (cause instanceof TimeoutException) {
+            // 超过该操作的截止时间
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(ApiResponse.error(prefix + "AI 服务响应超时，请稍后重试"));
+        }
+        if (cause instanceof IllegalArgumentException) {
+            // 参数错误
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(cause.getMessage()));
+        }
+        // 其他异常
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error(prefix + cause.getMessage()));
+    }
+}
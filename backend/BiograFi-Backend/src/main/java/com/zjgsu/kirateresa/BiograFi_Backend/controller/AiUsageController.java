@@ -0,0 +1,72 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.controller;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiUsageSummary;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.ApiResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AiUsageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI 用量控制器
+ * 查询按天汇总的上游调用用量及用户当日的 token 预算使用情况
+ */
+@RestController
+@RequestMapping("/api/ai/usage")
+@CrossOrigin(origins = "*") // 允许跨域请求
+public class AiUsageController {
+
+    @Autowired
+    private AiUsageService aiUsageService;
+
+    /**
+     * 按天汇总用量
+     * @param groupBy 汇总维度：user（默认）或 project
+     * @param userId 用户ID（可选）
+     * @param projectId 项目ID（可选）
+     * @param from 起始日期（可选，yyyy-MM-dd）
+     * @param to 结束日期（可选，yyyy-MM-dd）
+     * @return 汇总行列表
+     */
+    @GetMapping("/daily")
+    public ResponseEntity<ApiResponse<List<AiUsageSummary>>> getDailyUsage(
+            @RequestParam(value = "groupBy", required = false) String groupBy,
+            @RequestParam(value = "userId", required = false) Integer userId,
+            @RequestParam(value = "projectId", required = false) String projectId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiUsageService.getDailyUsage(groupBy, userId, projectId, from, to)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 获取用户当日的 token 预算使用情况
+     * @param userId 用户ID
+     * @return 预算、已用与剩余 token 数
+     */
+    @GetMapping("/budget")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBudgetStatus(@RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiUsageService.getBudgetStatus(userId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.controller;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AnnotationJobRequest;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.ApiResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AnnotationJob;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AnnotationJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 后台自动标注任务控制器
+ * 提交一篇文档或整个项目后立即返回任务ID，标注在后台进行并直接写入实体标注表，可轮询或订阅进度
+ */
+@RestController
+@RequestMapping("/api/ai/jobs")
+@CrossOrigin(origins = "*") // 允许跨域请求
+public class AnnotationJobController {
+
+    // 进度订阅的最长保持时间，超时后客户端重新订阅即可
+    private static final long EVENTS_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    @Autowired
+    private AnnotationJobService annotationJobService;
+
+    /**
+     * 创建标注任务
+     * @param request 任务请求，documentId 与 projectId 二选一
+     * @return 新创建的任务
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<AnnotationJob>> createJob(@RequestBody AnnotationJobRequest request) {
+        try {
+            AnnotationJob job = annotationJobService.createJob(request);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 获取用户的标注任务列表
+     * @param userId 用户ID
+     * @return 任务列表
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<AnnotationJob>>> getJobs(@RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(annotationJobService.getJobsByUserId(userId)));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 获取任务详情
+     * @param jobId 任务ID
+     * @return 任务进度及各文档的处理情况
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ApiResponse<AnnotationJob>> getJob(@PathVariable String jobId) {
+        try {
+            Optional<AnnotationJob> job = annotationJobService.getJob(jobId);
+            return job.map(value -> ResponseEntity.ok(ApiResponse.success(value)))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(ApiResponse.error("任务不存在")));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 取消任务，正在标注的文档完成后停止
+     * @param jobId 任务ID
+     * @return 取消后的任务
+     */
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<ApiResponse<AnnotationJob>> cancelJob(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(annotationJobService.cancelJob(jobId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 继续任务，重新处理未完成和失败的文档
+     * @param jobId 任务ID
+     * @return 继续运行的任务
+     */
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<ApiResponse<AnnotationJob>> resumeJob(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(annotationJobService.resumeJob(jobId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 订阅任务进度（SSE）
+     * 事件：progress 为任务的最新状态，订阅时立即推送一次，之后每篇文档处理完成推送一次；done 表示任务已结束
+     * @param jobId 任务ID
+     * @return SSE 事件流
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable String jobId) {
+        SseEmitter emitter = new SseEmitter(EVENTS_TIMEOUT_MS);
+        Optional<AnnotationJob> current = annotationJobService.getJob(jobId);
+        if (current.isEmpty()) {
+            sendAndComplete(emitter, "error", Map.of("error", "任务不存在"));
+            return emitter;
+        }
+
+        Runnable unsubscribe = annotationJobService.subscribe(jobId, job -> {
+            sendEvent(emitter, "progress", job);
+            if (job.isFinished()) {
+                sendAndComplete(emitter, "done", job);
+            }
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        AnnotationJob job = current.get();
+        job.setItems(null);
+        try {
+            sendEvent(emitter, "progress", job);
+            if (job.isFinished()) {
+                unsubscribe.run();
+                sendAndComplete(emitter, "done", job);
+            }
+        } catch (UncheckedIOException e) {
+            unsubscribe.run();
+        }
+        return emitter;
+    }
+
+    /**
+     * 向客户端推送一个 JSON 事件，客户端断开时抛出异常以取消订阅
+     * @param emitter SSE 发送器
+     * @param name 事件名称
+     * @param data 事件数据
+     */
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            throw new UncheckedIOException(e instanceof IOException io ? io : new IOException(e));
+        }
+    }
+
+    /**
+     * 推送最后一个事件并结束 SSE 事件流
+     * @param emitter SSE 发送器
+     * @param name 事件名称
+     * @param data 事件数据
+     */
+    private void sendAndComplete(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.controller;
 
 import com.zjgsu.kirateresa.BiograFi_Backend.model.Project;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.ProjectAiSettings;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.ApiResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.ProjectAiSettingsRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.ProjectCreateRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.ProjectUpdateRequest;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AnnotationPrefetchService;
 import com.zjgsu.kirateresa.BiograFi_Backend.service.ProjectService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -22,6 +25,9 @@ public class ProjectController {
     @Autowired
     private ProjectService projectService;
 
+    @Autowired
+    private AnnotationPrefetchService annotationPrefetchService;
+
     /**
      * 获取用户项目列表
      * @param userId 用户ID
@@ -89,6 +95,45 @@ public class ProjectController {
         }
     }
 
+    /**
+     * 获取项目 AI 设置
+     * @param projectId 项目ID
+     * @return 项目 AI 设置
+     */
+    @GetMapping("/projects/{projectId}/ai-settings")
+    public ResponseEntity<ApiResponse<ProjectAiSettings>> getAiSettings(@PathVariable String projectId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(annotationPrefetchService.getSettings(projectId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 更新项目 AI 设置
+     * 开启预取后，项目中新建或内容更新的文档会在后台预先自动标注
+     * @param projectId 项目ID
+     * @param request 设置更新请求
+     * @return 更新后的设置
+     */
+    @PutMapping("/projects/{projectId}/ai-settings")
+    public ResponseEntity<ApiResponse<ProjectAiSettings>> updateAiSettings(@PathVariable String projectId,
+                                                                         @RequestBody ProjectAiSettingsRequest request) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(annotationPrefetchService.updateSettings(projectId, request)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
     /**
      * 获取项目详情
      * @param projectId 项目ID
@@ -1,17 +1,23 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.controller;
 
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.ApiResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentBatchRequest;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentBatchResponse;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentResponse;
 import com.zjgsu.kirateresa.BiograFi_Backend.service.SegmentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 分词控制器，处理文本分词相关的 HTTP 请求
  */
@@ -34,14 +40,83 @@ public class SegmentController {
                 return ResponseEntity.badRequest().body(ApiResponse.error("请提供要分词的文本"));
             }
 
-            var tokens = segmentService.segmentText(request.getText());
             SegmentResponse response = new SegmentResponse();
-            response.setTokens(tokens);
+            if (offsetsFormat(request.getFormat())) {
+                response.setOffsets(segmentService.segmentOffsets(request.getText(), request.getDocumentId(), request.getProjectId()));
+            } else {
+                response.setTokens(segmentService.segmentText(request.getText(), request.getDocumentId(), request.getProjectId()));
+            }
             
             return ResponseEntity.ok(ApiResponse.success("分词成功", response));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("分词失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 批量分词接口，可提交多段文本，或指定文档、项目对其内容分词
+     * @param request 批量分词请求，texts、documentId 二选一或只提供 projectId
+     * @return 以文本键或文档ID为键的分词结果
+     */
+    @PostMapping("/segment/batch")
+    public ResponseEntity<ApiResponse<SegmentBatchResponse>> segmentBatch(@RequestBody SegmentBatchRequest request) {
+        try {
+            Map<String, SegmentResponse> results = new LinkedHashMap<>();
+            if (offsetsFormat(request.getFormat())) {
+                segmentService.segmentBatchOffsets(request).forEach((key, offsets) -> {
+                    SegmentResponse response = new SegmentResponse();
+                    response.setOffsets(offsets);
+                    results.put(key, response);
+                });
+            } else {
+                segmentService.segmentBatch(request).forEach((key, tokens) -> {
+                    SegmentResponse response = new SegmentResponse();
+                    response.setTokens(tokens);
+                    results.put(key, response);
+                });
+            }
+            SegmentBatchResponse response = new SegmentBatchResponse();
+            response.setResults(results);
+
+            return ResponseEntity.ok(ApiResponse.success("分词成功", response));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(ApiResponse.error("分词失败: " + e.getMessage()));
         }
     }
+
+    /**
+     * 分词服务运行统计接口
+     * @return 分词结果缓存与词典的统计信息
+     */
+    @GetMapping("/segment/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getStats() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(segmentService.getStats()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("服务器错误"));
+        }
+    }
+
+    /**
+     * 解析响应格式
+     * @param format 请求的格式，为空时按 tokens
+     * @return 是否只返回结束位置
+     * @throws IllegalArgumentException 不支持的格式
+     */
+    private static boolean offsetsFormat(String format) {
+        if (format == null || SegmentService.FORMAT_TOKENS.equals(format)) {
+            return false;
+        }
+        if (SegmentService.FORMAT_OFFSETS.equals(format)) {
+            return true;
+        }
+        throw new IllegalArgumentException("不支持的响应格式: " + format + "，可选 tokens 或 offsets");
+    }
 }
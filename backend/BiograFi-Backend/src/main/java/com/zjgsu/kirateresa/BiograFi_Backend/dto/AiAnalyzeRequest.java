@@ -16,4 +16,14 @@ public class AiAnalyzeRequest {
      * 可选的模型名称，默认使用配置中的模型
      */
     private String model;
+
+    /**
+     * 可选的用户ID，用于按用户公平调度；未提供时按客户端地址区分
+     */
+    private Integer userId;
+
+    /**
+     * 是否允许返回相近文本的分析结果，默认允许
+     */
+    private Boolean allowApproximate;
 }
@@ -11,4 +11,24 @@ public class AiAutoAnnotateRequest {
      * 要标注的文本内容
      */
     private String text;
+
+    /**
+     * 可选的用户ID，用于按用户公平调度；未提供时按客户端地址区分
+     */
+    private Integer userId;
+
+    /**
+     * 标注模式：full（默认）发送全文；incremental 只发送此前未标注过的句子
+     */
+    private String mode;
+
+    /**
+     * 可选的文档ID；文本与该文档已预取的内容一致时直接返回预取结果
+     */
+    private String documentId;
+
+    /**
+     * 可选的项目ID，模型超时时以该项目中已有的标注作为本地词典；未提供时按文档所属项目
+     */
+    private String projectId;
 }
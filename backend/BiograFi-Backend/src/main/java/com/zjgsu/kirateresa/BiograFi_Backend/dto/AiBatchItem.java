@@ -0,0 +1,29 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+/**
+ * AI 批量请求中的单个条目
+ */
+@Data
+public class AiBatchItem {
+    /**
+     * 可选的客户端条目标识，原样返回
+     */
+    private String id;
+
+    /**
+     * 条目类型：analyze 或 qa
+     */
+    private String type;
+
+    /**
+     * 原文内容
+     */
+    private String text;
+
+    /**
+     * 问题（qa 类型必填）
+     */
+    private String question;
+}
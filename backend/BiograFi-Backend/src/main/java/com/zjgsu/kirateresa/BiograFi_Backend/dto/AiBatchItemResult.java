@@ -0,0 +1,34 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+/**
+ * AI 批量请求中单个条目的结果
+ */
+@Data
+public class AiBatchItemResult {
+    /**
+     * 条目在请求列表中的位置
+     */
+    private Integer index;
+
+    /**
+     * 客户端条目标识
+     */
+    private String id;
+
+    /**
+     * 条目类型
+     */
+    private String type;
+
+    /**
+     * 响应结果，失败时为 null
+     */
+    private String result;
+
+    /**
+     * 错误信息，成功时为 null
+     */
+    private String error;
+}
@@ -0,0 +1,26 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * AI 批量请求
+ */
+@Data
+public class AiBatchRequest {
+    /**
+     * 分析或问答条目列表
+     */
+    private List<AiBatchItem> items;
+
+    /**
+     * 可选的模型名称，默认使用配置中的模型
+     */
+    private String model;
+
+    /**
+     * 可选的用户ID，用于按用户公平调度；未提供时按客户端地址区分
+     */
+    private Integer userId;
+}
@@ -0,0 +1,24 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+/**
+ * 项目范围 AI 问答请求
+ */
+@Data
+public class AiProjectQaRequest {
+    /**
+     * 问题
+     */
+    private String question;
+
+    /**
+     * 可选的模型名称，默认使用配置中的模型
+     */
+    private String model;
+
+    /**
+     * 可选的用户ID，用于按用户公平调度；未提供时按客户端地址区分
+     */
+    private Integer userId;
+}
@@ -0,0 +1,21 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 项目范围 AI 问答响应
+ */
+@Data
+public class AiProjectQaResponse {
+    /**
+     * 回答
+     */
+    private String result;
+
+    /**
+     * 作为依据发送给模型的段落，按文档和位置排序
+     */
+    private List<RetrievedPassage> passages;
+}
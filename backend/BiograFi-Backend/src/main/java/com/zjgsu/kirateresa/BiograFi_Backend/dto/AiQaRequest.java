@@ -21,4 +21,9 @@ public class AiQaRequest {
      * 可选的模型名称，默认使用配置中的模型
      */
     private String model;
+
+    /**
+     * 可选的用户ID，用于按用户公平调度；未提供时按客户端地址区分
+     */
+    private Integer userId;
 }
@@ -11,4 +11,14 @@ public class AiResponse {
      * 响应结果
      */
     private String result;
+
+    /**
+     * 文本分析结果是否复用自相近文本（不同版本的标点、异体字、空白差异），仅文本分析接口返回
+     */
+    private Boolean approximate;
+
+    /**
+     * 近似结果对应文本与本次文本的估计 Jaccard 相似度，仅近似结果返回
+     */
+    private Double similarity;
 }
@@ -0,0 +1,60 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * AI 用量汇总DTO，一行对应一天内一个用户或一个项目的上游调用
+ */
+@Data
+@NoArgsConstructor
+public class AiUsageSummary {
+
+    private LocalDate date;
+
+    /**
+     * 用户ID，按用户汇总时返回
+     */
+    private Integer userId;
+
+    /**
+     * 项目ID，按项目汇总时返回
+     */
+    private String projectId;
+
+    /**
+     * 上游调用次数
+     */
+    private Long calls;
+
+    /**
+     * 失败的调用次数
+     */
+    private Long failedCalls;
+
+    private Long promptTokens;
+
+    private Long completionTokens;
+
+    /**
+     * 命中上游上下文缓存的提示词 token 数
+     */
+    private Long cacheHitTokens;
+
+    /**
+     * 提示词与生成 token 之和，即计入预算的用量
+     */
+    private Long totalTokens;
+
+    /**
+     * 调用总耗时（毫秒）
+     */
+    private Long totalDurationMs;
+
+    /**
+     * 平均每次调用耗时（毫秒）
+     */
+    private Double avgDurationMs;
+}
@@ -0,0 +1,13 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+/**
+ * 后台自动标注任务请求DTO
+ */
+@Data
+public class AnnotationJobRequest {
+    private Integer userId;
+    private String documentId;
+    private String projectId;
+}
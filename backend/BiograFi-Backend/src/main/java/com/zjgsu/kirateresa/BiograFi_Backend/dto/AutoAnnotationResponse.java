@@ -9,8 +9,19 @@ import java.util.List;
  */
 @Data
 public class AutoAnnotationResponse {
+
+    public static final String SOURCE_MODEL = "model";
+    public static final String SOURCE_PREFETCH = "prefetch";
+    public static final String SOURCE_DICTIONARY = "dictionary";
+
     /**
      * 自动标注结果列表
      */
     private List<AutoAnnotationItem> annotations;
+
+    /**
+     * 结果来源：model 为本次调用模型生成，prefetch 为文档创建或更新后预先生成，
+     * dictionary 为模型未能在截止时间内返回时按项目中已有标注在本地匹配
+     */
+    private String source;
 }
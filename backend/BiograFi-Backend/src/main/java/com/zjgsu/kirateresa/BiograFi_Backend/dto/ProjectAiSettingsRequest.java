@@ -0,0 +1,14 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+/**
+ * 项目 AI 设置更新请求DTO
+ */
+@Data
+public class ProjectAiSettingsRequest {
+    /**
+     * 是否在文档创建或内容更新后预先进行自动标注，未提供时保持不变
+     */
+    private Boolean prefetchEnabled;
+}
@@ -0,0 +1,39 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+/**
+ * 检索到的文档段落
+ */
+@Data
+public class RetrievedPassage {
+    /**
+     * 所属文档ID，检索临时文本时为 null
+     */
+    private String documentId;
+
+    /**
+     * 所属文档名称
+     */
+    private String documentName;
+
+    /**
+     * 段落在文档中的起始位置
+     */
+    private Integer start;
+
+    /**
+     * 段落在文档中的结束位置（不包含）
+     */
+    private Integer end;
+
+    /**
+     * 段落文本
+     */
+    private String text;
+
+    /**
+     * BM25 得分
+     */
+    private Double score;
+}
@@ -0,0 +1,31 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 批量分词请求，texts、documentId 二选一或只提供 projectId
+ */
+@Data
+public class SegmentBatchRequest {
+    /**
+     * 要分词的文本，键由调用方指定，结果按相同的键返回
+     */
+    private Map<String, String> texts;
+
+    /**
+     * 对单篇文档的内容分词，结果以文档ID为键
+     */
+    private String documentId;
+
+    /**
+     * 单独提供时对项目下所有文档的内容分词，结果以文档ID为键；与 texts 一起提供时对这些文本使用该项目的词典
+     */
+    private String projectId;
+
+    /**
+     * 响应格式：tokens（默认）返回词语及起止位置，offsets 只返回各词的结束位置，由调用方从原文切出词语
+     */
+    private String format;
+}
@@ -0,0 +1,16 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 批量分词响应
+ */
+@Data
+public class SegmentBatchResponse {
+    /**
+     * 各输入的分词结果，键为请求中的文本键或文档ID，顺序与输入一致
+     */
+    private Map<String, SegmentResponse> results;
+}
@@ -11,4 +11,19 @@ public class SegmentRequest {
      * 要分词的文本内容
      */
     private String text;
+
+    /**
+     * 文本所属的文档ID（可选），提供时分词结果按文档持久化
+     */
+    private String documentId;
+
+    /**
+     * 使用其词典的项目ID（可选），未提供时按文档所属项目；两者都未提供时只使用内置词典
+     */
+    private String projectId;
+
+    /**
+     * 响应格式：tokens（默认）返回词语及起止位置，offsets 只返回各词的结束位置，由调用方从原文切出词语
+     */
+    private String format;
 }
@@ -1,16 +1,23 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.List;
 
 /**
- * 分词响应
+ * 分词响应，按请求的格式只返回 tokens 或 offsets 之一
  */
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SegmentResponse {
     /**
      * 分词结果列表
      */
     private List<SegmentToken> tokens;
+
+    /**
+     * 各词在原文中的结束位置，第 i 个词为原文的 [offsets[i-1], offsets[i]) 区间，首词从 0 开始
+     */
+    private int[] offsets;
 }
@@ -0,0 +1,11 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.event;
+
+/**
+ * 文档内容变化事件，在文档创建、内容更新或删除时发布
+ * 监听方应在事务提交后处理（@TransactionalEventListener），避免读到未提交的内容
+ * @param documentId 文档ID
+ * @param projectId 文档所属项目ID
+ * @param deleted 文档是否已被删除
+ */
+public record DocumentContentChangedEvent(String documentId, String projectId, boolean deleted) {
+}
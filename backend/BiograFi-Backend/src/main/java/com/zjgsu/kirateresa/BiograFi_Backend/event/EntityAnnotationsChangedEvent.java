@@ -0,0 +1,13 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.event;
+
+import java.util.List;
+
+/**
+ * 实体标注变化事件，在人工添加、批量导入、自动标注任务写入或删除标注时发布
+ * 监听方应在事务提交后处理（@TransactionalEventListener），避免读到未提交的内容
+ * @param documentId 标注所属的文档ID
+ * @param addedTexts 新增标注的实体文本
+ * @param removed 是否有标注被删除
+ */
+public record EntityAnnotationsChangedEvent(String documentId, List<String> addedTexts, boolean removed) {
+}
@@ -0,0 +1,12 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.exception;
+
+/**
+ * AI 用量超出预算异常，调用方当日 token 用量已达上限时在调度前抛出，对应 HTTP 429
+ * 与 AiServiceBusyException 不同，等待片刻重试不会成功，后台任务不应重试
+ */
+public class AiBudgetExceededException extends RuntimeException {
+
+    public AiBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.exception;
+
+/**
+ * AI 服务繁忙异常，在并发数和等待队列都已满时抛出，对应 HTTP 429
+ */
+public class AiServiceBusyException extends RuntimeException {
+
+    public AiServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.exception;
+
+import java.io.IOException;
+
+/**
+ * AI 上游返回非 2xx 状态码且不再重试时抛出，携带状态码供调用统计分类
+ */
+public class AiUpstreamHttpException extends IOException {
+
+    private final int status;
+
+    public AiUpstreamHttpException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,11 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.exception;
+
+/**
+ * AI 上游不可用异常，熔断器打开期间快速失败时抛出，对应 HTTP 503
+ */
+public class AiUpstreamUnavailableException extends RuntimeException {
+
+    public AiUpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,49 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 预取标注建议模型，每篇文档保留最近一次内容的预取结果
+ */
+@Entity
+@Table(name = "ai_annotation_suggestions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class AiAnnotationSuggestion implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "document_id", nullable = false, length = 64)
+    private String documentId;
+
+    /**
+     * 预取时文档内容的 SHA-256 摘要，内容变化后建议失效
+     */
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "model", length = 64)
+    private String model;
+
+    /**
+     * 标注建议，JSON 数组，每项为 [start, end, label]
+     */
+    @Column(name = "annotations", columnDefinition = "LONGTEXT")
+    private String annotations;
+
+    @LastModifiedDate
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+}
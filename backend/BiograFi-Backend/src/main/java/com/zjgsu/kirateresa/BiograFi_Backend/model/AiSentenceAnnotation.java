@@ -0,0 +1,46 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 单句自动标注结果模型，按句子内容摘要寻址，供增量标注复用
+ */
+@Entity
+@Table(name = "ai_sentence_annotations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class AiSentenceAnnotation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 句子键：提示词模板、句子文本、模型及生成参数的 SHA-256 摘要
+     */
+    @Id
+    @Column(name = "sentence_key", nullable = false, length = 64)
+    private String sentenceKey;
+
+    @Column(name = "model", length = 64)
+    private String model;
+
+    /**
+     * 句内标注，JSON 数组，每项为 [start, end, label]，位置相对于句首
+     */
+    @Column(name = "annotations", columnDefinition = "TEXT")
+    private String annotations;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+}
@@ -0,0 +1,75 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * AI 上游调用用量记录，每次实际发往上游的调用一条（缓存命中与合并的请求不产生记录）
+ */
+@Entity
+@Table(name = "ai_usage_records", indexes = {
+        @Index(name = "idx_usage_user", columnList = "usage_date, user_id"),
+        @Index(name = "idx_usage_project", columnList = "usage_date, project_id"),
+        @Index(name = "idx_usage_caller", columnList = "usage_date, caller")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiUsageRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * 调用方标识，如 user:1、ip:127.0.0.1、prefetch
+     */
+    @Column(name = "caller", nullable = false, length = 64)
+    private String caller;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "project_id", length = 64)
+    private String projectId;
+
+    @Column(name = "document_id", length = 64)
+    private String documentId;
+
+    @Column(name = "operation", nullable = false, length = 32)
+    private String operation;
+
+    @Column(name = "model", length = 64)
+    private String model;
+
+    @Column(name = "prompt_tokens", nullable = false)
+    private Long promptTokens;
+
+    @Column(name = "completion_tokens", nullable = false)
+    private Long completionTokens;
+
+    @Column(name = "cache_hit_tokens", nullable = false)
+    private Long cacheHitTokens;
+
+    @Column(name = "duration_ms", nullable = false)
+    private Long durationMs;
+
+    @Column(name = "success", nullable = false)
+    private Boolean success;
+
+    @Column(name = "usage_date", nullable = false)
+    private LocalDate usageDate;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+}
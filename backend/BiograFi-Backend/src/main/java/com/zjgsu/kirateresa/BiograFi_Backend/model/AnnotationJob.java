@@ -0,0 +1,93 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 后台自动标注任务模型，一个任务对应一篇文档或一个项目下的全部文档
+ */
+@Entity
+@Table(name = "annotation_jobs", indexes = {
+        @Index(name = "idx_job_user", columnList = "user_id, created_at"),
+        @Index(name = "idx_job_status", columnList = "status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class AnnotationJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    @Id
+    @Column(name = "id", nullable = false, length = 64)
+    private String id;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "project_id", length = 64)
+    private String projectId;
+
+    @Column(name = "document_id", length = 64)
+    private String documentId;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "total_documents", nullable = false)
+    private Integer totalDocuments;
+
+    @Column(name = "completed_documents", nullable = false)
+    private Integer completedDocuments;
+
+    @Column(name = "failed_documents", nullable = false)
+    private Integer failedDocuments;
+
+    @Column(name = "annotation_count", nullable = false)
+    private Integer annotationCount;
+
+    @Column(name = "error", columnDefinition = "TEXT")
+    private String error;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    /**
+     * 各文档的处理情况，仅在查询任务详情时填充
+     */
+    @Transient
+    private List<AnnotationJobItem> items;
+
+    /**
+     * 任务是否已结束
+     * @return 已完成、失败或已取消时返回 true
+     */
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status) || STATUS_CANCELLED.equals(status);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 文档段落模型，保存段落位置及分词结果，用于 BM25 段落检索
+ */
+@Entity
+@Table(name = "document_passages", indexes = {
+        @Index(name = "idx_passage_document", columnList = "document_id, passage_index"),
+        @Index(name = "idx_passage_project", columnList = "project_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentPassage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "document_id", nullable = false, length = 64)
+    private String documentId;
+
+    @Column(name = "project_id", length = 64)
+    private String projectId;
+
+    @Column(name = "passage_index", nullable = false)
+    private Integer passageIndex;
+
+    @Column(name = "start_offset", nullable = false)
+    private Integer startOffset;
+
+    @Column(name = "end_offset", nullable = false)
+    private Integer endOffset;
+
+    /**
+     * 段落文本的 SHA-256 摘要，内容未变的段落复用已有分词结果
+     */
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    /**
+     * 以空格分隔的检索词项
+     */
+    @Column(name = "terms", columnDefinition = "LONGTEXT")
+    private String terms;
+
+}
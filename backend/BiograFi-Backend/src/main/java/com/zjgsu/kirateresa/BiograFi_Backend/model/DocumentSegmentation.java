@@ -0,0 +1,49 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 文档分词结果模型，每篇文档保留最近一次内容的分词边界，服务重启后无需重新分词
+ */
+@Entity
+@Table(name = "document_segmentations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class DocumentSegmentation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "document_id", nullable = false, length = 64)
+    private String documentId;
+
+    /**
+     * 分词时文档内容的 SHA-256 摘要，内容变化后结果失效
+     */
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "token_count", nullable = false)
+    private Integer tokenCount;
+
+    /**
+     * 各词的长度，逗号分隔，按顺序累加即为各词的结束位置
+     */
+    @Column(name = "token_lengths", nullable = false, columnDefinition = "LONGTEXT")
+    private String tokenLengths;
+
+    @LastModifiedDate
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+}
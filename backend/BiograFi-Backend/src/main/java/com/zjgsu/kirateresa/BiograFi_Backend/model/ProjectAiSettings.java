@@ -0,0 +1,40 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 项目 AI 设置模型，未设置过的项目视为全部关闭
+ */
+@Entity
+@Table(name = "project_ai_settings")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ProjectAiSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "project_id", nullable = false, length = 64)
+    private String projectId;
+
+    /**
+     * 是否在文档创建或内容更新后预先进行自动标注
+     */
+    @Column(name = "prefetch_enabled", nullable = false)
+    private Boolean prefetchEnabled;
+
+    @LastModifiedDate
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+}
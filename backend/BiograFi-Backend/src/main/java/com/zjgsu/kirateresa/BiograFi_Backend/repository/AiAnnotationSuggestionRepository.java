@@ -0,0 +1,12 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiAnnotationSuggestion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 预取标注建议数据访问接口
+ */
+@Repository
+public interface AiAnnotationSuggestionRepository extends JpaRepository<AiAnnotationSuggestion, String> {
+}
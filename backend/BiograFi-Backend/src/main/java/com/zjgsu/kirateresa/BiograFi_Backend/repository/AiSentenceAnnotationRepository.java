@@ -0,0 +1,29 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiSentenceAnnotation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * 单句自动标注结果数据访问接口
+ */
+@Repository
+public interface AiSentenceAnnotationRepository extends JpaRepository<AiSentenceAnnotation, String> {
+
+    /**
+     * 删除过期的单句标注结果
+     * @param before 截止时间，早于该时间创建的记录将被删除
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AiSentenceAnnotation e WHERE e.createdAt < :before")
+    int deleteByCreatedAtBefore(@Param("before") LocalDateTime before);
+
+}
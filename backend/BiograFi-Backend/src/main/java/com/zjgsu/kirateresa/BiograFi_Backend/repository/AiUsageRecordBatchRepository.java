@@ -0,0 +1,19 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiUsageRecord;
+
+import java.util.List;
+
+/**
+ * AI 用量记录批量写入接口
+ */
+public interface AiUsageRecordBatchRepository {
+
+    /**
+     * 以 JDBC 批处理方式插入用量记录，不回填自增ID
+     * @param records 用量记录列表
+     * @return 插入的数量
+     */
+    int batchInsert(List<AiUsageRecord> records);
+
+}
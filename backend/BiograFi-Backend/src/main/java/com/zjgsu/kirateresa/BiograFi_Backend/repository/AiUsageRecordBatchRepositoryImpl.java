@@ -0,0 +1,54 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiUsageRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * AI 用量记录批量写入实现
+ * 每次上游调用都产生一条记录，逐条 save 会在高并发时占用连接池，这里由写入线程攒批后一次提交
+ */
+public class AiUsageRecordBatchRepositoryImpl implements AiUsageRecordBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL = "INSERT INTO ai_usage_records " +
+            "(caller, user_id, project_id, document_id, operation, model, prompt_tokens, completion_tokens, " +
+            "cache_hit_tokens, duration_ms, success, usage_date, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int batchInsert(List<AiUsageRecord> records) {
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, records, BATCH_SIZE, (ps, record) -> {
+            ps.setString(1, record.getCaller());
+            if (record.getUserId() != null) {
+                ps.setInt(2, record.getUserId());
+            } else {
+                ps.setNull(2, Types.INTEGER);
+            }
+            ps.setString(3, record.getProjectId());
+            ps.setString(4, record.getDocumentId());
+            ps.setString(5, record.getOperation());
+            ps.setString(6, record.getModel());
+            ps.setLong(7, record.getPromptTokens());
+            ps.setLong(8, record.getCompletionTokens());
+            ps.setLong(9, record.getCacheHitTokens());
+            ps.setLong(10, record.getDurationMs());
+            ps.setBoolean(11, record.getSuccess());
+            ps.setDate(12, Date.valueOf(record.getUsageDate()));
+            ps.setTimestamp(13, Timestamp.valueOf(record.getCreatedAt()));
+        });
+        return records.size();
+    }
+
+}
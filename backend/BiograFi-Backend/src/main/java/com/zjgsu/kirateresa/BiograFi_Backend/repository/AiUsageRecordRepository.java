@@ -0,0 +1,59 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiUsageRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * AI 用量记录数据访问接口
+ * 汇总查询的每行依次为：日期、分组键、调用次数、失败次数、提示词 token、生成 token、命中缓存 token、总耗时（毫秒）
+ */
+@Repository
+public interface AiUsageRecordRepository extends JpaRepository<AiUsageRecord, Long>, AiUsageRecordBatchRepository {
+
+    /**
+     * 统计调用方某日已用的 token 数（提示词与生成之和）
+     * @param caller 调用方标识
+     * @param usageDate 日期
+     * @return token 数
+     */
+    @Query("SELECT COALESCE(SUM(r.promptTokens + r.completionTokens), 0) FROM AiUsageRecord r " +
+            "WHERE r.caller = :caller AND r.usageDate = :usageDate")
+    long sumTokensByCallerAndDate(@Param("caller") String caller, @Param("usageDate") LocalDate usageDate);
+
+    /**
+     * 按日期和用户汇总用量
+     * @param from 起始日期（含）
+     * @param to 结束日期（含）
+     * @param userId 用户ID，为 null 时不过滤
+     * @return 汇总行，按日期和用户排序
+     */
+    @Query("SELECT r.usageDate, r.userId, COUNT(r), SUM(CASE WHEN r.success = false THEN 1 ELSE 0 END), " +
+            "SUM(r.promptTokens), SUM(r.completionTokens), SUM(r.cacheHitTokens), SUM(r.durationMs) " +
+            "FROM AiUsageRecord r WHERE r.usageDate BETWEEN :from AND :to AND r.userId IS NOT NULL " +
+            "AND (:userId IS NULL OR r.userId = :userId) " +
+            "GROUP BY r.usageDate, r.userId ORDER BY r.usageDate, r.userId")
+    List<Object[]> sumDailyByUser(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                  @Param("userId") Integer userId);
+
+    /**
+     * 按日期和项目汇总用量
+     * @param from 起始日期（含）
+     * @param to 结束日期（含）
+     * @param projectId 项目ID，为 null 时不过滤
+     * @return 汇总行，按日期和项目排序
+     */
+    @Query("SELECT r.usageDate, r.projectId, COUNT(r), SUM(CASE WHEN r.success = false THEN 1 ELSE 0 END), " +
+            "SUM(r.promptTokens), SUM(r.completionTokens), SUM(r.cacheHitTokens), SUM(r.durationMs) " +
+            "FROM AiUsageRecord r WHERE r.usageDate BETWEEN :from AND :to AND r.projectId IS NOT NULL " +
+            "AND (:projectId IS NULL OR r.projectId = :projectId) " +
+            "GROUP BY r.usageDate, r.projectId ORDER BY r.usageDate, r.projectId")
+    List<Object[]> sumDailyByProject(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                     @Param("projectId") String projectId);
+
+}
@@ -0,0 +1,44 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AnnotationJobItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 标注任务文档记录数据访问接口
+ */
+@Repository
+public interface AnnotationJobItemRepository extends JpaRepository<AnnotationJobItem, Long> {
+
+    /**
+     * 获取任务的所有文档记录
+     * @param jobId 任务ID
+     * @return 按创建顺序排列的文档记录
+     */
+    List<AnnotationJobItem> findByJobIdOrderByIdAsc(String jobId);
+
+    /**
+     * 获取任务中处于指定状态的文档记录
+     * @param jobId 任务ID
+     * @param status 状态
+     * @return 按创建顺序排列的文档记录
+     */
+    List<AnnotationJobItem> findByJobIdAndStatusOrderByIdAsc(String jobId, String status);
+
+    /**
+     * 将任务中处于某状态的文档记录改为另一状态
+     * @param jobId 任务ID
+     * @param from 原状态
+     * @param to 新状态
+     * @return 更新的记录数
+     */
+    @Modifying
+    @Query("UPDATE AnnotationJobItem i SET i.status = :to WHERE i.jobId = :jobId AND i.status = :from")
+    int updateStatus(@Param("jobId") String jobId, @Param("from") String from, @Param("to") String to);
+
+}
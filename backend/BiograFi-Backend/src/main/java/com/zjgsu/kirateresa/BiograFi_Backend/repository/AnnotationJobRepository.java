@@ -0,0 +1,73 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AnnotationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 标注任务数据访问接口
+ */
+@Repository
+public interface AnnotationJobRepository extends JpaRepository<AnnotationJob, String> {
+
+    /**
+     * 根据用户ID查找标注任务
+     * @param userId 用户ID
+     * @return 按创建时间倒序排列的任务列表
+     */
+    List<AnnotationJob> findByUserIdOrderByCreatedAtDesc(Integer userId);
+
+    /**
+     * 查找处于指定状态的标注任务
+     * @param statuses 状态列表
+     * @return 按创建时间排列的任务列表
+     */
+    List<AnnotationJob> findByStatusInOrderByCreatedAtAsc(Collection<String> statuses);
+
+    /**
+     * 文档处理完成后累加任务进度，多个文档并发完成时不会丢失计数
+     * @param jobId 任务ID
+     * @param completed 新增完成的文档数
+     * @param failed 新增失败的文档数
+     * @param annotations 新增的标注数
+     * @param now 更新时间
+     * @return 更新的记录数
+     */
+    @Modifying
+    @Query("UPDATE AnnotationJob j SET j.completedDocuments = j.completedDocuments + :completed, " +
+            "j.failedDocuments = j.failedDocuments + :failed, " +
+            "j.annotationCount = j.annotationCount + :annotations, j.updatedAt = :now WHERE j.id = :jobId")
+    int addProgress(@Param("jobId") String jobId,
+                    @Param("completed") int completed,
+                    @Param("failed") int failed,
+                    @Param("annotations") int annotations,
+                    @Param("now") LocalDateTime now);
+
+    /**
+     * 仅当任务处于指定状态之一时变更其状态，避免覆盖并发的取消或完成
+     * @param jobId 任务ID
+     * @param from 允许的原状态
+     * @param to 新状态
+     * @param error 错误信息
+     * @param finishedAt 结束时间，任务未结束时为 null
+     * @param now 更新时间
+     * @return 更新的记录数
+     */
+    @Modifying
+    @Query("UPDATE AnnotationJob j SET j.status = :to, j.error = :error, j.finishedAt = :finishedAt, " +
+            "j.updatedAt = :now WHERE j.id = :jobId AND j.status IN :from")
+    int transition(@Param("jobId") String jobId,
+                   @Param("from") Collection<String> from,
+                   @Param("to") String to,
+                   @Param("error") String error,
+                   @Param("finishedAt") LocalDateTime finishedAt,
+                   @Param("now") LocalDateTime now);
+
+}
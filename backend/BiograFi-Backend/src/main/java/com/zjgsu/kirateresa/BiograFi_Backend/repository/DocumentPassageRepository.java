@@ -0,0 +1,41 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.DocumentPassage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 文档段落数据访问接口
+ */
+@Repository
+public interface DocumentPassageRepository extends JpaRepository<DocumentPassage, Long> {
+
+    /**
+     * 获取文档的所有段落
+     * @param documentId 文档ID
+     * @return 按段落序号排列的段落列表
+     */
+    List<DocumentPassage> findByDocumentIdOrderByPassageIndexAsc(String documentId);
+
+    /**
+     * 获取项目下所有文档的段落
+     * @param projectId 项目ID
+     * @return 段落列表
+     */
+    List<DocumentPassage> findByProjectId(String projectId);
+
+    /**
+     * 删除文档的所有段落
+     * @param documentId 文档ID
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Query("DELETE FROM DocumentPassage p WHERE p.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") String documentId);
+
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -22,6 +23,29 @@ public interface DocumentRepository extends JpaRepository<Document, String> {
      */
     List<Document> findByUserIdAndProjectId(Integer userId, String projectId);
 
+    /**
+     * 根据项目ID查找文档列表
+     * @param projectId 项目ID
+     * @return 文档列表
+     */
+    List<Document> findByProjectId(String projectId);
+
+    /**
+     * 根据项目ID查找文档ID，不加载文档内容
+     * @param projectId 项目ID
+     * @return 按创建时间排列的文档ID列表
+     */
+    @Query("SELECT d.id FROM Document d WHERE d.projectId = :projectId ORDER BY d.createdAt ASC")
+    List<String> findIdsByProjectId(@Param("projectId") String projectId);
+
+    /**
+     * 查找文档所属的项目，不加载文档内容
+     * @param ids 文档ID集合
+     * @return 每行依次为文档ID、项目ID
+     */
+    @Query("SELECT d.id, d.projectId FROM Document d WHERE d.id IN :ids")
+    List<Object[]> findProjectIdsByIdIn(@Param("ids") Collection<String> ids);
+
     /**
      * 根据用户ID查找所有文档
      * @param userId 用户ID
@@ -0,0 +1,12 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.DocumentSegmentation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 文档分词结果数据访问接口
+ */
+@Repository
+public interface DocumentSegmentationRepository extends JpaRepository<DocumentSegmentation, String> {
+}
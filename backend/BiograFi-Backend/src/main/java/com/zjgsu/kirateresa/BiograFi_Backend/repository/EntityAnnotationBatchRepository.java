@@ -0,0 +1,19 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.EntityAnnotation;
+
+import java.util.List;
+
+/**
+ * 实体标注批量写入接口
+ */
+public interface EntityAnnotationBatchRepository {
+
+    /**
+     * 以 JDBC 批处理方式插入实体标注，不回填自增ID
+     * @param annotations 实体标注列表
+     * @return 插入的数量
+     */
+    int batchInsert(List<EntityAnnotation> annotations);
+
+}
@@ -0,0 +1,42 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.EntityAnnotation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 实体标注批量写入实现
+ * 标注表使用自增主键，JPA 的 saveAll 会逐条插入，这里直接按批提交
+ */
+public class EntityAnnotationBatchRepositoryImpl implements EntityAnnotationBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL = "INSERT INTO entity_annotations " +
+            "(document_id, start_index, end_index, label, text_content, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int batchInsert(List<EntityAnnotation> annotations) {
+        if (annotations == null || annotations.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, annotations, BATCH_SIZE, (ps, annotation) -> {
+            ps.setString(1, annotation.getDocumentId());
+            ps.setInt(2, annotation.getStartIndex());
+            ps.setInt(3, annotation.getEndIndex());
+            ps.setString(4, annotation.getLabel());
+            ps.setString(5, annotation.getTextContent());
+            ps.setTimestamp(6, annotation.getCreatedAt() != null ? Timestamp.valueOf(annotation.getCreatedAt()) : now);
+        });
+        return annotations.size();
+    }
+
+}
@@ -13,7 +13,7 @@ import java.util.Map;
  * 实体标注数据访问接口
  */
 @Repository
-public interface EntityAnnotationRepository extends JpaRepository<EntityAnnotation, Integer> {
+public interface EntityAnnotationRepository extends JpaRepository<EntityAnnotation, Integer>, EntityAnnotationBatchRepository {
 
     /**
      * 根据文档ID查找所有实体标注
@@ -67,6 +67,15 @@ public interface EntityAnnotationRepository extends JpaRepository<EntityAnnotati
      */
     long countByDocumentIdAndLabel(String documentId, String label);
 
+    /**
+     * 获取项目内所有文档中已标注的实体文本与标签（去重）
+     * @param projectId 项目ID
+     * @return 每行为 [实体文本, 标签]
+     */
+    @Query(value = "SELECT DISTINCT a.textContent, a.label FROM EntityAnnotation a, Document d " +
+            "WHERE a.documentId = d.id AND d.projectId = :projectId")
+    List<Object[]> findDistinctTextAndLabelByProjectId(@Param("projectId") String projectId);
+
     /**
      * 获取文档中所有地名实体
      * @param documentId 文档ID
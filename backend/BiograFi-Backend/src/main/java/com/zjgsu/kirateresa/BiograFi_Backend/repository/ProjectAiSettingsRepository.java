@@ -0,0 +1,12 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.repository;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.model.ProjectAiSettings;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 项目 AI 设置数据访问接口
+ */
+@Repository
+public interface ProjectAiSettingsRepository extends JpaRepository<ProjectAiSettings, String> {
+}
@@ -1,11 +1,20 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.service;
 
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiBatchItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiBatchItemResult;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiProjectQaResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiResponse;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationResponse;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * AI 服务接口，定义 AI 相关的服务方法
+ * 异步方法在缓存未命中、需要调用上游时检查调用方的当日 token 预算，超出时以 AiBudgetExceededException 失败（预取除外）
  */
 public interface AiService {
 
@@ -17,8 +26,19 @@ public interface AiService {
      */
     String analyzeText(String text, String model);
 
+    /**
+     * 文本分析，可复用相近文本的结果
+     * 精确缓存未命中且允许近似结果时，查找规范化后 Jaccard 相似度达到阈值的已分析文本（不同版本的标点、异体字、空白差异）
+     * @param text 要分析的文本
+     * @param model 可选的模型名称
+     * @param allowApproximate 是否允许返回相近文本的结果
+     * @return 分析结果，近似结果带有 approximate 标记和相似度
+     */
+    AiResponse analyzeText(String text, String model, boolean allowApproximate);
+
     /**
      * 问答系统
+     * 原文超过上下文上限时只发送与问题相关的段落
      * @param text 原文
      * @param question 问题
      * @param model 可选的模型名称
@@ -28,11 +48,150 @@ public interface AiService {
 
     /**
      * 自动标注
+     * 超过分块长度的长文本会在句子边界处切分，各块并行标注后合并
      * @param text 要标注的文本
      * @return 标注结果列表
      */
     List<AutoAnnotationItem> autoAnnotate(String text);
 
+    /**
+     * 增量自动标注
+     * 按句切分后只将此前未标注过的句子发送给模型，已标注句子的结果平移到当前位置复用
+     * @param text 要标注的文本
+     * @return 去重并按起始位置排序的标注结果
+     */
+    List<AutoAnnotationItem> autoAnnotateIncremental(String text);
+
+    /**
+     * 增量自动标注实际路由到的模型，用于记录和校验保存下来的标注结果
+     * 各句单独路由，路由到多个模型时去重后按字典序以逗号连接；端点档位配置变化后返回值随之变化
+     * @param text 要标注的文本
+     * @return 路由到的模型
+     */
+    String autoAnnotateModel(String text);
+
+    /**
+     * 异步文本分析，按交互式优先级调度
+     * @param text 要分析的文本
+     * @param model 可选的模型名称
+     * @param allowApproximate 是否允许返回相近文本的结果
+     * @param caller 调用方标识，用于按用户公平调度
+     * @return 分析结果；服务繁忙时以 AiServiceBusyException 失败，开始执行后超过分析截止时间时以 TimeoutException 失败
+     */
+    CompletableFuture<AiResponse> analyzeTextAsync(String text, String model, boolean allowApproximate, String caller);
+
+    /**
+     * 异步问答，按交互式优先级调度
+     * @param text 原文
+     * @param question 问题
+     * @param model 可选的模型名称
+     * @param caller 调用方标识，用于按用户公平调度
+     * @return 回答；服务繁忙时以 AiServiceBusyException 失败，开始执行后超过问答截止时间时以 TimeoutException 失败
+     */
+    CompletableFuture<String> qaTextAsync(String text, String question, String model, String caller);
+
+    /**
+     * 异步自动标注，按批量优先级调度
+     * @param text 要标注的文本
+     * @param incremental 是否使用增量标注
+     * @param documentId 文档ID（可选），用于用量记录
+     * @param caller 调用方标识，用于按用户公平调度
+     * @return 标注结果列表；服务繁忙时以 AiServiceBusyException 失败，超出当日预算时以 AiBudgetExceededException 失败
+     */
+    CompletableFuture<List<AutoAnnotationItem>> autoAnnotateAsync(String text, boolean incremental, String documentId, String caller);
+
+    /**
+     * 带截止时间的异步自动标注，供交互式标注界面使用，按交互式优先级调度
+     * 模型在截止时间（从开始执行时计算）内未返回、服务繁忙或上游熔断时，改用项目中已有标注构建的词典在本地标注；
+     * 模型调用不会被取消，完成后写入缓存，再次请求即可得到模型结果
+     * @param text 要标注的文本
+     * @param incremental 是否使用增量标注
+     * @param projectId 项目ID（可选），用于本地词典
+     * @param documentId 文档ID（可选），未提供项目ID时按文档所属项目
+     * @param caller 调用方标识，用于按用户公平调度
+     * @return 标注响应，source 标明结果来源
+     */
+    CompletableFuture<AutoAnnotationResponse> autoAnnotateWithDeadlineAsync(String text, boolean incremental, String projectId,
+                                                                           String documentId, String caller);
+
+    /**
+     * 异步增量自动标注，按预取优先级调度：只使用空闲名额，交互式负载较高时暂停
+     * @param text 要标注的文本
+     * @param documentId 文档ID，用于用量记录
+     * @param caller 调用方标识
+     * @return 标注结果列表；服务繁忙时以 AiServiceBusyException 失败
+     */
+    CompletableFuture<List<AutoAnnotationItem>> prefetchAutoAnnotateAsync(String text, String documentId, String caller);
+
+    /**
+     * 异步项目范围问答：在项目所有文档中检索相关段落，仅将这些段落发送给模型
+     * @param projectId 项目ID
+     * @param question 问题
+     * @param model 可选的模型名称
+     * @param caller 调用方标识，用于按用户公平调度
+     * @return 回答及所依据的段落；服务繁忙时以 AiServiceBusyException 失败，开始执行后超过问答截止时间时以 TimeoutException 失败
+     */
+    CompletableFuture<AiProjectQaResponse> qaProjectAsync(String projectId, String question, String model, String caller);
+
+    /**
+     * 流式文本分析，上游每返回一段增量内容即回调一次
+     * @param text 要分析的文本
+     * @param model 可选的模型名称
+     * @param caller 调用方标识，用于按用户公平调度
+     * @param onToken 增量内容回调，抛出异常时中止上游读取
+     * @return 完整的分析结果
+     */
+    CompletableFuture<String> streamAnalyzeText(String text, String model, String caller, Consumer<String> onToken);
+
+    /**
+     * 流式问答，上游每返回一段增量内容即回调一次
+     * @param text 原文
+     * @param question 问题
+     * @param model 可选的模型名称
+     * @param caller 调用方标识，用于按用户公平调度
+     * @param onToken 增量内容回调，抛出异常时中止上游读取
+     * @return 完整的回答
+     */
+    CompletableFuture<String> streamQaText(String text, String question, String model, String caller, Consumer<String> onToken);
+
+    /**
+     * 流式自动标注，模型每输出一个完整的实体对象即定位其在原文中的位置并回调
+     * 长文本按句子边界分块并行标注，各块的结果交错回调
+     * 增量模式下先回调已标注句子的结果，再流式标注其余句子；供标注界面使用，按交互式优先级调度
+     * @param text 要标注的文本
+     * @param incremental 是否使用增量标注
+     * @param documentId 文档ID（可选），用于用量记录
+     * @param caller 调用方标识，用于按用户公平调度
+     * @param onAnnotation 标注结果回调，抛出异常时中止上游读取
+     * @return 去重并按起始位置排序的完整标注结果
+     */
+    CompletableFuture<List<AutoAnnotationItem>> streamAutoAnnotate(String text, boolean incremental, String documentId, String caller,
+                                                                   Consumer<AutoAnnotationItem> onAnnotation);
+
+    /**
+     * 批量分析与问答
+     * 同一原文的多个问题合并为一次调用，其余条目并行执行；每个条目完成（成功或失败）即回调一次
+     * @param items 批量条目
+     * @param model 可选的模型名称
+     * @param caller 调用方标识，用于按用户公平调度
+     * @param onResult 条目结果回调，抛出异常时中止整个批次
+     * @return 按请求顺序排列的全部条目结果；服务繁忙时以 AiServiceBusyException 失败
+     */
+    CompletableFuture<List<AiBatchItemResult>> batchAsync(List<AiBatchItem> items, String model, String caller,
+                                                          Consumer<AiBatchItemResult> onResult);
+
+    /**
+     * 获取 AI 服务运行统计（调度队列、缓存命中等）
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+
+    /**
+     * 获取 AI 上游调用统计：按操作类型和模型的耗时分布、错误数及 token 用量
+     * @return 统计信息
+     */
+    Map<String, Object> getMetrics();
+
     /**
      * 健康检查
      * @return 服务状态
@@ -0,0 +1,34 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiUsageSummary;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI 用量查询服务接口
+ */
+public interface AiUsageService {
+
+    String GROUP_BY_USER = "user";
+    String GROUP_BY_PROJECT = "project";
+
+    /**
+     * 按天汇总用量
+     * @param groupBy 汇总维度：user 或 project
+     * @param userId 用户ID（可选），按用户汇总时只返回该用户
+     * @param projectId 项目ID（可选），按项目汇总时只返回该项目
+     * @param from 起始日期（含，可选），默认为结束日期前 6 天
+     * @param to 结束日期（含，可选），默认为今天
+     * @return 按日期排序的汇总行；尚未写入数据库的最近约一秒的调用不计入
+     */
+    List<AiUsageSummary> getDailyUsage(String groupBy, Integer userId, String projectId, LocalDate from, LocalDate to);
+
+    /**
+     * 获取用户当日的 token 预算使用情况
+     * @param userId 用户ID
+     * @return 日期、预算、已用与剩余 token 数
+     */
+    Map<String, Object> getBudgetStatus(Integer userId);
+}
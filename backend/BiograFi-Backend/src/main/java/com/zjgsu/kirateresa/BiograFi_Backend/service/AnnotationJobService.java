@@ -0,0 +1,57 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AnnotationJobRequest;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AnnotationJob;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 后台自动标注任务服务接口
+ */
+public interface AnnotationJobService {
+
+    /**
+     * 创建标注任务，任务在后台运行，结果直接写入实体标注表
+     * @param request 任务请求，documentId 与 projectId 二选一
+     * @return 新创建的任务
+     */
+    AnnotationJob createJob(AnnotationJobRequest request);
+
+    /**
+     * 获取任务详情，包括各文档的处理情况
+     * @param jobId 任务ID
+     * @return 任务详情
+     */
+    Optional<AnnotationJob> getJob(String jobId);
+
+    /**
+     * 获取用户的标注任务列表
+     * @param userId 用户ID
+     * @return 按创建时间倒序排列的任务列表
+     */
+    List<AnnotationJob> getJobsByUserId(Integer userId);
+
+    /**
+     * 取消任务，正在标注的文档完成后停止，未处理的文档保留以便继续
+     * @param jobId 任务ID
+     * @return 取消后的任务
+     */
+    AnnotationJob cancelJob(String jobId);
+
+    /**
+     * 继续已取消或已结束的任务，重新处理未完成和失败的文档
+     * @param jobId 任务ID
+     * @return 继续运行的任务
+     */
+    AnnotationJob resumeJob(String jobId);
+
+    /**
+     * 订阅任务进度，每篇文档处理完成及任务状态变化时回调一次
+     * @param jobId 任务ID
+     * @param listener 进度回调，抛出异常时自动取消订阅
+     * @return 取消订阅的操作
+     */
+    Runnable subscribe(String jobId, Consumer<AnnotationJob> listener);
+}
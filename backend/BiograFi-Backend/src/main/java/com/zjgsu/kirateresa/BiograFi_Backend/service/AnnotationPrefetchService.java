@@ -0,0 +1,46 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.ProjectAiSettingsRequest;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.ProjectAiSettings;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 预取标注服务接口
+ * 开启预取的项目中，文档创建或内容更新后在后台以最低优先级进行自动标注，
+ * 结果作为标注建议保存，用户请求自动标注时直接返回
+ */
+public interface AnnotationPrefetchService {
+
+    /**
+     * 获取项目 AI 设置，未设置过的项目返回默认设置
+     * @param projectId 项目ID
+     * @return 项目 AI 设置
+     */
+    ProjectAiSettings getSettings(String projectId);
+
+    /**
+     * 更新项目 AI 设置
+     * @param projectId 项目ID
+     * @param request 设置更新请求
+     * @return 更新后的设置
+     */
+    ProjectAiSettings updateSettings(String projectId, ProjectAiSettingsRequest request);
+
+    /**
+     * 查找文档的预取标注建议
+     * @param documentId 文档ID
+     * @param text 当前要标注的文本，与预取时的文档内容一致才视为命中
+     * @return 标注建议；没有或已过时返回空
+     */
+    Optional<List<AutoAnnotationItem>> findSuggestion(String documentId, String text);
+
+    /**
+     * 获取预取运行统计
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+}
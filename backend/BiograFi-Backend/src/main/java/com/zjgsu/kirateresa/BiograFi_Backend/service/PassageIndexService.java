@@ -0,0 +1,48 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.RetrievedPassage;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 段落检索服务接口：将文档切分为段落并建立 BM25 索引，为问答提供与问题相关的段落
+ */
+public interface PassageIndexService {
+
+    /**
+     * 在一段临时文本中检索与问题相关的段落
+     * @param text 原文
+     * @param query 问题
+     * @param maxChars 返回段落的总字符数上限
+     * @return 按原文位置排序的段落；没有匹配的词项时返回原文开头的段落
+     */
+    List<RetrievedPassage> searchText(String text, String query, int maxChars);
+
+    /**
+     * 在项目的所有文档中检索与问题相关的段落
+     * @param projectId 项目ID
+     * @param query 问题
+     * @param maxChars 返回段落的总字符数上限
+     * @return 按文档和位置排序的段落，没有相关段落时为空
+     */
+    List<RetrievedPassage> searchProject(String projectId, String query, int maxChars);
+
+    /**
+     * 重建单个文档的段落索引，内容未变的段落复用已有分词结果
+     * @param documentId 文档ID
+     */
+    void indexDocument(String documentId);
+
+    /**
+     * 删除文档的段落索引
+     * @param documentId 文档ID
+     */
+    void removeDocument(String documentId);
+
+    /**
+     * 获取索引统计
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+}
@@ -1,18 +1,71 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.service;
 
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentBatchRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentToken;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 分词服务接口，定义分词相关的服务方法
  */
 public interface SegmentService {
 
+    String FORMAT_TOKENS = "tokens";
+    String FORMAT_OFFSETS = "offsets";
+
     /**
      * 文本分词
      * @param text 要分词的文本
      * @return 分词结果列表
      */
     List<SegmentToken> segmentText(String text);
+
+    /**
+     * 文本分词，结果按内容摘要缓存；指定文档时同时持久化，服务重启后仍可复用
+     * @param text 要分词的文本
+     * @param documentId 文本所属的文档ID（可选）
+     * @param projectId 使用其词典的项目ID（可选），未提供时按文档所属项目
+     * @return 分词结果列表
+     */
+    List<SegmentToken> segmentText(String text, String documentId, String projectId);
+
+    /**
+     * 文本分词，只返回各词在原文中的结束位置，第 i 个词为原文的 [offsets[i-1], offsets[i]) 区间（首词从 0 开始），
+     * 不创建每个词的对象，由调用方自行从原文切出词语
+     * @param text 要分词的文本
+     * @param documentId 文本所属的文档ID（可选）
+     * @param projectId 使用其词典的项目ID（可选），未提供时按文档所属项目
+     * @return 按升序排列的结束位置；可能与缓存共享，调用方不得修改
+     */
+    int[] segmentOffsets(String text, String documentId, String projectId);
+
+    /**
+     * 批量分词，多段文本（长文本按句子边界切分后）在分词线程池中并行处理
+     * @param request 批量分词请求，texts、documentId 二选一或只提供 projectId
+     * @return 各输入的分词结果，键为文本键或文档ID，顺序与输入一致
+     * @throws IllegalArgumentException 请求参数错误或文档不存在
+     */
+    Map<String, List<SegmentToken>> segmentBatch(SegmentBatchRequest request);
+
+    /**
+     * 批量分词，只返回各词的结束位置，含义同 {@link #segmentOffsets(String, String, String)}
+     * @param request 批量分词请求，texts、documentId 二选一或只提供 projectId
+     * @return 各输入的结束位置数组，键为文本键或文档ID，顺序与输入一致
+     * @throws IllegalArgumentException 请求参数错误或文档不存在
+     */
+    Map<String, int[]> segmentBatchOffsets(SegmentBatchRequest request);
+
+    /**
+     * 清除文档的持久化分词结果及其内存缓存，文档内容修改或删除时在同一事务中调用
+     * @param documentId 文档ID
+     * @throws RuntimeException 删除失败，调用方的事务随之回滚
+     */
+    void invalidateDocument(String documentId);
+
+    /**
+     * 获取统计信息
+     * @return 分词结果缓存与词典的统计
+     */
+    Map<String, Object> getStats();
 }
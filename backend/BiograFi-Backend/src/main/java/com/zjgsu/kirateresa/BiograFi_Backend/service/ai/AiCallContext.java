@@ -0,0 +1,63 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+/**
+ * AI 调用上下文，调度器据此进行按用户公平排队和优先级调度，用量记录据此归属到用户、项目和文档
+ * @param caller 调用方标识（用户或客户端地址），同一调用方的请求共享一个队列
+ * @param priority 优先级类别
+ * @param projectId 所属项目ID，未知时为 null
+ * @param documentId 所属文档ID，未知时为 null
+ */
+public record AiCallContext(String caller, AiPriority priority, String projectId, String documentId) {
+
+    /**
+     * 交互式调用上下文
+     * @param caller 调用方标识
+     * @return 调用上下文
+     */
+    public static AiCallContext interactive(String caller) {
+        return new AiCallContext(caller, AiPriority.INTERACTIVE, null, null);
+    }
+
+    /**
+     * 批量调用上下文
+     * @param caller 调用方标识
+     * @return 调用上下文
+     */
+    public static AiCallContext bulk(String caller) {
+        return new AiCallContext(caller, AiPriority.BULK, null, null);
+    }
+
+    /**
+     * 预取调用上下文
+     * @param caller 调用方标识
+     * @return 调用上下文
+     */
+    public static AiCallContext prefetch(String caller) {
+        return new AiCallContext(caller, AiPriority.PREFETCH, null, null);
+    }
+
+    /**
+     * 附加调用所属的项目和文档
+     * @param projectId 项目ID，可为 null（写入用量记录时按文档补全）
+     * @param documentId 文档ID，可为 null
+     * @return 新的调用上下文
+     */
+    public AiCallContext forDocument(String projectId, String documentId) {
+        return new AiCallContext(caller, priority, projectId, documentId);
+    }
+
+    /**
+     * 从调用方标识中解析用户ID
+     * @return 用户ID；不是 user:N 形式时返回 null
+     */
+    public Integer userId() {
+        if (caller == null || !caller.startsWith("user:")) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(caller.substring(5));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
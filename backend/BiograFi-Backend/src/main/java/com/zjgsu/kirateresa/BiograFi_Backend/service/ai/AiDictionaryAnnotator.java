@@ -0,0 +1,78 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.Document;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.EntityAnnotationRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.EntitySpanLocator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地词典标注器，模型未能在截止时间内返回时的兜底方案
+ * 以项目中已人工标注过的实体（文本与标签）为词典，用 Aho-Corasick 自动机一次扫描找出原文中的全部出现位置；
+ * 只能识别项目中出现过的实体，但不依赖上游，耗时只与文本长度和词典规模相关
+ */
+@Component
+public class AiDictionaryAnnotator {
+
+    @Autowired
+    private EntityAnnotationRepository entityAnnotationRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong withoutProject = new AtomicLong();
+
+    /**
+     * 用项目词典标注文本
+     * @param projectId 项目ID，为空时按文档所属项目
+     * @param documentId 文档ID（可选）
+     * @param text 原文
+     * @return 去重并排序的标注结果；无法确定项目时返回空列表
+     */
+    public List<AutoAnnotationItem> annotate(String projectId, String documentId, String text) {
+        calls.incrementAndGet();
+        String resolvedProjectId = projectId;
+        if ((resolvedProjectId == null || resolvedProjectId.isEmpty()) && documentId != null) {
+            resolvedProjectId = documentRepository.findById(documentId).map(Document::getProjectId).orElse(null);
+        }
+        if (resolvedProjectId == null || resolvedProjectId.isEmpty()) {
+            withoutProject.incrementAndGet();
+            return new ArrayList<>();
+        }
+
+        Map<String, Set<String>> labelsByText = new LinkedHashMap<>();
+        for (Object[] row : entityAnnotationRepository.findDistinctTextAndLabelByProjectId(resolvedProjectId)) {
+            String entityText = row[0] != null ? row[0].toString().strip() : "";
+            String label = row[1] != null ? row[1].toString() : "";
+            if (!entityText.isEmpty() && EntitySpanLocator.VALID_LABELS.contains(label)) {
+                labelsByText.computeIfAbsent(entityText, key -> new LinkedHashSet<>()).add(label);
+            }
+        }
+        if (labelsByText.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return EntitySpanLocator.locate(text, labelsByText);
+    }
+
+    /**
+     * 获取统计信息
+     * @return 调用次数及无法确定项目的次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("calls", calls.get());
+        stats.put("withoutProject", withoutProject.get());
+        return stats;
+    }
+}
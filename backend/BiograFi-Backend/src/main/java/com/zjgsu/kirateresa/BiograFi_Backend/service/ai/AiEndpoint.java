@@ -0,0 +1,177 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个上游端点的运行状态：独立的熔断器、进行中的请求数，以及最近延迟和错误率的指数加权平均（EWMA）
+ * 流式请求的延迟是首字节时间，与非流式请求的完整耗时相差很大，两者分开统计
+ */
+public class AiEndpoint {
+
+    // 评分中错误率的放大系数：错误率 50% 的端点评分约为同等延迟端点的 3 倍
+    private static final double ERROR_PENALTY = 4.0;
+
+    private final AiConfig.Endpoint config;
+    private final AiCircuitBreaker circuitBreaker;
+    private final double alpha;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    // 下标 0 为非流式，1 为流式；未采样时为负数
+    private final double[] latencyMs = {-1, -1};
+    private double errorRate;
+
+    public AiEndpoint(AiConfig.Endpoint config, AiCircuitBreaker circuitBreaker, double alpha) {
+        this.config = config;
+        this.circuitBreaker = circuitBreaker;
+        this.alpha = Math.min(1.0, Math.max(0.01, alpha));
+    }
+
+    public String getUrl() {
+        return config.getUrl();
+    }
+
+    public String getModel() {
+        return config.getModel();
+    }
+
+    public String getApiKey() {
+        return config.getApiKey();
+    }
+
+    public double getWeight() {
+        return config.getWeight();
+    }
+
+    public AiCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 按提示词长度划分的档位，上限越小的端点档位越低，不限长度的端点位于最高档
+     * @return 档位
+     */
+    public int tier() {
+        return config.getMaxInputChars() > 0 ? config.getMaxInputChars() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 端点是否接受该长度的提示词
+     * @param inputChars 提示词字符数
+     * @return 是否接受
+     */
+    public boolean accepts(int inputChars) {
+        return inputChars <= tier();
+    }
+
+    /**
+     * 路由评分，越低越优先：延迟 EWMA ×（进行中请求数 + 1）×（1 + 错误率惩罚）÷ 权重
+     * 乘以进行中请求数使并发请求分散到各端点，而不是全部压到当前最快的端点上
+     * @param streaming 是否为流式请求
+     * @return 评分
+     */
+    public synchronized double score(boolean streaming) {
+        int mode = streaming ? 1 : 0;
+        double latency = latencyMs[mode] >= 0 ? latencyMs[mode] : Math.max(0, latencyMs[1 - mode]);
+        return Math.max(1.0, latency) * (inFlight.get() + 1) * (1 + ERROR_PENALTY * errorRate) / config.getWeight();
+    }
+
+    /**
+     * 近期延迟
+     * @param streaming 是否为流式请求
+     * @return 延迟 EWMA（毫秒），尚未采样时返回 -1
+     */
+    public synchronized double latencyMs(boolean streaming) {
+        return latencyMs[streaming ? 1 : 0];
+    }
+
+    /**
+     * 请求即将发出
+     */
+    public void begin() {
+        requests.increment();
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * 请求成功（2xx）
+     * @param elapsedMs 收到响应头的耗时
+     * @param streaming 是否为流式请求
+     */
+    public void succeeded(long elapsedMs, boolean streaming) {
+        inFlight.decrementAndGet();
+        record(elapsedMs, streaming, false);
+        circuitBreaker.recordSuccess();
+    }
+
+    /**
+     * 请求因端点原因失败（网络异常、超时、408/429/5xx），计入错误率
+     * @param elapsedMs 失败前的耗时
+     * @param streaming 是否为流式请求
+     * @param countsForBreaker 是否计入熔断（429 说明端点可达，不计入）
+     */
+    public void failed(long elapsedMs, boolean streaming, boolean countsForBreaker) {
+        inFlight.decrementAndGet();
+        failures.increment();
+        record(elapsedMs, streaming, true);
+        if (countsForBreaker) {
+            circuitBreaker.recordFailure();
+        } else {
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+    /**
+     * 请求被对冲请求取代而取消，已耗时只是真实延迟的下限，作为一次无错误的延迟样本记录
+     * @param elapsedMs 取消前的耗时
+     * @param streaming 是否为流式请求
+     */
+    public void cancelled(long elapsedMs, boolean streaming) {
+        inFlight.decrementAndGet();
+        record(elapsedMs, streaming, false);
+        circuitBreaker.release();
+    }
+
+    /**
+     * 上游可达但拒绝了请求本身（不可重试的 4xx），与端点状态无关，不影响评分
+     */
+    public void rejected() {
+        inFlight.decrementAndGet();
+        circuitBreaker.recordSuccess();
+    }
+
+    private synchronized void record(long elapsedMs, boolean streaming, boolean error) {
+        int mode = streaming ? 1 : 0;
+        // 连接被拒绝之类的失败返回得很快，不能让失败的端点因此显得更快
+        double sample = error ? Math.max(elapsedMs, latencyMs[mode]) : elapsedMs;
+        latencyMs[mode] = latencyMs[mode] < 0 ? sample : latencyMs[mode] + alpha * (sample - latencyMs[mode]);
+        errorRate += alpha * ((error ? 1.0 : 0.0) - errorRate);
+    }
+
+    /**
+     * 获取端点统计
+     * @return 统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("url", config.getUrl());
+        stats.put("model", config.getModel());
+        stats.put("weight", config.getWeight());
+        stats.put("maxInputChars", config.getMaxInputChars());
+        stats.put("requests", requests.sum());
+        stats.put("failures", failures.sum());
+        stats.put("inFlight", inFlight.get());
+        stats.put("latencyMs", latencyMs[0] < 0 ? null : Math.round(latencyMs[0]));
+        stats.put("streamingFirstByteMs", latencyMs[1] < 0 ? null : Math.round(latencyMs[1]));
+        stats.put("errorRate", errorRate);
+        stats.put("circuitBreaker", circuitBreaker.getStats());
+        return stats;
+    }
+}
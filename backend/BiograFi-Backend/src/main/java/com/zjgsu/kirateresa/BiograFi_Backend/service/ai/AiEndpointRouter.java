@@ -0,0 +1,180 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiUpstreamUnavailableException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * AI 上游端点路由
+ * 先按提示词长度选档：只考虑能接受该长度的端点，并优先使用上限最小的一档（短输入发往更快、更便宜的模型），
+ * 同一档内按延迟 EWMA、进行中请求数、错误率和权重计算的评分选择最优端点，熔断中的端点跳过；
+ * 以较小概率按权重随机选择，使延迟回落的端点能重新获得流量。
+ * 调用方先用 routedModel 按长度解析出模型（未指定模型或使用默认模型时可跨模型选档），再以该模型调用 acquire，
+ * acquire 只在提供该模型的端点之间选择，重试和对冲也不会跨模型，使缓存键中的模型与实际生成结果的模型一致
+ */
+@Component
+public class AiEndpointRouter {
+
+    /**
+     * 路由结果
+     * @param endpoint 选中的端点
+     * @param model 实际请求的模型
+     */
+    public record Route(AiEndpoint endpoint, String model) {
+    }
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    private List<AiEndpoint> endpoints;
+
+    @PostConstruct
+    public void init() {
+        List<AiEndpoint> list = new ArrayList<>();
+        for (AiConfig.Endpoint config : aiConfig.getEndpoints()) {
+            list.add(new AiEndpoint(config,
+                    new AiCircuitBreaker(aiConfig.getBreakerFailureThreshold(), aiConfig.getBreakerOpenSeconds() * 1000L),
+                    aiConfig.getRoutingEwmaAlpha()));
+        }
+        endpoints = List.copyOf(list);
+    }
+
+    /**
+     * 解析请求实际使用的模型：显式指定默认模型以外的模型时原样返回；
+     * 否则在能接受该长度的端点中取上限最小的一档，档内取权重最高者（相同时取配置在前者）所声明的模型，
+     * 没有端点能接受时取上限最大的一档。只取决于配置，不受熔断和延迟影响，相同输入总是得到相同的模型
+     * @param inputChars 提示词字符数
+     * @param model 请求的模型，为空时使用默认模型
+     * @return 路由到的模型
+     */
+    public String routedModel(int inputChars, String model) {
+        if (model != null && !model.isEmpty() && !model.equals(aiConfig.getDeepSeekModel())) {
+            return model;
+        }
+        Comparator<AiEndpoint> preference = Comparator
+                .comparingInt((AiEndpoint endpoint) -> endpoint.accepts(inputChars) ? 0 : 1)
+                .thenComparingLong(endpoint -> endpoint.accepts(inputChars) ? endpoint.tier() : -(long) endpoint.tier())
+                .thenComparingDouble(endpoint -> -endpoint.getWeight());
+        return endpoints.stream().min(preference).map(AiEndpoint::getModel).orElse(aiConfig.getDeepSeekModel());
+    }
+
+    /**
+     * 选择端点并占用其熔断器名额，调用方必须在请求结束后调用端点的 succeeded、failed 或 rejected 之一，
+     * 未发出请求时调用熔断器的 release
+     * @param inputChars 提示词字符数
+     * @param model 由 routedModel 解析出的模型，只在提供该模型的端点之间选择；为 null 时在全部端点之间选择
+     * @param streaming 是否为流式请求
+     * @param tried 本次调用已尝试过的端点，重试时优先选择其他端点
+     * @return 路由结果
+     * @throws AiUpstreamUnavailableException 所有候选端点都在熔断中
+     */
+    public Route acquire(int inputChars, String model, boolean streaming, Set<AiEndpoint> tried) {
+        List<AiEndpoint> candidates = endpoints;
+        boolean pinned = false;
+        if (model != null) {
+            List<AiEndpoint> serving = endpoints.stream().filter(endpoint -> model.equals(endpoint.getModel())).toList();
+            if (!serving.isEmpty()) {
+                candidates = serving;
+            } else {
+                // 没有端点声明该模型时原样透传，由上游决定是否支持
+                pinned = true;
+            }
+        }
+
+        TreeMap<Integer, List<AiEndpoint>> tiers = new TreeMap<>();
+        for (AiEndpoint endpoint : candidates) {
+            if (endpoint.accepts(inputChars)) {
+                tiers.computeIfAbsent(endpoint.tier(), key -> new ArrayList<>()).add(endpoint);
+            }
+        }
+        if (tiers.isEmpty()) {
+            // 超出所有端点的上限时退回到上限最大的一档，由上游截断或报错
+            for (AiEndpoint endpoint : candidates) {
+                tiers.computeIfAbsent(endpoint.tier(), key -> new ArrayList<>()).add(endpoint);
+            }
+            tiers = new TreeMap<>(Map.of(tiers.lastKey(), tiers.lastEntry().getValue()));
+        }
+
+        // 第一轮跳过已尝试过的端点，全部尝试过后再允许重复
+        for (int pass = 0; pass < 2; pass++) {
+            for (List<AiEndpoint> tier : tiers.values()) {
+                for (AiEndpoint endpoint : order(tier, streaming)) {
+                    if (pass == 0 && tried.contains(endpoint)) {
+                        continue;
+                    }
+                    if (endpoint.getCircuitBreaker().tryAcquire()) {
+                        return new Route(endpoint, pinned ? model : endpoint.getModel());
+                    }
+                }
+            }
+        }
+        throw new AiUpstreamUnavailableException("AI 上游服务暂时不可用，请稍后重试");
+    }
+
+    /**
+     * 同一档内的尝试顺序：按评分升序，以 routingExploreRate 的概率把按权重随机抽中的端点提到最前
+     */
+    private List<AiEndpoint> order(List<AiEndpoint> tier, boolean streaming) {
+        List<AiEndpoint> ordered = new ArrayList<>(tier);
+        if (ordered.size() < 2) {
+            return ordered;
+        }
+        ordered.sort(Comparator.comparingDouble(endpoint -> endpoint.score(streaming)));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < aiConfig.getRoutingExploreRate()) {
+            double total = ordered.stream().mapToDouble(AiEndpoint::getWeight).sum();
+            double roll = random.nextDouble(total);
+            for (int i = 0; i < ordered.size(); i++) {
+                roll -= ordered.get(i).getWeight();
+                if (roll < 0) {
+                    ordered.add(0, ordered.remove(i));
+                    break;
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * @return 全部端点
+     */
+    public List<AiEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 汇总熔断状态：任一端点关闭即视为关闭，全部打开才视为打开
+     * @return 状态
+     */
+    public AiCircuitBreaker.State getCircuitState() {
+        AiCircuitBreaker.State state = AiCircuitBreaker.State.OPEN;
+        for (AiEndpoint endpoint : endpoints) {
+            AiCircuitBreaker.State current = endpoint.getCircuitBreaker().getState();
+            if (current == AiCircuitBreaker.State.CLOSED) {
+                return current;
+            }
+            if (current == AiCircuitBreaker.State.HALF_OPEN) {
+                state = current;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 获取各端点统计
+     * @return 统计信息
+     */
+    public List<Map<String, Object>> getStats() {
+        return endpoints.stream().map(AiEndpoint::getStats).toList();
+    }
+}
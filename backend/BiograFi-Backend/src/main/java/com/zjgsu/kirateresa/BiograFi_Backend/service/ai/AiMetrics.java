@@ -0,0 +1,354 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiUpstreamHttpException;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiUpstreamUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI 上游调用统计
+ * 按操作类型和模型记录上游调用的耗时分布、错误数（按状态分类）以及 usage 中的 token 用量；
+ * 缓存命中和合并的请求不经过上游，不计入统计；每次调用结束时还会按调度上下文写入用量账本
+ */
+@Component
+public class AiMetrics {
+
+    @Autowired
+    private AiUsageLedger usageLedger;
+
+    // 耗时直方图的桶上界（毫秒），最后一个桶收集超过最大上界的调用
+    private static final long[] LATENCY_BOUNDS_MS = {
+            50, 100, 250, 500, 1000, 2000, 4000, 8000, 15000, 30000, 60000, 120000
+    };
+
+    public static final String ERROR_TIMEOUT = "timeout";
+    public static final String ERROR_CIRCUIT_OPEN = "circuit-open";
+    public static final String ERROR_CLIENT_CLOSED = "client-closed";
+    public static final String ERROR_IO = "io";
+    public static final String ERROR_OTHER = "other";
+
+    private final LocalDateTime since = LocalDateTime.now();
+    private final ConcurrentHashMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    /**
+     * 开始记录一次上游调用，调用上下文取自当前调度任务
+     * @param operation 操作类型
+     * @param model 模型名称
+     * @return 调用记录，调用结束时必须调用 success 或 failure 之一
+     */
+    public Call start(String operation, String model) {
+        return new Call(this, metricsFor(operation, model), AiScheduler.currentContext(), System.nanoTime());
+    }
+
+    private OperationMetrics metricsFor(String operation, String model) {
+        return operations.computeIfAbsent(operation + "|" + model, key -> new OperationMetrics(operation, model));
+    }
+
+    /**
+     * 获取统计快照
+     * @return 各操作的统计及汇总
+     */
+    public Map<String, Object> snapshot() {
+        List<OperationMetrics> sorted = new ArrayList<>(operations.values());
+        sorted.sort((a, b) -> a.operation.equals(b.operation) ? a.model.compareTo(b.model) : a.operation.compareTo(b.operation));
+
+        long calls = 0;
+        long errors = 0;
+        long promptTokens = 0;
+        long completionTokens = 0;
+        long cacheHitTokens = 0;
+        Map<String, Long> errorsByStatus = new TreeMap<>();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (OperationMetrics metrics : sorted) {
+            if (metrics.latency.count() == 0) {
+                // 调用全部路由到了其他模型
+                continue;
+            }
+            rows.add(metrics.snapshot());
+            calls += metrics.latency.count();
+            errors += metrics.errorCount();
+            promptTokens += metrics.promptTokens.sum();
+            completionTokens += metrics.completionTokens.sum();
+            cacheHitTokens += metrics.cacheHitTokens.sum();
+            metrics.errors.forEach((status, count) -> errorsByStatus.merge(status, count.sum(), Long::sum));
+        }
+
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("calls", calls);
+        totals.put("errors", errors);
+        totals.put("errorsByStatus", errorsByStatus);
+        totals.put("promptTokens", promptTokens);
+        totals.put("completionTokens", completionTokens);
+        totals.put("cacheHitTokens", cacheHitTokens);
+        totals.put("cacheHitRate", promptTokens == 0 ? 0.0 : (double) cacheHitTokens / promptTokens);
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("since", since);
+        snapshot.put("latencyBucketsMs", LATENCY_BOUNDS_MS);
+        snapshot.put("totals", totals);
+        snapshot.put("operations", rows);
+        return snapshot;
+    }
+
+    /**
+     * 将异常归类为错误状态：上游 HTTP 状态码、超时、熔断、客户端断开或网络错误
+     * @param error 异常
+     * @return 错误状态
+     */
+    static String classify(Throwable error) {
+        if (error instanceof AiUpstreamHttpException http) {
+            return String.valueOf(http.getStatus());
+        }
+        if (error instanceof InterruptedIOException) {
+            // SocketTimeoutException 是 InterruptedIOException 的子类
+            return ERROR_TIMEOUT;
+        }
+        if (error instanceof AiUpstreamUnavailableException) {
+            return ERROR_CIRCUIT_OPEN;
+        }
+        if (error instanceof UncheckedIOException) {
+            return ERROR_CLIENT_CLOSED;
+        }
+        if (error instanceof IOException) {
+            return ERROR_IO;
+        }
+        return ERROR_OTHER;
+    }
+
+    /**
+     * 单次上游调用的记录
+     */
+    public static class Call {
+
+        private final AiMetrics owner;
+        // 对冲时可能由两个请求线程先后改写
+        private volatile OperationMetrics metrics;
+        private final AiCallContext context;
+        private final long startNanos;
+        private boolean firstTokenRecorded;
+        private boolean finished;
+        private long promptTokens;
+        private long completionTokens;
+        private long cacheHitTokens;
+
+        private Call(AiMetrics owner, OperationMetrics metrics, AiCallContext context, long startNanos) {
+            this.owner = owner;
+            this.metrics = metrics;
+            this.context = context;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 记录路由后实际请求的模型，此后的统计计入该模型；只在调用结束前生效
+         * @param model 模型名称
+         */
+        public void route(String model) {
+            if (!finished && !firstTokenRecorded && !metrics.model.equals(model)) {
+                metrics = owner.metricsFor(metrics.operation, model);
+            }
+        }
+
+        /**
+         * 记录流式调用收到首个增量内容的时间，仅首次调用生效
+         */
+        public void firstToken() {
+            if (!firstTokenRecorded) {
+                firstTokenRecorded = true;
+                metrics.firstToken.record(elapsedMs());
+            }
+        }
+
+        /**
+         * 记录响应中的 usage 对象
+         * 兼容 DeepSeek 的 prompt_cache_hit_tokens 与 OpenAI 的 prompt_tokens_details.cached_tokens
+         * @param usage usage 对象，可为 null
+         */
+        public void usage(JsonNode usage) {
+            if (usage == null || !usage.isObject()) {
+                return;
+            }
+            long prompt = usage.path("prompt_tokens").asLong(0);
+            long completion = usage.path("completion_tokens").asLong(0);
+            long cacheHit = usage.has("prompt_cache_hit_tokens")
+                    ? usage.path("prompt_cache_hit_tokens").asLong(0)
+                    : usage.path("prompt_tokens_details").path("cached_tokens").asLong(0);
+            metrics.usageReports.increment();
+            metrics.promptTokens.add(prompt);
+            metrics.completionTokens.add(completion);
+            metrics.cacheHitTokens.add(cacheHit);
+            promptTokens += prompt;
+            completionTokens += completion;
+            cacheHitTokens += cacheHit;
+        }
+
+        /**
+         * 调用成功结束
+         */
+        public void success() {
+            if (!finished) {
+                finished = true;
+                long elapsed = elapsedMs();
+                metrics.latency.record(elapsed);
+                recordUsage(elapsed, true);
+            }
+        }
+
+        /**
+         * 调用失败结束
+         * @param error 异常
+         */
+        public void failure(Throwable error) {
+            if (!finished) {
+                finished = true;
+                long elapsed = elapsedMs();
+                metrics.latency.record(elapsed);
+                metrics.errors.computeIfAbsent(classify(error), key -> new LongAdder()).increment();
+                recordUsage(elapsed, false);
+            }
+        }
+
+        private void recordUsage(long elapsedMs, boolean success) {
+            OperationMetrics current = metrics;
+            owner.usageLedger.record(context, current.operation, current.model,
+                    promptTokens, completionTokens, cacheHitTokens, elapsedMs, success);
+        }
+
+        private long elapsedMs() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+    }
+
+    /**
+     * 单个操作类型与模型组合的统计
+     */
+    private static class OperationMetrics {
+
+        private final String operation;
+        private final String model;
+        private final Histogram latency = new Histogram();
+        private final Histogram firstToken = new Histogram();
+        private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final LongAdder usageReports = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder cacheHitTokens = new LongAdder();
+
+        OperationMetrics(String operation, String model) {
+            this.operation = operation;
+            this.model = model;
+        }
+
+        long errorCount() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        Map<String, Object> snapshot() {
+            long reports = usageReports.sum();
+            long prompt = promptTokens.sum();
+            long completion = completionTokens.sum();
+            Map<String, Object> tokens = new LinkedHashMap<>();
+            tokens.put("prompt", prompt);
+            tokens.put("completion", completion);
+            tokens.put("cacheHit", cacheHitTokens.sum());
+            tokens.put("usageReports", reports);
+            tokens.put("promptPerCall", reports == 0 ? 0.0 : (double) prompt / reports);
+            tokens.put("completionPerCall", reports == 0 ? 0.0 : (double) completion / reports);
+
+            Map<String, Long> errorsByStatus = new TreeMap<>();
+            errors.forEach((status, count) -> errorsByStatus.put(status, count.sum()));
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("operation", operation);
+            row.put("model", model);
+            row.put("calls", latency.count());
+            row.put("errors", errorCount());
+            row.put("errorsByStatus", errorsByStatus);
+            row.put("latencyMs", latency.snapshot());
+            if (firstToken.count() > 0) {
+                row.put("firstTokenMs", firstToken.snapshot());
+            }
+            row.put("tokens", tokens);
+            return row;
+        }
+    }
+
+    /**
+     * 固定桶耗时直方图，分位数在桶内按线性插值估算
+     */
+    private static class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BOUNDS_MS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long valueMs) {
+            int index = 0;
+            while (index < LATENCY_BOUNDS_MS.length && valueMs > LATENCY_BOUNDS_MS[index]) {
+                index++;
+            }
+            buckets.incrementAndGet(index);
+            count.increment();
+            sum.add(valueMs);
+            max.accumulateAndGet(valueMs, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        Map<String, Object> snapshot() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", total);
+            snapshot.put("mean", total == 0 ? 0.0 : (double) sum.sum() / total);
+            snapshot.put("p50", percentile(counts, total, 0.50));
+            snapshot.put("p90", percentile(counts, total, 0.90));
+            snapshot.put("p99", percentile(counts, total, 0.99));
+            snapshot.put("max", max.get());
+            snapshot.put("buckets", counts);
+            return snapshot;
+        }
+
+        private long percentile(long[] counts, long total, double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                if (seen + counts[i] >= rank) {
+                    long lower = i == 0 ? 0 : LATENCY_BOUNDS_MS[i - 1];
+                    long upper = i < LATENCY_BOUNDS_MS.length ? LATENCY_BOUNDS_MS[i] : max.get();
+                    double fraction = (double) (rank - seen) / counts[i];
+                    return Math.min(max.get(), lower + Math.round((upper - lower) * fraction));
+                }
+                seen += counts[i];
+            }
+            return max.get();
+        }
+    }
+}
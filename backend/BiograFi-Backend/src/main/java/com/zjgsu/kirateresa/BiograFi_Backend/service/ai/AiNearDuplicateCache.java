@@ -0,0 +1,102 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.MinHashIndex;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 响应近似重复缓存
+ * 精确缓存未命中时，按 MinHash 估计的 Jaccard 相似度查找此前分析过的相近文本（不同版本的标点、异体字、空白差异），
+ * 相似度达到阈值时复用其结果。只保存在内存中，条目数超过上限时淘汰最久未命中的条目
+ */
+@Component
+public class AiNearDuplicateCache {
+
+    // 字符 n-gram 长度与签名分段：32 段 × 每段 4 个哈希函数
+    private static final int SHINGLE_SIZE = 3;
+    private static final int BANDS = 32;
+    private static final int ROWS = 4;
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    private MinHashIndex<String> index;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        index = new MinHashIndex<>(SHINGLE_SIZE, BANDS, ROWS, Math.max(1, aiConfig.getNearDuplicateMaxEntries()));
+    }
+
+    /**
+     * 查找相近文本的响应
+     * @param group 分组（提示词模板、模型及生成参数的摘要），只复用同组的响应
+     * @param text 文本
+     * @return 最相近的响应及其相似度；未启用、文本过短或没有达到阈值的条目时返回空
+     */
+    public Optional<MinHashIndex.Match<String>> find(String group, String text) {
+        if (!enabled()) {
+            return Optional.empty();
+        }
+        String normalized = MinHashIndex.normalize(text);
+        if (normalized.length() < aiConfig.getNearDuplicateMinChars()) {
+            return Optional.empty();
+        }
+        lookups.incrementAndGet();
+        Optional<MinHashIndex.Match<String>> match = index.find(group, normalized, aiConfig.getNearDuplicateThreshold());
+        if (match.isPresent()) {
+            hits.incrementAndGet();
+        }
+        return match;
+    }
+
+    /**
+     * 记录文本的响应
+     * @param group 分组
+     * @param text 文本
+     * @param response 响应内容
+     */
+    public void put(String group, String text, String response) {
+        if (!enabled() || response == null) {
+            return;
+        }
+        String normalized = MinHashIndex.normalize(text);
+        if (normalized.length() < aiConfig.getNearDuplicateMinChars()) {
+            return;
+        }
+        index.put(group, normalized, response);
+        stored.incrementAndGet();
+    }
+
+    /**
+     * 获取命中统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long lookupCount = lookups.get();
+        long hitCount = hits.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled());
+        stats.put("threshold", aiConfig.getNearDuplicateThreshold());
+        stats.put("size", index.size());
+        stats.put("lookups", lookupCount);
+        stats.put("hits", hitCount);
+        stats.put("stored", stored.get());
+        stats.put("hitRate", lookupCount == 0 ? 0.0 : (double) hitCount / lookupCount);
+        return stats;
+    }
+
+    private boolean enabled() {
+        return aiConfig.getCacheEnabled() && aiConfig.getNearDuplicateEnabled();
+    }
+}
@@ -0,0 +1,28 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+/**
+ * AI 调用的优先级类别
+ * 调度器按权重在类别之间分配空闲名额，权重越大获得的名额越多；
+ * 权重为 0 的类别不参与轮询，只在其他类别都没有可执行任务时才被调度
+ */
+public enum AiPriority {
+
+    /** 用户正在等待结果的交互式调用（分析、问答） */
+    INTERACTIVE(8),
+
+    /** 批量调用（自动标注、批量请求） */
+    BULK(1),
+
+    /** 预取调用（文档创建后的预先标注），只使用空闲名额，交互式负载较高时暂停 */
+    PREFETCH(0);
+
+    private final int weight;
+
+    AiPriority(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
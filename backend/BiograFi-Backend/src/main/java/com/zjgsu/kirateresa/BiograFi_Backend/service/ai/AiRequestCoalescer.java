@@ -0,0 +1,232 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 相同 AI 请求合并器（single-flight）
+ * 键相同的并发请求只向上游发起一次调用，其余请求等待并共享该调用的结果
+ */
+@Component
+public class AiRequestCoalescer {
+
+    /**
+     * 上游调用
+     */
+    @FunctionalInterface
+    public interface UpstreamCall {
+        String call() throws IOException;
+    }
+
+    /**
+     * 流式上游调用
+     */
+    @FunctionalInterface
+    public interface StreamingUpstreamCall {
+        String call(Consumer<String> onDelta) throws IOException;
+    }
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StreamFlight> streamsInFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+
+    /**
+     * 执行请求，若已有相同键的请求在进行中则等待其结果
+     * @param key 请求键
+     * @param call 上游调用
+     * @return 响应内容
+     * @throws IOException 上游调用失败
+     */
+    public String execute(String key, UpstreamCall call) throws IOException {
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedCalls.incrementAndGet();
+            return await(existing);
+        }
+
+        upstreamCalls.incrementAndGet();
+        try {
+            String result = call.call();
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 执行流式请求，若已有相同键的流式请求在进行中，则先回放已收到的内容，再接收后续增量
+     * @param key 请求键
+     * @param onDelta 增量内容回调
+     * @param call 流式上游调用
+     * @return 完整的响应内容
+     * @throws IOException 上游调用失败
+     */
+    public String executeStreaming(String key, Consumer<String> onDelta, StreamingUpstreamCall call) throws IOException {
+        StreamFlight flight = new StreamFlight();
+        StreamFlight existing = streamsInFlight.putIfAbsent(key, flight);
+        if (existing != null && existing.subscribe(onDelta)) {
+            coalescedCalls.incrementAndGet();
+            return await(existing.result);
+        }
+        if (existing != null) {
+            // 已有的流刚好结束，按普通请求处理
+            return call.call(onDelta);
+        }
+
+        upstreamCalls.incrementAndGet();
+        flight.subscribe(onDelta);
+        try {
+            String result = call.call(flight::publish);
+            flight.finish(result, null);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            flight.finish(null, e);
+            throw e;
+        } finally {
+            streamsInFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 获取合并统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long upstream = upstreamCalls.get();
+        long coalesced = coalescedCalls.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("upstreamCalls", upstream);
+        stats.put("coalescedCalls", coalesced);
+        stats.put("inFlight", inFlight.size() + streamsInFlight.size());
+        stats.put("coalescedRate", upstream + coalesced == 0 ? 0.0 : (double) coalesced / (upstream + coalesced));
+        return stats;
+    }
+
+    private String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 进行中的流式请求，向所有订阅者广播增量内容
+     * 回调（写 SSE）不在流的锁内执行：锁只保护已收到的内容和订阅者列表，每个订阅者记录已送达的位置，
+     * 由发布线程或订阅线程在订阅者自己的锁内补发尚未送达的部分，保证顺序且不重复
+     */
+    private static class StreamFlight {
+
+        private final StringBuilder received = new StringBuilder();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private boolean finished;
+
+        /**
+         * 订阅增量内容，先回放已收到的部分
+         * @return 流已结束时返回 false
+         */
+        boolean subscribe(Consumer<String> listener) {
+            Subscriber subscriber = new Subscriber(listener);
+            synchronized (this) {
+                if (finished) {
+                    return false;
+                }
+                subscribers.add(subscriber);
+            }
+            deliver(subscriber);
+            return true;
+        }
+
+        /**
+         * 广播一段增量内容；订阅者回调失败（如客户端断开）时将其移除，全部移除后中止上游读取
+         */
+        void publish(String delta) {
+            List<Subscriber> snapshot;
+            synchronized (this) {
+                received.append(delta);
+                snapshot = new ArrayList<>(subscribers);
+            }
+            snapshot.forEach(this::deliver);
+            synchronized (this) {
+                subscribers.removeIf(subscriber -> subscriber.failed);
+                if (subscribers.isEmpty()) {
+                    throw new UncheckedIOException(new IOException("所有客户端均已断开"));
+                }
+            }
+        }
+
+        void finish(String value, Throwable error) {
+            synchronized (this) {
+                finished = true;
+            }
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(error);
+            }
+        }
+
+        /**
+         * 向订阅者补发其尚未收到的内容
+         */
+        private void deliver(Subscriber subscriber) {
+            synchronized (subscriber) {
+                if (subscriber.failed) {
+                    return;
+                }
+                String pending;
+                synchronized (this) {
+                    pending = received.substring(subscriber.delivered);
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                subscriber.delivered += pending.length();
+                try {
+                    subscriber.listener.accept(pending);
+                } catch (RuntimeException e) {
+                    subscriber.failed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 流式请求的订阅者，delivered 为已送达的字符数，在订阅者自身的锁内读写
+     */
+    private static class Subscriber {
+
+        private final Consumer<String> listener;
+        private int delivered;
+        private volatile boolean failed;
+
+        Subscriber(Consumer<String> listener) {
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiResponseCacheEntry;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AiResponseCacheRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 响应两级缓存
+ * 第一级为带过期时间的内存 LRU，第二级为数据库表 ai_response_cache，服务重启后仍可命中
+ */
+@Slf4j
+@Component
+public class AiResponseCache {
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    @Autowired
+    private AiResponseCacheRepository cacheRepository;
+
+    private final Map<String, MemoryEntry> memory = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry> eldest) {
+            return size() > aiConfig.getCacheMaxEntries();
+        }
+    };
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong persistentHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 内存缓存条目
+     */
+    private record MemoryEntry(String value, long expiresAt) {
+    }
+
+    /**
+     * 计算缓存键
+     * @param template 提示词模板
+     * @param text 文本
+     * @param question 问题（可选）
+     * @param model 实际使用的模型名称
+     * @return SHA-256 十六进制摘要
+     */
+    public String key(PromptTemplate template, String text, String question, String model) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : new Object[]{template.cacheId(), text, question, model,
+                    aiConfig.getTemperature(), aiConfig.getTopP(), aiConfig.getMaxTokens()}) {
+                String value = String.valueOf(part);
+                // 每段前写入长度，避免不同字段拼接后产生相同的字节序列
+                digest.update((value.length() + ":").getBytes(StandardCharsets.UTF_8));
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 查询缓存，依次查找内存层和数据库层，数据库命中后回填内存层
+     * @param key 缓存键
+     * @return 缓存的响应
+     */
+    public Optional<String> get(String key) {
+        if (!aiConfig.getCacheEnabled()) {
+            return Optional.empty();
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (memory) {
+            MemoryEntry entry = memory.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    memoryHits.incrementAndGet();
+                    return Optional.of(entry.value());
+                }
+                memory.remove(key);
+            }
+        }
+
+        try {
+            Optional<AiResponseCacheEntry> stored = cacheRepository.findById(key);
+            if (stored.isPresent()) {
+                AiResponseCacheEntry entry = stored.get();
+                if (entry.getCreatedAt() != null && entry.getCreatedAt().isAfter(persistentExpiry())) {
+                    persistentHits.incrementAndGet();
+                    putMemory(key, entry.getResponse());
+                    return Optional.of(entry.getResponse());
+                }
+                cacheRepository.deleteById(key);
+            }
+        } catch (RuntimeException e) {
+            log.warn("读取 AI 持久化缓存失败: {}", e.getMessage());
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * 写入缓存（内存层和数据库层）
+     * @param key 缓存键
+     * @param operation 操作类型
+     * @param model 模型名称
+     * @param value 响应内容
+     */
+    public void put(String key, String operation, String model, String value) {
+        if (!aiConfig.getCacheEnabled() || value == null) {
+            return;
+        }
+
+        putMemory(key, value);
+        try {
+            AiResponseCacheEntry entry = new AiResponseCacheEntry();
+            entry.setCacheKey(key);
+            entry.setOperation(operation);
+            entry.setModel(model);
+            entry.setResponse(value);
+            cacheRepository.save(entry);
+        } catch (RuntimeException e) {
+            log.warn("写入 AI 持久化缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取缓存命中统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long memoryHitCount = memoryHits.get();
+        long persistentHitCount = persistentHits.get();
+        long missCount = misses.get();
+        long total = memoryHitCount + persistentHitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", aiConfig.getCacheEnabled());
+        synchronized (memory) {
+            stats.put("memorySize", memory.size());
+        }
+        stats.put("memoryHits", memoryHitCount);
+        stats.put("persistentHits", persistentHitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (memoryHitCount + persistentHitCount) / total);
+        return stats;
+    }
+
+    /**
+     * 启动时清理数据库中的过期缓存
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void evictExpiredEntries() {
+        try {
+            int deleted = cacheRepository.deleteByCreatedAtBefore(persistentExpiry());
+            if (deleted > 0) {
+                log.info("已清理 {} 条过期的 AI 响应缓存", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("清理 AI 持久化缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private void putMemory(String key, String value) {
+        long expiresAt = System.currentTimeMillis() + aiConfig.getCacheTtl() * 1000L;
+        synchronized (memory) {
+            memory.put(key, new MemoryEntry(value, expiresAt));
+        }
+    }
+
+    private LocalDateTime persistentExpiry() {
+        return LocalDateTime.now().minusDays(aiConfig.getCachePersistentTtlDays());
+    }
+}
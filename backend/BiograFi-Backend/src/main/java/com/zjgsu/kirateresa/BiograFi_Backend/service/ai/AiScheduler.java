@@ -0,0 +1,482 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiServiceBusyException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * AI 请求公平调度器
+ * 每个调用方在每个优先级类别下有独立队列：类别之间按权重平滑轮询（交互式优先，批量不会饿死），
+ * 同一类别内在调用方之间轮询；同时限制全局并发、单个调用方的并发和批量类别的并发，
+ * 使一个用户的大批量任务不会拖慢其他用户的交互式请求；
+ * 预取类别只在其他类别都没有可执行任务、且交互式调用占用的名额低于阈值时才被调度。
+ * 长文本分块和批量条目等子任务使用单独的分块线程池，按父任务的调用方和优先级以同样的规则排队，
+ * 分块队列已满时由父任务所在线程直接执行
+ */
+@Component
+public class AiScheduler {
+
+    // 等待时间采样窗口大小
+    private static final int WAIT_SAMPLES = 1024;
+
+    // 当前线程正在执行的任务的调用上下文，分块子任务继承父任务的上下文
+    private static final ThreadLocal<AiCallContext> CURRENT_CONTEXT = new ThreadLocal<>();
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    private final Object lock = new Object();
+    private Pool pool;
+    // 分块子任务的线程池，子任务由已在执行的请求派生，单独使用一组线程，避免父任务等待子任务时占满同一线程池
+    private Pool chunkPool;
+    private long rejected;
+    private long chunksInline;
+
+    private int maxQueued;
+    private int perCallerMaxQueued;
+    private int chunkMaxQueued;
+    // 交互式调用达到该并发数时暂停调度预取任务
+    private int prefetchPauseThreshold;
+
+    @PostConstruct
+    public void init() {
+        int maxConcurrent = Math.max(1, aiConfig.getMaxConcurrentRequests());
+        maxQueued = Math.max(1, aiConfig.getMaxQueuedRequests());
+        perCallerMaxQueued = Math.max(1, aiConfig.getPerUserMaxQueued());
+        int bulkMaxConcurrent = aiConfig.getBulkMaxConcurrent() != null
+                ? Math.max(1, Math.min(maxConcurrent, aiConfig.getBulkMaxConcurrent()))
+                : Math.max(1, maxConcurrent * 3 / 4);
+        prefetchPauseThreshold = Math.max(1, (int) Math.ceil(maxConcurrent * aiConfig.getPrefetchLoadThreshold()));
+        // 任务只在有空闲名额时才交给线程池，线程池大小等于全局并发上限
+        pool = new Pool("ai-worker-", maxConcurrent,
+                Math.max(1, Math.min(maxConcurrent, aiConfig.getPerUserMaxConcurrent())),
+                bulkMaxConcurrent,
+                Math.max(1, Math.min(maxConcurrent, aiConfig.getPrefetchMaxConcurrent())));
+
+        // 分块线程池的批量类上限与主线程池的比例相同，交互式请求的分块总能获得名额
+        int chunkParallelism = Math.max(1, aiConfig.getChunkParallelism());
+        chunkMaxQueued = Math.max(1, aiConfig.getChunkMaxQueued());
+        chunkPool = new Pool("ai-chunk-", chunkParallelism,
+                Math.max(1, Math.min(chunkParallelism, aiConfig.getChunkPerUserMaxConcurrent())),
+                Math.max(1, Math.min(chunkParallelism, (int) Math.ceil((double) chunkParallelism * bulkMaxConcurrent / maxConcurrent))),
+                Math.max(1, Math.min(chunkParallelism, aiConfig.getPrefetchMaxConcurrent())));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.executor.shutdownNow();
+        chunkPool.executor.shutdownNow();
+    }
+
+    /**
+     * 提交一个 AI 任务，按调用方和优先级排队
+     * @param context 调用上下文
+     * @param task 任务
+     * @param <T> 结果类型
+     * @return 异步结果；全局或该调用方的等待队列已满时返回以 AiServiceBusyException 失败的 future
+     */
+    public <T> CompletableFuture<T> submit(AiCallContext context, Supplier<T> task) {
+        return submit(context, task, 0);
+    }
+
+    /**
+     * 提交一个带截止时间的 AI 任务，截止时间从任务被调度执行时开始计算，不含排队时间
+     * 超时后返回的 future 以 TimeoutException 失败，已开始的任务继续执行，其结果仍会写入缓存
+     * @param context 调用上下文
+     * @param task 任务
+     * @param deadlineMs 截止时间（毫秒），0 表示不限
+     * @param <T> 结果类型
+     * @return 异步结果；全局或该调用方的等待队列已满时返回以 AiServiceBusyException 失败的 future
+     */
+    public <T> CompletableFuture<T> submit(AiCallContext context, Supplier<T> task, long deadlineMs) {
+        String caller = context.caller() != null ? context.caller() : "anonymous";
+        synchronized (lock) {
+            if (pool.queued >= maxQueued || pool.queuedByCaller.getOrDefault(caller, 0) >= perCallerMaxQueued) {
+                rejected++;
+                return CompletableFuture.failedFuture(new AiServiceBusyException("AI 服务繁忙，请稍后重试"));
+            }
+            CompletableFuture<T> future = new CompletableFuture<>();
+            pool.enqueue(task(caller, context, task, future, deadlineMs));
+            pool.dispatch();
+            return future;
+        }
+    }
+
+    /**
+     * 提交一个分块子任务，按父任务的调用方和优先级在分块线程池中排队
+     * 子任务所属的请求已通过准入，因此不会被拒绝：分块队列已满时在当前线程直接执行
+     * @param task 子任务
+     * @param <T> 结果类型
+     * @return 异步结果，取消后仍在排队的子任务不再执行
+     */
+    public <T> CompletableFuture<T> submitChunk(Supplier<T> task) {
+        AiCallContext parent = CURRENT_CONTEXT.get();
+        AiCallContext context = parent != null ? parent : AiCallContext.bulk(null);
+        String caller = context.caller() != null ? context.caller() : "anonymous";
+        CompletableFuture<T> future = new CompletableFuture<>();
+        synchronized (lock) {
+            if (chunkPool.queued < chunkMaxQueued) {
+                chunkPool.enqueue(task(caller, context, task, future, 0));
+                chunkPool.dispatch();
+                return future;
+            }
+            chunksInline++;
+        }
+        try {
+            future.complete(task.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static <T> Task task(String caller, AiCallContext context, Supplier<T> task, CompletableFuture<T> future,
+                                 long deadlineMs) {
+        return new Task(caller, context, System.nanoTime(), deadlineMs, () -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, future);
+    }
+
+    /**
+     * 获取当前线程正在执行的调度任务的优先级
+     * @return 优先级；不在调度器线程中时返回 null
+     */
+    public static AiPriority currentPriority() {
+        AiCallContext context = CURRENT_CONTEXT.get();
+        return context != null ? context.priority() : null;
+    }
+
+    /**
+     * 获取当前线程正在执行的调度任务的调用上下文
+     * @return 调用上下文；不在调度器线程中时返回 null
+     */
+    public static AiCallContext currentContext() {
+        return CURRENT_CONTEXT.get();
+    }
+
+    /**
+     * 获取调度器运行状态：并发占用、各类别队列深度和等待时间
+     * @return 状态信息
+     */
+    public Map<String, Object> getStats() {
+        synchronized (lock) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", pool.maxConcurrent);
+            stats.put("perUserMaxConcurrent", pool.perCallerMaxConcurrent);
+            stats.put("bulkMaxConcurrent", pool.bulkMaxConcurrent);
+            stats.put("prefetchMaxConcurrent", pool.prefetchMaxConcurrent);
+            stats.put("prefetchPaused", prefetchPaused());
+            stats.put("active", pool.running);
+            stats.put("queued", pool.queued);
+            stats.put("queueCapacity", maxQueued);
+            stats.put("queuedUsers", pool.queuedByCaller.size());
+            stats.put("rejected", rejected);
+            stats.put("priorities", pool.getStats());
+            stats.put("chunkParallelism", chunkPool.maxConcurrent);
+            stats.put("chunkPerUserMaxConcurrent", chunkPool.perCallerMaxConcurrent);
+            stats.put("chunkBulkMaxConcurrent", chunkPool.bulkMaxConcurrent);
+            stats.put("chunkActive", chunkPool.running);
+            stats.put("chunkQueued", chunkPool.queued);
+            stats.put("chunkQueueCapacity", chunkMaxQueued);
+            stats.put("chunkInline", chunksInline);
+            stats.put("chunkPriorities", chunkPool.getStats());
+            return stats;
+        }
+    }
+
+    /**
+     * 交互式调用占用的名额达到阈值时暂停预取，调用方需持有锁
+     */
+    private boolean prefetchPaused() {
+        return pool.classes.get(AiPriority.INTERACTIVE).running >= prefetchPauseThreshold;
+    }
+
+    /**
+     * 一组线程及其排队状态：按类别、调用方排队，限制总并发、单个调用方的并发和批量、预取类别的并发。
+     * 主线程池和分块线程池各一个，状态都由调度器的锁保护
+     */
+    private class Pool {
+
+        private final int maxConcurrent;
+        private final int perCallerMaxConcurrent;
+        private final int bulkMaxConcurrent;
+        private final int prefetchMaxConcurrent;
+        private final ThreadPoolExecutor executor;
+        private final Map<AiPriority, ClassQueue> classes = new EnumMap<>(AiPriority.class);
+        private final Map<String, Integer> runningByCaller = new HashMap<>();
+        private final Map<String, Integer> queuedByCaller = new HashMap<>();
+        private int running;
+        private int queued;
+
+        Pool(String threadPrefix, int maxConcurrent, int perCallerMaxConcurrent, int bulkMaxConcurrent, int prefetchMaxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+            this.perCallerMaxConcurrent = perCallerMaxConcurrent;
+            this.bulkMaxConcurrent = bulkMaxConcurrent;
+            this.prefetchMaxConcurrent = prefetchMaxConcurrent;
+            for (AiPriority priority : AiPriority.values()) {
+                classes.put(priority, new ClassQueue(this, priority));
+            }
+            AtomicInteger threadIndex = new AtomicInteger();
+            executor = new ThreadPoolExecutor(
+                    maxConcurrent, maxConcurrent,
+                    60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadPrefix + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        /**
+         * 任务入队，调用方需持有锁；任务在排队期间被取消（如请求超时或客户端断开）时立即出队，
+         * 不再占用全局和该调用方的排队名额
+         */
+        void enqueue(Task task) {
+            classes.get(task.context.priority()).enqueue(task.caller, task);
+            queued++;
+            queuedByCaller.merge(task.caller, 1, Integer::sum);
+            task.future.whenComplete((result, error) -> {
+                if (task.future.isCancelled()) {
+                    synchronized (lock) {
+                        remove(task);
+                    }
+                }
+            });
+        }
+
+        /**
+         * 移除仍在排队的任务，已被取出执行的任务不受影响，调用方需持有锁
+         */
+        private void remove(Task task) {
+            if (classes.get(task.context.priority()).remove(task.caller, task)) {
+                queued--;
+                queuedByCaller.computeIfPresent(task.caller, (key, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+
+        /**
+         * 在有空闲名额时依次取出可执行的任务交给线程池，调用方需持有锁
+         */
+        void dispatch() {
+            while (running < maxConcurrent) {
+                Task task = next();
+                if (task == null) {
+                    return;
+                }
+                queued--;
+                queuedByCaller.computeIfPresent(task.caller, (key, count) -> count > 1 ? count - 1 : null);
+                if (task.future.isDone()) {
+                    // 排队期间已被取消
+                    continue;
+                }
+
+                running++;
+                runningByCaller.merge(task.caller, 1, Integer::sum);
+                ClassQueue classQueue = classes.get(task.context.priority());
+                classQueue.running++;
+                classQueue.recordWait(System.nanoTime() - task.enqueuedAt);
+                if (task.deadlineMs > 0) {
+                    task.future.orTimeout(task.deadlineMs, TimeUnit.MILLISECONDS);
+                }
+                executor.execute(() -> {
+                    CURRENT_CONTEXT.set(task.context);
+                    try {
+                        task.body.run();
+                    } finally {
+                        CURRENT_CONTEXT.remove();
+                        synchronized (lock) {
+                            running--;
+                            classQueue.running--;
+                            runningByCaller.computeIfPresent(task.caller, (key, count) -> count > 1 ? count - 1 : null);
+                            // 交互式名额的变化会影响两个线程池的预取是否暂停
+                            pool.dispatch();
+                            chunkPool.dispatch();
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * 平滑加权轮询选择类别：每轮各有可执行任务的类别累加自身权重，取累计值最大者并扣除本轮总权重；
+         * 没有可执行的加权类别时才考虑权重为 0 的预取类别
+         * @return 下一个可执行的任务，没有时返回 null
+         */
+        private Task next() {
+            ClassQueue selected = null;
+            int totalWeight = 0;
+            for (ClassQueue classQueue : classes.values()) {
+                if (classQueue.priority.getWeight() == 0 || !classQueue.hasRunnable()) {
+                    continue;
+                }
+                classQueue.currentWeight += classQueue.priority.getWeight();
+                totalWeight += classQueue.priority.getWeight();
+                if (selected == null || classQueue.currentWeight > selected.currentWeight) {
+                    selected = classQueue;
+                }
+            }
+            if (selected == null) {
+                ClassQueue prefetch = classes.get(AiPriority.PREFETCH);
+                return prefetch.hasRunnable() ? prefetch.poll() : null;
+            }
+            selected.currentWeight -= totalWeight;
+            return selected.poll();
+        }
+
+        boolean callerAtCap(String caller) {
+            return runningByCaller.getOrDefault(caller, 0) >= perCallerMaxConcurrent;
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> byPriority = new LinkedHashMap<>();
+            for (ClassQueue classQueue : classes.values()) {
+                byPriority.put(classQueue.priority.name().toLowerCase(), classQueue.getStats());
+            }
+            return byPriority;
+        }
+    }
+
+    /**
+     * 排队中的任务
+     */
+    private record Task(String caller, AiCallContext context, long enqueuedAt, long deadlineMs, Runnable body,
+                        CompletableFuture<?> future) {
+    }
+
+    /**
+     * 单个优先级类别的队列：每个调用方一个 FIFO 队列，调用方之间轮询
+     */
+    private class ClassQueue {
+
+        private final Pool owner;
+        private final AiPriority priority;
+        private final Map<String, ArrayDeque<Task>> queues = new HashMap<>();
+        // 有排队任务的调用方，按轮询顺序排列
+        private final ArrayDeque<String> rotation = new ArrayDeque<>();
+        private final long[] waitSamples = new long[WAIT_SAMPLES];
+        private int waitSampleCount;
+        private long dispatched;
+        private long maxWaitNanos;
+        private int running;
+        private int currentWeight;
+
+        ClassQueue(Pool owner, AiPriority priority) {
+            this.owner = owner;
+            this.priority = priority;
+        }
+
+        void enqueue(String caller, Task task) {
+            queues.computeIfAbsent(caller, key -> {
+                rotation.addLast(key);
+                return new ArrayDeque<>();
+            }).addLast(task);
+        }
+
+        /**
+         * 从调用方的队列中移除任务，队列为空时该调用方退出轮询
+         * @return 任务是否仍在队列中
+         */
+        boolean remove(String caller, Task task) {
+            ArrayDeque<Task> queue = queues.get(caller);
+            if (queue == null || !queue.removeIf(queuedTask -> queuedTask == task)) {
+                return false;
+            }
+            if (queue.isEmpty()) {
+                queues.remove(caller);
+                rotation.remove(caller);
+            }
+            return true;
+        }
+
+        boolean hasRunnable() {
+            if (rotation.isEmpty() || (priority == AiPriority.BULK && running >= owner.bulkMaxConcurrent)) {
+                return false;
+            }
+            if (priority == AiPriority.PREFETCH && (running >= owner.prefetchMaxConcurrent || prefetchPaused())) {
+                return false;
+            }
+            for (String caller : rotation) {
+                if (!owner.callerAtCap(caller)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 从轮询顺序中第一个未达并发上限的调用方取出任务，并将其移到队尾
+         */
+        Task poll() {
+            Iterator<String> iterator = rotation.iterator();
+            while (iterator.hasNext()) {
+                String caller = iterator.next();
+                if (owner.callerAtCap(caller)) {
+                    continue;
+                }
+                iterator.remove();
+                ArrayDeque<Task> queue = queues.get(caller);
+                Task task = queue.pollFirst();
+                if (queue.isEmpty()) {
+                    queues.remove(caller);
+                } else {
+                    rotation.addLast(caller);
+                }
+                return task;
+            }
+            return null;
+        }
+
+        void recordWait(long waitNanos) {
+            waitSamples[(int) (dispatched % WAIT_SAMPLES)] = waitNanos;
+            waitSampleCount = Math.min(WAIT_SAMPLES, waitSampleCount + 1);
+            dispatched++;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("weight", priority.getWeight());
+            stats.put("active", running);
+            stats.put("queued", queues.values().stream().mapToInt(ArrayDeque::size).sum());
+            stats.put("queuedUsers", queues.size());
+            stats.put("dispatched", dispatched);
+            long[] sorted = Arrays.copyOf(waitSamples, waitSampleCount);
+            Arrays.sort(sorted);
+            stats.put("waitMsP50", percentileMillis(sorted, 0.50));
+            stats.put("waitMsP95", percentileMillis(sorted, 0.95));
+            stats.put("waitMsMax", maxWaitNanos / 1_000_000.0);
+            return stats;
+        }
+
+        private double percentileMillis(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiSentenceAnnotation;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AiSentenceAnnotationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单句自动标注结果存储
+ * 结果按句子内容摘要保存在数据库表 ai_sentence_annotations 中，位置相对于句首，
+ * 同一句子出现在任何文档的任何位置都可复用；过期时间与 AI 响应缓存的持久化层相同
+ */
+@Slf4j
+@Component
+public class AiSentenceAnnotationStore {
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    @Autowired
+    private AiSentenceAnnotationRepository repository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+
+    /**
+     * 批量查询句子的标注结果
+     * @param keys 句子键
+     * @return 命中的句子键到句内标注的映射，标注不含实体文本
+     */
+    public Map<String, List<AutoAnnotationItem>> getAll(Collection<String> keys) {
+        Map<String, List<AutoAnnotationItem>> result = new HashMap<>();
+        if (!aiConfig.getCacheEnabled() || keys.isEmpty()) {
+            misses.addAndGet(keys.size());
+            return result;
+        }
+
+        LocalDateTime expiry = persistentExpiry();
+        try {
+            for (AiSentenceAnnotation entry : repository.findAllById(keys)) {
+                if (entry.getCreatedAt() != null && entry.getCreatedAt().isAfter(expiry)) {
+                    result.put(entry.getSentenceKey(), decode(entry.getAnnotations()));
+                }
+            }
+        } catch (RuntimeException | IOException e) {
+            log.warn("读取单句标注结果失败: {}", e.getMessage());
+            result.clear();
+        }
+        hits.addAndGet(result.size());
+        misses.addAndGet(keys.size() - result.size());
+        return result;
+    }
+
+    /**
+     * 批量保存句子的标注结果，已存在的句子键将被覆盖
+     * @param entries 句子键到句内标注的映射
+     * @param model 模型名称
+     */
+    public void putAll(Map<String, List<AutoAnnotationItem>> entries, String model) {
+        if (!aiConfig.getCacheEnabled() || entries.isEmpty()) {
+            return;
+        }
+
+        List<AiSentenceAnnotation> rows = new ArrayList<>(entries.size());
+        try {
+            for (Map.Entry<String, List<AutoAnnotationItem>> entry : entries.entrySet()) {
+                AiSentenceAnnotation row = new AiSentenceAnnotation();
+                row.setSentenceKey(entry.getKey());
+                row.setModel(model);
+                row.setAnnotations(encode(entry.getValue()));
+                rows.add(row);
+            }
+            repository.saveAll(rows);
+            stored.addAndGet(rows.size());
+        } catch (RuntimeException | IOException e) {
+            log.warn("保存单句标注结果失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取命中统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sentenceHits", hitCount);
+        stats.put("sentenceMisses", missCount);
+        stats.put("sentencesStored", stored.get());
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    /**
+     * 启动时清理过期的单句标注结果
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void evictExpiredEntries() {
+        try {
+            int deleted = repository.deleteByCreatedAtBefore(persistentExpiry());
+            if (deleted > 0) {
+                log.info("已清理 {} 条过期的单句标注结果", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("清理单句标注结果失败: {}", e.getMessage());
+        }
+    }
+
+    private String encode(List<AutoAnnotationItem> items) throws IOException {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (AutoAnnotationItem item : items) {
+            array.addArray().add(item.getStart()).add(item.getEnd()).add(item.getLabel());
+        }
+        return objectMapper.writeValueAsString(array);
+    }
+
+    private List<AutoAnnotationItem> decode(String json) throws IOException {
+        List<AutoAnnotationItem> items = new ArrayList<>();
+        for (JsonNode node : objectMapper.readTree(json)) {
+            AutoAnnotationItem item = new AutoAnnotationItem();
+            item.setStart(node.get(0).asInt());
+            item.setEnd(node.get(1).asInt());
+            item.setLabel(node.get(2).asText());
+            items.add(item);
+        }
+        return items;
+    }
+
+    private LocalDateTime persistentExpiry() {
+        return LocalDateTime.now().minusDays(aiConfig.getCachePersistentTtlDays());
+    }
+}
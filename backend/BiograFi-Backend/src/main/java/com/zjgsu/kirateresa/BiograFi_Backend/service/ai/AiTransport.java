@@ -0,0 +1,543 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiUpstreamHttpException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI 上游 HTTP 传输层
+ * 统一管理连接池和超时配置，每次尝试由 AiEndpointRouter 选择端点，对 429/5xx 和网络异常做带抖动的指数退避重试
+ * （重试优先换到其他端点），各端点的熔断器在其故障时快速跳过。
+ * 每次逻辑调用有整体截止时间（异步请求超时），每次尝试的超时不超过剩余时间，剩余时间不足以退避后再尝试一次时不再重试。
+ * 交互式非流式调用在对冲延迟内未返回时再发起一次请求（优先发往其他端点），取先成功者并取消另一个。
+ * 请求均为同步执行，OkHttp 调度器的并发上限对其不生效，因此每次尝试前自行占用全局和按主机的并发名额，
+ * 在整体截止时间内等不到名额时失败；非流式请求读取完响应后归还，流式请求在响应关闭时归还
+ */
+@Component
+public class AiTransport {
+
+    // 可重试的 HTTP 状态码
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(408, 429, 500, 502, 503, 504);
+
+    /**
+     * 按路由结果构建请求
+     */
+    @FunctionalInterface
+    public interface RequestFactory {
+        Request create(AiEndpointRouter.Route route) throws IOException;
+    }
+
+    /**
+     * 读取成功的响应，在发起请求的线程中执行
+     */
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    /**
+     * 一次逻辑调用的共享状态，对冲时由两个请求共用：已尝试的端点、进行中的 HTTP 调用和整体截止时间
+     */
+    private static class Exchange {
+        private final Set<AiEndpoint> tried = ConcurrentHashMap.newKeySet();
+        private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+        private final long deadlineNanos;
+        private volatile boolean cancelled;
+
+        private Exchange(long timeoutMs) {
+            deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        }
+
+        private long remainingMs() {
+            return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        }
+
+        private void cancel() {
+            cancelled = true;
+            calls.forEach(Call::cancel);
+        }
+    }
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    @Autowired
+    private AiEndpointRouter router;
+
+    private OkHttpClient client;
+    private OkHttpClient streamingClient;
+    private ExecutorService hedgeExecutor;
+
+    // 全局与按主机的上游并发名额
+    private Semaphore requestPermits;
+    private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong retriesSkippedByDeadline = new AtomicLong();
+    private final LongAdder hedgeEligible = new LongAdder();
+    private final LongAdder hedgeCount = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder hedgeBudgetExhausted = new LongAdder();
+    private final LongAdder permitTimeouts = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        requestPermits = new Semaphore(Math.max(1, aiConfig.getDispatcherMaxRequests()), true);
+
+        client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(aiConfig.getConnectionPoolMaxIdle(),
+                        aiConfig.getConnectionPoolKeepAlive(), TimeUnit.SECONDS))
+                .connectTimeout(aiConfig.getConnectTimeout(), TimeUnit.SECONDS)
+                .readTimeout(aiConfig.getTimeout(), TimeUnit.SECONDS)
+                .writeTimeout(aiConfig.getTimeout(), TimeUnit.SECONDS)
+                .callTimeout(aiConfig.getTimeout(), TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+
+        // 流式响应持续时间较长，整体超时放宽到异步请求超时，读超时仍限制相邻数据块之间的间隔
+        streamingClient = client.newBuilder()
+                .callTimeout(aiConfig.getAsyncTimeout(), TimeUnit.SECONDS)
+                .build();
+
+        // 对冲调用的主请求和对冲请求都在该线程池中执行，发起线程只等待结果；数量受调度器并发上限约束
+        AtomicInteger threadIndex = new AtomicInteger();
+        hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ai-hedge-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    /**
+     * 发送流式请求，失败时按配置重试
+     * @param factory 按路由结果构建请求，每次尝试调用一次
+     * @param inputChars 提示词字符数，用于按长度选档
+     * @param model 由路由器 routedModel 解析出的模型，重试与对冲只在提供该模型的端点之间进行
+     * @return 成功（2xx）的响应，调用方负责关闭
+     * @throws IOException 重试耗尽或遇到不可重试的错误
+     */
+    public Response executeStreaming(RequestFactory factory, int inputChars, String model) throws IOException {
+        return attempt(factory, inputChars, model, true, response -> response, newExchange(), null);
+    }
+
+    /**
+     * 发送非流式请求并读取响应，失败时按配置重试；交互式调用超过对冲延迟仍未返回时发起对冲请求
+     * @param factory 按路由结果构建请求，每次尝试调用一次
+     * @param inputChars 提示词字符数，用于按长度选档
+     * @param model 由路由器 routedModel 解析出的模型，重试与对冲只在提供该模型的端点之间进行
+     * @param handler 读取成功的响应，返回后响应即被关闭
+     * @return handler 的结果
+     * @throws IOException 重试耗尽或遇到不可重试的错误
+     */
+    public <T> T execute(RequestFactory factory, int inputChars, String model, ResponseHandler<T> handler) throws IOException {
+        Exchange exchange = newExchange();
+        if (!Boolean.TRUE.equals(aiConfig.getHedgeEnabled()) || AiScheduler.currentPriority() != AiPriority.INTERACTIVE) {
+            return attempt(factory, inputChars, model, false, handler, exchange, null);
+        }
+
+        hedgeEligible.increment();
+        AiEndpointRouter.Route first = router.acquire(inputChars, model, false, exchange.tried);
+        CompletableFuture<T> primary = submit(() -> attempt(factory, inputChars, model, false, handler, exchange, first));
+        try {
+            return primary.get(hedgeDelayMs(first.endpoint()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 主请求超过对冲延迟，下面决定是否对冲
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.cancel();
+            throw new InterruptedIOException("等待 AI 响应被中断");
+        }
+
+        if (hedgeCount.sum() >= aiConfig.getHedgeMaxRatio() * hedgeEligible.sum()) {
+            hedgeBudgetExhausted.increment();
+            return await(primary, exchange);
+        }
+        hedgeCount.increment();
+        CompletableFuture<T> hedge = submit(() -> attempt(factory, inputChars, model, false, handler, exchange, null));
+
+        // 取先成功的一个，两个都失败时以后失败者的异常结束
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        primary.whenComplete((value, error) -> settle(winner, pending, value, error, false));
+        hedge.whenComplete((value, error) -> settle(winner, pending, value, error, true));
+        try {
+            return await(winner, exchange);
+        } finally {
+            exchange.cancel();
+        }
+    }
+
+    /**
+     * 按路由依次尝试，失败时退避重试
+     * @param first 已选好的首个端点，为 null 时由路由器选择
+     */
+    private <T> T attempt(RequestFactory factory, int inputChars, String model, boolean streaming,
+                          ResponseHandler<T> handler, Exchange exchange, AiEndpointRouter.Route first) throws IOException {
+        OkHttpClient httpClient = streaming ? streamingClient : client;
+        int maxRetries = Math.max(0, aiConfig.getMaxRetries());
+
+        for (int attempt = 0; ; attempt++) {
+            if (exchange.cancelled) {
+                throw new InterruptedIOException("请求已被对冲请求取代");
+            }
+            AiEndpointRouter.Route route = attempt == 0 && first != null
+                    ? first
+                    : router.acquire(inputChars, model, streaming, exchange.tried);
+            AiEndpoint endpoint = route.endpoint();
+            exchange.tried.add(endpoint);
+            Request request;
+            try {
+                request = factory.create(route);
+            } catch (IOException | RuntimeException e) {
+                endpoint.getCircuitBreaker().release();
+                throw e;
+            }
+
+            Runnable releasePermits;
+            try {
+                releasePermits = acquirePermits(request.url().host(), exchange);
+            } catch (IOException e) {
+                endpoint.getCircuitBreaker().release();
+                throw e;
+            }
+
+            endpoint.begin();
+            long started = System.nanoTime();
+            Call call = httpClient.newCall(request);
+            // 单次尝试不超过整体截止时间的剩余部分
+            long remainingMs = exchange.remainingMs();
+            long callTimeoutNanos = call.timeout().timeoutNanos();
+            if (callTimeoutNanos == 0 || remainingMs < callTimeoutNanos / 1_000_000) {
+                call.timeout().timeout(Math.max(1, remainingMs), TimeUnit.MILLISECONDS);
+            }
+            exchange.calls.add(call);
+            if (exchange.cancelled) {
+                call.cancel();
+            }
+            Response response;
+            try {
+                response = call.execute();
+            } catch (IOException e) {
+                releasePermits.run();
+                exchange.calls.remove(call);
+                if (exchange.cancelled) {
+                    endpoint.cancelled(elapsedMs(started), streaming);
+                    throw e;
+                }
+                endpoint.failed(elapsedMs(started), streaming, true);
+                long delay = backoffDelay(attempt, null);
+                if (attempt >= maxRetries || !canRetry(exchange, delay)) {
+                    throw e;
+                }
+                backoff(delay);
+                continue;
+            }
+
+            if (response.isSuccessful()) {
+                if (streaming) {
+                    // 流式响应的延迟按首字节计，之后由调用方读取
+                    exchange.calls.remove(call);
+                    endpoint.succeeded(elapsedMs(started), true);
+                    return handler.handle(response.newBuilder()
+                            .body(new PermitReleasingBody(response.body(), releasePermits))
+                            .build());
+                }
+                try (response) {
+                    T result = handler.handle(response);
+                    endpoint.succeeded(elapsedMs(started), false);
+                    return result;
+                } catch (IOException | RuntimeException e) {
+                    if (exchange.cancelled) {
+                        endpoint.cancelled(elapsedMs(started), false);
+                    } else {
+                        endpoint.failed(elapsedMs(started), false, true);
+                    }
+                    throw e;
+                } finally {
+                    exchange.calls.remove(call);
+                    releasePermits.run();
+                }
+            }
+
+            exchange.calls.remove(call);
+            int code = response.code();
+            String retryAfter = response.header("Retry-After");
+            response.close();
+            releasePermits.run();
+            if (code >= 500 || RETRYABLE_STATUSES.contains(code)) {
+                // 4xx 说明上游可达，不计入熔断，但限流同样会降低端点评分
+                endpoint.failed(elapsedMs(started), streaming, code >= 500);
+            } else {
+                endpoint.rejected();
+            }
+            long delay = backoffDelay(attempt, retryAfter);
+            if (!RETRYABLE_STATUSES.contains(code) || attempt >= maxRetries || !canRetry(exchange, delay)) {
+                throw new AiUpstreamHttpException(code, "Unexpected code " + code + " from " + request.url());
+            }
+            backoff(delay);
+        }
+    }
+
+    /**
+     * 在整体截止时间内依次占用全局和该主机的并发名额
+     * @param host 上游主机
+     * @param exchange 所属的逻辑调用
+     * @return 归还名额的操作，可重复调用，只归还一次
+     * @throws InterruptedIOException 截止前未等到名额或等待被中断
+     */
+    private Runnable acquirePermits(String host, Exchange exchange) throws InterruptedIOException {
+        Semaphore perHost = hostPermits.computeIfAbsent(host,
+                key -> new Semaphore(Math.max(1, aiConfig.getDispatcherMaxRequestsPerHost()), true));
+        try {
+            if (!requestPermits.tryAcquire(Math.max(0, exchange.remainingMs()), TimeUnit.MILLISECONDS)) {
+                permitTimeouts.increment();
+                throw new InterruptedIOException("等待 AI 上游并发名额超时");
+            }
+            if (!perHost.tryAcquire(Math.max(0, exchange.remainingMs()), TimeUnit.MILLISECONDS)) {
+                requestPermits.release();
+                permitTimeouts.increment();
+                throw new InterruptedIOException("等待 AI 上游并发名额超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待 AI 上游并发名额被中断");
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                perHost.release();
+                requestPermits.release();
+            }
+        };
+    }
+
+    /**
+     * 流式响应体：关闭时归还并发名额
+     */
+    private static final class PermitReleasingBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final Runnable release;
+
+        private PermitReleasingBody(ResponseBody delegate, Runnable release) {
+            this.delegate = delegate;
+            this.release = release;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return delegate.source();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+
+    private Exchange newExchange() {
+        return new Exchange(aiConfig.getAsyncTimeout() * 1000L);
+    }
+
+    /**
+     * 判断退避后是否还来得及再尝试一次：剩余时间需不少于退避间隔加最短尝试时间
+     */
+    private boolean canRetry(Exchange exchange, long delayMs) {
+        if (exchange.remainingMs() >= delayMs + Math.max(0, aiConfig.getRetryMinAttemptMs())) {
+            return true;
+        }
+        retriesSkippedByDeadline.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 对冲延迟：所选端点近期延迟的若干倍，不低于配置的下限；端点尚无延迟样本时取下限
+     */
+    private long hedgeDelayMs(AiEndpoint endpoint) {
+        double latency = endpoint.latencyMs(false);
+        long minDelay = Math.max(0, aiConfig.getHedgeMinDelayMs());
+        return latency < 0 ? minDelay : Math.max(minDelay, Math.round(latency * aiConfig.getHedgeLatencyFactor()));
+    }
+
+    @FunctionalInterface
+    private interface IoSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private <T> CompletableFuture<T> submit(IoSupplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.get();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, hedgeExecutor);
+    }
+
+    private <T> void settle(CompletableFuture<T> winner, AtomicInteger pending, T value, Throwable error, boolean isHedge) {
+        if (error == null) {
+            if (winner.complete(value) && isHedge) {
+                hedgeWins.increment();
+            }
+        } else if (pending.decrementAndGet() == 0) {
+            winner.completeExceptionally(error);
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future, Exchange exchange) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.cancel();
+            throw new InterruptedIOException("等待 AI 响应被中断");
+        }
+    }
+
+    /**
+     * 还原异步执行中抛出的原始异常
+     */
+    private static IOException rethrow(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException io) {
+            return io;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (cause instanceof Error fatal) {
+            throw fatal;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * 获取熔断器汇总状态，所有端点都熔断时才为打开
+     * @return 状态
+     */
+    public AiCircuitBreaker.State getCircuitState() {
+        return router.getCircuitState();
+    }
+
+    /**
+     * 获取传输层统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuitState", router.getCircuitState().name());
+        stats.put("endpoints", router.getStats());
+        stats.put("retries", retryCount.get());
+        stats.put("retriesSkippedByDeadline", retriesSkippedByDeadline.get());
+        Map<String, Object> hedging = new LinkedHashMap<>();
+        hedging.put("enabled", aiConfig.getHedgeEnabled());
+        hedging.put("eligibleCalls", hedgeEligible.sum());
+        hedging.put("hedged", hedgeCount.sum());
+        hedging.put("hedgeWins", hedgeWins.sum());
+        hedging.put("budgetExhausted", hedgeBudgetExhausted.sum());
+        stats.put("hedging", hedging);
+        stats.put("maxRequests", aiConfig.getDispatcherMaxRequests());
+        stats.put("maxRequestsPerHost", aiConfig.getDispatcherMaxRequestsPerHost());
+        stats.put("activeRequests", Math.max(1, aiConfig.getDispatcherMaxRequests()) - requestPermits.availablePermits());
+        stats.put("permitTimeouts", permitTimeouts.sum());
+        stats.put("pooledConnections", client.connectionPool().connectionCount());
+        stats.put("idleConnections", client.connectionPool().idleConnectionCount());
+        return stats;
+    }
+
+    private static long elapsedMs(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    /**
+     * 带抖动的指数退避间隔（full jitter），上游给出 Retry-After 时以其为下限
+     * @param attempt 已失败的次数（从 0 开始）
+     * @param retryAfter Retry-After 响应头
+     * @return 等待时间（毫秒）
+     */
+    private long backoffDelay(int attempt, String retryAfter) {
+        long cap = Math.min(aiConfig.getRetryMaxBackoffMs(), (long) aiConfig.getRetryBackoffMs() << Math.min(attempt, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (retryAfter != null) {
+            try {
+                delay = Math.max(delay, Math.min(Long.parseLong(retryAfter.trim()) * 1000L, aiConfig.getRetryMaxBackoffMs()));
+            } catch (NumberFormatException ignored) {
+                // Retry-After 也可能是 HTTP 日期格式，此时按退避间隔处理
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * 退避等待
+     * @param delay 等待时间（毫秒）
+     * @throws InterruptedIOException 等待被中断
+     */
+    private void backoff(long delay) throws InterruptedIOException {
+        retryCount.incrementAndGet();
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("重试等待被中断");
+        }
+    }
+}
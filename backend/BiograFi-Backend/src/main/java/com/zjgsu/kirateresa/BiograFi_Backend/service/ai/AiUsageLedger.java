@@ -0,0 +1,283 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiBudgetExceededException;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiUsageRecord;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AiUsageRecordRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 用量账本
+ * 每次上游调用结束时生成一条用量记录放入有界队列，由单独的写入线程攒批（达到批大小或间隔到期）写入数据库，
+ * 记录用量时不访问数据库；文档所属项目也在写入线程中补全。
+ * 同时在内存中按调用方累计当日 token 用量（每个调用方当天首次访问时从数据库读取已有用量），
+ * 用于在 AI 工作线程即将调用上游时执行每日 token 预算：超出预算的调用方以 AiBudgetExceededException 拒绝，
+ * 不发起上游调用；预算检查不在控制器线程中进行，当天首次读取用量不会阻塞请求线程
+ */
+@Slf4j
+@Component
+public class AiUsageLedger {
+
+    private static final String ANONYMOUS = "anonymous";
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    @Autowired
+    private AiUsageRecordRepository usageRecordRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    private LinkedBlockingQueue<AiUsageRecord> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    // 各调用方当日已用 token 数，日期变化时清空
+    private final ConcurrentHashMap<String, AtomicLong> usedToday = new ConcurrentHashMap<>();
+    private volatile LocalDate today = LocalDate.now();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong budgetRejected = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(Math.max(1, aiConfig.getUsageQueueCapacity()));
+        running = true;
+        writer = new Thread(this::runWriter, "ai-usage-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(aiConfig.getUsageFlushIntervalMs() * 2L + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写入线程已退出或仍阻塞在数据库上，剩余记录在当前线程写入
+        List<AiUsageRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+
+    /**
+     * 记录一次上游调用的用量
+     * @param context 调用上下文，可为 null
+     * @param operation 操作类型
+     * @param model 实际请求的模型
+     * @param promptTokens 提示词 token 数
+     * @param completionTokens 生成 token 数
+     * @param cacheHitTokens 命中上游上下文缓存的提示词 token 数
+     * @param durationMs 调用耗时（毫秒）
+     * @param success 是否成功
+     */
+    public void record(AiCallContext context, String operation, String model, long promptTokens, long completionTokens,
+                       long cacheHitTokens, long durationMs, boolean success) {
+        String caller = callerOf(context);
+        long tokens = promptTokens + completionTokens;
+        if (tokens > 0) {
+            counter(caller).addAndGet(tokens);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        AiUsageRecord record = new AiUsageRecord(null, caller,
+                context != null ? context.userId() : null,
+                context != null ? context.projectId() : null,
+                context != null ? context.documentId() : null,
+                operation, model, promptTokens, completionTokens, cacheHitTokens, durationMs, success,
+                now.toLocalDate(), now);
+        recorded.incrementAndGet();
+        if (!queue.offer(record)) {
+            // 数据库长时间不可用导致积压，丢弃记录而不阻塞请求线程；当日用量仍已计入内存
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 检查调用方是否超出当日 token 预算，预取调用不受限制
+     * @param context 调用上下文
+     * @throws AiBudgetExceededException 当日用量已达预算
+     */
+    public void checkBudget(AiCallContext context) {
+        long budget = aiConfig.getDailyTokenBudget();
+        if (budget <= 0 || context.priority() == AiPriority.PREFETCH) {
+            return;
+        }
+        if (counter(callerOf(context)).get() >= budget) {
+            budgetRejected.incrementAndGet();
+            throw new AiBudgetExceededException("今日 AI 用量已达上限（" + budget + " tokens），请明天再试");
+        }
+    }
+
+    /**
+     * 获取调用方当日的预算使用情况
+     * @param caller 调用方标识
+     * @return 日期、预算、已用与剩余 token 数；预算不限时剩余为 null
+     */
+    public Map<String, Object> getBudgetStatus(String caller) {
+        long budget = aiConfig.getDailyTokenBudget();
+        long used = counter(caller != null ? caller : ANONYMOUS).get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("caller", caller);
+        status.put("date", today);
+        status.put("dailyTokenBudget", budget);
+        status.put("usedTokens", used);
+        status.put("remainingTokens", budget > 0 ? Math.max(0, budget - used) : null);
+        return status;
+    }
+
+    /**
+     * 获取统计信息
+     * @return 记录、写入、丢弃和预算拒绝次数等
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dailyTokenBudget", aiConfig.getDailyTokenBudget());
+        stats.put("callersToday", usedToday.size());
+        stats.put("recorded", recorded.get());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("pending", queue.size());
+        stats.put("dropped", dropped.get());
+        stats.put("writeFailures", writeFailures.get());
+        stats.put("budgetRejected", budgetRejected.get());
+        return stats;
+    }
+
+    private static String callerOf(AiCallContext context) {
+        return context != null && context.caller() != null ? context.caller() : ANONYMOUS;
+    }
+
+    /**
+     * 获取调用方当日用量计数器，当天首次访问时从数据库读取已写入的用量（覆盖重启前的调用）
+     */
+    private AtomicLong counter(String caller) {
+        LocalDate now = LocalDate.now();
+        if (!now.equals(today)) {
+            synchronized (usedToday) {
+                if (!now.equals(today)) {
+                    usedToday.clear();
+                    today = now;
+                }
+            }
+        }
+        AtomicLong counter = usedToday.get(caller);
+        if (counter != null) {
+            return counter;
+        }
+        long persisted;
+        try {
+            persisted = usageRecordRepository.sumTokensByCallerAndDate(caller, now);
+        } catch (RuntimeException e) {
+            log.warn("读取调用方 {} 的当日 AI 用量失败: {}", caller, e.getMessage());
+            persisted = 0;
+        }
+        AtomicLong loaded = new AtomicLong(persisted);
+        counter = usedToday.putIfAbsent(caller, loaded);
+        return counter != null ? counter : loaded;
+    }
+
+    /**
+     * 写入线程：取到第一条记录后继续等待至批大小或写入间隔到期，再整批写入
+     */
+    private void runWriter() {
+        int batchSize = Math.max(1, aiConfig.getUsageBatchSize());
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, aiConfig.getUsageFlushIntervalMs()));
+        List<AiUsageRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                AiUsageRecord first = queue.poll(intervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + intervalNanos;
+                while (running && batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    AiUsageRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<AiUsageRecord> records) {
+        try {
+            resolveProjects(records);
+            usageRecordRepository.batchInsert(records);
+            written.addAndGet(records.size());
+            batches.incrementAndGet();
+        } catch (RuntimeException e) {
+            writeFailures.incrementAndGet();
+            log.warn("写入 {} 条 AI 用量记录失败: {}", records.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按文档补全未指定项目的记录
+     */
+    private void resolveProjects(List<AiUsageRecord> records) {
+        Set<String> documentIds = new HashSet<>();
+        for (AiUsageRecord record : records) {
+            if (record.getProjectId() == null && record.getDocumentId() != null) {
+                documentIds.add(record.getDocumentId());
+            }
+        }
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        Map<String, String> projectByDocument = new HashMap<>();
+        for (Object[] row : documentRepository.findProjectIdsByIdIn(documentIds)) {
+            if (row[1] != null) {
+                projectByDocument.put(row[0].toString(), row[1].toString());
+            }
+        }
+        for (AiUsageRecord record : records) {
+            if (record.getProjectId() == null && record.getDocumentId() != null) {
+                record.setProjectId(projectByDocument.get(record.getDocumentId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+/**
+ * 前缀稳定的提示词模板
+ * 消息按"系统指令 → 原文 → 问题"的顺序组织：系统指令对同一操作固定不变，原文在同一文档的多次调用之间不变，
+ * 每次变化的问题放在最后。这样同一文档的连续调用共享逐字节相同的前缀，可以命中上游的上下文缓存
+ * （DeepSeek 对命中缓存的提示词 token 按较低价格计费，并缩短首字延迟）
+ * @param system 系统指令，不含任何请求相关的内容
+ * @param documentFormat 原文部分的格式，含一个 %s 占位符
+ * @param questionFormat 问题部分的格式，含一个 %s 占位符；没有问题的操作为 null
+ */
+public record PromptTemplate(String system, String documentFormat, String questionFormat) {
+
+    /**
+     * 渲染后的提示词
+     * @param system 系统消息
+     * @param user 用户消息，原文在前、问题在后
+     */
+    public record Prompt(String system, String user) {
+
+        /**
+         * @return 提示词总字符数，用于按输入长度选择端点
+         */
+        public int length() {
+            return system.length() + user.length();
+        }
+    }
+
+    /**
+     * 无问题部分的模板
+     * @param system 系统指令
+     * @param documentFormat 原文部分的格式
+     * @return 模板
+     */
+    public static PromptTemplate of(String system, String documentFormat) {
+        return new PromptTemplate(system, documentFormat, null);
+    }
+
+    /**
+     * 渲染提示词
+     * @param text 原文
+     * @param question 问题，模板没有问题部分时忽略
+     * @return 提示词
+     */
+    public Prompt render(String text, String question) {
+        String user = String.format(documentFormat, text);
+        if (questionFormat != null && question != null) {
+            user += String.format(questionFormat, question);
+        }
+        return new Prompt(system, user);
+    }
+
+    /**
+     * 模板的稳定标识，参与响应缓存键的计算，模板内容变化后旧缓存自然失效
+     * @return 模板标识
+     */
+    public String cacheId() {
+        return system + '\u0000' + documentFormat + '\u0000' + questionFormat;
+    }
+}
@@ -2,15 +2,62 @@ package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiBatchItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiBatchItemResult;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiProjectQaResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.RetrievedPassage;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationResponse;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiBudgetExceededException;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiServiceBusyException;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiUpstreamUnavailableException;
 import com.zjgsu.kirateresa.BiograFi_Backend.service.AiService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.PassageIndexService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiCircuitBreaker;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiEndpoint;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiEndpointRouter;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiCallContext;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiDictionaryAnnotator;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiMetrics;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiNearDuplicateCache;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiRequestCoalescer;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiResponseCache;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiScheduler;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiSentenceAnnotationStore;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiTransport;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiUsageLedger;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.PromptTemplate;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.EntitySpanLocator;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.MinHashIndex;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.StreamingAnnotationParser;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.TextChunker;
 import okhttp3.*;
+import okio.BufferedSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 
 /**
@@ -19,82 +66,371 @@ import java.util.regex.Pattern;
 @Service
 public class AiServiceImpl implements AiService {
 
+    private static final String OPERATION_ANALYZE = "analyze";
+    private static final String OPERATION_QA = "qa";
+    private static final String OPERATION_AUTO_ANNOTATE = "auto-annotate";
+    private static final String OPERATION_QA_BATCH = "qa-batch";
+    private static final String OPERATION_PROJECT_QA = "project-qa";
+
+    private static final String BATCH_TYPE_ANALYZE = "analyze";
+    private static final String BATCH_TYPE_QA = "qa";
+
+    // 提示词模板：系统指令在前、原文居中、问题在后，同一文档的连续调用共享相同前缀以命中上游上下文缓存
+
+    // 文本分析提示词模板
+    private static final PromptTemplate ANALYZE_PROMPT_TEMPLATE = PromptTemplate.of(
+            "你是古文研读助手。用户会给出一段古文，请对其进行详细解释。你的解释应该尽可能全面,包含以下方面:\n1. 对其字面意思的解读。\n2. 阐述其核心哲学思想。\n3. 结合现代学习或工作场景,谈谈它的现实意义。\n请直接给出解释,不要输出任何思考过程，并且必须分成上面那三点进行回答。",
+            "请对\"%s\"进行详细解释。");
+
+    // 问答提示词模板
+    private static final PromptTemplate QA_PROMPT_TEMPLATE = new PromptTemplate(
+            "你是古文研读助手。用户会给出一段古文原文和一个问题，请针对原文回答用户的问题。请直接给出答案，不要输出思考过程。",
+            "原文：\"%s\"",
+            "\n\n问题：%s");
+
+    // 项目范围问答提示词模板
+    private static final PromptTemplate PROJECT_QA_PROMPT_TEMPLATE = new PromptTemplate(
+            "你是古文研读助手。用户会给出从项目文档中检索到的相关段落和一个问题，请依据这些段落回答问题，段落中没有相关信息时请如实说明。请直接给出答案，不要输出思考过程。",
+            "以下是从项目文档中检索到的相关段落：\n\n%s",
+            "\n问题：%s");
+
+    // 多问题合并问答提示词模板
+    private static final PromptTemplate QA_BATCH_PROMPT_TEMPLATE = new PromptTemplate(
+            "你是古文研读助手。用户会给出一段古文原文和若干问题，请针对原文依次回答这些问题。请直接给出答案，不要输出思考过程。请只返回JSON数组，格式如下：\n[\n  {\"id\": 1, \"answer\": \"第1个问题的回答\"},\n  {\"id\": 2, \"answer\": \"第2个问题的回答\"}\n]\n\n注意：\n- 每个问题对应一个元素，id 为问题序号\n- 只返回JSON数组，不要有其他文字说明",
+            "原文：\"%s\"",
+            "\n\n请依次回答下列问题：\n%s");
+
+    // 自动标注提示词模板
+    private static final PromptTemplate AUTO_ANNOTATE_PROMPT_TEMPLATE = PromptTemplate.of(
+            "请对用户给出的文本进行实体标注，标出所有的人物、地名、时间、器物、概念。\n\n要求：\n1. 请标注出文中所有的人物（包括人名、称谓）\n2. 请标注出文中所有的地名（包括国名、地方名）\n3. 请标注出文中所有的时间（包括年代、季节、时辰等）\n4. 请标注出文中所有的器物（包括工具、物品、建筑等）\n5. 请标注出文中所有的概念（包括抽象概念、思想、制度等）\n\n请直接返回JSON格式的标注结果，格式如下：\n[\n  {\"text\": \"实体文本\", \"label\": \"人物\"},\n  {\"text\": \"实体文本\", \"label\": \"地名\"}\n]\n\n注意：\n- label 必须是以下之一：人物、地名、时间、器物、概念\n- text 是实体在原文中的确切文本\n- 只返回JSON数组，不要有其他文字说明",
+            "文本：\"%s\"");
+
     @Autowired
     private AiConfig aiConfig;
 
-    private final OkHttpClient client = new OkHttpClient();
+    @Autowired
+    private AiScheduler scheduler;
+
+    @Autowired
+    private AiResponseCache responseCache;
+
+    @Autowired
+    private AiRequestCoalescer requestCoalescer;
+
+    @Autowired
+    private AiTransport transport;
+
+    @Autowired
+    private PassageIndexService passageIndexService;
+
+    @Autowired
+    private AiMetrics metrics;
+
+    @Autowired
+    private AiSentenceAnnotationStore sentenceStore;
+
+    @Autowired
+    private AiNearDuplicateCache nearDuplicateCache;
+
+    @Autowired
+    private AiEndpointRouter endpointRouter;
+
+    @Autowired
+    private AiDictionaryAnnotator dictionaryAnnotator;
+
+    @Autowired
+    private AiUsageLedger usageLedger;
+
+    private final AtomicLong deadlineFallbacks = new AtomicLong();
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
-     * 调用 DeepSeek API 生成响应
-     * @param prompt 提示词
-     * @param model 模型名称
-     * @return API 响应结果
-     * @throws IOException IO 异常
+     * 构建 DeepSeek API 请求
+     * 系统指令作为第一条消息，原文和问题作为第二条消息，保证同一操作、同一原文的请求体前缀逐字节相同
+     * @param prompt 提示词（系统消息与用户消息）
+     * @param route 路由选中的端点和模型
+     * @param stream 是否使用流式输出
+     * @return HTTP 请求
+     * @throws IOException 请求体序列化失败
      */
-    private String generateResponse(String prompt, String model) throws IOException {
-        if (aiConfig.getDeepSeekApiKey() == null || aiConfig.getDeepSeekApiKey().isEmpty()) {
+    private Request buildRequest(PromptTemplate.Prompt prompt, AiEndpointRouter.Route route, boolean stream) throws IOException {
+        String apiKey = route.endpoint().getApiKey();
+        if (apiKey == null || apiKey.isEmpty()) {
             throw new IllegalArgumentException("未设置 DEEPSEEK_API_KEY 环境变量。请设置后重启服务。");
         }
 
-        // 创建请求体
-        String requestBody = String.format(
-            "{\"model\": \"%s\",\"messages\": [{\"role\": \"user\",\"content\": \"%s\"}],\"temperature\": %f,\"max_tokens\": %d,\"top_p\": %f}",
-            model != null ? model : aiConfig.getDeepSeekModel(),
-            prompt,
-            aiConfig.getTemperature(),
-            aiConfig.getMaxTokens(),
-            aiConfig.getTopP()
-        );
+        // 创建请求体，由 Jackson 负责转义提示词中的引号和换行
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("model", route.model());
+        ArrayNode messages = body.putArray("messages");
+        messages.addObject().put("role", "system").put("content", prompt.system());
+        messages.addObject().put("role", "user").put("content", prompt.user());
+        body.put("temperature", aiConfig.getTemperature());
+        body.put("max_tokens", aiConfig.getMaxTokens());
+        body.put("top_p", aiConfig.getTopP());
+        if (stream) {
+            body.put("stream", true);
+            body.putObject("stream_options").put("include_usage", true);
+        }
+        String requestBody = objectMapper.writeValueAsString(body);
 
         // 创建请求
-        Request request = new Request.Builder()
-                .url(aiConfig.getDeepSeekApiUrl())
+        return new Request.Builder()
+                .url(route.endpoint().getUrl())
                 .addHeader("Content-Type", "application/json")
-                .addHeader("Authorization", "Bearer " + aiConfig.getDeepSeekApiKey())
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Accept", stream ? "text/event-stream" : "application/json")
                 .post(RequestBody.create(requestBody, MediaType.get("application/json; charset=utf-8")))
                 .build();
+    }
 
-        // 发送请求
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
-
+    /**
+     * 调用 DeepSeek API 生成响应
+     * @param operation 操作类型，用于调用统计
+     * @param prompt 提示词（系统消息与用户消息）
+     * @param model 模型名称
+     * @return API 响应结果
+     * @throws IOException IO 异常
+     */
+    private String generateResponse(String operation, PromptTemplate.Prompt prompt, String model) throws IOException {
+        AiMetrics.Call call = metrics.start(operation, model);
+        // 发送请求（传输层负责端点路由、超时、重试、对冲和熔断）
+        try {
+            String responseBody = transport.execute(route -> {
+                call.route(route.model());
+                return buildRequest(prompt, route, false);
+            }, prompt.length(), model, response -> response.body().string());
             // 解析响应
-            String responseBody = response.body().string();
             JsonNode jsonNode = objectMapper.readTree(responseBody);
+            call.usage(jsonNode.get("usage"));
             if (jsonNode.has("choices") && jsonNode.get("choices").isArray() && jsonNode.get("choices").size() > 0) {
-                return jsonNode.get("choices").get(0).get("message").get("content").asText().strip();
+                String content = jsonNode.get("choices").get(0).get("message").get("content").asText().strip();
+                call.success();
+                return content;
             } else {
                 throw new IOException("API 返回格式异常: " + responseBody);
             }
+        } catch (IOException | RuntimeException e) {
+            call.failure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 以流式模式调用 DeepSeek API，逐块解析 data: 行并回调增量内容
+     * 请求携带 stream_options.include_usage，上游在最后一个数据块中返回 usage
+     * @param operation 操作类型，用于调用统计
+     * @param prompt 提示词（系统消息与用户消息）
+     * @param model 模型名称
+     * @param onDelta 增量内容回调，抛出异常时中止读取并关闭上游连接
+     * @return 完整的响应内容
+     * @throws IOException IO 异常
+     */
+    private String generateStreamingResponse(String operation, PromptTemplate.Prompt prompt, String model, Consumer<String> onDelta) throws IOException {
+        AiMetrics.Call call = metrics.start(operation, model);
+        try (Response response = transport.executeStreaming(route -> {
+            call.route(route.model());
+            return buildRequest(prompt, route, true);
+        }, prompt.length(), model)) {
+            StringBuilder content = new StringBuilder();
+            BufferedSource source = response.body().source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (!line.startsWith("data:")) {
+                    // 跳过空行和 SSE 注释（如 keep-alive）
+                    continue;
+                }
+                String data = line.substring(5).trim();
+                if ("[DONE]".equals(data)) {
+                    break;
+                }
+
+                JsonNode chunk = objectMapper.readTree(data);
+                call.usage(chunk.get("usage"));
+                JsonNode choices = chunk.get("choices");
+                if (choices == null || !choices.isArray() || choices.size() == 0) {
+                    continue;
+                }
+                JsonNode delta = choices.get(0).get("delta");
+                if (delta != null && delta.hasNonNull("content")) {
+                    String piece = delta.get("content").asText();
+                    if (!piece.isEmpty()) {
+                        call.firstToken();
+                        content.append(piece);
+                        onDelta.accept(piece);
+                    }
+                }
+            }
+            call.success();
+            return content.toString().strip();
+        } catch (IOException | RuntimeException e) {
+            call.failure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 带缓存的生成调用：先查两级缓存，未命中时调用 DeepSeek 并写回缓存
+     * @param operation 操作类型
+     * @param template 提示词模板
+     * @param text 文本
+     * @param question 问题（可选）
+     * @param model 模型名称（可选）
+     * @return 响应内容
+     * @throws IOException IO 异常
+     */
+    private String cachedResponse(String operation, PromptTemplate template, String text, String question, String model) throws IOException {
+        String normalizedText = text.strip();
+        String normalizedQuestion = question == null ? null : question.strip();
+        PromptTemplate.Prompt prompt = template.render(normalizedText, normalizedQuestion);
+        String resolvedModel = routedModel(prompt, model);
+        String cacheKey = responseCache.key(template, normalizedText, normalizedQuestion, resolvedModel);
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        // 相同请求并发到达时只调用一次上游，由首个请求负责写回缓存
+        checkBudget();
+        return requestCoalescer.execute(cacheKey, () -> {
+            String response = generateResponse(operation, prompt, resolvedModel);
+            responseCache.put(cacheKey, operation, resolvedModel, response);
+            return response;
+        });
+    }
+
+    /**
+     * 带缓存的流式生成调用：缓存命中时一次性回调完整内容，未命中时流式调用并在完成后写回缓存
+     * @param operation 操作类型
+     * @param template 提示词模板
+     * @param text 文本
+     * @param question 问题（可选）
+     * @param model 模型名称（可选）
+     * @param onDelta 增量内容回调
+     * @return 完整的响应内容
+     * @throws IOException IO 异常
+     */
+    private String cachedStreamingResponse(String operation, PromptTemplate template, String text, String question, String model,
+                                           Consumer<String> onDelta) throws IOException {
+        String normalizedText = text.strip();
+        String normalizedQuestion = question == null ? null : question.strip();
+        PromptTemplate.Prompt prompt = template.render(normalizedText, normalizedQuestion);
+        String resolvedModel = routedModel(prompt, model);
+        String cacheKey = responseCache.key(template, normalizedText, normalizedQuestion, resolvedModel);
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            onDelta.accept(cached.get());
+            return cached.get();
+        }
+
+        // 相同的流式请求共享同一个上游流，后加入者先收到已生成的部分
+        checkBudget();
+        return requestCoalescer.executeStreaming(cacheKey, onDelta, delta -> {
+            String response = generateStreamingResponse(operation, prompt, resolvedModel, delta);
+            responseCache.put(cacheKey, operation, resolvedModel, response);
+            if (OPERATION_ANALYZE.equals(operation)) {
+                nearDuplicateCache.put(nearDuplicateGroup(template, resolvedModel), normalizedText, response);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * 缓存均未命中、即将调用上游时检查当前调用方的当日 token 预算，缓存命中的结果不受预算限制；
+     * 不在调度器线程中（同步调用）时不检查
+     * @throws AiBudgetExceededException 当日用量已达预算
+     */
+    private void checkBudget() {
+        AiCallContext context = AiScheduler.currentContext();
+        if (context != null) {
+            usageLedger.checkBudget(context);
         }
     }
 
+    private String resolveModel(String model) {
+        return model != null && !model.isEmpty() ? model : aiConfig.getDeepSeekModel();
+    }
+
+    /**
+     * 解析提示词实际路由到的模型：长提示词可能被分到其他模型的档位，缓存键、合并键和缓存记录都使用该模型，
+     * 传输层也只在提供该模型的端点之间路由，不同模型生成的结果不会混用同一个键
+     */
+    private String routedModel(PromptTemplate.Prompt prompt, String model) {
+        return endpointRouter.routedModel(prompt.length(), resolveModel(model));
+    }
+
+    /**
+     * 近似重复缓存的分组：与缓存键相同的计算方式，但不含文本，只复用同一模板、模型和生成参数下的结果
+     */
+    private String nearDuplicateGroup(PromptTemplate template, String resolvedModel) {
+        return responseCache.key(template, "", null, resolvedModel);
+    }
+
     @Override
     public String analyzeText(String text, String model) {
-        String prompt = String.format(
-                "请对\"%s\"进行详细解释。你的解释应该尽可能全面,包含以下方面:\n1. 对其字面意思的解读。\n2. 阐述其核心哲学思想。\n3. 结合现代学习或工作场景,谈谈它的现实意义。\n请直接给出解释,不要输出任何思考过程，并且必须分成上面那三点进行回答。",
-                text
-        );
+        return analyzeText(text, model, false).getResult();
+    }
+
+    @Override
+    public AiResponse analyzeText(String text, String model, boolean allowApproximate) {
+        String normalizedText = text.strip();
+        PromptTemplate.Prompt prompt = ANALYZE_PROMPT_TEMPLATE.render(normalizedText, null);
+        String resolvedModel = routedModel(prompt, model);
+        String cacheKey = responseCache.key(ANALYZE_PROMPT_TEMPLATE, normalizedText, null, resolvedModel);
+        String group = nearDuplicateGroup(ANALYZE_PROMPT_TEMPLATE, resolvedModel);
+        AiResponse response = new AiResponse();
+        response.setApproximate(false);
 
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            response.setResult(cached.get());
+            return response;
+        }
+        if (allowApproximate) {
+            // 精确缓存未命中时复用相近版本文本的结果
+            Optional<MinHashIndex.Match<String>> match = nearDuplicateCache.find(group, normalizedText);
+            if (match.isPresent()) {
+                response.setResult(match.get().value());
+                response.setApproximate(true);
+                response.setSimilarity(match.get().similarity());
+                return response;
+            }
+        }
+
+        checkBudget();
         try {
-            return generateResponse(prompt, model);
+            response.setResult(requestCoalescer.execute(cacheKey, () -> {
+                String result = generateResponse(OPERATION_ANALYZE, prompt, resolvedModel);
+                responseCache.put(cacheKey, OPERATION_ANALYZE, resolvedModel, result);
+                nearDuplicateCache.put(group, normalizedText, result);
+                return result;
+            }));
         } catch (IOException e) {
             throw new RuntimeException("生成回复时出错: " + e.getMessage(), e);
         }
+        return response;
+    }
+
+    /**
+     * 获取问答提示词中的原文：未超过上下文上限时使用全文，否则只使用检索到的相关段落
+     * @param text 原文
+     * @param question 问题
+     * @return 提示词中的原文
+     */
+    private String qaContext(String text, String question) {
+        String normalizedText = text.strip();
+        if (normalizedText.length() <= aiConfig.getQaContextMaxChars()) {
+            return normalizedText;
+        }
+        List<RetrievedPassage> passages = passageIndexService.searchText(normalizedText, question, aiConfig.getQaContextMaxChars());
+        return passages.stream().map(RetrievedPassage::getText).reduce((a, b) -> a + "\n……\n" + b).orElse("");
     }
 
     @Override
     public String qaText(String text, String question, String model) {
-        String prompt = String.format(
-                "原文：\"%s\"\n\n问题：%s\n\n请针对上面的古文原文，回答用户的问题。请直接给出答案，不要输出思考过程。",
-                text, question
-        );
-
         try {
-            return generateResponse(prompt, model);
+            return cachedResponse(OPERATION_QA, QA_PROMPT_TEMPLATE, qaContext(text, question), question, model);
         } catch (IOException e) {
             throw new RuntimeException("生成回复时出错: " + e.getMessage(), e);
         }
@@ -102,94 +438,793 @@ public class AiServiceImpl implements AiService {
 
     @Override
     public List<AutoAnnotationItem> autoAnnotate(String text) {
-        String prompt = String.format(
-                "请对以下文本进行实体标注，标出所有的人物、地名、时间、器物、概念。\n\n文本：\"%s\"\n\n要求：\n1. 请标注出文中所有的人物（包括人名、称谓）\n2. 请标注出文中所有的地名（包括国名、地方名）\n3. 请标注出文中所有的时间（包括年代、季节、时辰等）\n4. 请标注出文中所有的器物（包括工具、物品、建筑等）\n5. 请标注出文中所有的概念（包括抽象概念、思想、制度等）\n\n请直接返回JSON格式的标注结果，格式如下：\n[\n  {\"text\": \"实体文本\", \"label\": \"人物\"},\n  {\"text\": \"实体文本\", \"label\": \"地名\"}\n]\n\n注意：\n- label 必须是以下之一：人物、地名、时间、器物、概念\n- text 是实体在原文中的确切文本\n- 只返回JSON数组，不要有其他文字说明",
-                text
-        );
+        int maxChars = aiConfig.getEffectiveChunkMaxChars();
+        if (text.length() <= maxChars) {
+            return annotateSingle(text);
+        }
+        return annotateChunked(text, maxChars);
+    }
 
+    /**
+     * 长文本分块标注：在句子边界处切分，各块并行调用模型，再将块内位置映射回全文位置
+     * @param text 原文
+     * @param maxChars 每块最大字符数
+     * @return 按起始位置排序的标注结果
+     */
+    private List<AutoAnnotationItem> annotateChunked(String text, int maxChars) {
+        List<CompletableFuture<List<AutoAnnotationItem>>> futures = new ArrayList<>();
+        for (TextChunker.Chunk chunk : TextChunker.split(text, maxChars)) {
+            String chunkText = chunk.text(text);
+            if (chunkText.isBlank()) {
+                continue;
+            }
+            futures.add(scheduler.submitChunk(() -> {
+                List<AutoAnnotationItem> items = annotateSingle(chunkText);
+                for (AutoAnnotationItem item : items) {
+                    item.setStart(item.getStart() + chunk.start());
+                    item.setEnd(item.getEnd() + chunk.start());
+                }
+                return items;
+            }));
+        }
+
+        // 各块互不重叠且按顺序排列，块内结果已排序，依次拼接即为全局有序
+        List<AutoAnnotationItem> merged = new ArrayList<>();
         try {
-            String response = generateResponse(prompt, null);
-            
-            // 清理可能的markdown代码块标记
-            String cleaned = response.strip();
-            if (cleaned.startsWith("```")) {
-                cleaned = Pattern.compile("^```(?:json)?\\s*\n", Pattern.MULTILINE).matcher(cleaned).replaceFirst("");
-                cleaned = Pattern.compile("\n```\\s*$", Pattern.MULTILINE).matcher(cleaned).replaceFirst("");
-            }
-
-            // 解析JSON
-            JsonNode annotationsNode = objectMapper.readTree(cleaned);
-            List<AutoAnnotationItem> annotations = new ArrayList<>();
-
-            // 验证并清理数据
-            List<String> validLabels = List.of("人物", "地名", "时间", "器物", "概念");
-
-            if (annotationsNode.isArray()) {
-                for (JsonNode node : annotationsNode) {
-                    if (node.has("text") && node.has("label")) {
-                        String entityText = node.get("text").asText();
-                        String label = node.get("label").asText();
-
-                        // 验证标签有效性
-                        if (validLabels.contains(label)) {
-                            // 在原文中查找实体的所有出现位置
-                            int cursor = 0;
-                            while (true) {
-                                int pos = text.indexOf(entityText, cursor);
-                                if (pos == -1) {
-                                    break;
-                                }
-                                
-                                AutoAnnotationItem item = new AutoAnnotationItem();
-                                item.setStart(pos);
-                                item.setEnd(pos + entityText.length());
-                                item.setLabel(label);
-                                item.setText(entityText);
-                                annotations.add(item);
-                                
-                                cursor = pos + 1;
-                            }
+            for (CompletableFuture<List<AutoAnnotationItem>> future : futures) {
+                merged.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("自动标注时出错: " + e.getCause().getMessage(), e.getCause());
+        }
+        return merged;
+    }
+
+    /**
+     * 单次调用模型完成整段文本的标注
+     * @param text 原文
+     * @return 按起始位置排序的标注结果
+     */
+    private List<AutoAnnotationItem> annotateSingle(String text) {
+        try {
+            String response = cachedResponse(OPERATION_AUTO_ANNOTATE, AUTO_ANNOTATE_PROMPT_TEMPLATE, text, null, null);
+            return parseAnnotations(response, text);
+        } catch (IOException e) {
+            throw new RuntimeException("自动标注时出错: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<AutoAnnotationItem> autoAnnotateIncremental(String text) {
+        return annotateIncremental(text, null);
+    }
+
+    @Override
+    public String autoAnnotateModel(String text) {
+        Set<String> models = new TreeSet<>();
+        for (TextChunker.Chunk sentence : TextChunker.splitSentences(text)) {
+            String sentenceText = sentence.text(text);
+            if (!sentenceText.isBlank()) {
+                models.add(annotateModel(sentenceText));
+            }
+        }
+        return models.isEmpty() ? annotateModel(text) : String.join(",", models);
+    }
+
+    /**
+     * 待标注的文本片段，[start, end) 为其在原文中的位置，sentences 为其覆盖的句子序号
+     */
+    private record IncrementalPiece(int start, int end, List<Integer> sentences) {
+    }
+
+    /**
+     * 增量标注：按句切分并计算每句的键，已有结果的句子直接平移到当前位置，
+     * 其余句子按相邻关系合并为不超过分块长度、且与各句单独路由到同一模型的片段发送给模型，
+     * 结果再按句拆分、以查询时的句子键保存
+     * @param text 原文
+     * @param onAnnotation 标注结果回调，为 null 时使用非流式调用
+     * @return 去重并按起始位置排序的标注结果
+     */
+    private List<AutoAnnotationItem> annotateIncremental(String text, Consumer<AutoAnnotationItem> onAnnotation) {
+        List<TextChunker.Chunk> sentences = new ArrayList<>();
+        List<String> models = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (TextChunker.Chunk sentence : TextChunker.splitSentences(text)) {
+            String sentenceText = sentence.text(text);
+            if (!sentenceText.isBlank()) {
+                String model = annotateModel(sentenceText);
+                sentences.add(sentence);
+                models.add(model);
+                keys.add(sentenceKey(sentenceText, model));
+            }
+        }
+        Map<String, List<AutoAnnotationItem>> stored = sentenceStore.getAll(keys);
+
+        // 已有结果的句子：平移到当前位置
+        List<AutoAnnotationItem> merged = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            List<AutoAnnotationItem> hit = stored.get(keys.get(i));
+            if (hit == null) {
+                missing.add(i);
+                continue;
+            }
+            int offset = sentences.get(i).start();
+            for (AutoAnnotationItem relative : hit) {
+                AutoAnnotationItem item = new AutoAnnotationItem();
+                item.setStart(relative.getStart() + offset);
+                item.setEnd(relative.getEnd() + offset);
+                item.setLabel(relative.getLabel());
+                item.setText(text.substring(item.getStart(), item.getEnd()));
+                merged.add(item);
+                if (onAnnotation != null) {
+                    onAnnotation.accept(item);
+                }
+            }
+        }
+
+        // 其余句子：分片段调用模型
+        List<IncrementalPiece> pieces = incrementalPieces(text, sentences, models, missing, aiConfig.getEffectiveChunkMaxChars());
+        List<CompletableFuture<List<AutoAnnotationItem>>> futures = new ArrayList<>();
+        for (IncrementalPiece piece : pieces) {
+            String pieceText = text.substring(piece.start(), piece.end());
+            Supplier<List<AutoAnnotationItem>> task = onAnnotation != null
+                    ? () -> streamAnnotateSegment(pieceText, piece.start(), onAnnotation)
+                    : () -> {
+                        List<AutoAnnotationItem> items = annotateSingle(pieceText);
+                        for (AutoAnnotationItem item : items) {
+                            item.setStart(item.getStart() + piece.start());
+                            item.setEnd(item.getEnd() + piece.start());
                         }
+                        return items;
+                    };
+            // 只有一个片段时（常见于小改动）直接在当前线程执行
+            futures.add(pieces.size() == 1 ? CompletableFuture.completedFuture(task.get()) : scheduler.submitChunk(task));
+        }
+
+        // 按句拆分新结果，以查询时的句子键分模型保存；某个片段失败时，其覆盖的句子不保存，下次重新标注
+        Map<String, Map<String, List<AutoAnnotationItem>>> fresh = new LinkedHashMap<>();
+        RuntimeException failure = null;
+        for (int p = 0; p < pieces.size(); p++) {
+            List<AutoAnnotationItem> items;
+            try {
+                items = futures.get(p).join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause
+                            : new RuntimeException("自动标注时出错: " + e.getCause().getMessage(), e.getCause());
+                }
+                continue;
+            }
+            merged.addAll(items);
+            for (int index : pieces.get(p).sentences()) {
+                TextChunker.Chunk sentence = sentences.get(index);
+                List<AutoAnnotationItem> relative = fresh.computeIfAbsent(models.get(index), key -> new LinkedHashMap<>())
+                        .computeIfAbsent(keys.get(index), key -> new ArrayList<>());
+                for (AutoAnnotationItem item : items) {
+                    if (item.getStart() >= sentence.start() && item.getEnd() <= sentence.end()) {
+                        AutoAnnotationItem copy = new AutoAnnotationItem();
+                        copy.setStart(item.getStart() - sentence.start());
+                        copy.setEnd(item.getEnd() - sentence.start());
+                        copy.setLabel(item.getLabel());
+                        relative.add(copy);
+                    }
+                }
+            }
+        }
+        // 超长句被拆成多个片段时，任一片段失败则整句都不保存
+        for (int p = 0; p < pieces.size(); p++) {
+            if (futures.get(p).isCompletedExceptionally()) {
+                for (int index : pieces.get(p).sentences()) {
+                    Map<String, List<AutoAnnotationItem>> byKey = fresh.get(models.get(index));
+                    if (byKey != null) {
+                        byKey.remove(keys.get(index));
+                    }
+                }
+            }
+        }
+        fresh.forEach((model, byKey) -> sentenceStore.putAll(byKey, model));
+        if (failure != null) {
+            throw failure;
+        }
+
+        Set<Long> seen = new HashSet<>();
+        merged.removeIf(item -> !seen.add(EntitySpanLocator.spanKey(item.getStart(), item.getEnd(), item.getLabel())));
+        merged.sort(EntitySpanLocator.SPAN_ORDER);
+        return merged;
+    }
+
+    private String sentenceKey(String sentenceText, String model) {
+        return responseCache.key(AUTO_ANNOTATE_PROMPT_TEMPLATE, sentenceText, null, model);
+    }
+
+    /**
+     * 自动标注提示词路由到的模型，与 cachedResponse 一样按去除首尾空白后的文本计算
+     */
+    private String annotateModel(String text) {
+        return routedModel(AUTO_ANNOTATE_PROMPT_TEMPLATE.render(text.strip(), null), null);
+    }
+
+    /**
+     * 将需要标注的句子按相邻关系合并为片段，每个片段不超过 maxChars，
+     * 且片段路由到的模型与其中每句单独路由的模型相同，使保存的句子键与下次查询的键一致；
+     * 单句超过 maxChars 时在句内继续切分，这些片段共同覆盖该句，结果仍以整句的键保存
+     */
+    private List<IncrementalPiece> incrementalPieces(String text, List<TextChunker.Chunk> sentences, List<String> models,
+                                                     List<Integer> missing, int maxChars) {
+        List<IncrementalPiece> pieces = new ArrayList<>();
+        int start = -1;
+        int end = -1;
+        int previous = -2;
+        List<Integer> current = new ArrayList<>();
+        for (int index : missing) {
+            TextChunker.Chunk sentence = sentences.get(index);
+            if (sentence.end() - sentence.start() > maxChars) {
+                if (!current.isEmpty()) {
+                    pieces.add(new IncrementalPiece(start, end, current));
+                    current = new ArrayList<>();
+                }
+                for (TextChunker.Chunk part : TextChunker.split(sentence.text(text), maxChars)) {
+                    pieces.add(new IncrementalPiece(sentence.start() + part.start(), sentence.start() + part.end(), List.of(index)));
+                }
+                previous = -2;
+                continue;
+            }
+            if (!current.isEmpty() && (index != previous + 1 || sentence.end() - start > maxChars
+                    || !models.get(index).equals(models.get(current.get(0)))
+                    || !models.get(index).equals(annotateModel(text.substring(start, sentence.end()))))) {
+                pieces.add(new IncrementalPiece(start, end, current));
+                current = new ArrayList<>();
+            }
+            if (current.isEmpty()) {
+                start = sentence.start();
+            }
+            end = sentence.end();
+            current.add(index);
+            previous = index;
+        }
+        if (!current.isEmpty()) {
+            pieces.add(new IncrementalPiece(start, end, current));
+        }
+        return pieces;
+    }
+
+    /**
+     * 解析模型返回的标注 JSON，并在原文中定位每个实体的所有出现位置
+     * @param response 模型响应
+     * @param text 原文
+     * @return 去重并按起始位置排序的标注结果
+     * @throws IOException JSON 解析失败
+     */
+    private List<AutoAnnotationItem> parseAnnotations(String response, String text) throws IOException {
+        // 解析JSON
+        JsonNode annotationsNode = objectMapper.readTree(stripCodeFence(response));
+
+        // 验证并清理数据：同一实体文本可能带有多个标签
+        Map<String, Set<String>> labelsByText = new LinkedHashMap<>();
+        if (annotationsNode.isArray()) {
+            for (JsonNode node : annotationsNode) {
+                if (node.has("text") && node.has("label")) {
+                    String entityText = node.get("text").asText();
+                    String label = node.get("label").asText();
+
+                    // 验证标签有效性
+                    if (!entityText.isEmpty() && EntitySpanLocator.VALID_LABELS.contains(label)) {
+                        labelsByText.computeIfAbsent(entityText, key -> new LinkedHashSet<>()).add(label);
                     }
                 }
             }
+        }
+
+        // 一次扫描定位所有实体的所有出现位置，按 (start, end, label) 去重并排序
+        return EntitySpanLocator.locate(text, labelsByText);
+    }
+
+    /**
+     * 清理模型输出中可能的 markdown 代码块标记
+     * @param response 模型响应
+     * @return 代码块内的内容
+     */
+    private String stripCodeFence(String response) {
+        String cleaned = response.strip();
+        if (cleaned.startsWith("```")) {
+            cleaned = Pattern.compile("^```(?:json)?\\s*\n", Pattern.MULTILINE).matcher(cleaned).replaceFirst("");
+            cleaned = Pattern.compile("\n```\\s*$", Pattern.MULTILINE).matcher(cleaned).replaceFirst("");
+        }
+        return cleaned;
+    }
+
+    private <T> CompletableFuture<T> submit(AiCallContext context, Supplier<T> task) {
+        return submit(context, task, 0);
+    }
+
+    /**
+     * 交给调度器执行；当日 token 预算在任务需要调用上游时检查，缓存命中的请求不受预算限制
+     * @param context 调用上下文
+     * @param task 任务
+     * @param deadlineMs 截止时间（毫秒），从任务开始执行时计算，0 表示不限
+     * @param <T> 结果类型
+     * @return 异步结果；超出预算时以 AiBudgetExceededException 失败，服务繁忙时以 AiServiceBusyException 失败，
+     * 超过截止时间时以 TimeoutException 失败
+     */
+    private <T> CompletableFuture<T> submit(AiCallContext context, Supplier<T> task, int deadlineMs) {
+        return scheduler.submit(context, task, deadlineMs);
+    }
+
+    @Override
+    public CompletableFuture<AiResponse> analyzeTextAsync(String text, String model, boolean allowApproximate, String caller) {
+        return submit(AiCallContext.interactive(caller), () -> analyzeText(text, model, allowApproximate), aiConfig.getAnalyzeDeadlineMs());
+    }
 
-            // 去重：如果有完全相同的标注（start, end, label都相同），只保留一个
-            List<AutoAnnotationItem> uniqueAnnotations = new ArrayList<>();
-            for (AutoAnnotationItem item : annotations) {
-                boolean isDuplicate = false;
-                for (AutoAnnotationItem uniqueItem : uniqueAnnotations) {
-                    if (item.getStart().equals(uniqueItem.getStart()) && 
-                        item.getEnd().equals(uniqueItem.getEnd()) && 
-                        item.getLabel().equals(uniqueItem.getLabel())) {
-                        isDuplicate = true;
-                        break;
+    @Override
+    public CompletableFuture<String> qaTextAsync(String text, String question, String model, String caller) {
+        return submit(AiCallContext.interactive(caller), () -> qaText(text, question, model), aiConfig.getQaDeadlineMs());
+    }
+
+    @Override
+    public CompletableFuture<List<AutoAnnotationItem>> autoAnnotateAsync(String text, boolean incremental, String documentId, String caller) {
+        return autoAnnotateAsync(AiCallContext.bulk(caller).forDocument(null, documentId), text, incremental, 0);
+    }
+
+    private CompletableFuture<List<AutoAnnotationItem>> autoAnnotateAsync(AiCallContext context, String text, boolean incremental,
+                                                                          int deadlineMs) {
+        return submit(context, () -> incremental ? autoAnnotateIncremental(text) : autoAnnotate(text), deadlineMs);
+    }
+
+    @Override
+    public CompletableFuture<AutoAnnotationResponse> autoAnnotateWithDeadlineAsync(String text, boolean incremental, String projectId,
+                                                                                  String documentId, String caller) {
+        // 标注界面等待结果，按交互式优先级调度（可被对冲）；截止时间从开始执行时计算，
+        // 超时只让返回的 future 失败，调度器中的模型调用继续执行并写入缓存
+        CompletableFuture<List<AutoAnnotationItem>> scheduled = autoAnnotateAsync(
+                AiCallContext.interactive(caller).forDocument(projectId, documentId), text, incremental,
+                aiConfig.getAutoAnnotateDeadlineMs());
+        CompletableFuture<AutoAnnotationResponse> result = scheduled
+                .thenApply(annotations -> annotationResponse(annotations, AutoAnnotationResponse.SOURCE_MODEL))
+                .exceptionallyAsync(ex -> {
+                    if (!modelUnavailable(ex)) {
+                        throw ex instanceof CompletionException completion ? completion : new CompletionException(ex);
                     }
+                    deadlineFallbacks.incrementAndGet();
+                    return annotationResponse(dictionaryAnnotator.annotate(projectId, documentId, text),
+                            AutoAnnotationResponse.SOURCE_DICTIONARY);
+                });
+        // 调用方取消返回的 future 时（如请求超时），仍在排队的模型调用随之取消
+        result.whenComplete((response, ex) -> {
+            if (result.isCancelled()) {
+                scheduled.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 判断异常是否表示模型暂时无法给出结果：超过截止时间、调度队列已满或上游熔断
+     */
+    private static boolean modelUnavailable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof AiServiceBusyException
+                    || cause instanceof AiUpstreamUnavailableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static AutoAnnotationResponse annotationResponse(List<AutoAnnotationItem> annotations, String source) {
+        AutoAnnotationResponse response = new AutoAnnotationResponse();
+        response.setAnnotations(annotations);
+        response.setSource(source);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<List<AutoAnnotationItem>> prefetchAutoAnnotateAsync(String text, String documentId, String caller) {
+        return submit(AiCallContext.prefetch(caller).forDocument(null, documentId), () -> autoAnnotateIncremental(text));
+    }
+
+    @Override
+    public CompletableFuture<AiProjectQaResponse> qaProjectAsync(String projectId, String question, String model, String caller) {
+        return submit(AiCallContext.interactive(caller).forDocument(projectId, null), () -> qaProject(projectId, question, model),
+                aiConfig.getQaDeadlineMs());
+    }
+
+    /**
+     * 项目范围问答：检索项目文档中与问题相关的段落，标注出处后发送给模型
+     * @param projectId 项目ID
+     * @param question 问题
+     * @param model 模型名称（可选）
+     * @return 回答及所依据的段落
+     */
+    private AiProjectQaResponse qaProject(String projectId, String question, String model) {
+        List<RetrievedPassage> passages = passageIndexService.searchProject(projectId, question, aiConfig.getQaContextMaxChars());
+        if (passages.isEmpty()) {
+            throw new IllegalArgumentException("未在项目文档中检索到与问题相关的段落");
+        }
+
+        StringBuilder context = new StringBuilder();
+        for (int i = 0; i < passages.size(); i++) {
+            RetrievedPassage passage = passages.get(i);
+            context.append('[').append(i + 1).append("]《").append(passage.getDocumentName()).append("》\n")
+                    .append(passage.getText().strip()).append("\n\n");
+        }
+
+        AiProjectQaResponse response = new AiProjectQaResponse();
+        try {
+            response.setResult(cachedResponse(OPERATION_PROJECT_QA, PROJECT_QA_PROMPT_TEMPLATE, context.toString(), question, model));
+        } catch (IOException e) {
+            throw new RuntimeException("生成回复时出错: " + e.getMessage(), e);
+        }
+        response.setPassages(passages);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<String> streamAnalyzeText(String text, String model, String caller, Consumer<String> onToken) {
+        return submit(AiCallContext.interactive(caller), () -> {
+            try {
+                return cachedStreamingResponse(OPERATION_ANALYZE, ANALYZE_PROMPT_TEMPLATE, text, null, model, onToken);
+            } catch (IOException e) {
+                throw new RuntimeException("生成回复时出错: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> streamQaText(String text, String question, String model, String caller, Consumer<String> onToken) {
+        return submit(AiCallContext.interactive(caller), () -> {
+            try {
+                return cachedStreamingResponse(OPERATION_QA, QA_PROMPT_TEMPLATE, qaContext(text, question), question, model, onToken);
+            } catch (IOException e) {
+                throw new RuntimeException("生成回复时出错: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<AutoAnnotationItem>> streamAutoAnnotate(String text, boolean incremental, String documentId, String caller,
+                                                                          Consumer<AutoAnnotationItem> onAnnotation) {
+        // 分块并行时多个线程会同时回调，串行化后再交给调用方
+        Consumer<AutoAnnotationItem> serialized = item -> {
+            synchronized (onAnnotation) {
+                onAnnotation.accept(item);
+            }
+        };
+        // 与 autoAnnotateWithDeadlineAsync 同为标注界面等待的调用，按交互式优先级调度，不排在后台任务之后
+        return submit(AiCallContext.interactive(caller).forDocument(null, documentId), () -> {
+            if (incremental) {
+                return annotateIncremental(text, serialized);
+            }
+            int maxChars = aiConfig.getEffectiveChunkMaxChars();
+            if (text.length() <= maxChars) {
+                return streamAnnotateSegment(text, 0, serialized);
+            }
+
+            List<CompletableFuture<List<AutoAnnotationItem>>> futures = new ArrayList<>();
+            for (TextChunker.Chunk chunk : TextChunker.split(text, maxChars)) {
+                String chunkText = chunk.text(text);
+                if (!chunkText.isBlank()) {
+                    futures.add(scheduler.submitChunk(() -> streamAnnotateSegment(chunkText, chunk.start(), serialized)));
+                }
+            }
+            List<AutoAnnotationItem> merged = new ArrayList<>();
+            try {
+                for (CompletableFuture<List<AutoAnnotationItem>> future : futures) {
+                    merged.addAll(future.join());
                 }
-                if (!isDuplicate) {
-                    uniqueAnnotations.add(item);
+            } catch (CompletionException e) {
+                futures.forEach(future -> future.cancel(false));
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
                 }
+                throw new RuntimeException("自动标注时出错: " + e.getCause().getMessage(), e.getCause());
             }
+            return merged;
+        });
+    }
 
-            // 按start位置排序
-            uniqueAnnotations.sort((a1, a2) -> a1.getStart().compareTo(a2.getStart()));
+    /**
+     * 流式标注一段文本：边接收模型输出边解析，每个完整的实体对象立即定位并回调
+     * 与同步标注共用缓存键，缓存命中时一次性解析完整响应
+     * @param segment 文本片段
+     * @param offset 片段在全文中的起始位置
+     * @param onAnnotation 标注结果回调（位置已映射为全文位置）
+     * @return 按起始位置排序的标注结果
+     */
+    private List<AutoAnnotationItem> streamAnnotateSegment(String segment, int offset, Consumer<AutoAnnotationItem> onAnnotation) {
+        Set<Long> emittedKeys = new HashSet<>();
+        List<AutoAnnotationItem> items = new ArrayList<>();
+        Consumer<AutoAnnotationItem> emit = item -> {
+            if (emittedKeys.add(EntitySpanLocator.spanKey(item.getStart(), item.getEnd(), item.getLabel()))) {
+                item.setStart(item.getStart() + offset);
+                item.setEnd(item.getEnd() + offset);
+                items.add(item);
+                onAnnotation.accept(item);
+            }
+        };
 
-            return uniqueAnnotations;
+        StreamingAnnotationParser parser = new StreamingAnnotationParser((entityText, label) -> {
+            if (!entityText.isEmpty() && EntitySpanLocator.VALID_LABELS.contains(label)) {
+                EntitySpanLocator.locate(segment, entityText, label).forEach(emit);
+            }
+        });
+
+        try {
+            String response = cachedStreamingResponse(OPERATION_AUTO_ANNOTATE, AUTO_ANNOTATE_PROMPT_TEMPLATE, segment, null, null, parser::feed);
+            if (!parser.isFinished()) {
+                // 输出不是完整的 JSON 数组（格式错误或被截断），对完整响应兜底解析，只补发尚未发送的部分
+                try {
+                    parseAnnotations(response, segment).forEach(emit);
+                } catch (IOException e) {
+                    // 输出被截断时保留已解析出的完整对象
+                    if (items.isEmpty()) {
+                        throw e;
+                    }
+                }
+            }
         } catch (IOException e) {
             throw new RuntimeException("自动标注时出错: " + e.getMessage(), e);
         }
+
+        items.sort(EntitySpanLocator.SPAN_ORDER);
+        return items;
+    }
+
+    @Override
+    public CompletableFuture<List<AiBatchItemResult>> batchAsync(List<AiBatchItem> items, String model, String caller,
+                                                                 Consumer<AiBatchItemResult> onResult) {
+        if (items.size() > aiConfig.getBatchMaxItems()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("单次批量请求最多 " + aiConfig.getBatchMaxItems() + " 个条目"));
+        }
+        // 各条目在分块线程池中并行完成，串行化回调后再交给调用方
+        Consumer<AiBatchItemResult> serialized = result -> {
+            synchronized (onResult) {
+                onResult.accept(result);
+            }
+        };
+        // 整个批次只占用一个批量类名额，条目在分块线程池中执行，避免单个批次占满等待队列
+        return submit(AiCallContext.bulk(caller), () -> runBatch(items, model, serialized));
+    }
+
+    /**
+     * 执行批量请求：同一原文的问题按组合并，分析条目和问题组各自并行执行
+     * @param items 批量条目
+     * @param model 模型名称（可选）
+     * @param onResult 条目结果回调
+     * @return 按请求顺序排列的全部条目结果
+     */
+    private List<AiBatchItemResult> runBatch(List<AiBatchItem> items, String model, Consumer<AiBatchItemResult> onResult) {
+        AiBatchItemResult[] results = new AiBatchItemResult[items.size()];
+        Consumer<AiBatchItemResult> complete = result -> {
+            results[result.getIndex()] = result;
+            onResult.accept(result);
+        };
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Map<String, List<Integer>> questionsByText = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            AiBatchItem item = items.get(i);
+            String error = validateBatchItem(item);
+            if (error != null) {
+                complete.accept(batchResult(i, item, null, error));
+            } else if (BATCH_TYPE_QA.equals(item.getType())) {
+                questionsByText.computeIfAbsent(item.getText().strip(), key -> new ArrayList<>()).add(i);
+            } else {
+                int index = i;
+                futures.add(scheduler.submitChunk(() -> {
+                    runBatchItem(index, item, model, complete);
+                    return null;
+                }));
+            }
+        }
+
+        int packSize = Math.max(1, aiConfig.getBatchQuestionsPerPrompt());
+        for (Map.Entry<String, List<Integer>> group : questionsByText.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            for (int from = 0; from < indexes.size(); from += packSize) {
+                List<Integer> pack = indexes.subList(from, Math.min(indexes.size(), from + packSize));
+                futures.add(scheduler.submitChunk(() -> {
+                    runQuestionPack(group.getKey(), pack, items, model, complete);
+                    return null;
+                }));
+            }
+        }
+
+        // 条目失败已记录为条目错误，这里的异常只来自回调（如客户端断开），此时中止整个批次
+        try {
+            futures.forEach(CompletableFuture::join);
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 校验批量条目
+     * @param item 条目
+     * @return 错误信息，合法时返回 null
+     */
+    private String validateBatchItem(AiBatchItem item) {
+        if (item == null) {
+            return "条目不能为空";
+        }
+        if (!BATCH_TYPE_ANALYZE.equals(item.getType()) && !BATCH_TYPE_QA.equals(item.getType())) {
+            return "不支持的条目类型: " + item.getType();
+        }
+        if (item.getText() == null || item.getText().trim().isEmpty()) {
+            return "请提供原文";
+        }
+        if (BATCH_TYPE_QA.equals(item.getType()) && (item.getQuestion() == null || item.getQuestion().trim().isEmpty())) {
+            return "请提供问题";
+        }
+        return null;
+    }
+
+    /**
+     * 单独执行一个批量条目，失败时记录为条目错误
+     */
+    private void runBatchItem(int index, AiBatchItem item, String model, Consumer<AiBatchItemResult> complete) {
+        AiBatchItemResult result;
+        try {
+            String response = BATCH_TYPE_QA.equals(item.getType())
+                    ? qaText(item.getText(), item.getQuestion(), model)
+                    : analyzeText(item.getText(), model);
+            result = batchResult(index, item, response, null);
+        } catch (RuntimeException e) {
+            result = batchResult(index, item, null, e.getMessage());
+        }
+        complete.accept(result);
+    }
+
+    /**
+     * 执行同一原文的一组问题：已缓存的直接返回，其余合并为一次调用；
+     * 合并调用失败或缺少某个回答时，对缺失的问题逐个单独调用
+     * @param text 原文（已去除首尾空白）
+     * @param pack 问题条目在请求列表中的位置
+     * @param items 批量条目
+     * @param model 模型名称（可选）
+     * @param complete 条目结果回调
+     */
+    private void runQuestionPack(String text, List<Integer> pack, List<AiBatchItem> items, String model,
+                                 Consumer<AiBatchItemResult> complete) {
+        if (text.length() > aiConfig.getQaContextMaxChars()) {
+            // 长原文按问题分别检索段落，不合并
+            pack.forEach(index -> runBatchItem(index, items.get(index), model, complete));
+            return;
+        }
+
+        List<Integer> misses = new ArrayList<>();
+        for (int index : pack) {
+            String question = items.get(index).getQuestion().strip();
+            Optional<String> cached = responseCache.get(qaCacheKey(text, question, model));
+            if (cached.isPresent()) {
+                complete.accept(batchResult(index, items.get(index), cached.get(), null));
+            } else {
+                misses.add(index);
+            }
+        }
+
+        Map<Integer, String> answers = misses.size() > 1
+                ? packedAnswers(text, misses.stream().map(index -> items.get(index).getQuestion().strip()).toList(), model)
+                : Map.of();
+        for (int i = 0; i < misses.size(); i++) {
+            int index = misses.get(i);
+            String answer = answers.get(i + 1);
+            if (answer != null) {
+                complete.accept(batchResult(index, items.get(index), answer, null));
+            } else {
+                runBatchItem(index, items.get(index), model, complete);
+            }
+        }
+    }
+
+    /**
+     * 将同一原文的多个问题合并为一次调用，原文只发送一次
+     * 每个回答同时写入单问题缓存，之后单独提问可直接命中
+     * @param text 原文
+     * @param questions 问题列表
+     * @param model 模型名称
+     * @return 问题序号（从 1 开始）到回答的映射；调用或解析失败时返回空映射
+     */
+    private Map<Integer, String> packedAnswers(String text, List<String> questions, String model) {
+        StringBuilder numbered = new StringBuilder();
+        for (int i = 0; i < questions.size(); i++) {
+            numbered.append(i + 1).append(". ").append(questions.get(i)).append('\n');
+        }
+
+        Map<Integer, String> answers = new HashMap<>();
+        try {
+            String response = cachedResponse(OPERATION_QA_BATCH, QA_BATCH_PROMPT_TEMPLATE, text, numbered.toString(), model);
+            JsonNode answersNode = objectMapper.readTree(stripCodeFence(response));
+            for (JsonNode node : answersNode) {
+                int id = node.path("id").asInt(-1);
+                String answer = node.path("answer").asText("").strip();
+                if (id >= 1 && id <= questions.size() && !answer.isEmpty()) {
+                    answers.put(id, answer);
+                    String question = questions.get(id - 1);
+                    String questionModel = routedModel(QA_PROMPT_TEMPLATE.render(text, question), model);
+                    responseCache.put(responseCache.key(QA_PROMPT_TEMPLATE, text, question, questionModel), OPERATION_QA, questionModel, answer);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 合并调用失败或返回格式异常，由调用方逐个单独提问
+            return Map.of();
+        }
+        return answers;
+    }
+
+    /**
+     * 单个问题的缓存键，与 qaText 对同一原文和问题计算的键相同
+     */
+    private String qaCacheKey(String text, String question, String model) {
+        return responseCache.key(QA_PROMPT_TEMPLATE, text, question, routedModel(QA_PROMPT_TEMPLATE.render(text, question), model));
+    }
+
+    private AiBatchItemResult batchResult(int index, AiBatchItem item, String response, String error) {
+        AiBatchItemResult result = new AiBatchItemResult();
+        result.setIndex(index);
+        if (item != null) {
+            result.setId(item.getId());
+            result.setType(item.getType());
+        }
+        result.setResult(response);
+        result.setError(error);
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("scheduler", scheduler.getStats());
+        stats.put("cache", responseCache.getStats());
+        stats.put("nearDuplicate", nearDuplicateCache.getStats());
+        stats.put("coalescing", requestCoalescer.getStats());
+        stats.put("transport", transport.getStats());
+        stats.put("passages", passageIndexService.getStats());
+        stats.put("sentences", sentenceStore.getStats());
+        Map<String, Object> fallback = new LinkedHashMap<>();
+        fallback.put("autoAnnotateDeadlineMs", aiConfig.getAutoAnnotateDeadlineMs());
+        fallback.put("dictionaryFallbacks", deadlineFallbacks.get());
+        fallback.put("dictionary", dictionaryAnnotator.getStats());
+        stats.put("fallback", fallback);
+        stats.put("usage", usageLedger.getStats());
+        return stats;
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        return metrics.snapshot();
     }
 
     @Override
     public String healthCheck() {
         // 健康检查逻辑
-        if (aiConfig.getDeepSeekApiKey() == null || aiConfig.getDeepSeekApiKey().isEmpty()) {
+        List<AiEndpoint> endpoints = endpointRouter.getEndpoints();
+        if (endpoints.stream().allMatch(endpoint -> endpoint.getApiKey() == null || endpoint.getApiKey().isEmpty())) {
             return "未配置 DEEPSEEK_API_KEY";
         }
         
         // 简单验证配置有效性
-        return String.format("配置正常，模型: %s, API URL: %s", 
-                aiConfig.getDeepSeekModel(), 
-                aiConfig.getDeepSeekApiUrl());
+        Map<String, Object> schedulerStats = scheduler.getStats();
+        AiCircuitBreaker.State circuitState = transport.getCircuitState();
+        if (circuitState == AiCircuitBreaker.State.OPEN) {
+            throw new AiUpstreamUnavailableException("上游连续失败，熔断器已打开");
+        }
+        return String.format("配置正常，模型: %s, API URL: %s, 熔断器: %s, 进行中: %s/%s, 排队: %s",
+                endpoints.stream().map(AiEndpoint::getModel).distinct().collect(Collectors.joining(", ")),
+                endpoints.stream().map(AiEndpoint::getUrl).distinct().collect(Collectors.joining(", ")),
+                circuitState,
+                schedulerStats.get("active"),
+                schedulerStats.get("maxConcurrent"),
+                schedulerStats.get("queued"));
     }
 }
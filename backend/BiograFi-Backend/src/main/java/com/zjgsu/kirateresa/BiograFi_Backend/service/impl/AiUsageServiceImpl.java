@@ -0,0 +1,91 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AiUsageSummary;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AiUsageRecordRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AiUsageService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.ai.AiUsageLedger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI 用量查询服务实现类
+ */
+@Service
+public class AiUsageServiceImpl implements AiUsageService {
+
+    // 单次查询的最大天数
+    private static final int MAX_RANGE_DAYS = 366;
+
+    @Autowired
+    private AiUsageRecordRepository usageRecordRepository;
+
+    @Autowired
+    private AiUsageLedger usageLedger;
+
+    @Override
+    public List<AiUsageSummary> getDailyUsage(String groupBy, Integer userId, String projectId, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(6);
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("起始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("单次最多查询 " + MAX_RANGE_DAYS + " 天的用量");
+        }
+
+        boolean byProject;
+        if (groupBy == null || GROUP_BY_USER.equals(groupBy)) {
+            byProject = false;
+        } else if (GROUP_BY_PROJECT.equals(groupBy)) {
+            byProject = true;
+        } else {
+            throw new IllegalArgumentException("不支持的汇总维度: " + groupBy + "，可选 user 或 project");
+        }
+
+        List<Object[]> rows = byProject
+                ? usageRecordRepository.sumDailyByProject(start, end, projectId)
+                : usageRecordRepository.sumDailyByUser(start, end, userId);
+        List<AiUsageSummary> summaries = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            AiUsageSummary summary = new AiUsageSummary();
+            summary.setDate((LocalDate) row[0]);
+            if (byProject) {
+                summary.setProjectId((String) row[1]);
+            } else {
+                summary.setUserId(((Number) row[1]).intValue());
+            }
+            long calls = number(row[2]);
+            long prompt = number(row[4]);
+            long completion = number(row[5]);
+            long duration = number(row[7]);
+            summary.setCalls(calls);
+            summary.setFailedCalls(number(row[3]));
+            summary.setPromptTokens(prompt);
+            summary.setCompletionTokens(completion);
+            summary.setCacheHitTokens(number(row[6]));
+            summary.setTotalTokens(prompt + completion);
+            summary.setTotalDurationMs(duration);
+            summary.setAvgDurationMs(calls == 0 ? 0.0 : (double) duration / calls);
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    @Override
+    public Map<String, Object> getBudgetStatus(Integer userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("用户ID不能为空");
+        }
+        return usageLedger.getBudgetStatus("user:" + userId);
+    }
+
+    private static long number(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+}
@@ -0,0 +1,472 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AnnotationJobRequest;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.event.EntityAnnotationsChangedEvent;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiServiceBusyException;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AnnotationJob;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AnnotationJobItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.Document;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.EntityAnnotation;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AnnotationJobItemRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AnnotationJobRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.EntityAnnotationRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.ProjectRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AiService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AnnotationJobService;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.EntitySpanLocator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 后台自动标注任务服务实现类
+ * 任务与各文档的处理状态持久化在数据库中；每篇文档的标注结果与其完成状态在同一事务中写入，
+ * 因此服务重启后从未完成的文档继续即可，不会重复写入标注
+ */
+@Slf4j
+@Service
+public class AnnotationJobServiceImpl implements AnnotationJobService {
+
+    private static final List<String> ACTIVE_STATUSES =
+            List.of(AnnotationJob.STATUS_PENDING, AnnotationJob.STATUS_RUNNING);
+    private static final List<String> FINISHED_STATUSES =
+            List.of(AnnotationJob.STATUS_COMPLETED, AnnotationJob.STATUS_FAILED, AnnotationJob.STATUS_CANCELLED);
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private AnnotationJobRepository jobRepository;
+
+    @Autowired
+    private AnnotationJobItemRepository itemRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private EntityAnnotationRepository annotationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 已提交到运行线程池（排队或运行中）的任务
+    private final Set<String> scheduledJobs = ConcurrentHashMap.newKeySet();
+    private final Set<String> cancelRequested = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, List<Consumer<AnnotationJob>>> listeners = new ConcurrentHashMap<>();
+
+    private ExecutorService runner;
+
+    // 写入文档结果的线程池：调度器在 AI 工作线程上完成 Future，写库不能占用其上游并发名额
+    private ExecutorService writer;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        runner = Executors.newFixedThreadPool(Math.max(1, aiConfig.getJobMaxRunning()), runnable -> {
+            Thread thread = new Thread(runnable, "annotation-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger writerCount = new AtomicInteger();
+        writer = Executors.newFixedThreadPool(Math.max(1, aiConfig.getJobMaxRunning()), runnable -> {
+            Thread thread = new Thread(runnable, "annotation-job-writer-" + writerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+        writer.shutdownNow();
+    }
+
+    /**
+     * 应用启动后继续上次未完成的任务，中断时正在标注的文档重新处理
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<AnnotationJob> jobs = jobRepository.findByStatusInOrderByCreatedAtAsc(ACTIVE_STATUSES);
+        for (AnnotationJob job : jobs) {
+            transactionTemplate.executeWithoutResult(status -> itemRepository.updateStatus(
+                    job.getId(), AnnotationJobItem.STATUS_RUNNING, AnnotationJobItem.STATUS_PENDING));
+            schedule(job.getId());
+        }
+        if (!jobs.isEmpty()) {
+            log.info("继续 {} 个未完成的标注任务", jobs.size());
+        }
+    }
+
+    @Override
+    public AnnotationJob createJob(AnnotationJobRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("请求不能为空");
+        }
+        boolean hasDocument = request.getDocumentId() != null && !request.getDocumentId().isEmpty();
+        boolean hasProject = request.getProjectId() != null && !request.getProjectId().isEmpty();
+        if (hasDocument == hasProject) {
+            throw new IllegalArgumentException("documentId 与 projectId 必须且只能提供一个");
+        }
+
+        String projectId;
+        List<String> documentIds;
+        if (hasDocument) {
+            Document document = documentRepository.findById(request.getDocumentId())
+                    .orElseThrow(() -> new IllegalArgumentException("文档不存在"));
+            projectId = document.getProjectId();
+            documentIds = List.of(document.getId());
+        } else {
+            if (!projectRepository.existsById(request.getProjectId())) {
+                throw new IllegalArgumentException("项目不存在");
+            }
+            projectId = request.getProjectId();
+            documentIds = documentRepository.findIdsByProjectId(projectId);
+            if (documentIds.isEmpty()) {
+                throw new IllegalArgumentException("项目中没有文档");
+            }
+        }
+
+        AnnotationJob job = new AnnotationJob();
+        job.setId(System.currentTimeMillis() + "" + UUID.randomUUID().toString().replace("-", "").substring(0, 9));
+        job.setUserId(request.getUserId());
+        job.setProjectId(projectId);
+        job.setDocumentId(hasDocument ? request.getDocumentId() : null);
+        job.setStatus(AnnotationJob.STATUS_PENDING);
+        job.setTotalDocuments(documentIds.size());
+        job.setCompletedDocuments(0);
+        job.setFailedDocuments(0);
+        job.setAnnotationCount(0);
+
+        List<AnnotationJobItem> items = new ArrayList<>(documentIds.size());
+        for (String documentId : documentIds) {
+            AnnotationJobItem item = new AnnotationJobItem();
+            item.setJobId(job.getId());
+            item.setDocumentId(documentId);
+            item.setStatus(AnnotationJobItem.STATUS_PENDING);
+            items.add(item);
+        }
+
+        AnnotationJob saved = transactionTemplate.execute(status -> {
+            AnnotationJob result = jobRepository.save(job);
+            itemRepository.saveAll(items);
+            return result;
+        });
+        schedule(saved.getId());
+        return saved;
+    }
+
+    @Override
+    public Optional<AnnotationJob> getJob(String jobId) {
+        return jobRepository.findById(jobId).map(job -> {
+            job.setItems(itemRepository.findByJobIdOrderByIdAsc(jobId));
+            return job;
+        });
+    }
+
+    @Override
+    public List<AnnotationJob> getJobsByUserId(Integer userId) {
+        return jobRepository.findByUserIdOrderByCreatedAtDesc(userId);
+    }
+
+    @Override
+    public AnnotationJob cancelJob(String jobId) {
+        AnnotationJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("任务不存在"));
+        if (job.isFinished()) {
+            return job;
+        }
+        cancelRequested.add(jobId);
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status ->
+                jobRepository.transition(jobId, ACTIVE_STATUSES, AnnotationJob.STATUS_CANCELLED, null, now, now));
+        publish(jobId);
+        return jobRepository.findById(jobId).orElse(job);
+    }
+
+    @Override
+    public AnnotationJob resumeJob(String jobId) {
+        AnnotationJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("任务不存在"));
+        if (!job.isFinished()) {
+            return job;
+        }
+        if (scheduledJobs.contains(jobId)) {
+            throw new IllegalStateException("任务正在停止，请稍后再试");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            int retried = itemRepository.updateStatus(jobId, AnnotationJobItem.STATUS_FAILED, AnnotationJobItem.STATUS_PENDING);
+            jobRepository.addProgress(jobId, 0, -retried, 0, now);
+            jobRepository.transition(jobId, FINISHED_STATUSES, AnnotationJob.STATUS_PENDING, null, null, now);
+        });
+        schedule(jobId);
+        publish(jobId);
+        return jobRepository.findById(jobId).orElse(job);
+    }
+
+    @Override
+    public Runnable subscribe(String jobId, Consumer<AnnotationJob> listener) {
+        List<Consumer<AnnotationJob>> subscribers = listeners.computeIfAbsent(jobId, key -> new CopyOnWriteArrayList<>());
+        subscribers.add(listener);
+        return () -> subscribers.remove(listener);
+    }
+
+    /**
+     * 将任务提交到运行线程池，已在排队或运行中的任务不重复提交
+     */
+    private void schedule(String jobId) {
+        if (!scheduledJobs.add(jobId)) {
+            return;
+        }
+        cancelRequested.remove(jobId);
+        runner.execute(() -> {
+            try {
+                runJob(jobId);
+            } catch (InterruptedException e) {
+                // 服务停止，任务保持运行状态，下次启动时继续
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("标注任务 {} 运行失败", jobId, e);
+                LocalDateTime now = LocalDateTime.now();
+                transactionTemplate.executeWithoutResult(status ->
+                        jobRepository.transition(jobId, ACTIVE_STATUSES, AnnotationJob.STATUS_FAILED, e.getMessage(), now, now));
+                publish(jobId);
+            } finally {
+                cancelRequested.remove(jobId);
+                scheduledJobs.remove(jobId);
+            }
+        });
+    }
+
+    /**
+     * 逐篇处理任务中未完成的文档，同时标注的文档数不超过 jobParallelism
+     */
+    private void runJob(String jobId) throws InterruptedException {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Integer started = transactionTemplate.execute(status -> jobRepository.transition(
+                jobId, ACTIVE_STATUSES, AnnotationJob.STATUS_RUNNING, null, null, startedAt));
+        if (started == null || started == 0) {
+            return;
+        }
+        AnnotationJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        publish(jobId);
+
+        String caller = job.getUserId() != null ? "user:" + job.getUserId() : "job:" + jobId;
+        int parallelism = Math.max(1, aiConfig.getJobParallelism());
+        Semaphore permits = new Semaphore(parallelism);
+        for (AnnotationJobItem item : itemRepository.findByJobIdAndStatusOrderByIdAsc(jobId, AnnotationJobItem.STATUS_PENDING)) {
+            permits.acquire();
+            if (cancelRequested.contains(jobId)) {
+                permits.release();
+                break;
+            }
+            processItem(item, caller).whenComplete((ignored, error) -> permits.release());
+        }
+        // 等待进行中的文档全部结束
+        permits.acquire(parallelism);
+
+        // 没有任何文档标注成功时任务记为失败；部分失败时任务完成，并在 error 中注明失败的文档数
+        AnnotationJob finished = jobRepository.findById(jobId).orElse(job);
+        int completed = finished.getCompletedDocuments() != null ? finished.getCompletedDocuments() : 0;
+        int failed = finished.getFailedDocuments() != null ? finished.getFailedDocuments() : 0;
+        String status = failed > 0 && completed == 0 ? AnnotationJob.STATUS_FAILED : AnnotationJob.STATUS_COMPLETED;
+        String error = failed == 0 ? null : failed + " 篇文档标注失败，可继续任务重试";
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(tx -> jobRepository.transition(
+                jobId, List.of(AnnotationJob.STATUS_RUNNING), status, error, now, now));
+        publish(jobId);
+    }
+
+    /**
+     * 标注一篇文档并写入结果，返回的 Future 在结果写入后完成，且不会以异常结束
+     */
+    private CompletableFuture<Void> processItem(AnnotationJobItem item, String caller) {
+        try {
+            Document document = documentRepository.findById(item.getDocumentId()).orElse(null);
+            if (document == null) {
+                completeItem(item, null, "文档不存在");
+                return CompletableFuture.completedFuture(null);
+            }
+            String content = document.getContent();
+            if (content == null || content.isBlank()) {
+                completeItem(item, List.of(), null);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            item.setStatus(AnnotationJobItem.STATUS_RUNNING);
+            item.setUpdatedAt(LocalDateTime.now());
+            itemRepository.save(item);
+
+            return annotate(item.getJobId(), item.getDocumentId(), content, caller).handleAsync((annotations, error) -> {
+                Throwable cause = unwrap(error);
+                try {
+                    if (cause instanceof CancellationException) {
+                        // 任务已取消，该文档留待继续时处理
+                        item.setStatus(AnnotationJobItem.STATUS_PENDING);
+                        itemRepository.save(item);
+                    } else if (cause != null) {
+                        completeItem(item, null, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                    } else {
+                        completeItem(item, annotations, null);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("标注任务 {} 写入文档 {} 的结果失败: {}", item.getJobId(), item.getDocumentId(), e.getMessage());
+                }
+                return null;
+            }, writer);
+        } catch (RuntimeException e) {
+            log.warn("标注任务 {} 处理文档 {} 失败: {}", item.getJobId(), item.getDocumentId(), e.getMessage());
+            try {
+                completeItem(item, null, e.getMessage());
+            } catch (RuntimeException ignored) {
+                // 数据库不可用，文档保持未完成状态，继续任务时重新处理
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * 以批量优先级调用增量自动标注，重新运行任务时只有修改过的句子会发送给模型；
+     * 调度队列已满时等待后重新提交，任务取消后不再提交
+     */
+    private CompletableFuture<List<AutoAnnotationItem>> annotate(String jobId, String documentId, String content, String caller) {
+        if (cancelRequested.contains(jobId)) {
+            return CompletableFuture.failedFuture(new CancellationException());
+        }
+        return aiService.autoAnnotateAsync(content, true, documentId, caller)
+                .handle((annotations, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(annotations);
+                    }
+                    Throwable cause = unwrap(error);
+                    if (cause instanceof AiServiceBusyException) {
+                        return CompletableFuture.runAsync(() -> { },
+                                        CompletableFuture.delayedExecutor(aiConfig.getJobRetryDelayMs(), TimeUnit.MILLISECONDS))
+                                .thenCompose(ignored -> annotate(jobId, documentId, content, caller));
+                    }
+                    return CompletableFuture.<List<AutoAnnotationItem>>failedFuture(cause);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * 在同一事务中写入文档的标注结果、文档完成状态和任务进度；与已有标注完全相同的结果不重复写入
+     */
+    private void completeItem(AnnotationJobItem item, List<AutoAnnotationItem> annotations, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            int count = 0;
+            if (error == null && !annotations.isEmpty()) {
+                Set<Long> existing = annotationRepository.findByDocumentIdOrderByStartIndexAsc(item.getDocumentId()).stream()
+                        .filter(annotation -> annotation.getStartIndex() != null && annotation.getEndIndex() != null)
+                        .map(annotation -> EntitySpanLocator.spanKey(annotation.getStartIndex(), annotation.getEndIndex(), annotation.getLabel()))
+                        .collect(Collectors.toSet());
+                List<EntityAnnotation> rows = new ArrayList<>();
+                for (AutoAnnotationItem annotation : annotations) {
+                    if (existing.add(EntitySpanLocator.spanKey(annotation.getStart(), annotation.getEnd(), annotation.getLabel()))) {
+                        EntityAnnotation row = new EntityAnnotation();
+                        row.setDocumentId(item.getDocumentId());
+                        row.setStartIndex(annotation.getStart());
+                        row.setEndIndex(annotation.getEnd());
+                        row.setLabel(annotation.getLabel());
+                        row.setTextContent(annotation.getText() != null ? annotation.getText() : "");
+                        row.setCreatedAt(now);
+                        rows.add(row);
+                    }
+                }
+                count = annotationRepository.batchInsert(rows);
+                if (count > 0) {
+                    eventPublisher.publishEvent(new EntityAnnotationsChangedEvent(item.getDocumentId(),
+                            rows.stream().map(EntityAnnotation::getTextContent).toList(), false));
+                }
+            }
+
+            item.setStatus(error == null ? AnnotationJobItem.STATUS_COMPLETED : AnnotationJobItem.STATUS_FAILED);
+            item.setAnnotationCount(count);
+            item.setError(error);
+            item.setUpdatedAt(now);
+            itemRepository.save(item);
+            jobRepository.addProgress(item.getJobId(), error == null ? 1 : 0, error == null ? 0 : 1, count, now);
+        });
+        publish(item.getJobId());
+    }
+
+    /**
+     * 向订阅者推送任务的最新状态，任务结束后清除订阅
+     */
+    private void publish(String jobId) {
+        List<Consumer<AnnotationJob>> subscribers = listeners.get(jobId);
+        if (subscribers == null) {
+            return;
+        }
+        synchronized (subscribers) {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            AnnotationJob job = jobRepository.findById(jobId).orElse(null);
+            if (job == null) {
+                return;
+            }
+            subscribers.removeIf(listener -> {
+                try {
+                    listener.accept(job);
+                    return false;
+                } catch (RuntimeException e) {
+                    return true;
+                }
+            });
+            if (job.isFinished()) {
+                listeners.remove(jobId, subscribers);
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,346 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.ProjectAiSettingsRequest;
+import com.zjgsu.kirateresa.BiograFi_Backend.event.DocumentContentChangedEvent;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiServiceBusyException;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiAnnotationSuggestion;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.Document;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.ProjectAiSettings;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AiAnnotationSuggestionRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.ProjectAiSettingsRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.ProjectRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AiService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.AnnotationPrefetchService;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.ContentHash;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预取标注服务实现类
+ * 待预取的文档按提交顺序排队（同一文档只排一次，执行时读取最新内容），同时进行的预取数受限；
+ * 预取调用使用调度器的预取类别，只在没有其他 AI 任务且交互式负载较低时执行。
+ * 标注建议按文档保存并记录内容摘要和路由到的模型，文档内容或端点档位变化后旧建议自动失效
+ */
+@Slf4j
+@Service
+public class AnnotationPrefetchServiceImpl implements AnnotationPrefetchService {
+
+    // 预取调用在调度器中共用的调用方标识
+    private static final String CALLER = "prefetch";
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private ProjectAiSettingsRepository settingsRepository;
+
+    @Autowired
+    private AiAnnotationSuggestionRepository suggestionRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Object lock = new Object();
+    private final LinkedHashSet<String> pending = new LinkedHashSet<>();
+    private int inFlight;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // 事件处理和预取准备（读取文档、比对摘要）在该线程中进行，不阻塞文档保存请求
+    private ExecutorService worker;
+
+    @PostConstruct
+    public void init() {
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "annotation-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    @Override
+    public ProjectAiSettings getSettings(String projectId) {
+        if (!projectRepository.existsById(projectId)) {
+            throw new IllegalArgumentException("项目不存在");
+        }
+        return settingsRepository.findById(projectId).orElseGet(() -> defaultSettings(projectId));
+    }
+
+    @Override
+    public ProjectAiSettings updateSettings(String projectId, ProjectAiSettingsRequest request) {
+        ProjectAiSettings settings = getSettings(projectId);
+        if (request.getPrefetchEnabled() != null) {
+            settings.setPrefetchEnabled(request.getPrefetchEnabled());
+        }
+        return settingsRepository.save(settings);
+    }
+
+    @Override
+    public Optional<List<AutoAnnotationItem>> findSuggestion(String documentId, String text) {
+        if (documentId == null || documentId.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            Optional<AiAnnotationSuggestion> suggestion = suggestionRepository.findById(documentId)
+                    .filter(entry -> entry.getContentHash().equals(ContentHash.sha256Hex(text))
+                            && aiService.autoAnnotateModel(text).equals(entry.getModel()));
+            if (suggestion.isEmpty()) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            List<AutoAnnotationItem> items = decode(suggestion.get().getAnnotations(), text);
+            hits.incrementAndGet();
+            return Optional.of(items);
+        } catch (RuntimeException | IOException e) {
+            log.warn("读取文档 {} 的预取标注建议失败: {}", documentId, e.getMessage());
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", aiConfig.getPrefetchEnabled());
+        stats.put("maxConcurrent", aiConfig.getPrefetchMaxConcurrent());
+        synchronized (lock) {
+            stats.put("pending", pending.size());
+            stats.put("inFlight", inFlight);
+        }
+        stats.put("pendingCapacity", aiConfig.getPrefetchMaxPending());
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("completed", completed.get());
+        stats.put("skipped", skipped.get());
+        stats.put("failed", failed.get());
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        stats.put("suggestionHits", hitCount);
+        stats.put("suggestionMisses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    /**
+     * 文档内容变化后在事务提交时安排预取；文档删除时清除其标注建议
+     * @param event 文档内容变化事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentContentChanged(DocumentContentChangedEvent event) {
+        worker.execute(() -> {
+            try {
+                if (event.deleted()) {
+                    synchronized (lock) {
+                        pending.remove(event.documentId());
+                    }
+                    suggestionRepository.deleteById(event.documentId());
+                    return;
+                }
+                if (aiConfig.getPrefetchEnabled() && isPrefetchEnabled(event.projectId())) {
+                    enqueue(event.documentId());
+                }
+            } catch (RuntimeException e) {
+                log.warn("处理文档 {} 的预取标注失败", event.documentId(), e);
+            }
+        });
+    }
+
+    private boolean isPrefetchEnabled(String projectId) {
+        return projectId != null && settingsRepository.findById(projectId)
+                .map(settings -> Boolean.TRUE.equals(settings.getPrefetchEnabled()))
+                .orElse(false);
+    }
+
+    /**
+     * 将文档加入预取队列，已在队列中的文档不重复加入；队列已满时丢弃
+     */
+    private void enqueue(String documentId) {
+        synchronized (lock) {
+            if (pending.contains(documentId)) {
+                return;
+            }
+            if (pending.size() >= aiConfig.getPrefetchMaxPending()) {
+                dropped.incrementAndGet();
+                return;
+            }
+            pending.add(documentId);
+            enqueued.incrementAndGet();
+        }
+        pump();
+    }
+
+    /**
+     * 在预取并发未满时从队列中依次取出文档开始预取
+     */
+    private void pump() {
+        List<String> started = new ArrayList<>();
+        synchronized (lock) {
+            Iterator<String> iterator = pending.iterator();
+            while (inFlight < aiConfig.getPrefetchMaxConcurrent() && iterator.hasNext()) {
+                started.add(iterator.next());
+                iterator.remove();
+                inFlight++;
+            }
+        }
+        for (String documentId : started) {
+            worker.execute(() -> prefetch(documentId));
+        }
+    }
+
+    /**
+     * 预取一篇文档：内容为空、项目已关闭预取或已有相同内容的建议时跳过
+     */
+    private void prefetch(String documentId) {
+        String content;
+        String hash;
+        String model;
+        try {
+            Document document = documentRepository.findById(documentId).orElse(null);
+            if (document == null || document.getContent() == null || document.getContent().trim().isEmpty()
+                    || !isPrefetchEnabled(document.getProjectId())) {
+                skipped.incrementAndGet();
+                finish();
+                return;
+            }
+            content = document.getContent();
+            hash = ContentHash.sha256Hex(content);
+            model = aiService.autoAnnotateModel(content);
+            boolean upToDate = suggestionRepository.findById(documentId)
+                    .map(entry -> hash.equals(entry.getContentHash()) && model.equals(entry.getModel()))
+                    .orElse(false);
+            if (upToDate) {
+                skipped.incrementAndGet();
+                finish();
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.warn("读取待预取的文档 {} 失败: {}", documentId, e.getMessage());
+            failed.incrementAndGet();
+            finish();
+            return;
+        }
+
+        aiService.prefetchAutoAnnotateAsync(content, documentId, CALLER).whenComplete((annotations, error) -> {
+            if (error == null) {
+                save(documentId, hash, model, annotations);
+                finish();
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof AiServiceBusyException) {
+                // 调度队列已满，放回队列稍后重试；预取队列也已满时丢弃
+                synchronized (lock) {
+                    inFlight--;
+                    if (pending.size() >= aiConfig.getPrefetchMaxPending()) {
+                        dropped.incrementAndGet();
+                    } else {
+                        pending.add(documentId);
+                    }
+                }
+                CompletableFuture.runAsync(this::pump,
+                        CompletableFuture.delayedExecutor(aiConfig.getPrefetchRetryDelayMs(), TimeUnit.MILLISECONDS, worker));
+                return;
+            }
+            log.warn("预取文档 {} 的自动标注失败: {}", documentId, cause.getMessage());
+            failed.incrementAndGet();
+            finish();
+        });
+    }
+
+    private void save(String documentId, String hash, String model, List<AutoAnnotationItem> annotations) {
+        try {
+            AiAnnotationSuggestion suggestion = new AiAnnotationSuggestion();
+            suggestion.setDocumentId(documentId);
+            suggestion.setContentHash(hash);
+            suggestion.setModel(model);
+            suggestion.setAnnotations(encode(annotations));
+            suggestionRepository.save(suggestion);
+            completed.incrementAndGet();
+        } catch (RuntimeException | IOException e) {
+            log.warn("保存文档 {} 的预取标注建议失败: {}", documentId, e.getMessage());
+            failed.incrementAndGet();
+        }
+    }
+
+    private void finish() {
+        synchronized (lock) {
+            inFlight--;
+        }
+        pump();
+    }
+
+    private ProjectAiSettings defaultSettings(String projectId) {
+        ProjectAiSettings settings = new ProjectAiSettings();
+        settings.setProjectId(projectId);
+        settings.setPrefetchEnabled(false);
+        return settings;
+    }
+
+    private String encode(List<AutoAnnotationItem> items) throws IOException {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (AutoAnnotationItem item : items) {
+            array.addArray().add(item.getStart()).add(item.getEnd()).add(item.getLabel());
+        }
+        return objectMapper.writeValueAsString(array);
+    }
+
+    /**
+     * 还原标注建议，实体文本从当前文本中截取
+     */
+    private List<AutoAnnotationItem> decode(String json, String text) throws IOException {
+        List<AutoAnnotationItem> items = new ArrayList<>();
+        for (JsonNode node : objectMapper.readTree(json)) {
+            AutoAnnotationItem item = new AutoAnnotationItem();
+            item.setStart(node.get(0).asInt());
+            item.setEnd(node.get(1).asInt());
+            item.setLabel(node.get(2).asText());
+            item.setText(text.substring(item.getStart(), item.getEnd()));
+            items.add(item);
+        }
+        return items;
+    }
+}
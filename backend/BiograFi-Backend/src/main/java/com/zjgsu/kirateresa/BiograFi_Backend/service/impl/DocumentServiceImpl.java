@@ -1,16 +1,20 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
 
+import com.zjgsu.kirateresa.BiograFi_Backend.event.DocumentContentChangedEvent;
 import com.zjgsu.kirateresa.BiograFi_Backend.model.Document;
 import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
 import com.zjgsu.kirateresa.BiograFi_Backend.repository.EntityAnnotationRepository;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.DocumentCreateRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.DocumentUpdateRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.service.DocumentService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.SegmentService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,6 +30,12 @@ public class DocumentServiceImpl implements DocumentService {
     @Autowired
     private EntityAnnotationRepository entityAnnotationRepository;
 
+    @Autowired
+    private SegmentService segmentService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 根据用户ID获取文档列表
      * @param userId 用户ID
@@ -77,7 +87,11 @@ public class DocumentServiceImpl implements DocumentService {
         document.setContent(createRequest.getContent() != null ? createRequest.getContent() : "");
         document.setAuthor(createRequest.getAuthor() != null ? createRequest.getAuthor() : "");
 
-        return documentRepository.save(document);
+        Document saved = documentRepository.save(document);
+        if (!saved.getContent().isEmpty()) {
+            eventPublisher.publishEvent(new DocumentContentChangedEvent(saved.getId(), saved.getProjectId(), false));
+        }
+        return saved;
     }
 
     /**
@@ -104,6 +118,8 @@ public class DocumentServiceImpl implements DocumentService {
         if (updateRequest.getDescription() != null) {
             document.setDescription(updateRequest.getDescription());
         }
+        boolean contentChanged = updateRequest.getContent() != null
+                && !Objects.equals(updateRequest.getContent(), document.getContent());
         if (updateRequest.getContent() != null) {
             document.setContent(updateRequest.getContent());
         }
@@ -111,7 +127,14 @@ public class DocumentServiceImpl implements DocumentService {
             document.setAuthor(updateRequest.getAuthor());
         }
 
-        return documentRepository.save(document);
+        Document saved = documentRepository.save(document);
+        if (contentChanged) {
+            // 旧内容的分词结果随本事务一起删除
+            segmentService.invalidateDocument(saved.getId());
+            // 事务提交后由监听方增量更新依赖文档内容的索引
+            eventPublisher.publishEvent(new DocumentContentChangedEvent(saved.getId(), saved.getProjectId(), false));
+        }
+        return saved;
     }
 
     /**
@@ -130,8 +153,12 @@ public class DocumentServiceImpl implements DocumentService {
         // 删除文档的所有实体标注
         entityAnnotationRepository.deleteByDocumentId(documentId);
 
+        // 删除文档的分词结果
+        segmentService.invalidateDocument(documentId);
+
         // 删除文档
         documentRepository.deleteById(documentId);
+        eventPublisher.publishEvent(new DocumentContentChangedEvent(documentId, optionalDocument.get().getProjectId(), true));
     }
 
     /**
@@ -1,11 +1,13 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
 
+import com.zjgsu.kirateresa.BiograFi_Backend.event.EntityAnnotationsChangedEvent;
 import com.zjgsu.kirateresa.BiograFi_Backend.model.EntityAnnotation;
 import com.zjgsu.kirateresa.BiograFi_Backend.repository.EntityAnnotationRepository;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.AnnotationRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.BatchAnnotationRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.service.EntityAnnotationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +25,9 @@ public class EntityAnnotationServiceImpl implements EntityAnnotationService {
     @Autowired
     private EntityAnnotationRepository annotationRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 获取文档的实体标注列表
      * @param documentId 文档ID
@@ -66,7 +71,9 @@ public class EntityAnnotationServiceImpl implements EntityAnnotationService {
         annotation.setLabel(annotationRequest.getLabel());
         annotation.setTextContent(annotationRequest.getText() != null ? annotationRequest.getText() : "");
 
-        return annotationRepository.save(annotation);
+        EntityAnnotation saved = annotationRepository.save(annotation);
+        eventPublisher.publishEvent(new EntityAnnotationsChangedEvent(documentId, List.of(saved.getTextContent()), false));
+        return saved;
     }
 
     /**
@@ -100,8 +107,10 @@ public class EntityAnnotationServiceImpl implements EntityAnnotationService {
             return 0;
         }
 
-        List<EntityAnnotation> savedAnnotations = annotationRepository.saveAll(annotations);
-        return savedAnnotations.size();
+        int count = annotationRepository.batchInsert(annotations);
+        eventPublisher.publishEvent(new EntityAnnotationsChangedEvent(documentId,
+                annotations.stream().map(EntityAnnotation::getTextContent).toList(), false));
+        return count;
     }
 
     /**
@@ -121,6 +130,7 @@ public class EntityAnnotationServiceImpl implements EntityAnnotationService {
         }
         
         annotationRepository.delete(annotation);
+        eventPublisher.publishEvent(new EntityAnnotationsChangedEvent(documentId, List.of(), true));
     }
 
     /**
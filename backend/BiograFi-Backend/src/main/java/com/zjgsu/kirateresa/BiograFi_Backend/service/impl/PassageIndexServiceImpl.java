@@ -0,0 +1,441 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.RetrievedPassage;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentToken;
+import com.zjgsu.kirateresa.BiograFi_Backend.event.DocumentContentChangedEvent;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.Document;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.DocumentPassage;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentPassageRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.PassageIndexService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.SegmentService;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.Bm25Index;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.ContentHash;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.TextChunker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 段落检索服务实现类
+ * 项目索引由数据库中的段落分词结果构建，首次检索时加载并常驻内存（按 LRU 淘汰），
+ * 尚未建立段落的文档（如历史数据）在后台索引线程中补建，补建完成前检索只覆盖已建立段落的文档；
+ * 文档内容变化后在事务提交时增量更新该文档的段落；临时文本的索引按内容摘要缓存
+ */
+@Slf4j
+@Service
+public class PassageIndexServiceImpl implements PassageIndexService {
+
+    private static final int MAX_LOADED_PROJECTS = 64;
+    private static final int MAX_CACHED_TEXTS = 16;
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    @Autowired
+    private SegmentService segmentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentPassageRepository passageRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 项目索引缓存只在查找和放入时加锁；各项目的加载和更新使用各自的锁，检索不加锁
+    private final Map<String, ProjectIndex> projectIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ProjectIndex> eldest) {
+            return size() > MAX_LOADED_PROJECTS;
+        }
+    };
+
+    private final Map<String, TextIndex> textIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TextIndex> eldest) {
+            return size() > MAX_CACHED_TEXTS;
+        }
+    };
+
+    private ExecutorService indexer;
+
+    private final AtomicInteger pendingBackfills = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        indexer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "passage-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    /**
+     * 文档内容变化后在后台更新段落索引，不阻塞文档保存请求
+     * @param event 文档内容变化事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentContentChanged(DocumentContentChangedEvent event) {
+        indexer.execute(() -> {
+            try {
+                if (event.deleted()) {
+                    removeDocument(event.documentId());
+                } else {
+                    indexDocument(event.documentId());
+                }
+            } catch (RuntimeException e) {
+                log.warn("更新文档 {} 的段落索引失败", event.documentId(), e);
+            }
+        });
+    }
+
+    @Override
+    public List<RetrievedPassage> searchText(String text, String query, int maxChars) {
+        String hash = ContentHash.sha256Hex(text);
+        TextIndex index;
+        synchronized (textIndexes) {
+            index = textIndexes.get(hash);
+        }
+        if (index == null) {
+            index = buildTextIndex(text);
+            synchronized (textIndexes) {
+                textIndexes.put(hash, index);
+            }
+        }
+
+        List<RetrievedPassage> candidates = new ArrayList<>();
+        for (Bm25Index.Hit hit : index.bm25().search(terms(query), aiConfig.getQaTopK(), null)) {
+            TextChunker.Chunk chunk = index.chunks().get(hit.passageId());
+            candidates.add(passage(null, null, chunk.start(), chunk.end(), chunk.text(text), hit.score()));
+        }
+        if (candidates.isEmpty()) {
+            // 问题与原文没有共同词项，退回到原文开头
+            for (TextChunker.Chunk chunk : index.chunks()) {
+                candidates.add(passage(null, null, chunk.start(), chunk.end(), chunk.text(text), 0.0));
+            }
+        }
+
+        List<RetrievedPassage> selected = selectWithinBudget(candidates, maxChars);
+        selected.sort(Comparator.comparing(RetrievedPassage::getStart));
+        return selected;
+    }
+
+    @Override
+    public List<RetrievedPassage> searchProject(String projectId, String query, int maxChars) {
+        ProjectIndex index = projectIndex(projectId);
+
+        List<PassageRef> refs = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (Bm25Index.Hit hit : index.bm25.search(terms(query), aiConfig.getQaTopK(), null)) {
+            PassageRef ref = index.passages.get(hit.passageId());
+            if (ref != null) {
+                refs.add(ref);
+                scores.add(hit.score());
+            }
+        }
+        if (refs.isEmpty()) {
+            return List.of();
+        }
+
+        // 按需读取命中文档的当前内容
+        Map<String, Document> documents = documentRepository.findAllById(
+                refs.stream().map(PassageRef::documentId).distinct().toList()).stream()
+                .collect(Collectors.toMap(Document::getId, document -> document));
+        List<RetrievedPassage> candidates = new ArrayList<>();
+        for (int i = 0; i < refs.size(); i++) {
+            PassageRef ref = refs.get(i);
+            Document document = documents.get(ref.documentId());
+            String content = document != null && document.getContent() != null ? document.getContent() : "";
+            if (ref.end() > content.length()) {
+                // 文档内容已变化而索引尚未更新
+                continue;
+            }
+            candidates.add(passage(ref.documentId(), document.getName(), ref.start(), ref.end(),
+                    content.substring(ref.start(), ref.end()), scores.get(i)));
+        }
+
+        List<RetrievedPassage> selected = selectWithinBudget(candidates, maxChars);
+        selected.sort(Comparator.comparing(RetrievedPassage::getDocumentId).thenComparing(RetrievedPassage::getStart));
+        return selected;
+    }
+
+    @Override
+    public void indexDocument(String documentId) {
+        Optional<Document> document = documentRepository.findById(documentId);
+        if (document.isEmpty()) {
+            removeDocument(documentId);
+            return;
+        }
+
+        List<PassageRef> refs = savePassages(document.get());
+        for (Map.Entry<String, ProjectIndex> entry : loadedProjects().entrySet()) {
+            if (entry.getKey().equals(document.get().getProjectId())) {
+                entry.getValue().replaceDocument(documentId, refs);
+            } else {
+                entry.getValue().removeDocument(documentId);
+            }
+        }
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        transactionTemplate.executeWithoutResult(status -> passageRepository.deleteByDocumentId(documentId));
+        loadedProjects().values().forEach(index -> index.removeDocument(documentId));
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, ProjectIndex> loaded = loadedProjects();
+        stats.put("loadedProjects", loaded.size());
+        stats.put("indexedPassages", loaded.values().stream().mapToInt(index -> index.bm25.size()).sum());
+        stats.put("pendingBackfills", pendingBackfills.get());
+        synchronized (textIndexes) {
+            stats.put("cachedTexts", textIndexes.size());
+        }
+        return stats;
+    }
+
+    /**
+     * 获取项目索引，尚未加载时由首个请求加载，同一项目的并发请求等待加载完成，其他项目不受影响
+     * @param projectId 项目ID
+     * @return 项目索引
+     */
+    private ProjectIndex projectIndex(String projectId) {
+        ProjectIndex index;
+        synchronized (projectIndexes) {
+            index = projectIndexes.computeIfAbsent(projectId, key -> new ProjectIndex());
+        }
+        synchronized (index.loadLock) {
+            if (!index.loaded) {
+                loadProject(projectId, index);
+                index.loaded = true;
+            }
+        }
+        return index;
+    }
+
+    private Map<String, ProjectIndex> loadedProjects() {
+        synchronized (projectIndexes) {
+            return new LinkedHashMap<>(projectIndexes);
+        }
+    }
+
+    /**
+     * 从数据库加载已建立的段落，尚未建立段落的文档（如历史数据）交给后台索引线程补建
+     * 加载期间已由文档变化事件更新过的文档以事件结果为准
+     * @param projectId 项目ID
+     * @param index 项目索引
+     */
+    private void loadProject(String projectId, ProjectIndex index) {
+        Map<String, List<PassageRef>> refsByDocument = new HashMap<>();
+        for (DocumentPassage row : passageRepository.findByProjectId(projectId)) {
+            refsByDocument.computeIfAbsent(row.getDocumentId(), key -> new ArrayList<>()).add(toRef(row));
+        }
+        refsByDocument.forEach(index::addDocumentIfAbsent);
+
+        List<String> missing = documentRepository.findIdsByProjectId(projectId).stream()
+                .filter(documentId -> !refsByDocument.containsKey(documentId))
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        pendingBackfills.addAndGet(missing.size());
+        indexer.execute(() -> {
+            for (String documentId : missing) {
+                try {
+                    if (!index.contains(documentId)) {
+                        indexDocument(documentId);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("补建文档 {} 的段落索引失败", documentId, e);
+                } finally {
+                    pendingBackfills.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * 切分文档并保存段落，内容摘要未变的段落复用已保存的词项
+     * @param document 文档
+     * @return 段落引用
+     */
+    private List<PassageRef> savePassages(Document document) {
+        String content = document.getContent() != null ? document.getContent() : "";
+        Map<String, String> termsByHash = new HashMap<>();
+        for (DocumentPassage existing : passageRepository.findByDocumentIdOrderByPassageIndexAsc(document.getId())) {
+            termsByHash.putIfAbsent(existing.getContentHash(), existing.getTerms());
+        }
+
+        List<DocumentPassage> rows = new ArrayList<>();
+        for (TextChunker.Chunk chunk : TextChunker.split(content, aiConfig.getPassageMaxChars())) {
+            String passageText = chunk.text(content);
+            if (passageText.isBlank()) {
+                continue;
+            }
+            String hash = ContentHash.sha256Hex(passageText);
+            String terms = termsByHash.get(hash);
+            if (terms == null) {
+                terms = String.join(" ", terms(passageText));
+            }
+            rows.add(new DocumentPassage(null, document.getId(), document.getProjectId(), rows.size(),
+                    chunk.start(), chunk.end(), hash, terms));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            passageRepository.deleteByDocumentId(document.getId());
+            passageRepository.saveAll(rows);
+        });
+        return rows.stream().map(this::toRef).toList();
+    }
+
+    private TextIndex buildTextIndex(String text) {
+        List<TextChunker.Chunk> chunks = TextChunker.split(text, aiConfig.getPassageMaxChars()).stream()
+                .filter(chunk -> !chunk.text(text).isBlank())
+                .toList();
+        Bm25Index bm25 = new Bm25Index();
+        for (int i = 0; i < chunks.size(); i++) {
+            bm25.add(i, terms(chunks.get(i).text(text)));
+        }
+        return new TextIndex(bm25, chunks);
+    }
+
+    /**
+     * 将文本切分为检索词项：jieba 分词结果，多字词另外拆出单字
+     * 古文多为单字成词，拆出单字可让现代汉语的提问（如“学习”）匹配原文中的“学”
+     * @param text 文本
+     * @return 词项序列
+     */
+    private List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (SegmentToken token : segmentService.segmentText(text)) {
+            String word = token.getText().toLowerCase(Locale.ROOT);
+            if (word.codePoints().noneMatch(Character::isLetterOrDigit) || word.codePoints().anyMatch(Character::isWhitespace)) {
+                continue;
+            }
+            terms.add(word);
+            if (word.codePointCount(0, word.length()) > 1) {
+                word.codePoints().filter(Character::isLetterOrDigit)
+                        .forEach(codePoint -> terms.add(new String(Character.toChars(codePoint))));
+            }
+        }
+        return terms;
+    }
+
+    private List<RetrievedPassage> selectWithinBudget(List<RetrievedPassage> candidates, int maxChars) {
+        List<RetrievedPassage> selected = new ArrayList<>();
+        int used = 0;
+        for (RetrievedPassage candidate : candidates) {
+            if (used + candidate.getText().length() <= maxChars) {
+                selected.add(candidate);
+                used += candidate.getText().length();
+            }
+        }
+        return selected;
+    }
+
+    private RetrievedPassage passage(String documentId, String documentName, int start, int end, String text, double score) {
+        RetrievedPassage passage = new RetrievedPassage();
+        passage.setDocumentId(documentId);
+        passage.setDocumentName(documentName);
+        passage.setStart(start);
+        passage.setEnd(end);
+        passage.setText(text);
+        passage.setScore(score);
+        return passage;
+    }
+
+    private PassageRef toRef(DocumentPassage row) {
+        List<String> terms = row.getTerms() == null || row.getTerms().isEmpty()
+                ? List.of() : Arrays.asList(row.getTerms().split(" "));
+        return new PassageRef(row.getDocumentId(), row.getStartOffset(), row.getEndOffset(), terms);
+    }
+
+    /**
+     * 段落引用，只保存位置，检索命中后再读取文档内容
+     */
+    private record PassageRef(String documentId, int start, int end, List<String> terms) {
+    }
+
+    /**
+     * 临时文本的索引
+     */
+    private record TextIndex(Bm25Index bm25, List<TextChunker.Chunk> chunks) {
+    }
+
+    /**
+     * 项目索引：所有文档的段落共用一个 BM25 索引，段落编号在项目内分配
+     * 更新在索引自身的锁内进行，加载使用单独的锁，加载期间的更新不必等待加载完成
+     */
+    private static class ProjectIndex {
+
+        private final Bm25Index bm25 = new Bm25Index();
+        private final Map<Integer, PassageRef> passages = new ConcurrentHashMap<>();
+        private final Map<String, List<Integer>> idsByDocument = new HashMap<>();
+        private int nextId;
+
+        private final Object loadLock = new Object();
+        private boolean loaded;
+
+        synchronized boolean contains(String documentId) {
+            return idsByDocument.containsKey(documentId);
+        }
+
+        synchronized void addDocumentIfAbsent(String documentId, List<PassageRef> refs) {
+            if (!idsByDocument.containsKey(documentId)) {
+                replaceDocument(documentId, refs);
+            }
+        }
+
+        synchronized void replaceDocument(String documentId, List<PassageRef> refs) {
+            removeDocument(documentId);
+            List<Integer> ids = new ArrayList<>(refs.size());
+            for (PassageRef ref : refs) {
+                int id = nextId++;
+                // 词项只在建立倒排表时使用，不常驻内存
+                bm25.add(id, ref.terms());
+                passages.put(id, new PassageRef(ref.documentId(), ref.start(), ref.end(), List.of()));
+                ids.add(id);
+            }
+            idsByDocument.put(documentId, ids);
+        }
+
+        synchronized void removeDocument(String documentId) {
+            List<Integer> ids = idsByDocument.remove(documentId);
+            if (ids != null) {
+                for (int id : ids) {
+                    bm25.remove(id);
+                    passages.remove(id);
+                }
+            }
+        }
+    }
+}
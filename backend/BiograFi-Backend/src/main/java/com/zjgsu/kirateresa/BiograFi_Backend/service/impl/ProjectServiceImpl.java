@@ -1,6 +1,7 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
 
 import com.zjgsu.kirateresa.BiograFi_Backend.model.Project;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.ProjectAiSettingsRepository;
 import com.zjgsu.kirateresa.BiograFi_Backend.repository.ProjectRepository;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.ProjectCreateRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.ProjectUpdateRequest;
@@ -22,6 +23,9 @@ public class ProjectServiceImpl implements ProjectService {
     @Autowired
     private ProjectRepository projectRepository;
 
+    @Autowired
+    private ProjectAiSettingsRepository projectAiSettingsRepository;
+
     /**
      * 根据用户ID获取项目列表
      * @param userId 用户ID
@@ -100,6 +104,7 @@ public class ProjectServiceImpl implements ProjectService {
         }
 
         projectRepository.deleteById(projectId);
+        projectAiSettingsRepository.deleteById(projectId);
     }
 
     /**
@@ -1,38 +1,500 @@
 package com.zjgsu.kirateresa.BiograFi_Backend.service.impl;
 
 import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentBatchRequest;
 import com.zjgsu.kirateresa.BiograFi_Backend.dto.SegmentToken;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.Document;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.DocumentSegmentation;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentSegmentationRepository;
 import com.zjgsu.kirateresa.BiograFi_Backend.service.SegmentService;
+import com.zjgsu.kirateresa.BiograFi_Backend.service.segment.SegmentDictionaryRegistry;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.ContentHash;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.TextChunker;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * 分词服务实现类，使用 jieba 库来实现文本分词功能
+ * 分词服务实现类，使用 jieba 库来实现文本分词功能，并用内置古汉语词典和项目词典修正 jieba 对人名、官职等的切分：
+ * 先由 jieba 分词，再从左到右查找词典中的最长词，找到的词覆盖 jieba 的结果。项目词典的词是人工标注过的实体，总是采用；
+ * 内置词典的词首尾不都落在 jieba 词边界上时至少要有三个字，避免从"政治中心"中切出"治中"之类的误匹配。
+ * jieba 的词典和 HMM 模型是加载后只读的静态数据，分词过程只使用局部变量，因此同一个分词器实例可以被多个线程
+ * 同时使用而无需加锁；批量分词时在独立的 ForkJoinPool 中按片段并行执行，并行度等于 CPU 核数。
+ * 分词结果以各词结束位置的 int 数组形式按该文本依赖的词典版本与内容的摘要缓存在内存 LRU 中（按缓存的总词数限制大小），
+ * 指定文档时另外持久化到 document_segmentations 表，服务重启后首次打开文档也无需重新分词；
+ * offsets 格式直接返回缓存中的数组，不为每个词创建对象
  */
+@Slf4j
 @Service
 public class SegmentServiceImpl implements SegmentService {
 
+    // 批量分词时长文本按句子边界切成不超过该长度的片段，使单篇长文档也能分摊到多个核上
+    private static final int PIECE_MAX_CHARS = 4000;
+
+    // 单次批量请求的最大文本数
+    private static final int MAX_BATCH_TEXTS = 1000;
+
+    // 内存缓存的总词数上限，每个词占 4 字节
+    private static final long MAX_CACHED_TOKENS = 4_000_000L;
+
+    // 首尾不都在 jieba 词边界上的内置词典词至少要有的长度
+    private static final int MIN_CROSSING_MATCH = 3;
+
     private final JiebaSegmenter segmenter = new JiebaSegmenter();
 
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("segment-" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+
+    // 词典版本与内容的摘要 -> 各词结束位置，按访问顺序淘汰
+    private final LinkedHashMap<String, int[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedTokens;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentSegmentationRepository segmentationRepository;
+
+    @Autowired
+    private SegmentDictionaryRegistry dictionaries;
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
     @Override
     public List<SegmentToken> segmentText(String text) {
-        // 使用精确模式分词
-        List<String> segWords = segmenter.sentenceProcess(text);
+        return segmentText(text, null, null);
+    }
+
+    @Override
+    public List<SegmentToken> segmentText(String text, String documentId, String projectId) {
+        if (text == null || text.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return tokens(text, segmentOffsets(text, documentId, projectId));
+    }
+
+    @Override
+    public int[] segmentOffsets(String text, String documentId, String projectId) {
+        if (text == null || text.isEmpty()) {
+            return new int[0];
+        }
+        if (projectId == null && documentId != null) {
+            projectId = documentRepository.findProjectIdsByIdIn(List.of(documentId)).stream()
+                    .map(row -> (String) row[1]).findFirst().orElse(null);
+        }
+        SegmentDictionaryRegistry.Dictionary dictionary = dictionaries.forProject(projectId);
+        String hash = cacheKey(dictionary, text);
+        int[] ends = lookup(hash, documentId);
+        if (ends == null) {
+            ends = boundaries(text, 0, dictionary);
+            store(hash, documentId, ends);
+        }
+        return ends;
+    }
+
+    @Override
+    public Map<String, List<SegmentToken>> segmentBatch(SegmentBatchRequest request) {
+        Batch batch = resolveBatch(request);
+        Map<String, List<SegmentToken>> results = new LinkedHashMap<>();
+        batchBoundaries(batch).forEach((key, ends) -> {
+            String text = batch.texts().get(key);
+            results.put(key, text == null ? new ArrayList<>() : tokens(text, ends));
+        });
+        return results;
+    }
+
+    @Override
+    public Map<String, int[]> segmentBatchOffsets(SegmentBatchRequest request) {
+        return batchBoundaries(resolveBatch(request));
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (cache) {
+            stats.put("cachedTexts", cache.size());
+            stats.put("cachedTokens", cachedTokens);
+        }
+        stats.put("maxCachedTokens", MAX_CACHED_TOKENS);
+        stats.put("dictionaries", dictionaries.getStats());
+        return stats;
+    }
+
+    /**
+     * 批量计算各词结束位置
+     * @param batch 解析后的批量请求
+     * @return 各输入的结束位置，顺序与输入一致
+     */
+    private Map<String, int[]> batchBoundaries(Batch batch) {
+        Map<String, String> texts = batch.texts();
+        boolean documents = batch.documents();
+        SegmentDictionaryRegistry.Dictionary dictionary = dictionaries.forProject(batch.projectId());
+
+        // 命中缓存的直接使用，其余按片段拆分，片段结果写入各自的槽位，全部完成后按输入顺序拼接
+        List<String> keys = new ArrayList<>(texts.keySet());
+        int[][] boundaries = new int[keys.size()][];
+        String[] hashes = new String[keys.size()];
+        List<Piece> pieces = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            String text = texts.get(keys.get(i));
+            if (text == null || text.isEmpty()) {
+                boundaries[i] = new int[0];
+                continue;
+            }
+            hashes[i] = cacheKey(dictionary, text);
+            boundaries[i] = lookup(hashes[i], documents ? keys.get(i) : null);
+            if (boundaries[i] != null) {
+                continue;
+            }
+            if (text.length() <= PIECE_MAX_CHARS) {
+                pieces.add(new Piece(i, 0, text, dictionary));
+                continue;
+            }
+            for (TextChunker.Chunk chunk : TextChunker.split(text, PIECE_MAX_CHARS)) {
+                pieces.add(new Piece(i, chunk.start(), chunk.text(text), dictionary));
+            }
+        }
+        int[][] pieceResults = new int[pieces.size()][];
+        if (!pieces.isEmpty()) {
+            pool.invoke(new SegmentTask(pieces, pieceResults, 0, pieces.size()));
+        }
 
-        // 转换为自定义的分词结果格式
-        List<SegmentToken> result = new ArrayList<>();
+        // 同一输入的片段在列表中相邻且按位置排列
         int start = 0;
-        for (String word : segWords) {
+        while (start < pieces.size()) {
+            int keyIndex = pieces.get(start).keyIndex();
+            int end = start;
+            int count = 0;
+            while (end < pieces.size() && pieces.get(end).keyIndex() == keyIndex) {
+                count += pieceResults[end].length;
+                end++;
+            }
+            int[] merged = new int[count];
+            int position = 0;
+            for (int i = start; i < end; i++) {
+                System.arraycopy(pieceResults[i], 0, merged, position, pieceResults[i].length);
+                position += pieceResults[i].length;
+            }
+            boundaries[keyIndex] = merged;
+            store(hashes[keyIndex], documents ? keys.get(keyIndex) : null, merged);
+            start = end;
+        }
+
+        Map<String, int[]> results = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            results.put(keys.get(i), boundaries[i]);
+        }
+        return results;
+    }
+
+    @Override
+    public void invalidateDocument(String documentId) {
+        // 在调用方的事务中删除，失败时异常直接抛出并回滚整个事务；在事务内吞掉异常会使事务被标记为仅回滚，
+        // 提交时抛出 UnexpectedRollbackException
+        segmentationRepository.findById(documentId).ifPresent(stored -> {
+            synchronized (cache) {
+                int[] removed = cache.remove(stored.getContentHash());
+                if (removed != null) {
+                    cachedTokens -= removed.length;
+                }
+            }
+            segmentationRepository.delete(stored);
+        });
+    }
+
+    /**
+     * 解析后的批量请求
+     * @param texts 键到文本的映射
+     * @param projectId 使用其词典的项目ID（可选）
+     * @param documents 键是否为文档ID，是则以文档ID持久化结果
+     */
+    private record Batch(Map<String, String> texts, String projectId, boolean documents) {
+    }
+
+    /**
+     * 将请求解析为键到文本的映射及使用的词典
+     */
+    private Batch resolveBatch(SegmentBatchRequest request) {
+        if (request.getTexts() != null && request.getDocumentId() != null) {
+            throw new IllegalArgumentException("texts 与 documentId 不能同时提供");
+        }
+        if (request.getTexts() == null && request.getDocumentId() == null && request.getProjectId() == null) {
+            throw new IllegalArgumentException("请提供 texts、documentId 或 projectId");
+        }
+
+        Map<String, String> texts = new LinkedHashMap<>();
+        if (request.getTexts() != null) {
+            if (request.getTexts().size() > MAX_BATCH_TEXTS) {
+                throw new IllegalArgumentException("单次批量分词最多 " + MAX_BATCH_TEXTS + " 段文本");
+            }
+            texts.putAll(request.getTexts());
+            return new Batch(texts, request.getProjectId(), false);
+        }
+        if (request.getDocumentId() != null) {
+            Document document = documentRepository.findById(request.getDocumentId())
+                    .orElseThrow(() -> new IllegalArgumentException("文档不存在"));
+            if (request.getProjectId() != null && !request.getProjectId().equals(document.getProjectId())) {
+                throw new IllegalArgumentException("文档不属于该项目");
+            }
+            texts.put(document.getId(), document.getContent());
+            return new Batch(texts, document.getProjectId(), true);
+        }
+        for (Document document : documentRepository.findByProjectId(request.getProjectId())) {
+            texts.put(document.getId(), document.getContent());
+        }
+        return new Batch(texts, request.getProjectId(), true);
+    }
+
+    /**
+     * 缓存键：该文本依赖的词典版本与内容一起计算摘要。项目词典新增或删除的词出现在文本中时旧结果不再命中，
+     * 与本文无关的标注变化不影响键，文档的持久化结果不会因项目中任意一次标注而失效
+     */
+    private static String cacheKey(SegmentDictionaryRegistry.Dictionary dictionary, String text) {
+        return ContentHash.sha256Hex(dictionary.versionFor(text) + '\u0000' + text);
+    }
+
+    /**
+     * 依次查找内存缓存和文档的持久化结果，持久化结果命中后回填内存
+     * @param hash 内容摘要
+     * @param documentId 文档ID（可选）
+     * @return 各词结束位置，未命中时返回 null
+     */
+    private int[] lookup(String hash, String documentId) {
+        synchronized (cache) {
+            int[] ends = cache.get(hash);
+            if (ends != null) {
+                return ends;
+            }
+        }
+        if (documentId == null) {
+            return null;
+        }
+        try {
+            DocumentSegmentation stored = segmentationRepository.findById(documentId).orElse(null);
+            if (stored != null && hash.equals(stored.getContentHash())) {
+                int[] ends = decode(stored.getTokenLengths(), stored.getTokenCount());
+                putCache(hash, ends);
+                return ends;
+            }
+        } catch (RuntimeException e) {
+            log.warn("读取文档 {} 的分词结果失败: {}", documentId, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 写入内存缓存，指定文档时同时持久化
+     */
+    private void store(String hash, String documentId, int[] ends) {
+        putCache(hash, ends);
+        if (documentId == null) {
+            return;
+        }
+        try {
+            DocumentSegmentation segmentation = new DocumentSegmentation();
+            segmentation.setDocumentId(documentId);
+            segmentation.setContentHash(hash);
+            segmentation.setTokenCount(ends.length);
+            segmentation.setTokenLengths(encode(ends));
+            segmentationRepository.save(segmentation);
+        } catch (RuntimeException e) {
+            log.warn("保存文档 {} 的分词结果失败: {}", documentId, e.getMessage());
+        }
+    }
+
+    private void putCache(String hash, int[] ends) {
+        if (ends.length > MAX_CACHED_TOKENS) {
+            return;
+        }
+        synchronized (cache) {
+            int[] previous = cache.put(hash, ends);
+            cachedTokens += ends.length - (previous != null ? previous.length : 0);
+            Iterator<Map.Entry<String, int[]>> iterator = cache.entrySet().iterator();
+            while (cachedTokens > MAX_CACHED_TOKENS && iterator.hasNext()) {
+                cachedTokens -= iterator.next().getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 使用精确模式分词，再用词典修正
+     * @param text 文本
+     * @param offset 文本在原文中的起始位置
+     * @param dictionary 词典
+     * @return 各词在原文中的结束位置
+     */
+    private int[] boundaries(String text, int offset, SegmentDictionaryRegistry.Dictionary dictionary) {
+        List<String> words = segmenter.sentenceProcess(text);
+        int length = text.length();
+        // jieba 的各词结束位置，及每个位置是否为 jieba 词边界
+        int[] jiebaEnds = new int[words.size()];
+        boolean[] boundary = new boolean[length + 1];
+        boundary[0] = true;
+        int end = 0;
+        for (int i = 0; i < jiebaEnds.length; i++) {
+            end += words.get(i).length();
+            jiebaEnds[i] = end;
+            boundary[end] = true;
+        }
+
+        int[] ends = new int[jiebaEnds.length];
+        int count = 0;
+        int position = 0;
+        int word = 0;
+        while (position < length) {
+            while (jiebaEnds[word] <= position) {
+                word++;
+            }
+            int wordEnd = jiebaEnds[word];
+            // 在当前 jieba 词范围内找第一个可采用的词典词
+            int matchStart = -1;
+            int matchLength = 0;
+            for (int i = position; i < wordEnd; i++) {
+                int match = acceptedMatch(dictionary, text, i, boundary);
+                if (match > 0) {
+                    matchStart = i;
+                    matchLength = match;
+                    break;
+                }
+            }
+            if (count + 2 > ends.length) {
+                ends = Arrays.copyOf(ends, Math.max(16, ends.length * 2));
+            }
+            if (matchStart < 0) {
+                ends[count++] = offset + wordEnd;
+                position = wordEnd;
+                continue;
+            }
+            if (matchStart > position) {
+                ends[count++] = offset + matchStart;
+            }
+            ends[count++] = offset + matchStart + matchLength;
+            position = matchStart + matchLength;
+        }
+        return count == ends.length ? ends : Arrays.copyOf(ends, count);
+    }
+
+    /**
+     * 从指定位置开始可采用的最长词典词
+     * @param boundary 各位置是否为 jieba 词边界
+     * @return 词长，没有可采用的词时返回 0
+     */
+    private static int acceptedMatch(SegmentDictionaryRegistry.Dictionary dictionary, String text, int from, boolean[] boundary) {
+        int builtin = dictionary.builtin().longestMatch(text, from);
+        if (builtin < MIN_CROSSING_MATCH && !(boundary[from] && boundary[from + builtin])) {
+            builtin = 0;
+        }
+        int project = dictionary.project() != null ? dictionary.project().longestMatch(text, from) : 0;
+        return Math.max(builtin, project);
+    }
+
+    /**
+     * 按各词结束位置切出分词结果
+     */
+    private static List<SegmentToken> tokens(String text, int[] ends) {
+        List<SegmentToken> result = new ArrayList<>(ends.length);
+        int start = 0;
+        for (int end : ends) {
             SegmentToken token = new SegmentToken();
-            token.setText(word);
+            token.setText(text.substring(start, end));
             token.setStart(start);
-            token.setEnd(start + word.length());
+            token.setEnd(end);
             result.add(token);
-            start += word.length();
+            start = end;
         }
-
         return result;
     }
+
+    /**
+     * 将各词结束位置编码为逗号分隔的词长序列
+     */
+    private static String encode(int[] ends) {
+        StringBuilder builder = new StringBuilder(ends.length * 2);
+        int start = 0;
+        for (int i = 0; i < ends.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(ends[i] - start);
+            start = ends[i];
+        }
+        return builder.toString();
+    }
+
+    private static int[] decode(String lengths, int count) {
+        int[] ends = new int[count];
+        int index = 0;
+        int end = 0;
+        int value = 0;
+        for (int i = 0; i <= lengths.length(); i++) {
+            if (i == lengths.length() || lengths.charAt(i) == ',') {
+                if (i > 0) {
+                    end += value;
+                    ends[index++] = end;
+                }
+                value = 0;
+            } else {
+                value = value * 10 + (lengths.charAt(i) - '0');
+            }
+        }
+        return index == count ? ends : Arrays.copyOf(ends, index);
+    }
+
+    /**
+     * 待分词的片段
+     * @param keyIndex 所属输入的序号
+     * @param offset 片段在原文中的起始位置
+     * @param text 片段文本
+     * @param dictionary 使用的词典
+     */
+    private record Piece(int keyIndex, int offset, String text, SegmentDictionaryRegistry.Dictionary dictionary) {
+    }
+
+    /**
+     * 分词任务：片段区间二分后并行执行，直到只剩一个片段时直接分词
+     */
+    private class SegmentTask extends RecursiveAction {
+
+        private final List<Piece> pieces;
+        private final int[][] results;
+        private final int from;
+        private final int to;
+
+        SegmentTask(List<Piece> pieces, int[][] results, int from, int to) {
+            this.pieces = pieces;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                Piece piece = pieces.get(from);
+                results[from] = boundaries(piece.text(), piece.offset(), piece.dictionary());
+                return;
+            }
+            int mid = from + (to - from) / 2;
+            invokeAll(new SegmentTask(pieces, results, from, mid), new SegmentTask(pieces, results, mid, to));
+        }
+    }
 }
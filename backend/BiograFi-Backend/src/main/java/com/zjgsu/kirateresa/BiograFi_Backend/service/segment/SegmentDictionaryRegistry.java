@@ -0,0 +1,301 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.segment;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.event.DocumentContentChangedEvent;
+import com.zjgsu.kirateresa.BiograFi_Backend.event.EntityAnnotationsChangedEvent;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.DocumentRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.EntityAnnotationRepository;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.ContentHash;
+import com.zjgsu.kirateresa.BiograFi_Backend.util.DoubleArrayTrie;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分词词典注册表
+ * 内置古汉语词典（dict/classical.txt）在启动时构建为一个共享的双数组 Trie；各项目的词典由该项目已标注实体的文本构建，
+ * 放在按访问顺序淘汰的 LRU 中，按 Trie 数组与词表估计的总字节数限制大小。
+ * 新增标注时只把新词并入该项目的词表后重建 Trie，不重新查询数据库；删除标注或文档时标记为过期，下次使用时重新查询。
+ * 分词结果缓存键中的词典版本按文本计算（见 Dictionary.versionFor）：项目词表变化只使实际匹配到变化词语的文本失效，
+ * 新增一条与本文无关的标注不会使项目中其他文档的缓存和持久化结果失效
+ */
+@Slf4j
+@Component
+public class SegmentDictionaryRegistry {
+
+    /**
+     * 某次分词使用的词典快照，构建后只读
+     * @param builtinVersion 内置词典版本，词表内容摘要
+     * @param builtin 内置词典
+     * @param project 项目词典，项目没有可用词语时为 null
+     */
+    public record Dictionary(String builtinVersion, DoubleArrayTrie builtin, DoubleArrayTrie project) {
+
+        /**
+         * 该文本的分词实际依赖的词典版本：内置词典版本加上项目词典在文本各位置的最长匹配。
+         * 分词只在这些位置查询项目词典，因此项目词表增删的词不出现在文本中时版本不变
+         * @param text 文本
+         * @return 词典版本
+         */
+        public String versionFor(CharSequence text) {
+            if (project == null) {
+                return builtinVersion;
+            }
+            StringBuilder version = new StringBuilder(builtinVersion).append('p');
+            for (int i = 0; i < text.length(); i++) {
+                int length = project.longestMatch(text, i);
+                if (length > 0) {
+                    version.append(i).append(':').append(length).append(',');
+                }
+            }
+            return version.toString();
+        }
+    }
+
+    /**
+     * 项目词典缓存项
+     * @param dictionary 词典
+     * @param words 项目词表，升序排列
+     * @param bytes 估计占用的字节数
+     * @param stale 是否已过期，过期后下次使用时重新构建
+     */
+    private record ProjectEntry(Dictionary dictionary, String[] words, long bytes, boolean stale) {
+    }
+
+    private static final String LEXICON_RESOURCE = "dict/classical.txt";
+
+    // 词典只收录该长度范围内的词，单字不需要词典，过长的标注文本通常是句子而非词语
+    private static final int MIN_WORD_CHARS = 2;
+    private static final int MAX_WORD_CHARS = 16;
+
+    // 项目词典的总字节数上限
+    private static final long MAX_PROJECT_BYTES = 32L * 1024 * 1024;
+
+    @Autowired
+    private EntityAnnotationRepository entityAnnotationRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    private Dictionary builtin;
+
+    // 项目ID -> 项目词典，按访问顺序淘汰
+    private final LinkedHashMap<String, ProjectEntry> projects = new LinkedHashMap<>(16, 0.75f, true);
+    private long projectBytes;
+
+    // 标注变化计数，构建期间有变化时构建结果只用于本次请求
+    private final AtomicLong changes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        TreeSet<String> words = new TreeSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(LEXICON_RESOURCE).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    addWord(words, line);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取内置词典 {} 失败，只使用 jieba 词典: {}", LEXICON_RESOURCE, e.getMessage());
+        }
+        builtin = new Dictionary("b" + digest(words), DoubleArrayTrie.build(words), null);
+        log.info("内置词典已加载: {} 个词，约 {} 字节", words.size(), builtin.builtin().memoryBytes());
+    }
+
+    /**
+     * 获取项目的分词词典，缓存中没有或已过期时由项目的标注文本构建
+     * @param projectId 项目ID，为空时只使用内置词典
+     * @return 词典
+     */
+    public Dictionary forProject(String projectId) {
+        if (projectId == null || projectId.isEmpty()) {
+            return builtin;
+        }
+        synchronized (projects) {
+            ProjectEntry entry = projects.get(projectId);
+            if (entry != null && !entry.stale()) {
+                hits.incrementAndGet();
+                return entry.dictionary();
+            }
+        }
+
+        long generation = changes.get();
+        TreeSet<String> words = new TreeSet<>();
+        for (Object[] row : entityAnnotationRepository.findDistinctTextAndLabelByProjectId(projectId)) {
+            addWord(words, row[0]);
+        }
+        ProjectEntry entry = build(words, generation != changes.get());
+        put(projectId, entry);
+        return entry.dictionary();
+    }
+
+    /**
+     * 标注变化后更新项目词典：新增的标注只把新词并入词表，删除时标记过期。
+     * 合并后的词典只在缓存项仍是合并前读取的那一项时放入，期间被其他新增或删除替换时重新读取，
+     * 并发的新增不会互相覆盖，也不会使刚标记过期的词典重新变为可用
+     * @param event 实体标注变化事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnotationsChanged(EntityAnnotationsChangedEvent event) {
+        changes.incrementAndGet();
+        synchronized (projects) {
+            if (projects.isEmpty()) {
+                return;
+            }
+        }
+        try {
+            String projectId = documentRepository.findProjectIdsByIdIn(List.of(event.documentId())).stream()
+                    .map(row -> (String) row[1]).findFirst().orElse(null);
+            if (projectId == null) {
+                return;
+            }
+            if (event.removed()) {
+                markStale(projectId);
+                return;
+            }
+
+            while (true) {
+                ProjectEntry entry;
+                synchronized (projects) {
+                    entry = projects.get(projectId);
+                }
+                if (entry == null || entry.stale()) {
+                    return;
+                }
+                TreeSet<String> words = new TreeSet<>(Arrays.asList(entry.words()));
+                int before = words.size();
+                for (String text : event.addedTexts()) {
+                    addWord(words, text);
+                }
+                if (words.size() == before) {
+                    return;
+                }
+                if (replace(projectId, entry, build(words, false))) {
+                    incrementalUpdates.incrementAndGet();
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("更新文档 {} 所属项目的分词词典失败: {}", event.documentId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 文档删除时其标注随之删除，所属项目的词典标记过期
+     * @param event 文档内容变化事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentContentChanged(DocumentContentChangedEvent event) {
+        if (!event.deleted() || event.projectId() == null) {
+            return;
+        }
+        changes.incrementAndGet();
+        markStale(event.projectId());
+    }
+
+    /**
+     * 获取统计信息
+     * @return 内置词典规模、项目词典缓存的条目数、占用字节数及命中、构建、增量更新与淘汰次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("builtinWords", builtin.builtin().wordCount());
+        stats.put("builtinBytes", builtin.builtin().memoryBytes());
+        synchronized (projects) {
+            stats.put("projects", projects.size());
+            stats.put("projectBytes", projectBytes);
+        }
+        stats.put("maxProjectBytes", MAX_PROJECT_BYTES);
+        stats.put("hits", hits.get());
+        stats.put("builds", builds.get());
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private ProjectEntry build(TreeSet<String> words, boolean stale) {
+        builds.incrementAndGet();
+        String[] sorted = words.toArray(new String[0]);
+        if (sorted.length == 0) {
+            return new ProjectEntry(builtin, sorted, 64, stale);
+        }
+        DoubleArrayTrie trie = DoubleArrayTrie.build(words);
+        long bytes = trie.memoryBytes() + 16L * sorted.length;
+        for (String word : sorted) {
+            bytes += 40 + 2L * word.length();
+        }
+        return new ProjectEntry(new Dictionary(builtin.builtinVersion(), builtin.builtin(), trie), sorted, bytes, stale);
+    }
+
+    private void markStale(String projectId) {
+        synchronized (projects) {
+            ProjectEntry entry = projects.get(projectId);
+            if (entry != null && !entry.stale()) {
+                put(projectId, new ProjectEntry(entry.dictionary(), entry.words(), entry.bytes(), true));
+            }
+        }
+    }
+
+    /**
+     * 缓存项仍是 expected 时替换为 entry
+     * @return 是否已替换
+     */
+    private boolean replace(String projectId, ProjectEntry expected, ProjectEntry entry) {
+        synchronized (projects) {
+            if (projects.get(projectId) != expected) {
+                return false;
+            }
+            put(projectId, entry);
+            return true;
+        }
+    }
+
+    private void put(String projectId, ProjectEntry entry) {
+        synchronized (projects) {
+            ProjectEntry previous = projects.put(projectId, entry);
+            projectBytes += entry.bytes() - (previous != null ? previous.bytes() : 0);
+            // 刚放入的条目在最后，总是保留
+            Iterator<Map.Entry<String, ProjectEntry>> iterator = projects.entrySet().iterator();
+            while (projectBytes > MAX_PROJECT_BYTES && projects.size() > 1) {
+                projectBytes -= iterator.next().getValue().bytes();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static void addWord(TreeSet<String> words, Object value) {
+        if (value == null) {
+            return;
+        }
+        String word = value.toString().strip();
+        if (word.length() >= MIN_WORD_CHARS && word.length() <= MAX_WORD_CHARS) {
+            words.add(word);
+        }
+    }
+
+    private static String digest(TreeSet<String> words) {
+        return ContentHash.sha256Hex(String.join("\n", words)).substring(0, 16);
+    }
+}
@@ -0,0 +1,142 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick 多模式匹配自动机
+ * 一次扫描即可找出文本中所有模式串的全部出现位置（含重叠），耗时与文本长度和匹配数成线性关系，与模式串数量无关
+ */
+public final class AhoCorasick {
+
+    /**
+     * 匹配回调
+     */
+    @FunctionalInterface
+    public interface MatchHandler {
+        /**
+         * @param patternIndex 模式串在构造参数中的下标
+         * @param start 匹配起始位置（含）
+         * @param end 匹配结束位置（不含）
+         */
+        void onMatch(int patternIndex, int start, int end);
+    }
+
+    // 每个状态的转移表：按字符升序排列，查找时二分
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    // 失配指针
+    private final int[] fail;
+    // 沿失配链最近的一个有输出的状态，-1 表示没有
+    private final int[] outputLink;
+    // 以该状态结尾的模式串下标，-1 表示没有
+    private final int[] patternAt;
+    private final int[] patternLengths;
+
+    /**
+     * 根据模式串构建自动机，空串会被忽略
+     * @param patterns 模式串列表
+     */
+    public AhoCorasick(List<String> patterns) {
+        // 1. 构建字典树
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(-1);
+        patternLengths = new int[patterns.size()];
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            patternLengths[p] = pattern.length();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = trie.get(state).get(pattern.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(pattern.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    terminal.add(-1);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == -1) {
+                terminal.set(state, p);
+            }
+        }
+
+        // 2. 压缩转移表
+        int size = trie.size();
+        transitionChars = new char[size][];
+        transitionTargets = new int[size][];
+        patternAt = new int[size];
+        for (int s = 0; s < size; s++) {
+            TreeMap<Character, Integer> edges = trie.get(s);
+            transitionChars[s] = new char[edges.size()];
+            transitionTargets[s] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                transitionChars[s][i] = edge.getKey();
+                transitionTargets[s][i] = edge.getValue();
+                i++;
+            }
+            patternAt[s] = terminal.get(s);
+        }
+
+        // 3. 广度优先计算失配指针和输出链
+        fail = new int[size];
+        outputLink = new int[size];
+        Arrays.fill(outputLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : transitionTargets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < transitionChars[state].length; i++) {
+                char c = transitionChars[state][i];
+                int child = transitionTargets[state][i];
+                int f = fail[state];
+                int next;
+                while ((next = step(f, c)) == -1 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next == -1 || next == child ? 0 : next;
+                outputLink[child] = patternAt[fail[child]] != -1 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 扫描文本，报告所有模式串的所有出现位置
+     * @param text 文本
+     * @param handler 匹配回调
+     */
+    public void search(String text, MatchHandler handler) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = step(state, c)) == -1 && state != 0) {
+                state = fail[state];
+            }
+            state = next == -1 ? 0 : next;
+
+            for (int s = patternAt[state] != -1 ? state : outputLink[state]; s != -1; s = outputLink[s]) {
+                int pattern = patternAt[s];
+                handler.onMatch(pattern, i + 1 - patternLengths[pattern], i + 1);
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        int index = Arrays.binarySearch(transitionChars[state], c);
+        return index >= 0 ? transitionTargets[state][index] : -1;
+    }
+}
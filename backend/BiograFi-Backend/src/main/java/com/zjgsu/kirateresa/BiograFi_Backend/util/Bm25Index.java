@@ -0,0 +1,128 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 支持增量增删的 BM25 倒排索引
+ * 以调用方分配的整数编号标识段落，段落的增删只更新其自身词项的倒排表和文档频率
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 检索结果
+     * @param passageId 段落编号
+     * @param score BM25 得分
+     */
+    public record Hit(int passageId, double score) {
+    }
+
+    // 词项 -> (段落编号 -> 词频)
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    // 段落编号 -> (词项 -> 词频)，删除段落时使用
+    private final Map<Integer, Map<String, Integer>> termFrequencies = new HashMap<>();
+    private final Map<Integer, Integer> lengths = new HashMap<>();
+    private long totalLength;
+
+    /**
+     * 添加段落，编号已存在时先删除旧内容
+     * @param passageId 段落编号
+     * @param terms 段落的词项序列
+     */
+    public synchronized void add(int passageId, List<String> terms) {
+        remove(passageId);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(passageId, entry.getValue());
+        }
+        termFrequencies.put(passageId, frequencies);
+        lengths.put(passageId, terms.size());
+        totalLength += terms.size();
+    }
+
+    /**
+     * 删除段落
+     * @param passageId 段落编号
+     */
+    public synchronized void remove(int passageId) {
+        Map<String, Integer> frequencies = termFrequencies.remove(passageId);
+        if (frequencies == null) {
+            return;
+        }
+        for (String term : frequencies.keySet()) {
+            Map<Integer, Integer> list = postings.get(term);
+            list.remove(passageId);
+            if (list.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= lengths.remove(passageId);
+    }
+
+    /**
+     * 检索得分最高的段落
+     * @param queryTerms 查询词项，重复词项只计一次
+     * @param limit 返回数量上限
+     * @param filter 段落过滤条件，为 null 时不过滤
+     * @return 按得分从高到低排列的结果
+     */
+    public synchronized List<Hit> search(Collection<String> queryTerms, int limit, IntPredicate filter) {
+        int passageCount = lengths.size();
+        if (passageCount == 0 || limit <= 0) {
+            return List.of();
+        }
+        double averageLength = (double) totalLength / passageCount;
+
+        Map<Integer, Double> scores = new HashMap<>();
+        Set<String> distinctTerms = new LinkedHashSet<>(queryTerms);
+        for (String term : distinctTerms) {
+            Map<Integer, Integer> list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (passageCount - list.size() + 0.5) / (list.size() + 0.5));
+            for (Map.Entry<Integer, Integer> entry : list.entrySet()) {
+                if (filter != null && !filter.test(entry.getKey())) {
+                    continue;
+                }
+                int tf = entry.getValue();
+                double norm = K1 * (1 - B + B * lengths.get(entry.getKey()) / averageLength);
+                scores.merge(entry.getKey(), idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+            }
+        }
+
+        // 小顶堆保留得分最高的 limit 个结果
+        PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            top.offer(new Hit(entry.getKey(), entry.getValue()));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits;
+    }
+
+    /**
+     * 获取段落数量
+     * @return 段落数量
+     */
+    public synchronized int size() {
+        return lengths.size();
+    }
+}
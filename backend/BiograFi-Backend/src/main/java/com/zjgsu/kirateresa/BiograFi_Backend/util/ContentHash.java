@@ -0,0 +1,29 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 文本内容摘要工具，用于判断文本或片段是否发生变化
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    /**
+     * 计算文本的 SHA-256 摘要
+     * @param text 文本
+     * @return 64 位十六进制摘要
+     */
+    public static String sha256Hex(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 双数组 Trie，用于词典的最长前缀匹配
+ * 每个节点只占 base、check 两个 int：子节点位置为 base[父] + 字符编码，且 check[子] == base[父]；
+ * 词尾用编码 0 的叶子表示，叶子的 base 为负数。字符先映射到词典实际用到的字符表中的序号，
+ * 使数组长度与节点数同阶，而不是与 Unicode 码位范围同阶，小词典也只占几 KB。
+ * 构建后只读，可被多个线程同时查询
+ */
+public final class DoubleArrayTrie {
+
+    // 词典实际用到的字符，升序排列，字符编码为其下标加一
+    private final char[] alphabet;
+    private final int[] base;
+    private final int[] check;
+    private final int size;
+    private final int wordCount;
+    private final int maxWordLength;
+
+    private DoubleArrayTrie(char[] alphabet, int[] base, int[] check, int size, int wordCount, int maxWordLength) {
+        this.alphabet = alphabet;
+        this.base = base;
+        this.check = check;
+        this.size = size;
+        this.wordCount = wordCount;
+        this.maxWordLength = maxWordLength;
+    }
+
+    /**
+     * 由词语集合构建
+     * @param words 词语，空串和重复项被忽略
+     * @return 双数组 Trie
+     */
+    public static DoubleArrayTrie build(Collection<String> words) {
+        TreeSet<String> sorted = new TreeSet<>();
+        TreeSet<Character> chars = new TreeSet<>();
+        int maxWordLength = 0;
+        for (String word : words) {
+            if (word == null || word.isEmpty()) {
+                continue;
+            }
+            sorted.add(word);
+            maxWordLength = Math.max(maxWordLength, word.length());
+            for (int i = 0; i < word.length(); i++) {
+                chars.add(word.charAt(i));
+            }
+        }
+        char[] alphabet = new char[chars.size()];
+        int index = 0;
+        for (char c : chars) {
+            alphabet[index++] = c;
+        }
+
+        Builder builder = new Builder(new ArrayList<>(sorted), alphabet);
+        builder.build();
+        return new DoubleArrayTrie(alphabet, Arrays.copyOf(builder.base, builder.size),
+                Arrays.copyOf(builder.check, builder.size), builder.size, sorted.size(), maxWordLength);
+    }
+
+    /**
+     * 从指定位置开始查找词典中最长的词
+     * @param text 文本
+     * @param from 起始位置
+     * @return 最长匹配的长度，没有匹配时返回 0
+     */
+    public int longestMatch(CharSequence text, int from) {
+        if (size == 0) {
+            return 0;
+        }
+        int b = base[0];
+        int longest = 0;
+        int limit = Math.min(text.length(), from + maxWordLength);
+        for (int i = from; ; i++) {
+            // 编码 0 的子节点表示到此为止是一个完整的词
+            if (b < size && check[b] == b && base[b] < 0) {
+                longest = i - from;
+            }
+            if (i == limit) {
+                break;
+            }
+            int code = Arrays.binarySearch(alphabet, text.charAt(i));
+            if (code < 0) {
+                break;
+            }
+            int p = b + code + 1;
+            if (p >= size || check[p] != b) {
+                break;
+            }
+            b = base[p];
+        }
+        return longest;
+    }
+
+    /**
+     * @param word 词语
+     * @return 词典中是否包含该词
+     */
+    public boolean contains(String word) {
+        return !word.isEmpty() && longestMatch(word, 0) == word.length();
+    }
+
+    /**
+     * @return 词语数
+     */
+    public int wordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @return 估计占用的内存字节数
+     */
+    public long memoryBytes() {
+        return 8L * base.length + 2L * alphabet.length + 64;
+    }
+
+    /**
+     * 构建过程中的临时状态：词语按字典序排列后逐层取出兄弟节点，为每组兄弟寻找互不冲突的起始位置
+     */
+    private static final class Builder {
+
+        /**
+         * 构建中的节点：code 为字符编码（0 表示词尾），[left, right) 为以该节点为前缀的词语区间
+         */
+        private static final class Node {
+            final int code;
+            final int depth;
+            final int left;
+            int right;
+
+            Node(int code, int depth, int left, int right) {
+                this.code = code;
+                this.depth = depth;
+                this.left = left;
+                this.right = right;
+            }
+        }
+
+        private final List<String> words;
+        private final char[] alphabet;
+        private int[] base;
+        private int[] check;
+        private boolean[] used;
+        private int size;
+        private int nextCheckPos;
+
+        Builder(List<String> words, char[] alphabet) {
+            this.words = words;
+            this.alphabet = alphabet;
+            int capacity = Math.max(64, alphabet.length + 2);
+            base = new int[capacity];
+            check = new int[capacity];
+            used = new boolean[capacity];
+        }
+
+        void build() {
+            if (words.isEmpty()) {
+                return;
+            }
+            size = 1;
+            // insert 可能扩容替换 base 数组，先取得返回值再写入
+            int begin = insert(fetch(new Node(0, 0, 0, words.size())));
+            base[0] = begin;
+            used = null;
+        }
+
+        /**
+         * 取出节点的全部子节点，词语有序，因此相同字符的词语在区间内相邻
+         */
+        private List<Node> fetch(Node parent) {
+            List<Node> siblings = new ArrayList<>();
+            int previous = -1;
+            for (int i = parent.left; i < parent.right; i++) {
+                String word = words.get(i);
+                if (word.length() < parent.depth) {
+                    continue;
+                }
+                int code = word.length() == parent.depth ? 0 : Arrays.binarySearch(alphabet, word.charAt(parent.depth)) + 1;
+                if (code != previous) {
+                    if (!siblings.isEmpty()) {
+                        siblings.get(siblings.size() - 1).right = i;
+                    }
+                    siblings.add(new Node(code, parent.depth + 1, i, 0));
+                    previous = code;
+                }
+            }
+            if (!siblings.isEmpty()) {
+                siblings.get(siblings.size() - 1).right = parent.right;
+            }
+            return siblings;
+        }
+
+        /**
+         * 为一组兄弟节点找到起始位置 begin，使 begin + 各自编码处均未被占用，然后递归放置子节点
+         * @return 起始位置，即父节点的 base 值
+         */
+        private int insert(List<Node> siblings) {
+            int firstCode = siblings.get(0).code;
+            int lastCode = siblings.get(siblings.size() - 1).code;
+            int position = Math.max(firstCode + 1, nextCheckPos) - 1;
+            int occupied = 0;
+            boolean first = true;
+            int begin;
+            search:
+            while (true) {
+                position++;
+                ensureCapacity(position + 1);
+                if (check[position] != 0) {
+                    occupied++;
+                    continue;
+                }
+                if (first) {
+                    nextCheckPos = position;
+                    first = false;
+                }
+                begin = position - firstCode;
+                ensureCapacity(begin + lastCode + 1);
+                if (used[begin]) {
+                    continue;
+                }
+                for (int i = 1; i < siblings.size(); i++) {
+                    if (check[begin + siblings.get(i).code] != 0) {
+                        continue search;
+                    }
+                }
+                break;
+            }
+            // 已扫描区间基本占满时，下次从当前位置开始找，避免反复扫描
+            if (occupied >= 0.95 * (position - nextCheckPos + 1)) {
+                nextCheckPos = position;
+            }
+
+            used[begin] = true;
+            size = Math.max(size, begin + lastCode + 1);
+            for (Node sibling : siblings) {
+                check[begin + sibling.code] = begin;
+            }
+            for (Node sibling : siblings) {
+                List<Node> children = fetch(sibling);
+                if (children.isEmpty()) {
+                    base[begin + sibling.code] = -sibling.left - 1;
+                } else {
+                    int childBegin = insert(children);
+                    base[begin + sibling.code] = childBegin;
+                }
+            }
+            return begin;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= base.length) {
+                return;
+            }
+            int length = Math.max(capacity, base.length + base.length / 2);
+            base = Arrays.copyOf(base, length);
+            check = Arrays.copyOf(check, length);
+            used = Arrays.copyOf(used, length);
+        }
+    }
+}
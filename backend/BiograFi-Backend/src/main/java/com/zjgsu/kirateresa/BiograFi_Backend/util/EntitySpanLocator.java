@@ -0,0 +1,96 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 实体定位工具：在原文中找出实体文本的所有出现位置，并按 (start, end, label) 去重
+ */
+public final class EntitySpanLocator {
+
+    /**
+     * 合法的实体标签，下标参与去重键的编码
+     */
+    public static final List<String> VALID_LABELS = List.of("人物", "地名", "时间", "器物", "概念");
+
+    /**
+     * 标注结果的排序规则：起始位置、结束位置、标签顺序
+     */
+    public static final Comparator<AutoAnnotationItem> SPAN_ORDER = Comparator
+            .comparing(AutoAnnotationItem::getStart)
+            .thenComparing(AutoAnnotationItem::getEnd)
+            .thenComparing(item -> VALID_LABELS.indexOf(item.getLabel()));
+
+    private EntitySpanLocator() {
+    }
+
+    /**
+     * 一次扫描定位所有实体的所有出现位置
+     * @param text 原文
+     * @param labelsByText 实体文本到标签集合的映射
+     * @return 去重并排序的标注结果
+     */
+    public static List<AutoAnnotationItem> locate(String text, Map<String, ? extends Collection<String>> labelsByText) {
+        List<String> patterns = new ArrayList<>(labelsByText.keySet());
+        AhoCorasick automaton = new AhoCorasick(patterns);
+
+        Set<Long> seen = new HashSet<>();
+        List<AutoAnnotationItem> annotations = new ArrayList<>();
+        automaton.search(text, (patternIndex, start, end) -> {
+            String entityText = patterns.get(patternIndex);
+            for (String label : labelsByText.get(entityText)) {
+                if (seen.add(spanKey(start, end, label))) {
+                    AutoAnnotationItem item = new AutoAnnotationItem();
+                    item.setStart(start);
+                    item.setEnd(end);
+                    item.setLabel(label);
+                    item.setText(entityText);
+                    annotations.add(item);
+                }
+            }
+        });
+
+        annotations.sort(SPAN_ORDER);
+        return annotations;
+    }
+
+    /**
+     * 定位单个实体的所有出现位置（含重叠出现），只有一个模式时直接逐次 indexOf，不构建自动机
+     * @param text 原文
+     * @param entityText 实体文本，不能为空
+     * @param label 标签
+     * @return 按起始位置排序的标注结果
+     */
+    public static List<AutoAnnotationItem> locate(String text, String entityText, String label) {
+        List<AutoAnnotationItem> annotations = new ArrayList<>();
+        for (int start = text.indexOf(entityText); start >= 0; start = text.indexOf(entityText, start + 1)) {
+            AutoAnnotationItem item = new AutoAnnotationItem();
+            item.setStart(start);
+            item.setEnd(start + entityText.length());
+            item.setLabel(label);
+            item.setText(entityText);
+            annotations.add(item);
+        }
+        return annotations;
+    }
+
+    /**
+     * 将 (start, end, label) 编码为一个 long，用作 O(1) 去重键
+     * 高 32 位为起始位置，其后 29 位为长度，低 3 位为标签下标
+     * @param start 起始位置
+     * @param end 结束位置
+     * @param label 标签
+     * @return 去重键
+     */
+    public static long spanKey(int start, int end, String label) {
+        int labelIndex = VALID_LABELS.indexOf(label);
+        return ((long) start << 32) | ((long) (end - start) << 3) | (labelIndex & 0x7);
+    }
+}
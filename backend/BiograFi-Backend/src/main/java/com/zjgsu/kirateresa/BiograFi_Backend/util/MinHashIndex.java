@@ -0,0 +1,264 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 基于 MinHash 与 LSH 的近似重复文本索引
+ * 文本规范化（全半角统一、去除空白和标点）后按字符 n-gram 切分，用多个哈希函数的最小值作为签名，
+ * 两个签名相同位置取值相等的比例即为 Jaccard 相似度的估计；签名分成若干段，任一段完全相同的条目作为候选，
+ * 再按签名估计的相似度筛选。同组签名相同的条目只保留最新的值；条目数超过上限时淘汰最久未命中的条目
+ * @param <V> 条目关联的值类型
+ */
+public class MinHashIndex<V> {
+
+    /**
+     * 查询结果
+     * @param value 最相似条目的值
+     * @param similarity 估计的 Jaccard 相似度
+     */
+    public record Match<V>(V value, double similarity) {
+    }
+
+    /**
+     * 索引条目
+     * @param group 分组，只在同组条目之间查找
+     * @param signature MinHash 签名
+     * @param bandKeys 各段的桶键
+     * @param value 值
+     */
+    private record Entry<V>(String group, long[] signature, long[] bandKeys, V value) {
+    }
+
+    /**
+     * 条目的去重键：分组与签名都相同的文本视为同一条目
+     */
+    private record SignatureKey(String group, long[] signature) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SignatureKey key && group.equals(key.group) && Arrays.equals(signature, key.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * group.hashCode() + Arrays.hashCode(signature);
+        }
+    }
+
+    private final int shingleSize;
+    private final int bands;
+    private final int rows;
+    private final int maxEntries;
+    private final long[] seeds;
+
+    private long nextId;
+    private final Map<Long, Entry<V>> entries = new HashMap<>();
+    // 按命中顺序排列的条目编号，只有 put 和 find 返回的条目会被移到末尾，扫描过的候选不影响淘汰顺序
+    private final LinkedHashMap<Long, Boolean> recency = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<SignatureKey, Long> ids = new HashMap<>();
+    // 桶键 -> 条目编号
+    private final Map<Long, List<Long>> buckets = new HashMap<>();
+
+    /**
+     * @param shingleSize 字符 n-gram 长度
+     * @param bands 签名分段数
+     * @param rows 每段的哈希函数个数，签名长度为 bands * rows
+     * @param maxEntries 条目数上限
+     */
+    public MinHashIndex(int shingleSize, int bands, int rows, int maxEntries) {
+        this.shingleSize = Math.max(1, shingleSize);
+        this.bands = Math.max(1, bands);
+        this.rows = Math.max(1, rows);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.seeds = new long[this.bands * this.rows];
+        long state = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < seeds.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            seeds[i] = mix(state);
+        }
+    }
+
+    /**
+     * 规范化文本：全角字符转半角、英文转小写，去除空白、标点和符号
+     * @param text 文本
+     * @return 规范化后的文本
+     */
+    public static String normalize(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        StringBuilder builder = new StringBuilder(folded.length());
+        folded.codePoints().forEach(codePoint -> {
+            if (Character.isLetterOrDigit(codePoint)) {
+                builder.appendCodePoint(Character.toLowerCase(codePoint));
+            }
+        });
+        return builder.toString();
+    }
+
+    /**
+     * 添加条目，同组中已有签名相同的条目时替换其值
+     * @param group 分组
+     * @param normalizedText 规范化后的文本
+     * @param value 值
+     */
+    public synchronized void put(String group, String normalizedText, V value) {
+        long[] signature = signature(normalizedText);
+        SignatureKey signatureKey = new SignatureKey(group, signature);
+        Long existing = ids.get(signatureKey);
+        if (existing != null) {
+            entries.put(existing, new Entry<>(group, signature, entries.get(existing).bandKeys(), value));
+            recency.get(existing);
+            return;
+        }
+
+        long[] bandKeys = bandKeys(group, signature);
+        long id = nextId++;
+        entries.put(id, new Entry<>(group, signature, bandKeys, value));
+        recency.put(id, Boolean.TRUE);
+        ids.put(signatureKey, id);
+        for (long bandKey : bandKeys) {
+            buckets.computeIfAbsent(bandKey, key -> new ArrayList<>(1)).add(id);
+        }
+        if (entries.size() > maxEntries) {
+            Iterator<Long> eldest = recency.keySet().iterator();
+            long removed = eldest.next();
+            eldest.remove();
+            unlink(removed, entries.remove(removed));
+        }
+    }
+
+    /**
+     * 查找同组中估计相似度不低于阈值的最相似条目
+     * @param group 分组
+     * @param normalizedText 规范化后的文本
+     * @param threshold 相似度阈值
+     * @return 最相似的条目；没有达到阈值的条目时返回空
+     */
+    public synchronized Optional<Match<V>> find(String group, String normalizedText, double threshold) {
+        long[] signature = signature(normalizedText);
+        Set<Long> candidates = new HashSet<>();
+        for (long bandKey : bandKeys(group, signature)) {
+            List<Long> bucket = buckets.get(bandKey);
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+
+        Long bestId = null;
+        double bestSimilarity = -1;
+        for (Long id : candidates) {
+            Entry<V> entry = entries.get(id);
+            if (entry == null || !entry.group().equals(group)) {
+                continue;
+            }
+            double similarity = similarity(signature, entry.signature());
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                bestId = id;
+            }
+        }
+        if (bestId == null || bestSimilarity < threshold) {
+            return Optional.empty();
+        }
+        recency.get(bestId);
+        return Optional.of(new Match<>(entries.get(bestId).value(), bestSimilarity));
+    }
+
+    /**
+     * @return 条目数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 计算 MinHash 签名，文本短于 n-gram 长度时整体作为一个 n-gram
+     * @param normalizedText 规范化后的文本
+     * @return 签名
+     */
+    long[] signature(String normalizedText) {
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        int count = Math.max(1, normalizedText.length() - shingleSize + 1);
+        for (int start = 0; start < count; start++) {
+            long shingle = shingleHash(normalizedText, start, Math.min(normalizedText.length(), start + shingleSize));
+            for (int i = 0; i < seeds.length; i++) {
+                long hash = mix(shingle ^ seeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 估计两个签名对应文本的 Jaccard 相似度
+     */
+    static double similarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    private long[] bandKeys(String group, long[] signature) {
+        long groupHash = shingleHash(group, 0, group.length());
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = mix(groupHash + band);
+            for (int row = 0; row < rows; row++) {
+                key = mix(key ^ signature[band * rows + row]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    private void unlink(long id, Entry<V> entry) {
+        ids.remove(new SignatureKey(entry.group(), entry.signature()));
+        for (long bandKey : entry.bandKeys()) {
+            List<Long> bucket = buckets.get(bandKey);
+            if (bucket != null) {
+                bucket.remove(Long.valueOf(id));
+                if (bucket.isEmpty()) {
+                    buckets.remove(bandKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * FNV-1a 64 位哈希
+     */
+    private static long shingleHash(String text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 混合函数，使不同种子得到近似独立的哈希值
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,124 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * 标注结果增量解析器
+ * 模型以流式输出 [{"text": ..., "label": ...}, ...] 时，逐段喂入内容，每解析出一个完整对象立即回调，
+ * 不等待整个数组结束，也不构建 JSON 树。数组开始前的内容（如 markdown 代码块标记）会被跳过。
+ * 遇到格式错误时停止解析并标记失败，由调用方决定是否对完整响应做一次兜底解析
+ */
+public class StreamingAnnotationParser {
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final BiConsumer<String, String> onEntity;
+
+    private boolean started;
+    private boolean finished;
+    private boolean failed;
+    private int depth;
+    private String currentField;
+    private String entityText;
+    private String entityLabel;
+
+    /**
+     * @param onEntity 实体回调，参数为实体文本和标签
+     */
+    public StreamingAnnotationParser(BiConsumer<String, String> onEntity) {
+        try {
+            this.parser = new JsonFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.onEntity = onEntity;
+    }
+
+    /**
+     * 喂入一段模型输出
+     * @param delta 增量内容
+     */
+    public void feed(String delta) {
+        if (finished || failed || delta.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            int arrayStart = delta.indexOf('[');
+            if (arrayStart < 0) {
+                return;
+            }
+            started = true;
+            delta = delta.substring(arrayStart);
+        }
+
+        byte[] bytes = delta.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /**
+     * 是否已解析到数组结尾
+     * @return 是否结束
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 是否因格式错误停止了解析
+     * @return 是否失败
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_ARRAY, START_OBJECT -> {
+                    depth++;
+                    if (depth == 2 && token == JsonToken.START_OBJECT) {
+                        entityText = null;
+                        entityLabel = null;
+                    }
+                }
+                case END_ARRAY, END_OBJECT -> {
+                    if (depth == 2 && token == JsonToken.END_OBJECT && entityText != null && entityLabel != null) {
+                        onEntity.accept(entityText, entityLabel);
+                    }
+                    depth--;
+                    if (depth == 0) {
+                        // 数组结束，忽略其后的内容（如结尾的代码块标记）
+                        finished = true;
+                        feeder.endOfInput();
+                    }
+                }
+                case FIELD_NAME -> currentField = parser.currentName();
+                case VALUE_STRING -> {
+                    if (depth == 2 && "text".equals(currentField)) {
+                        entityText = parser.getText();
+                    } else if (depth == 2 && "label".equals(currentField)) {
+                        entityLabel = parser.getText();
+                    }
+                }
+                default -> {
+                    // 其他字段值忽略
+                }
+            }
+        }
+    }
+}
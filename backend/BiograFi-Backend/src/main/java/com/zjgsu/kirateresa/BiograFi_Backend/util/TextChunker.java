@@ -0,0 +1,133 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本切分工具，按句末标点和换行将长文本切分为不超过指定长度的片段
+ */
+public final class TextChunker {
+
+    /**
+     * 文本片段，[start, end) 为其在原文中的位置
+     */
+    public record Chunk(int start, int end) {
+
+        public String text(String source) {
+            return source.substring(start, end);
+        }
+    }
+
+    private TextChunker() {
+    }
+
+    /**
+     * 判断字符是否为句末标点或换行
+     * @param c 字符
+     * @return 是否为句子边界
+     */
+    public static boolean isSentenceEnd(char c) {
+        return c == '。' || c == '！' || c == '？' || c == '\n';
+    }
+
+    /**
+     * 判断字符是否为紧跟句末标点的右引号或右括号，这类字符应归入前一句
+     * @param c 字符
+     * @return 是否为右侧闭合符号
+     */
+    private static boolean isClosing(char c) {
+        return c == '”' || c == '’' || c == '」' || c == '』' || c == '）' || c == '》';
+    }
+
+    /**
+     * 将文本切分为句子
+     * @param text 文本
+     * @return 句子列表，首尾相接覆盖全文
+     */
+    public static List<Chunk> splitSentences(String text) {
+        List<Chunk> sentences = new ArrayList<>();
+        int length = text.length();
+        int start = 0;
+        int i = 0;
+        while (i < length) {
+            if (isSentenceEnd(text.charAt(i))) {
+                int end = i + 1;
+                // 连续的句末标点、换行和右引号归入同一句
+                while (end < length && (isSentenceEnd(text.charAt(end)) || isClosing(text.charAt(end)))) {
+                    end++;
+                }
+                sentences.add(new Chunk(start, end));
+                start = end;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        if (start < length) {
+            sentences.add(new Chunk(start, length));
+        }
+        return sentences;
+    }
+
+    /**
+     * 将文本切分为不超过 maxChars 的片段，优先在句子边界处切分
+     * 单句超过 maxChars 时按长度强制切分，尽量落在逗号、分号之后
+     * @param text 文本
+     * @param maxChars 片段最大字符数
+     * @return 片段列表，首尾相接覆盖全文
+     */
+    public static List<Chunk> split(String text, int maxChars) {
+        if (maxChars <= 0) {
+            throw new IllegalArgumentException("maxChars 必须为正数");
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        int chunkEnd = 0;
+        for (Chunk sentence : splitSentences(text)) {
+            if (sentence.end() - chunkStart <= maxChars) {
+                chunkEnd = sentence.end();
+                continue;
+            }
+
+            // 当前片段已满，先输出
+            if (chunkEnd > chunkStart) {
+                chunks.add(new Chunk(chunkStart, chunkEnd));
+                chunkStart = chunkEnd;
+            }
+
+            // 过长的单句强制切分
+            while (sentence.end() - chunkStart > maxChars) {
+                int cut = softBoundary(text, chunkStart, chunkStart + maxChars);
+                chunks.add(new Chunk(chunkStart, cut));
+                chunkStart = cut;
+            }
+            chunkEnd = sentence.end();
+        }
+        if (chunkEnd > chunkStart) {
+            chunks.add(new Chunk(chunkStart, chunkEnd));
+        }
+        return chunks;
+    }
+
+    /**
+     * 在 (from, limit] 范围内从后向前寻找逗号、分号等次级断点，找不到时返回 limit；
+     * 总是返回大于 from 的位置，limit 只容得下半个代理对时整个代理对归入本片段（比 limit 多一个字符）
+     */
+    private static int softBoundary(String text, int from, int limit) {
+        int lowerBound = from + (limit - from) / 2;
+        for (int i = limit - 1; i >= lowerBound; i--) {
+            char c = text.charAt(i);
+            if (c == '，' || c == '；' || c == '：' || c == '、' || c == ',' || c == ';') {
+                return i + 1;
+            }
+        }
+        // 不在代理对中间切断（古籍中的扩展区汉字）
+        int cut = Character.isHighSurrogate(text.charAt(limit - 1)) ? limit - 1 : limit;
+        if (cut > from) {
+            return cut;
+        }
+        return Character.isSurrogatePair(text.charAt(from), from + 1 < text.length() ? text.charAt(from + 1) : '\0')
+                ? from + 2 : from + 1;
+    }
+}
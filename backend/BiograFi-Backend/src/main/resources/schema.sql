@@ -61,4 +61,112 @@ CREATE TABLE IF NOT EXISTS location_geocodes (
     created_at DATETIME NOT NULL,
     updated_at DATETIME NOT NULL,
     CONSTRAINT unique_name UNIQUE (name)
-);
\ No newline at end of file
+);
+
+-- AI 响应缓存表
+CREATE TABLE IF NOT EXISTS ai_response_cache (
+    cache_key VARCHAR(64) PRIMARY KEY,
+    operation VARCHAR(32) NOT NULL,
+    model VARCHAR(64),
+    response LONGTEXT,
+    created_at DATETIME NOT NULL
+);
+
+-- 文档段落表（BM25 段落检索）
+CREATE TABLE IF NOT EXISTS document_passages (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    document_id VARCHAR(64) NOT NULL,
+    project_id VARCHAR(64),
+    passage_index INT NOT NULL,
+    start_offset INT NOT NULL,
+    end_offset INT NOT NULL,
+    content_hash VARCHAR(64) NOT NULL,
+    terms LONGTEXT,
+    INDEX idx_passage_document (document_id, passage_index),
+    INDEX idx_passage_project (project_id)
+);
+
+-- 后台自动标注任务表
+CREATE TABLE IF NOT EXISTS annotation_jobs (
+    id VARCHAR(64) PRIMARY KEY,
+    user_id INT,
+    project_id VARCHAR(64),
+    document_id VARCHAR(64),
+    status VARCHAR(16) NOT NULL,
+    total_documents INT NOT NULL,
+    completed_documents INT NOT NULL,
+    failed_documents INT NOT NULL,
+    annotation_count INT NOT NULL,
+    error TEXT,
+    created_at DATETIME NOT NULL,
+    updated_at DATETIME NOT NULL,
+    finished_at DATETIME,
+    INDEX idx_job_user (user_id, created_at),
+    INDEX idx_job_status (status)
+);
+
+-- 标注任务文档记录表
+CREATE TABLE IF NOT EXISTS annotation_job_items (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    job_id VARCHAR(64) NOT NULL,
+    document_id VARCHAR(64) NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    annotation_count INT,
+    error TEXT,
+    updated_at DATETIME,
+    INDEX idx_job_item_job (job_id, status)
+);
+
+-- 单句自动标注结果表（增量标注）
+CREATE TABLE IF NOT EXISTS ai_sentence_annotations (
+    sentence_key VARCHAR(64) PRIMARY KEY,
+    model VARCHAR(64),
+    annotations TEXT,
+    created_at DATETIME NOT NULL
+);
+
+-- 项目 AI 设置表
+CREATE TABLE IF NOT EXISTS project_ai_settings (
+    project_id VARCHAR(64) PRIMARY KEY,
+    prefetch_enabled BOOLEAN NOT NULL,
+    updated_at DATETIME NOT NULL
+);
+
+-- 预取标注建议表
+CREATE TABLE IF NOT EXISTS ai_annotation_suggestions (
+    document_id VARCHAR(64) PRIMARY KEY,
+    content_hash VARCHAR(64) NOT NULL,
+    model VARCHAR(64),
+    annotations LONGTEXT,
+    updated_at DATETIME NOT NULL
+);
+
+-- AI 用量记录表
+CREATE TABLE IF NOT EXISTS ai_usage_records (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    caller VARCHAR(64) NOT NULL,
+    user_id INT,
+    project_id VARCHAR(64),
+    document_id VARCHAR(64),
+    operation VARCHAR(32) NOT NULL,
+    model VARCHAR(64),
+    prompt_tokens BIGINT NOT NULL,
+    completion_tokens BIGINT NOT NULL,
+    cache_hit_tokens BIGINT NOT NULL,
+    duration_ms BIGINT NOT NULL,
+    success BOOLEAN NOT NULL,
+    usage_date DATE NOT NULL,
+    created_at DATETIME NOT NULL,
+    INDEX idx_usage_user (usage_date, user_id),
+    INDEX idx_usage_project (usage_date, project_id),
+    INDEX idx_usage_caller (usage_date, caller)
+);
+
+-- 文档分词结果表
+CREATE TABLE IF NOT EXISTS document_segmentations (
+    document_id VARCHAR(64) PRIMARY KEY,
+    content_hash VARCHAR(64) NOT NULL,
+    token_count INT NOT NULL,
+    token_lengths LONGTEXT NOT NULL,
+    updated_at DATETIME NOT NULL
+);
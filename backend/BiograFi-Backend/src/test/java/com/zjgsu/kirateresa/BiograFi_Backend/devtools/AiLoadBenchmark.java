@@ -0,0 +1,214 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.devtools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI 接口压测工具：并发调用 AiController 的接口，报告吞吐量和 p50/p95/p99 延迟
+ * 配合 DeepSeekStubServer 可在离线环境下复现并测量并发限制、缓存和流式输出的效果。
+ * 用法（参数均可省略）：
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *     com.zjgsu.kirateresa.BiograFi_Backend.devtools.AiLoadBenchmark \
+ *     baseUrl=http://localhost:5002 endpoint=analyze concurrency=32 requests=500 distinct=50 warmup=20 users=0
+ * </pre>
+ * endpoint 可选 analyze、qa、auto-annotate、analyze/stream、qa/stream、auto-annotate/stream；
+ * distinct 为不同文本的数量，数值越小缓存和请求合并的命中越多；
+ * users 大于 0 时请求轮流携带 userId 1..users，用于观察按用户公平调度的效果
+ */
+public class AiLoadBenchmark {
+
+    private static final String SAMPLE_TEXT = "子曰：学而时习之，不亦说乎？有朋自远方来，不亦乐乎？人不知而不愠，不亦君子乎？";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String endpoint;
+    private final int concurrency;
+    private final int requests;
+    private final int distinct;
+    private final int warmup;
+    private final int users;
+
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    public AiLoadBenchmark(Map<String, String> args) {
+        this.baseUrl = args.getOrDefault("baseUrl", "http://localhost:5002");
+        this.endpoint = args.getOrDefault("endpoint", "analyze");
+        this.concurrency = Integer.parseInt(args.getOrDefault("concurrency", "32"));
+        this.requests = Integer.parseInt(args.getOrDefault("requests", "500"));
+        this.distinct = Math.max(1, Integer.parseInt(args.getOrDefault("distinct", "50")));
+        this.warmup = Integer.parseInt(args.getOrDefault("warmup", "0"));
+        this.users = Integer.parseInt(args.getOrDefault("users", "0"));
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Math.max(4, concurrency)))
+                .build();
+    }
+
+    /**
+     * 单次请求的结果
+     * @param status HTTP 状态码，网络异常时为 -1
+     * @param latencyNanos 完整响应耗时
+     * @param firstEventNanos 流式接口收到首个内容事件的耗时，非流式接口为 -1
+     */
+    private record Sample(int status, long latencyNanos, long firstEventNanos) {
+    }
+
+    /**
+     * 执行压测并打印报告
+     * @throws Exception 压测中断
+     */
+    public void run() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            if (warmup > 0) {
+                runRound(pool, warmup);
+                statusCounts.clear();
+                failures.reset();
+            }
+
+            long started = System.nanoTime();
+            List<Sample> samples = runRound(pool, requests);
+            long elapsed = System.nanoTime() - started;
+            report(samples, elapsed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<Sample> runRound(ExecutorService pool, int count) throws Exception {
+        AtomicInteger sequence = new AtomicInteger();
+        List<Future<Sample>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(pool.submit(() -> execute(sequence.getAndIncrement() % distinct)));
+        }
+        List<Sample> samples = new ArrayList<>(count);
+        for (Future<Sample> future : futures) {
+            samples.add(future.get());
+        }
+        return samples;
+    }
+
+    private Sample execute(int variant) {
+        boolean streaming = endpoint.endsWith("/stream");
+        long started = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ai/" + endpoint))
+                    .timeout(Duration.ofMinutes(5))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", streaming ? "text/event-stream" : "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(requestBody(variant)))
+                    .build();
+
+            if (!streaming) {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                count(response.statusCode());
+                return new Sample(response.statusCode(), System.nanoTime() - started, -1);
+            }
+
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            long firstEvent = -1;
+            boolean failed = false;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (firstEvent < 0 && (line.equals("event:token") || line.equals("event:annotation"))) {
+                        firstEvent = System.nanoTime() - started;
+                    } else if (line.equals("event:error")) {
+                        failed = true;
+                    }
+                }
+            }
+            // SSE 接口的错误以 error 事件返回，状态码仍为 200
+            int status = failed ? 599 : response.statusCode();
+            count(status);
+            return new Sample(status, System.nanoTime() - started, firstEvent);
+        } catch (Exception e) {
+            failures.increment();
+            count(-1);
+            return new Sample(-1, System.nanoTime() - started, -1);
+        }
+    }
+
+    private String requestBody(int variant) throws Exception {
+        ObjectNode body = objectMapper.createObjectNode();
+        // 变体编号拼入文本，控制不同请求的数量
+        body.put("text", SAMPLE_TEXT + "（" + variant + "）");
+        if (endpoint.startsWith("qa")) {
+            body.put("question", "这句话表达了什么思想？");
+        }
+        if (users > 0) {
+            body.put("userId", variant % users + 1);
+        }
+        return objectMapper.writeValueAsString(body);
+    }
+
+    private void count(int status) {
+        statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    private void report(List<Sample> samples, long elapsedNanos) {
+        long[] latencies = samples.stream().filter(s -> s.status() == 200).mapToLong(Sample::latencyNanos).sorted().toArray();
+        long[] firstEvents = samples.stream().filter(s -> s.firstEventNanos() >= 0).mapToLong(Sample::firstEventNanos).sorted().toArray();
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.printf("接口: /api/ai/%s  并发: %d  请求数: %d  不同文本数: %d%n", endpoint, concurrency, samples.size(), distinct);
+        System.out.printf("总耗时: %.2f s  吞吐量: %.1f req/s  成功吞吐量: %.1f req/s%n",
+                seconds, samples.size() / seconds, latencies.length / seconds);
+        Map<Integer, Long> statuses = new TreeMap<>();
+        statusCounts.forEach((status, adder) -> statuses.put(status, adder.sum()));
+        System.out.println("状态码分布: " + statuses + "（-1 为网络异常，599 为 SSE error 事件）");
+        printPercentiles("成功请求延迟", latencies);
+        if (firstEvents.length > 0) {
+            printPercentiles("首个事件延迟", firstEvents);
+        }
+    }
+
+    private void printPercentiles(String title, long[] sortedNanos) {
+        if (sortedNanos.length == 0) {
+            System.out.println(title + ": 无数据");
+            return;
+        }
+        System.out.printf("%s (ms): p50=%.1f p95=%.1f p99=%.1f max=%.1f%n", title,
+                percentile(sortedNanos, 50), percentile(sortedNanos, 95), percentile(sortedNanos, 99),
+                sortedNanos[sortedNanos.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sortedNanos, double p) {
+        int index = (int) Math.ceil(p / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))] / 1e6;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        Arrays.stream(args).map(arg -> arg.split("=", 2)).filter(parts -> parts.length == 2)
+                .forEach(parts -> options.put(parts[0], parts[1]));
+        new AiLoadBenchmark(options).run();
+        System.exit(0);
+    }
+}
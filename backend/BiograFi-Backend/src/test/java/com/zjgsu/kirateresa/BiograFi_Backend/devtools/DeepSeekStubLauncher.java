@@ -0,0 +1,48 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.devtools;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import io.github.cdimascio.dotenv.Dotenv;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 在应用内嵌启动 DeepSeek 替身服务器（AI_STUB_ENABLED=true 时）
+ * 未显式配置 DEEPSEEK_API_URL 时，AiConfig 会将请求指向该服务器。
+ * 开发工具只在测试源码中，不会打包进生产 jar；需要替身服务器时用测试 classpath 启动应用：
+ * <pre>
+ * mvn spring-boot:test-run -Dspring-boot.run.main-class=com.zjgsu.kirateresa.BiograFi_Backend.BiograFiBackendApplication
+ * </pre>
+ */
+@Slf4j
+@Component
+public class DeepSeekStubLauncher {
+
+    @Autowired
+    private AiConfig aiConfig;
+
+    private DeepSeekStubServer server;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!Boolean.TRUE.equals(aiConfig.getStubEnabled())) {
+            return;
+        }
+        DeepSeekStubServer.Options options = DeepSeekStubServer.Options.fromEnv(Dotenv.configure().load());
+        options.setPort(aiConfig.getStubPort());
+        server = new DeepSeekStubServer(options);
+        server.start();
+        log.info("DeepSeek 替身服务器已启动: {}，当前 API URL: {}", server.getUrl(), aiConfig.getDeepSeekApiUrl());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.devtools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.cdimascio.dotenv.Dotenv;
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DeepSeek（OpenAI 兼容）接口的本地替身服务器，用于离线测量并发限制、缓存和流式输出
+ * 支持可配置的延迟分布、流式输出、429/5xx 故障注入、前缀缓存模拟，以及固定或回显响应。
+ * 可在应用内嵌启动（见 DeepSeekStubLauncher），也可通过 main 方法独立运行，
+ * 再将 DEEPSEEK_API_URL 指向 {@link #getUrl()}
+ */
+public class DeepSeekStubServer {
+
+    /**
+     * 响应内容模式
+     */
+    public enum ResponseMode {
+        /** 回显最后一条用户消息 */
+        ECHO,
+        /** 返回固定内容 */
+        CANNED
+    }
+
+    /**
+     * 替身服务器参数
+     */
+    @Data
+    public static class Options {
+        private int port = 18080;
+        private long latencyMedianMs = 800; // 首字节延迟中位数（毫秒）
+        private double latencySigma = 0.5; // 对数正态分布的 sigma，0 表示固定延迟
+        private long latencyMaxMs = 30000; // 单次延迟上限（毫秒）
+        private int streamChunkChars = 4; // 流式输出每块字符数
+        private long streamChunkDelayMs = 20; // 流式输出块间隔（毫秒）
+        private double rate429 = 0.0; // 注入 429 的概率
+        private double rate5xx = 0.0; // 注入 503 的概率
+        private int retryAfterSeconds = 1; // 429 响应的 Retry-After
+        private ResponseMode responseMode = ResponseMode.CANNED;
+        private String cannedResponse = "[{\"text\": \"孔子\", \"label\": \"人物\"}, {\"text\": \"鲁\", \"label\": \"地名\"}]";
+        private int threads = 64; // 处理请求的线程数
+        private boolean prefixCache = true; // 模拟上游前缀缓存
+        private int prefixCacheMaxEntries = 100000; // 缓存的前缀块数上限
+
+        /**
+         * 从环境变量或 .env 文件读取参数（AI_STUB_*）
+         * @param dotenv 环境变量
+         * @return 参数
+         */
+        public static Options fromEnv(Dotenv dotenv) {
+            Options options = new Options();
+            if (dotenv.get("AI_STUB_PORT") != null) {
+                options.port = Integer.parseInt(dotenv.get("AI_STUB_PORT"));
+            }
+            if (dotenv.get("AI_STUB_LATENCY_MS") != null) {
+                options.latencyMedianMs = Long.parseLong(dotenv.get("AI_STUB_LATENCY_MS"));
+            }
+            if (dotenv.get("AI_STUB_LATENCY_SIGMA") != null) {
+                options.latencySigma = Double.parseDouble(dotenv.get("AI_STUB_LATENCY_SIGMA"));
+            }
+            if (dotenv.get("AI_STUB_STREAM_CHUNK_CHARS") != null) {
+                options.streamChunkChars = Integer.parseInt(dotenv.get("AI_STUB_STREAM_CHUNK_CHARS"));
+            }
+            if (dotenv.get("AI_STUB_STREAM_CHUNK_DELAY_MS") != null) {
+                options.streamChunkDelayMs = Long.parseLong(dotenv.get("AI_STUB_STREAM_CHUNK_DELAY_MS"));
+            }
+            if (dotenv.get("AI_STUB_429_RATE") != null) {
+                options.rate429 = Double.parseDouble(dotenv.get("AI_STUB_429_RATE"));
+            }
+            if (dotenv.get("AI_STUB_5XX_RATE") != null) {
+                options.rate5xx = Double.parseDouble(dotenv.get("AI_STUB_5XX_RATE"));
+            }
+            if (dotenv.get("AI_STUB_RESPONSE_MODE") != null) {
+                options.responseMode = ResponseMode.valueOf(dotenv.get("AI_STUB_RESPONSE_MODE").toUpperCase());
+            }
+            if (dotenv.get("AI_STUB_CANNED_RESPONSE") != null) {
+                options.cannedResponse = dotenv.get("AI_STUB_CANNED_RESPONSE");
+            }
+            if (dotenv.get("AI_STUB_PREFIX_CACHE") != null) {
+                options.prefixCache = Boolean.parseBoolean(dotenv.get("AI_STUB_PREFIX_CACHE"));
+            }
+            return options;
+        }
+    }
+
+    private final Options options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injected429 = new AtomicLong();
+    private final AtomicLong injected5xx = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong promptTokensTotal = new AtomicLong();
+    private final AtomicLong cacheHitTokensTotal = new AtomicLong();
+
+    // 前缀缓存按固定长度分块，键为从开头到该块末尾的累积哈希，按最近使用淘汰
+    private static final int PREFIX_BLOCK = 64;
+    private final LinkedHashMap<Long, Boolean> prefixBlocks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > options.getPrefixCacheMaxEntries();
+        }
+    };
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public DeepSeekStubServer(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * 启动服务器
+     * @throws IOException 端口绑定失败
+     */
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", options.getPort()), 0);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(options.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "deepseek-stub-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * 停止服务器
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * 获取聊天补全接口地址，可直接作为 DEEPSEEK_API_URL
+     * @return 接口地址
+     */
+    public String getUrl() {
+        int port = server != null ? server.getAddress().getPort() : options.getPort();
+        return "http://127.0.0.1:" + port + "/v1/chat/completions";
+    }
+
+    /**
+     * 获取请求统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("injected429", injected429.get());
+        stats.put("injected5xx", injected5xx.get());
+        stats.put("inFlight", inFlight.get());
+        stats.put("maxInFlight", maxInFlight.get());
+        stats.put("promptTokens", promptTokensTotal.get());
+        stats.put("cacheHitTokens", cacheHitTokensTotal.get());
+        return stats;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, error("method not allowed"));
+                return;
+            }
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+
+            // 故障注入在延迟之前判定，模拟上游限流和过载
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < options.getRate429()) {
+                injected429.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(options.getRetryAfterSeconds()));
+                sendJson(exchange, 429, error("rate limit exceeded"));
+                return;
+            }
+            if (roll < options.getRate429() + options.getRate5xx()) {
+                injected5xx.incrementAndGet();
+                sendJson(exchange, 503, error("service unavailable"));
+                return;
+            }
+
+            sleep(sampleLatency());
+            String content = responseContent(body);
+            String model = body.path("model").asText("deepseek-chat");
+            String prompt = body.path("messages").toString();
+            int promptTokens = prompt.length();
+            int cacheHitTokens = cachedPrefixLength(model, prompt);
+            promptTokensTotal.addAndGet(promptTokens);
+            cacheHitTokensTotal.addAndGet(cacheHitTokens);
+            ObjectNode usage = usage(promptTokens, cacheHitTokens, content.length());
+            if (body.path("stream").asBoolean(false)) {
+                boolean includeUsage = body.path("stream_options").path("include_usage").asBoolean(false);
+                stream(exchange, model, content, includeUsage ? usage : null);
+            } else {
+                sendJson(exchange, 200, completion(model, content, usage));
+            }
+        } catch (IOException e) {
+            // 客户端提前断开
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private String responseContent(JsonNode body) {
+        if (options.getResponseMode() == ResponseMode.CANNED) {
+            return options.getCannedResponse();
+        }
+        JsonNode messages = body.path("messages");
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).path("role").asText())) {
+                return messages.get(i).path("content").asText();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 流式输出；usage 非空时（请求携带 stream_options.include_usage）在结束前追加一个只含 usage 的块
+     */
+    private void stream(HttpExchange exchange, String model, String content, ObjectNode usage) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        String id = "stub-" + UUID.randomUUID();
+        OutputStream out = exchange.getResponseBody();
+        int step = Math.max(1, options.getStreamChunkChars());
+        int i = 0;
+        while (i < content.length()) {
+            int end = Math.min(content.length(), i + step);
+            if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                end++;
+            }
+            ObjectNode chunk = objectMapper.createObjectNode();
+            chunk.put("id", id);
+            chunk.put("object", "chat.completion.chunk");
+            chunk.put("model", model);
+            chunk.putArray("choices").addObject().put("index", 0)
+                    .putObject("delta").put("content", content.substring(i, end));
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+            i = end;
+            sleep(options.getStreamChunkDelayMs());
+        }
+        if (usage != null) {
+            ObjectNode chunk = objectMapper.createObjectNode();
+            chunk.put("id", id);
+            chunk.put("object", "chat.completion.chunk");
+            chunk.put("model", model);
+            chunk.putArray("choices");
+            chunk.set("usage", usage);
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+        }
+        writeEvent(out, "[DONE]");
+    }
+
+    private void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private ObjectNode completion(String model, String content, ObjectNode usage) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", "stub-" + UUID.randomUUID());
+        node.put("object", "chat.completion");
+        node.put("model", model);
+        ObjectNode choice = node.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("message").put("role", "assistant").put("content", content);
+        choice.put("finish_reason", "stop");
+        node.set("usage", usage);
+        return node;
+    }
+
+    /**
+     * 模拟上游前缀缓存：按 64 字符分块计算累积哈希，返回与此前请求逐字相同的最长前缀长度（整块计），
+     * 并把本次请求的所有前缀块写入缓存。与 DeepSeek 一样只有完整的块参与匹配，末尾不足一块的部分总计为未命中
+     * @param model 模型，不同模型的缓存互不共享
+     * @param prompt 序列化后的提示词
+     * @return 命中缓存的前缀长度
+     */
+    private int cachedPrefixLength(String model, String prompt) {
+        if (!options.isPrefixCache()) {
+            return 0;
+        }
+        int blocks = prompt.length() / PREFIX_BLOCK;
+        long[] keys = new long[blocks];
+        long hash = 0xcbf29ce484222325L ^ model.hashCode();
+        for (int i = 0; i < blocks * PREFIX_BLOCK; i++) {
+            hash ^= prompt.charAt(i);
+            hash *= 0x100000001b3L;
+            if ((i + 1) % PREFIX_BLOCK == 0) {
+                keys[i / PREFIX_BLOCK] = hash;
+            }
+        }
+        synchronized (prefixBlocks) {
+            int hit = 0;
+            while (hit < blocks && prefixBlocks.get(keys[hit]) != null) {
+                hit++;
+            }
+            for (int i = hit; i < blocks; i++) {
+                prefixBlocks.put(keys[i], Boolean.TRUE);
+            }
+            return hit * PREFIX_BLOCK;
+        }
+    }
+
+    /**
+     * 按 DeepSeek 的格式生成 usage，token 数以字符数近似
+     */
+    private ObjectNode usage(int promptTokens, int cacheHitTokens, int completionTokens) {
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        usage.put("prompt_cache_hit_tokens", cacheHitTokens);
+        usage.put("prompt_cache_miss_tokens", promptTokens - cacheHitTokens);
+        return usage;
+    }
+
+    private ObjectNode error(String message) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.putObject("error").put("message", message);
+        return node;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode node) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(node);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * 按对数正态分布采样延迟，中位数为 latencyMedianMs，长尾由 latencySigma 控制
+     */
+    private long sampleLatency() {
+        double factor = options.getLatencySigma() <= 0 ? 1.0
+                : Math.exp(options.getLatencySigma() * ThreadLocalRandom.current().nextGaussian());
+        return Math.min(options.getLatencyMaxMs(), Math.round(options.getLatencyMedianMs() * factor));
+    }
+
+    private void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+
+    /**
+     * 独立运行替身服务器，参数从环境变量或 .env 文件读取
+     * @param args 未使用
+     * @throws Exception 启动失败
+     */
+    public static void main(String[] args) throws Exception {
+        DeepSeekStubServer stub = new DeepSeekStubServer(Options.fromEnv(Dotenv.configure().ignoreIfMissing().load()));
+        stub.start();
+        System.out.println("DeepSeek 替身服务器已启动: " + stub.getUrl());
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::stop));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,231 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.devtools;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.util.MinHashIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 近似重复缓存离线评估工具：在样例语料上模拟同一篇古文的不同版本（标点、全半角、空白、异体字差异）反复提交分析，
+ * 对比精确缓存与 MinHash 近似匹配在不同阈值下的命中率、误命中率（复用了另一篇文本的结果）及查询耗时。
+ * 不需要启动服务，用法（参数均可省略）：
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *     com.zjgsu.kirateresa.BiograFi_Backend.devtools.NearDuplicateBenchmark \
+ *     requests=5000 seed=42 variantRate=0.7
+ * </pre>
+ * variantRate 为请求使用变体版本（而非原样重复提交）的比例
+ */
+public class NearDuplicateBenchmark {
+
+    // 与 AiNearDuplicateCache 相同的索引参数
+    private static final int SHINGLE_SIZE = 3;
+    private static final int BANDS = 32;
+    private static final int ROWS = 4;
+    private static final int MIN_CHARS = 30;
+    private static final double[] THRESHOLDS = {0.6, 0.7, 0.8, 0.85, 0.9, 0.95};
+
+    private static final List<String> CORPUS = List.of(
+            "子曰：学而时习之，不亦说乎？有朋自远方来，不亦乐乎？人不知而不愠，不亦君子乎？",
+            "有子曰：其为人也孝弟，而好犯上者，鲜矣；不好犯上，而好作乱者，未之有也。君子务本，本立而道生。孝弟也者，其为仁之本与！",
+            "曾子曰：吾日三省吾身：为人谋而不忠乎？与朋友交而不信乎？传不习乎？",
+            "子曰：吾十有五而志于学，三十而立，四十而不惑，五十而知天命，六十而耳顺，七十而从心所欲，不逾矩。",
+            "子曰：温故而知新，可以为师矣。子曰：君子不器。子曰：学而不思则罔，思而不学则殆。",
+            "道可道，非常道；名可名，非常名。无名天地之始，有名万物之母。故常无欲以观其妙，常有欲以观其徼。",
+            "上善若水。水善利万物而不争，处众人之所恶，故几于道。居善地，心善渊，与善仁，言善信，正善治，事善能，动善时。",
+            "天下皆知美之为美，斯恶已；皆知善之为善，斯不善已。故有无相生，难易相成，长短相形，高下相倾，音声相和，前后相随。",
+            "孟子曰：天时不如地利，地利不如人和。三里之城，七里之郭，环而攻之而不胜。夫环而攻之，必有得天时者矣，然而不胜者，是天时不如地利也。",
+            "鱼，我所欲也；熊掌，亦我所欲也。二者不可得兼，舍鱼而取熊掌者也。生，亦我所欲也；义，亦我所欲也。二者不可得兼，舍生而取义者也。",
+            "晋太元中，武陵人捕鱼为业。缘溪行，忘路之远近。忽逢桃花林，夹岸数百步，中无杂树，芳草鲜美，落英缤纷。渔人甚异之，复前行，欲穷其林。",
+            "先帝创业未半而中道崩殂，今天下三分，益州疲弊，此诚危急存亡之秋也。然侍卫之臣不懈于内，忠志之士忘身于外者，盖追先帝之殊遇，欲报之于陛下也。",
+            "山不在高，有仙则名。水不在深，有龙则灵。斯是陋室，惟吾德馨。苔痕上阶绿，草色入帘青。谈笑有鸿儒，往来无白丁。",
+            "予独爱莲之出淤泥而不染，濯清涟而不妖，中通外直，不蔓不枝，香远益清，亭亭净植，可远观而不可亵玩焉。",
+            "庆历四年春，滕子京谪守巴陵郡。越明年，政通人和，百废具兴。乃重修岳阳楼，增其旧制，刻唐贤今人诗赋于其上，属予作文以记之。",
+            "北冥有鱼，其名为鲲。鲲之大，不知其几千里也。化而为鸟，其名为鹏。鹏之背，不知其几千里也；怒而飞，其翼若垂天之云。"
+    );
+
+    // 简繁/异体对照，变体版本随机替换其中的一两个字
+    private static final Map<Character, Character> VARIANTS = Map.ofEntries(
+            Map.entry('说', '說'), Map.entry('为', '為'), Map.entry('学', '學'), Map.entry('无', '無'),
+            Map.entry('于', '於'), Map.entry('与', '與'), Map.entry('时', '時'), Map.entry('乐', '樂'),
+            Map.entry('万', '萬'), Map.entry('处', '處'), Map.entry('难', '難'), Map.entry('长', '長'),
+            Map.entry('声', '聲'), Map.entry('后', '後'), Map.entry('义', '義'), Map.entry('鱼', '魚'),
+            Map.entry('远', '遠'), Map.entry('树', '樹'), Map.entry('业', '業'),
+            Map.entry('龙', '龍'), Map.entry('灵', '靈'), Map.entry('阶', '階'), Map.entry('帘', '簾'),
+            Map.entry('谈', '談'), Map.entry('鸿', '鴻'), Map.entry('莲', '蓮'),
+            Map.entry('涟', '漣'), Map.entry('净', '淨'), Map.entry('观', '觀'), Map.entry('楼', '樓'),
+            Map.entry('诗', '詩'), Map.entry('鲲', '鯤'), Map.entry('鹏', '鵬'), Map.entry('飞', '飛'),
+            Map.entry('云', '雲'), Map.entry('里', '裏'), Map.entry('国', '國'), Map.entry('见', '見')
+    );
+
+    private final int requests;
+    private final double variantRate;
+    private final Random random;
+
+    public NearDuplicateBenchmark(Map<String, String> args) {
+        this.requests = Integer.parseInt(args.getOrDefault("requests", "5000"));
+        this.variantRate = Double.parseDouble(args.getOrDefault("variantRate", "0.7"));
+        this.random = new Random(Long.parseLong(args.getOrDefault("seed", "42")));
+    }
+
+    /**
+     * 单次请求
+     * @param sourceId 对应的原文编号
+     * @param text 提交的文本
+     */
+    private record Request(int sourceId, String text) {
+    }
+
+    /**
+     * 执行评估并打印报告
+     */
+    public void run() {
+        List<Request> stream = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            int sourceId = random.nextInt(CORPUS.size());
+            String original = CORPUS.get(sourceId);
+            stream.add(new Request(sourceId, random.nextDouble() < variantRate ? variant(original) : original));
+        }
+
+        // 精确缓存：与 AiServiceImpl 相同，只去除首尾空白后按全文匹配
+        Set<String> exact = new HashSet<>();
+        int exactHits = 0;
+        for (Request request : stream) {
+            if (!exact.add(request.text().strip())) {
+                exactHits++;
+            }
+        }
+        Set<Integer> seenSources = new HashSet<>();
+        int reusable = 0;
+        for (Request request : stream) {
+            if (!seenSources.add(request.sourceId())) {
+                reusable++;
+            }
+        }
+
+        System.out.printf("语料: %d 篇  请求数: %d  变体比例: %.0f%%  可复用上限（同一原文已出现过）: %.1f%%%n",
+                CORPUS.size(), requests, variantRate * 100, 100.0 * reusable / requests);
+        System.out.printf("精确缓存命中率: %.1f%%%n", 100.0 * exactHits / requests);
+        System.out.println("阈值    命中率    提升     误命中   平均查询(µs)");
+        for (double threshold : THRESHOLDS) {
+            evaluate(stream, threshold, exactHits);
+        }
+    }
+
+    private void evaluate(List<Request> stream, double threshold, int exactHits) {
+        MinHashIndex<Integer> index = new MinHashIndex<>(SHINGLE_SIZE, BANDS, ROWS, 10_000);
+        Map<String, Integer> exact = new HashMap<>();
+        int hits = 0;
+        int wrong = 0;
+        long lookupNanos = 0;
+        int lookups = 0;
+        for (Request request : stream) {
+            String text = request.text().strip();
+            Integer cached = exact.get(text);
+            if (cached != null) {
+                hits++;
+                continue;
+            }
+            String normalized = MinHashIndex.normalize(text);
+            if (normalized.length() >= MIN_CHARS) {
+                long started = System.nanoTime();
+                Optional<MinHashIndex.Match<Integer>> match = index.find("analyze", normalized, threshold);
+                lookupNanos += System.nanoTime() - started;
+                lookups++;
+                if (match.isPresent()) {
+                    hits++;
+                    if (match.get().value() != request.sourceId()) {
+                        wrong++;
+                    }
+                    continue;
+                }
+                index.put("analyze", normalized, request.sourceId());
+            }
+            // 未命中时视为调用模型并写入缓存
+            exact.put(text, request.sourceId());
+        }
+        System.out.printf("%.2f   %6.1f%%   %+6.1f%%   %5d   %8.1f%n", threshold,
+                100.0 * hits / stream.size(), 100.0 * (hits - exactHits) / stream.size(), wrong,
+                lookups == 0 ? 0.0 : lookupNanos / 1e3 / lookups);
+    }
+
+    /**
+     * 生成变体版本：随机组合标点差异、全角半角、空白和异体字
+     */
+    private String variant(String text) {
+        String result = text;
+        if (random.nextBoolean()) {
+            // 去掉或替换部分标点
+            StringBuilder builder = new StringBuilder();
+            for (char c : result.toCharArray()) {
+                if ("，。；：？！".indexOf(c) >= 0) {
+                    double roll = random.nextDouble();
+                    if (roll < 0.3) {
+                        continue;
+                    }
+                    builder.append(roll < 0.6 ? halfWidth(c) : c);
+                } else {
+                    builder.append(c);
+                }
+            }
+            result = builder.toString();
+        }
+        if (random.nextBoolean()) {
+            // 插入空白和换行
+            StringBuilder builder = new StringBuilder();
+            for (char c : result.toCharArray()) {
+                builder.append(c);
+                if (random.nextDouble() < 0.05) {
+                    builder.append(random.nextBoolean() ? " " : "\n");
+                }
+            }
+            result = builder.toString();
+        }
+        int swaps = random.nextInt(3);
+        for (int i = 0; i < swaps; i++) {
+            result = swapVariant(result);
+        }
+        return result;
+    }
+
+    private String swapVariant(String text) {
+        char[] chars = text.toCharArray();
+        int offset = random.nextInt(chars.length);
+        for (int i = 0; i < chars.length; i++) {
+            int position = (offset + i) % chars.length;
+            Character replacement = VARIANTS.get(chars[position]);
+            if (replacement != null) {
+                chars[position] = replacement;
+                return new String(chars);
+            }
+        }
+        return text;
+    }
+
+    private static char halfWidth(char c) {
+        return switch (c) {
+            case '，' -> ',';
+            case '。' -> '.';
+            case '；' -> ';';
+            case '：' -> ':';
+            case '？' -> '?';
+            case '！' -> '!';
+            default -> c;
+        };
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        Arrays.stream(args).map(arg -> arg.split("=", 2)).filter(parts -> parts.length == 2)
+                .forEach(parts -> options.put(parts[0], parts[1]));
+        new NearDuplicateBenchmark(options).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiCircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 100;
+
+    private static void waitForCooldown() throws InterruptedException {
+        Thread.sleep(OPEN_MILLIS + 50);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        AiCircuitBreaker breaker = new AiCircuitBreaker(3, 60_000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.recordFailure();
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1L, breaker.getStats().get("rejected"));
+    }
+
+    @Test
+    void halfOpenProbeSuccessClosesBreaker() throws InterruptedException {
+        AiCircuitBreaker breaker = new AiCircuitBreaker(1, OPEN_MILLIS);
+        breaker.recordFailure();
+        assertFalse(breaker.tryAcquire());
+
+        waitForCooldown();
+        assertEquals(AiCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        // 半开状态只放行一个探测请求
+        assertFalse(breaker.tryAcquire());
+
+        breaker.recordSuccess();
+
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenProbeFailureReopensBreaker() throws InterruptedException {
+        AiCircuitBreaker breaker = new AiCircuitBreaker(5, OPEN_MILLIS);
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure();
+        }
+        waitForCooldown();
+        assertTrue(breaker.tryAcquire());
+
+        // 半开状态下一次失败即重新打开，不需要再累计到阈值
+        breaker.recordFailure();
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        waitForCooldown();
+        assertTrue(breaker.tryAcquire());
+        breaker.recordSuccess();
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void releaseFreesUnusedProbe() throws InterruptedException {
+        AiCircuitBreaker breaker = new AiCircuitBreaker(1, OPEN_MILLIS);
+        breaker.recordFailure();
+        waitForCooldown();
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.release();
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(AiCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+}
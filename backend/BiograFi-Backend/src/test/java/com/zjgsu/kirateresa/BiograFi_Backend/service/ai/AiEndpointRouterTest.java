@@ -0,0 +1,93 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiUpstreamUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AiEndpointRouterTest {
+
+    private AiEndpointRouter router;
+
+    @BeforeEach
+    void setUp() {
+        AiConfig config = new AiConfig();
+        config.setDeepSeekModel("deepseek-chat");
+        config.setBreakerFailureThreshold(1);
+        config.setBreakerOpenSeconds(60);
+        config.setRoutingExploreRate(0.0);
+        config.setEndpoints(new ArrayList<>(List.of(
+                new AiConfig.Endpoint("http://lite", "deepseek-lite", 1.0, 1000, "key"),
+                new AiConfig.Endpoint("http://chat-a", "deepseek-chat", 1.0, 0, "key"),
+                new AiConfig.Endpoint("http://chat-b", "deepseek-chat", 1.0, 0, "key"))));
+        router = new AiEndpointRouter();
+        ReflectionTestUtils.setField(router, "aiConfig", config);
+        router.init();
+    }
+
+    private void open(String url) {
+        router.getEndpoints().stream().filter(endpoint -> endpoint.getUrl().equals(url)).findFirst().orElseThrow()
+                .getCircuitBreaker().recordFailure();
+    }
+
+    @Test
+    void routedModelPicksSmallestTierThatAcceptsInput() {
+        assertEquals("deepseek-lite", router.routedModel(500, null));
+        assertEquals("deepseek-lite", router.routedModel(1000, "deepseek-chat"));
+        assertEquals("deepseek-chat", router.routedModel(1001, null));
+        assertEquals("deepseek-chat", router.routedModel(1_000_000, ""));
+    }
+
+    @Test
+    void explicitNonDefaultModelIsKept() {
+        assertEquals("deepseek-reasoner", router.routedModel(10, "deepseek-reasoner"));
+    }
+
+    @Test
+    void acquireStaysWithinRoutedModel() {
+        assertEquals("http://lite", router.acquire(500, "deepseek-lite", false, Set.of()).endpoint().getUrl());
+
+        AiEndpointRouter.Route route = router.acquire(500, "deepseek-chat", false, Set.of());
+        assertEquals("deepseek-chat", route.model());
+        assertNotEquals("http://lite", route.endpoint().getUrl());
+    }
+
+    @Test
+    void unknownModelIsPassedThrough() {
+        assertEquals("custom-model", router.acquire(500, "custom-model", false, Set.of()).model());
+    }
+
+    @Test
+    void retryPrefersEndpointsNotYetTried() {
+        AiEndpointRouter.Route first = router.acquire(5000, "deepseek-chat", false, Set.of());
+        AiEndpointRouter.Route second = router.acquire(5000, "deepseek-chat", false, Set.of(first.endpoint()));
+
+        assertNotEquals(first.endpoint().getUrl(), second.endpoint().getUrl());
+        // 全部尝试过后允许重复
+        AiEndpointRouter.Route third = router.acquire(5000, "deepseek-chat", false,
+                Set.of(first.endpoint(), second.endpoint()));
+        assertEquals("deepseek-chat", third.model());
+    }
+
+    @Test
+    void openBreakersAreSkippedAndAllOpenFails() {
+        open("http://chat-a");
+        assertEquals("http://chat-b", router.acquire(5000, "deepseek-chat", false, Set.of()).endpoint().getUrl());
+
+        open("http://chat-b");
+        assertThrows(AiUpstreamUnavailableException.class, () -> router.acquire(5000, "deepseek-chat", false, Set.of()));
+        assertEquals(AiCircuitBreaker.State.CLOSED, router.getCircuitState());
+
+        open("http://lite");
+        assertEquals(AiCircuitBreaker.State.OPEN, router.getCircuitState());
+    }
+}
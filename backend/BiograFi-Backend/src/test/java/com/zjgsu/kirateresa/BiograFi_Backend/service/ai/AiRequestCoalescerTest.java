@@ -0,0 +1,131 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiRequestCoalescerTest {
+
+    private final AiRequestCoalescer coalescer = new AiRequestCoalescer();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final CompletableFuture<String> upstream = new CompletableFuture<>();
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 模拟上游调用：等待测试放行后返回结果或抛出异常
+     */
+    private String awaitUpstream() throws IOException {
+        upstreamCalls.incrementAndGet();
+        try {
+            return upstream.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        } catch (InterruptedException | TimeoutException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(5);
+        }
+    }
+
+    private long stat(String name) {
+        return ((Number) coalescer.getStats().get(name)).longValue();
+    }
+
+    @Test
+    void concurrentCallsWithSameKeyShareOneUpstreamCall() throws Exception {
+        Future<String> leader = executor.submit(() -> coalescer.execute("key", this::awaitUpstream));
+        waitUntil(() -> upstreamCalls.get() == 1);
+        Future<String> follower = executor.submit(() -> coalescer.execute("key", this::awaitUpstream));
+        waitUntil(() -> stat("coalescedCalls") == 1);
+
+        upstream.complete("结果");
+
+        assertEquals("结果", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("结果", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0L, stat("inFlight"));
+    }
+
+    @Test
+    void upstreamFailureIsRethrownToEveryWaiter() throws Exception {
+        Future<String> leader = executor.submit(() -> coalescer.execute("key", this::awaitUpstream));
+        waitUntil(() -> upstreamCalls.get() == 1);
+        Future<String> follower = executor.submit(() -> coalescer.execute("key", this::awaitUpstream));
+        waitUntil(() -> stat("coalescedCalls") == 1);
+
+        upstream.completeExceptionally(new IOException("上游 503"));
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, leaderError.getCause());
+        assertInstanceOf(IOException.class, followerError.getCause());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void completedCallsAreNotReused() throws IOException {
+        upstream.complete("结果");
+
+        coalescer.execute("key", this::awaitUpstream);
+        coalescer.execute("key", this::awaitUpstream);
+        coalescer.execute("other", this::awaitUpstream);
+
+        assertEquals(3, upstreamCalls.get());
+        assertEquals(0L, stat("coalescedCalls"));
+    }
+
+    @Test
+    void lateStreamingSubscriberReceivesReplayThenLiveDeltas() throws Exception {
+        StringBuffer leaderDeltas = new StringBuffer();
+        StringBuffer followerDeltas = new StringBuffer();
+        CompletableFuture<Void> firstDeltaSent = new CompletableFuture<>();
+
+        Future<String> leader = executor.submit(() -> coalescer.executeStreaming("key", leaderDeltas::append, onDelta -> {
+            onDelta.accept("子曰");
+            firstDeltaSent.complete(null);
+            String rest = awaitUpstream();
+            onDelta.accept(rest);
+            return "子曰" + rest;
+        }));
+        firstDeltaSent.get(5, TimeUnit.SECONDS);
+        Future<String> follower = executor.submit(() -> coalescer.executeStreaming("key", followerDeltas::append,
+                onDelta -> {
+                    throw new IOException("不应发起第二次上游调用");
+                }));
+        waitUntil(() -> stat("coalescedCalls") == 1);
+
+        upstream.complete("：学而时习之");
+
+        assertEquals("子曰：学而时习之", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("子曰：学而时习之", follower.get(5, TimeUnit.SECONDS));
+        assertEquals("子曰：学而时习之", leaderDeltas.toString());
+        assertEquals("子曰：学而时习之", followerDeltas.toString());
+        assertEquals(1, upstreamCalls.get());
+    }
+}
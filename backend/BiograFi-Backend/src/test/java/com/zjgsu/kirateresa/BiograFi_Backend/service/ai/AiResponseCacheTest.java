@@ -0,0 +1,115 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.model.AiResponseCacheEntry;
+import com.zjgsu.kirateresa.BiograFi_Backend.repository.AiResponseCacheRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AiResponseCacheTest {
+
+    private static final PromptTemplate ANALYZE = PromptTemplate.of("分析", "原文：%s");
+    private static final PromptTemplate QA = new PromptTemplate("问答", "原文：%s", "问题：%s");
+
+    private AiConfig config;
+    private AiResponseCacheRepository repository;
+    private AiResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        config = new AiConfig();
+        config.setCacheEnabled(true);
+        config.setCacheMaxEntries(2);
+        config.setCacheTtl(3600);
+        config.setCachePersistentTtlDays(30);
+        repository = mock(AiResponseCacheRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+        cache = new AiResponseCache();
+        ReflectionTestUtils.setField(cache, "aiConfig", config);
+        ReflectionTestUtils.setField(cache, "cacheRepository", repository);
+    }
+
+    @Test
+    void keyDependsOnEveryPart() {
+        String key = cache.key(QA, "学而时习之", "何意", "deepseek-chat");
+
+        assertEquals(key, cache.key(QA, "学而时习之", "何意", "deepseek-chat"));
+        assertNotEquals(key, cache.key(QA, "学而时习之", "何意", "deepseek-lite"));
+        assertNotEquals(key, cache.key(QA, "学而时习之", "谁说", "deepseek-chat"));
+        assertNotEquals(key, cache.key(ANALYZE, "学而时习之", "何意", "deepseek-chat"));
+        // 字段边界不同但拼接结果相同的输入不能得到相同的键
+        assertNotEquals(cache.key(QA, "学而", "时习之", "deepseek-chat"), cache.key(QA, "学而时", "习之", "deepseek-chat"));
+
+        config.setTemperature(0.1);
+        assertNotEquals(key, cache.key(QA, "学而时习之", "何意", "deepseek-chat"));
+    }
+
+    @Test
+    void memoryHitDoesNotQueryDatabase() {
+        cache.put("k1", "analyze", "deepseek-chat", "结果");
+
+        assertEquals(Optional.of("结果"), cache.get("k1"));
+        verify(repository, never()).findById("k1");
+        assertEquals(1L, cache.getStats().get("memoryHits"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedMemoryEntry() {
+        cache.put("k1", "analyze", "deepseek-chat", "一");
+        cache.put("k2", "analyze", "deepseek-chat", "二");
+        cache.get("k1");
+        cache.put("k3", "analyze", "deepseek-chat", "三");
+
+        assertEquals(Optional.empty(), cache.get("k2"));
+        assertEquals(Optional.of("一"), cache.get("k1"));
+        assertEquals(Optional.of("三"), cache.get("k3"));
+        assertEquals(2, cache.getStats().get("memorySize"));
+    }
+
+    @Test
+    void persistentHitIsCopiedIntoMemory() {
+        AiResponseCacheEntry stored = new AiResponseCacheEntry("k1", "analyze", "deepseek-chat", "持久化结果",
+                LocalDateTime.now().minusDays(1));
+        when(repository.findById("k1")).thenReturn(Optional.of(stored));
+
+        assertEquals(Optional.of("持久化结果"), cache.get("k1"));
+        assertEquals(Optional.of("持久化结果"), cache.get("k1"));
+
+        verify(repository).findById("k1");
+        assertEquals(1L, cache.getStats().get("persistentHits"));
+        assertEquals(1L, cache.getStats().get("memoryHits"));
+    }
+
+    @Test
+    void expiredPersistentEntryIsDeleted() {
+        AiResponseCacheEntry stored = new AiResponseCacheEntry("k1", "analyze", "deepseek-chat", "过期结果",
+                LocalDateTime.now().minusDays(31));
+        when(repository.findById("k1")).thenReturn(Optional.of(stored));
+
+        assertEquals(Optional.empty(), cache.get("k1"));
+        verify(repository).deleteById("k1");
+    }
+
+    @Test
+    void disabledCacheNeitherReadsNorWrites() {
+        config.setCacheEnabled(false);
+
+        cache.put("k1", "analyze", "deepseek-chat", "结果");
+
+        assertEquals(Optional.empty(), cache.get("k1"));
+        verify(repository, never()).save(any());
+        verify(repository, never()).findById(any());
+    }
+}
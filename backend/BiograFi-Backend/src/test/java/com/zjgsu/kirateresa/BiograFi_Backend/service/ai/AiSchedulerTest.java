@@ -0,0 +1,144 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.service.ai;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.config.AiConfig;
+import com.zjgsu.kirateresa.BiograFi_Backend.exception.AiServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 全局并发为 1 的调度器：先提交一个阻塞任务占住唯一的名额，再按需排队，放行后任务按调度顺序逐个执行
+ */
+class AiSchedulerTest {
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<?>> futures = new ArrayList<>();
+    private AiScheduler scheduler;
+
+    private void start(int perUserMaxQueued) {
+        AiConfig config = new AiConfig();
+        config.setMaxConcurrentRequests(1);
+        config.setMaxQueuedRequests(64);
+        config.setPerUserMaxConcurrent(1);
+        config.setPerUserMaxQueued(perUserMaxQueued);
+        config.setBulkMaxConcurrent(null);
+        config.setPrefetchMaxConcurrent(1);
+        config.setPrefetchLoadThreshold(0.5);
+        config.setChunkParallelism(1);
+        config.setChunkPerUserMaxConcurrent(1);
+        config.setChunkMaxQueued(16);
+        scheduler = new AiScheduler();
+        ReflectionTestUtils.setField(scheduler, "aiConfig", config);
+        scheduler.init();
+
+        futures.add(scheduler.submit(AiCallContext.interactive("blocker"), () -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+    }
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        scheduler.shutdown();
+    }
+
+    private CompletableFuture<String> submit(AiCallContext context, String label) {
+        CompletableFuture<String> future = scheduler.submit(context, () -> {
+            order.add(label);
+            return label;
+        });
+        futures.add(future);
+        return future;
+    }
+
+    private void releaseAndAwait() throws Exception {
+        gate.countDown();
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException | CancellationException e) {
+                // 被拒绝或取消的任务
+            }
+        }
+    }
+
+    @Test
+    void interactiveGetsEightSlotsForEachBulkSlot() throws Exception {
+        start(32);
+        for (int i = 0; i < 9; i++) {
+            submit(AiCallContext.bulk("bob"), "B");
+        }
+        for (int i = 0; i < 9; i++) {
+            submit(AiCallContext.interactive("alice"), "I");
+        }
+
+        releaseAndAwait();
+
+        assertEquals(List.of("I", "I", "I", "I", "B", "I", "I", "I", "I", "I", "B", "B", "B", "B", "B", "B", "B", "B"),
+                order);
+    }
+
+    @Test
+    void prefetchRunsOnlyWhenNothingElseIsQueued() throws Exception {
+        start(32);
+        submit(AiCallContext.prefetch("system"), "P");
+        submit(AiCallContext.bulk("bob"), "B");
+        submit(AiCallContext.interactive("alice"), "I");
+
+        releaseAndAwait();
+
+        assertEquals(List.of("I", "B", "P"), order);
+    }
+
+    @Test
+    void callersWithinClassAreServedRoundRobin() throws Exception {
+        start(32);
+        submit(AiCallContext.interactive("alice"), "alice-1");
+        submit(AiCallContext.interactive("alice"), "alice-2");
+        submit(AiCallContext.interactive("alice"), "alice-3");
+        submit(AiCallContext.interactive("bob"), "bob-1");
+
+        releaseAndAwait();
+
+        assertEquals(List.of("alice-1", "bob-1", "alice-2", "alice-3"), order);
+    }
+
+    @Test
+    void cancelledTaskFreesItsQueueSlotAndNeverRuns() throws Exception {
+        start(2);
+        CompletableFuture<String> cancelled = submit(AiCallContext.interactive("alice"), "cancelled");
+        submit(AiCallContext.interactive("alice"), "kept");
+        CompletableFuture<String> rejected = submit(AiCallContext.interactive("alice"), "rejected");
+        ExecutionException busy = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(AiServiceBusyException.class, busy.getCause());
+
+        assertTrue(cancelled.cancel(true));
+        assertEquals(1, scheduler.getStats().get("queued"));
+        submit(AiCallContext.interactive("alice"), "accepted");
+        assertEquals(2, scheduler.getStats().get("queued"));
+
+        releaseAndAwait();
+
+        assertEquals(List.of("kept", "accepted"), order);
+    }
+}
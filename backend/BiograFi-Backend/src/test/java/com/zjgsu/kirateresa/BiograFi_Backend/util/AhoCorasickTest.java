@@ -0,0 +1,48 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickTest {
+
+    private static List<String> matches(List<String> patterns, String text) {
+        List<String> found = new ArrayList<>();
+        new AhoCorasick(patterns).search(text, (patternIndex, start, end) ->
+                found.add(patterns.get(patternIndex) + "@" + start + "-" + end));
+        found.sort(null);
+        return found;
+    }
+
+    @Test
+    void findsOverlappingMatchesThroughFailureLinks() {
+        assertEquals(List.of("he@2-4", "hers@2-6", "she@1-4"),
+                matches(List.of("he", "she", "his", "hers"), "ushers"));
+    }
+
+    @Test
+    void reportsEveryOccurrenceOfNestedChinesePatterns() {
+        assertEquals(List.of("子@1-2", "子@6-7", "子曰@6-8", "孔子@0-2", "孔子@5-7"),
+                matches(List.of("孔子", "子", "子曰"), "孔子适周，孔子曰"));
+    }
+
+    @Test
+    void ignoresEmptyPatternsAndKeepsIndices() {
+        List<int[]> found = new ArrayList<>();
+        new AhoCorasick(List.of("", "鲁")).search("鲁人", (patternIndex, start, end) ->
+                found.add(new int[]{patternIndex, start, end}));
+        assertEquals(1, found.size());
+        assertEquals(1, found.get(0)[0]);
+        assertEquals(0, found.get(0)[1]);
+        assertEquals(1, found.get(0)[2]);
+    }
+
+    @Test
+    void noMatchesInUnrelatedText() {
+        assertTrue(matches(List.of("孟子"), "孔子曰").isEmpty());
+    }
+}
@@ -0,0 +1,66 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25IndexTest {
+
+    private Bm25Index index;
+
+    @BeforeEach
+    void setUp() {
+        index = new Bm25Index();
+        index.add(1, List.of("孔子", "适", "周", "问", "礼"));
+        index.add(2, List.of("孔子", "曰", "学", "而", "时", "习", "之"));
+        index.add(3, List.of("老子", "曰", "道", "可", "道"));
+    }
+
+    private static List<Integer> ids(List<Bm25Index.Hit> hits) {
+        return hits.stream().map(Bm25Index.Hit::passageId).toList();
+    }
+
+    @Test
+    void ranksPassagesByRarerTermsFirst() {
+        List<Bm25Index.Hit> hits = index.search(List.of("孔子", "礼"), 10, null);
+
+        assertEquals(List.of(1, 2), ids(hits));
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void repeatedQueryTermsCountOnce() {
+        assertEquals(index.search(List.of("道"), 10, null), index.search(List.of("道", "道", "道"), 10, null));
+    }
+
+    @Test
+    void respectsLimitAndFilter() {
+        assertEquals(1, index.search(List.of("曰"), 1, null).size());
+        assertEquals(List.of(3), ids(index.search(List.of("曰"), 10, id -> id != 2)));
+        assertEquals(List.of(), index.search(List.of("曰"), 0, null));
+    }
+
+    @Test
+    void removeAndReplaceUpdatePostings() {
+        index.remove(1);
+        assertEquals(List.of(), index.search(List.of("礼"), 10, null));
+        assertEquals(2, index.size());
+
+        index.add(2, List.of("礼", "记"));
+        assertEquals(List.of(2), ids(index.search(List.of("礼"), 10, null)));
+        assertEquals(List.of(), index.search(List.of("习"), 10, null));
+        assertEquals(2, index.size());
+
+        index.remove(42);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void emptyIndexReturnsNothing() {
+        assertEquals(List.of(), new Bm25Index().search(List.of("孔子"), 10, null));
+    }
+}
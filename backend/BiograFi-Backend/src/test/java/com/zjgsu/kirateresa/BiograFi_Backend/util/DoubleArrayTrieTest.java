@@ -0,0 +1,94 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DoubleArrayTrieTest {
+
+    private final DoubleArrayTrie trie = DoubleArrayTrie.build(List.of("中国", "中国人", "人民", "国", "", "国"));
+
+    @Test
+    void longestMatchPrefersLongestWordAtPosition() {
+        assertEquals(3, trie.longestMatch("中国人民", 0));
+        assertEquals(1, trie.longestMatch("中国人民", 1));
+        assertEquals(2, trie.longestMatch("中国人民", 2));
+        assertEquals(0, trie.longestMatch("中国人民", 3));
+    }
+
+    @Test
+    void prefixOfWordIsNotAMatch() {
+        assertFalse(trie.contains("中"));
+        assertEquals(0, trie.longestMatch("中华", 0));
+        assertFalse(trie.contains("人"));
+        assertEquals(0, trie.longestMatch("人", 0));
+    }
+
+    @Test
+    void missingWordsAndUnknownCharacters() {
+        assertTrue(trie.contains("中国人"));
+        assertFalse(trie.contains("中国人民"));
+        assertFalse(trie.contains("外"));
+        assertFalse(trie.contains(""));
+        assertEquals(0, trie.longestMatch("外国", 0));
+        assertEquals(0, trie.longestMatch("中国", 2));
+    }
+
+    @Test
+    void ignoresEmptyAndDuplicateWords() {
+        assertEquals(4, trie.wordCount());
+        assertTrue(trie.memoryBytes() > 0);
+    }
+
+    @Test
+    void emptyDictionaryMatchesNothing() {
+        DoubleArrayTrie empty = DoubleArrayTrie.build(List.of());
+
+        assertEquals(0, empty.wordCount());
+        assertFalse(empty.contains("国"));
+        assertEquals(0, empty.longestMatch("国", 0));
+    }
+
+    @Test
+    void agreesWithHashSetOnRandomDictionary() {
+        Random random = new Random(7);
+        String alphabet = "天地玄黄宇宙洪荒𠀀";
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            words.add(randomText(random, alphabet, 1 + random.nextInt(5)));
+        }
+        DoubleArrayTrie randomTrie = DoubleArrayTrie.build(new ArrayList<>(words));
+        assertEquals(words.size(), randomTrie.wordCount());
+
+        String text = randomText(random, alphabet, 2000);
+        for (int from = 0; from < text.length(); from++) {
+            int expected = 0;
+            for (int end = from + 1; end <= text.length() && end - from <= 10; end++) {
+                if (words.contains(text.substring(from, end))) {
+                    expected = end - from;
+                }
+            }
+            assertEquals(expected, randomTrie.longestMatch(text, from), "from=" + from);
+        }
+        for (String word : words) {
+            assertTrue(randomTrie.contains(word), word);
+        }
+    }
+
+    private static String randomText(Random random, String alphabet, int codePoints) {
+        int[] symbols = alphabet.codePoints().toArray();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < codePoints; i++) {
+            builder.appendCodePoint(symbols[random.nextInt(symbols.length)]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import com.zjgsu.kirateresa.BiograFi_Backend.dto.AutoAnnotationItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class EntitySpanLocatorTest {
+
+    private static String describe(List<AutoAnnotationItem> items) {
+        StringBuilder builder = new StringBuilder();
+        for (AutoAnnotationItem item : items) {
+            builder.append(item.getText()).append(':').append(item.getLabel())
+                    .append('@').append(item.getStart()).append('-').append(item.getEnd()).append(' ');
+        }
+        return builder.toString().trim();
+    }
+
+    @Test
+    void locatesAllOccurrencesSortedBySpanThenLabel() {
+        Map<String, Set<String>> labelsByText = new LinkedHashMap<>();
+        labelsByText.put("鲁", Set.of("地名"));
+        labelsByText.put("孔子", Set.of("概念", "人物"));
+
+        List<AutoAnnotationItem> items = EntitySpanLocator.locate("孔子生于鲁，孔子卒于鲁", labelsByText);
+
+        assertEquals("孔子:人物@0-2 孔子:概念@0-2 鲁:地名@4-5 孔子:人物@6-8 孔子:概念@6-8 鲁:地名@10-11",
+                describe(items));
+    }
+
+    @Test
+    void singleEntityIncludesOverlappingOccurrences() {
+        List<AutoAnnotationItem> items = EntitySpanLocator.locate("哈哈哈哈", "哈哈", "概念");
+
+        assertEquals("哈哈:概念@0-2 哈哈:概念@1-3 哈哈:概念@2-4", describe(items));
+    }
+
+    @Test
+    void singleEntityMissingFromTextYieldsNothing() {
+        assertEquals(List.of(), EntitySpanLocator.locate("学而时习之", "孟子", "人物"));
+    }
+
+    @Test
+    void spanKeyDistinguishesStartLengthAndLabel() {
+        Set<Long> keys = new HashSet<>();
+        for (String label : EntitySpanLocator.VALID_LABELS) {
+            keys.add(EntitySpanLocator.spanKey(3, 5, label));
+        }
+        keys.add(EntitySpanLocator.spanKey(3, 6, "人物"));
+        keys.add(EntitySpanLocator.spanKey(4, 6, "人物"));
+
+        assertEquals(EntitySpanLocator.VALID_LABELS.size() + 2, keys.size());
+        assertNotEquals(EntitySpanLocator.spanKey(0, 100_000, "人物"), EntitySpanLocator.spanKey(1, 1, "人物"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinHashIndexTest {
+
+    private static final String ORIGINAL = MinHashIndex.normalize(
+            "晋太元中，武陵人捕鱼为业。缘溪行，忘路之远近。忽逢桃花林，夹岸数百步，中无杂树，芳草鲜美，落英缤纷。");
+    private static final String VARIANT = MinHashIndex.normalize(
+            "晉太元中，武陵人捕魚為業。緣溪行，忘路之遠近。忽逢桃花林，夹岸数百步，中无杂树，芳草鲜美，落英缤纷。");
+    private static final String OTHER = MinHashIndex.normalize(
+            "北冥有鱼，其名为鲲。鲲之大，不知其几千里也。化而为鸟，其名为鹏。鹏之背，不知其几千里也。");
+    private static final String ANOTHER = MinHashIndex.normalize(
+            "山不在高，有仙则名。水不在深，有龙则灵。斯是陋室，惟吾德馨。苔痕上阶绿，草色入帘青。");
+
+    private static MinHashIndex<String> newIndex(int maxEntries) {
+        return new MinHashIndex<>(3, 32, 4, maxEntries);
+    }
+
+    @Test
+    void normalizeFoldsWidthCaseWhitespaceAndPunctuation() {
+        assertEquals("abc123子曰", MinHashIndex.normalize("Ａ b，C１２３\n「子曰」。"));
+    }
+
+    @Test
+    void identicalTextMatchesWithSimilarityOne() {
+        MinHashIndex<String> index = newIndex(10);
+        index.put("analyze", ORIGINAL, "结果");
+
+        Optional<MinHashIndex.Match<String>> match = index.find("analyze", ORIGINAL, 1.0);
+
+        assertTrue(match.isPresent());
+        assertEquals("结果", match.get().value());
+        assertEquals(1.0, match.get().similarity());
+    }
+
+    @Test
+    void nearDuplicateMatchesAtThresholdButNotAbove() {
+        MinHashIndex<String> index = newIndex(10);
+        index.put("analyze", ORIGINAL, "结果");
+
+        double similarity = index.find("analyze", VARIANT, 0.0).orElseThrow().similarity();
+        assertTrue(similarity > 0.5 && similarity < 1.0, "similarity=" + similarity);
+
+        assertTrue(index.find("analyze", VARIANT, similarity).isPresent());
+        assertFalse(index.find("analyze", VARIANT, Math.nextUp(similarity)).isPresent());
+    }
+
+    @Test
+    void unrelatedTextAndOtherGroupsDoNotMatch() {
+        MinHashIndex<String> index = newIndex(10);
+        index.put("analyze", ORIGINAL, "结果");
+
+        assertFalse(index.find("analyze", OTHER, 0.5).isPresent());
+        assertFalse(index.find("qa", ORIGINAL, 0.0).isPresent());
+    }
+
+    @Test
+    void identicalSignatureReplacesValueInsteadOfAddingEntry() {
+        MinHashIndex<String> index = newIndex(10);
+        index.put("analyze", ORIGINAL, "旧结果");
+        index.put("analyze", ORIGINAL, "新结果");
+        index.put("qa", ORIGINAL, "问答结果");
+
+        assertEquals(2, index.size());
+        assertEquals("新结果", index.find("analyze", ORIGINAL, 1.0).orElseThrow().value());
+        assertEquals("问答结果", index.find("qa", ORIGINAL, 1.0).orElseThrow().value());
+    }
+
+    @Test
+    void evictsLeastRecentlyMatchedEntry() {
+        MinHashIndex<String> index = newIndex(2);
+        index.put("analyze", ORIGINAL, "桃花源记");
+        index.put("analyze", OTHER, "逍遥游");
+        // 命中较早的条目，使较晚加入但未被命中的条目先被淘汰
+        assertTrue(index.find("analyze", ORIGINAL, 1.0).isPresent());
+
+        index.put("analyze", ANOTHER, "陋室铭");
+
+        assertEquals(2, index.size());
+        assertTrue(index.find("analyze", ORIGINAL, 1.0).isPresent());
+        assertFalse(index.find("analyze", OTHER, 0.0).isPresent());
+        assertTrue(index.find("analyze", ANOTHER, 1.0).isPresent());
+    }
+
+    @Test
+    void textShorterThanShingleStillMatchesItself() {
+        MinHashIndex<String> index = newIndex(10);
+        index.put("analyze", "仁", "结果");
+
+        assertTrue(index.find("analyze", "仁", 1.0).isPresent());
+        assertFalse(index.find("analyze", "义", 0.5).isPresent());
+    }
+}
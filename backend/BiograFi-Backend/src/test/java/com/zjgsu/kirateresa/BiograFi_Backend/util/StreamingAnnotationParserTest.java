@@ -0,0 +1,60 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingAnnotationParserTest {
+
+    private final List<String> entities = new ArrayList<>();
+    private final StreamingAnnotationParser parser =
+            new StreamingAnnotationParser((text, label) -> entities.add(text + ":" + label));
+
+    @Test
+    void emitsEachEntityAsSoonAsItsObjectCloses() {
+        parser.feed("```json\n[{\"text\": \"孔");
+        assertTrue(entities.isEmpty());
+
+        parser.feed("子\", \"label\": \"人物\"}");
+        assertEquals(List.of("孔子:人物"), entities);
+        assertFalse(parser.isFinished());
+
+        parser.feed(", {\"te");
+        parser.feed("xt\":\"鲁\",\"label\":\"地名\"}]\n```");
+        assertEquals(List.of("孔子:人物", "鲁:地名"), entities);
+        assertTrue(parser.isFinished());
+        assertFalse(parser.isFailed());
+    }
+
+    @Test
+    void skipsObjectsWithoutTextOrLabelAndIgnoresOtherFields() {
+        parser.feed("[{\"text\":\"周\"},{\"label\":\"地名\"},"
+                + "{\"confidence\":0.9,\"text\":\"周公\",\"extra\":{\"text\":\"x\"},\"label\":\"人物\"}]");
+
+        assertEquals(List.of("周公:人物"), entities);
+        assertTrue(parser.isFinished());
+    }
+
+    @Test
+    void ignoresContentAfterArrayEnds() {
+        parser.feed("[{\"text\":\"周\",\"label\":\"地名\"}]");
+        parser.feed("[{\"text\":\"秦\",\"label\":\"地名\"}]");
+
+        assertEquals(List.of("周:地名"), entities);
+        assertFalse(parser.isFailed());
+    }
+
+    @Test
+    void marksMalformedInputAsFailed() {
+        parser.feed("[{\"text\": }");
+
+        assertTrue(parser.isFailed());
+        assertFalse(parser.isFinished());
+        assertTrue(entities.isEmpty());
+    }
+}
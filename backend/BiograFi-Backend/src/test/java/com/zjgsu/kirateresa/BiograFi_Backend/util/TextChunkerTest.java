@@ -0,0 +1,92 @@
+package com.zjgsu.kirateresa.BiograFi_Backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextChunkerTest {
+
+    private static final String TEXT = "子曰：“学而时习之，不亦说乎？”有朋自远方来，不亦乐乎！\n"
+            + "人不知而不愠，不亦君子乎。曾子曰：吾日三省吾身：为人谋而不忠乎？与朋友交而不信乎？传不习乎？";
+
+    /**
+     * 片段首尾相接、覆盖全文且均非空
+     */
+    private static void assertCovers(String text, List<TextChunker.Chunk> chunks) {
+        int position = 0;
+        for (TextChunker.Chunk chunk : chunks) {
+            assertEquals(position, chunk.start());
+            assertTrue(chunk.end() > chunk.start());
+            position = chunk.end();
+        }
+        assertEquals(text.length(), position);
+    }
+
+    @Test
+    void splitSentencesKeepsClosingQuotesWithTheirSentence() {
+        List<TextChunker.Chunk> sentences = TextChunker.splitSentences(TEXT);
+
+        assertCovers(TEXT, sentences);
+        assertEquals("子曰：“学而时习之，不亦说乎？”", sentences.get(0).text(TEXT));
+        assertEquals("有朋自远方来，不亦乐乎！\n", sentences.get(1).text(TEXT));
+    }
+
+    @Test
+    void splitCoversWholeTextWithinLimitForEveryMaxChars() {
+        for (int maxChars = 1; maxChars <= TEXT.length() + 1; maxChars++) {
+            List<TextChunker.Chunk> chunks = TextChunker.split(TEXT, maxChars);
+
+            assertCovers(TEXT, chunks);
+            for (TextChunker.Chunk chunk : chunks) {
+                assertTrue(chunk.end() - chunk.start() <= maxChars, "maxChars=" + maxChars);
+            }
+        }
+    }
+
+    @Test
+    void splitPrefersSentenceBoundaries() {
+        List<TextChunker.Chunk> chunks = TextChunker.split(TEXT, 30);
+
+        for (TextChunker.Chunk chunk : chunks.subList(0, chunks.size() - 1)) {
+            char last = TEXT.charAt(chunk.end() - 1);
+            assertTrue(TextChunker.isSentenceEnd(last) || last == '”', chunk.text(TEXT));
+        }
+    }
+
+    @Test
+    void longSentenceIsCutAfterComma() {
+        String text = "甲乙丙丁，戊己庚辛壬癸";
+
+        List<TextChunker.Chunk> chunks = TextChunker.split(text, 6);
+
+        assertEquals(List.of(new TextChunker.Chunk(0, 5), new TextChunker.Chunk(5, 11)), chunks);
+    }
+
+    @Test
+    void surrogatePairsAreNeverSplit() {
+        String text = "𠀀𠀁𠀂。𠀃";
+        for (int maxChars = 1; maxChars <= 3; maxChars++) {
+            List<TextChunker.Chunk> chunks = TextChunker.split(text, maxChars);
+
+            assertCovers(text, chunks);
+            for (TextChunker.Chunk chunk : chunks) {
+                assertFalse(Character.isLowSurrogate(text.charAt(chunk.start())), "maxChars=" + maxChars);
+            }
+        }
+    }
+
+    @Test
+    void emptyTextYieldsNoChunks() {
+        assertEquals(List.of(), TextChunker.split("", 10));
+    }
+
+    @Test
+    void rejectsNonPositiveMaxChars() {
+        assertThrows(IllegalArgumentException.class, () -> TextChunker.split(TEXT, 0));
+    }
+}
@@ -5,7 +5,7 @@ import { segmentationService } from '../../services/segmentationService';
 import { copyToClipboard } from '../../utils';
 import '../../styles/components/Segmentation.css';
 
-const Segmentation = ({ content }) => {
+const Segmentation = ({ content, documentId, projectId }) => {
   const [tokens, setTokens] = useState([]);
   const [segmenting, setSegmenting] = useState(false);
   const [stats, setStats] = useState({ total: 0, unique: 0 });
@@ -20,7 +20,7 @@ const Segmentation = ({ content }) => {
     setTokens([]);
 
     try {
-      const result = await segmentationService.segmentChinese(content);
+      const result = await segmentationService.segmentChinese(content, documentId, projectId);
       setTokens(result);
       
       const stats = segmentationService.getSegmentationStats(result);
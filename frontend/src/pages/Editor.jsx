@@ -1035,7 +1035,7 @@ const Editor = ({ document, project, onBack, onSave }) => {
                   </button>
                 </div>
                 <div className="panel-scroll">
-                  <Segmentation content={content} />
+                  <Segmentation content={content} documentId={document?.id} projectId={document?.projectId || project?.id} />
                 </div>
               </div>
             )}
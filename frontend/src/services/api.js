@@ -39,6 +39,20 @@ const request = async (url, options = {}) => {
   }
 };
 
+/**
+ * 获取当前登录用户的 ID
+ * @returns {number|null} 用户 ID，未登录时为 null
+ */
+const getCurrentUserId = () => {
+  try {
+    const userStr = localStorage.getItem('currentUser');
+    return userStr ? JSON.parse(userStr).id ?? null : null;
+  } catch (error) {
+    console.error('获取用户信息失败:', error);
+    return null;
+  }
+};
+
 /**
  * 带认证的 API 请求
  * @param {string} url - 请求 URL
@@ -48,15 +62,10 @@ const request = async (url, options = {}) => {
 // src/services/api.js - 完全重写 authenticatedRequest
 const authenticatedRequest = async (url, options = {}) => {
   // 从本地存储获取用户信息
-  let userId = null;
+  const userId = getCurrentUserId();
   let token = null;
   
   try {
-    const userStr = localStorage.getItem('currentUser');
-    if (userStr) {
-      const user = JSON.parse(userStr);
-      userId = user.id;
-    }
     token = localStorage.getItem('token');
   } catch (error) {
     console.error('获取用户信息失败:', error);
@@ -199,35 +208,47 @@ export const documentAPI = {
 };
 
 // AI 服务 API
+// 请求体携带当前用户 ID，服务端据此按用户公平调度并统计当日用量；未登录时按来源地址区分
 export const aiAPI = {
   async analyzeText(text, model = 'deepseek-chat') {
     return request(`${AI_API_BASE}/api/analyze`, {
       method: 'POST',
-      body: { text, model },
+      body: { text, model, userId: getCurrentUserId() },
     });
   },
 
   async askQuestion(text, question, model = 'deepseek-chat') {
     return request(`${AI_API_BASE}/api/qa`, {
       method: 'POST',
-      body: { text, question, model },
+      body: { text, question, model, userId: getCurrentUserId() },
     });
   },
 
   async autoAnnotate(text) {
     return request(`${AI_API_BASE}/api/auto-annotate`, {
       method: 'POST',
-      body: { text },
+      body: { text, userId: getCurrentUserId() },
     });
   },
 };
 
 // 分词服务 API
 export const segmentationAPI = {
-  async segmentText(text) {
+  async segmentText(text, format, documentId = null, projectId = null) {
+    // 提供文档ID时服务端按文档持久化分词结果，再次打开文档无需重新分词；项目ID决定使用哪个项目的词典
+    const body = { text };
+    if (format) {
+      body.format = format;
+    }
+    if (documentId) {
+      body.documentId = documentId;
+    }
+    if (projectId) {
+      body.projectId = projectId;
+    }
     return request(`${SEG_API_BASE}/api/segment`, {
       method: 'POST',
-      body: { text },
+      body,
     });
   },
 };
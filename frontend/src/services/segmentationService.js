@@ -7,12 +7,26 @@ export const segmentationService = {
   /**
    * 中文分词
    * @param {string} text - 要分词的文本
+   * @param {string} [documentId] - 文本所属的文档ID，用于服务端持久化分词结果
+   * @param {string} [projectId] - 文本所属的项目ID，使用该项目已标注实体构建的词典
    * @returns {Promise<Array>} 分词结果
    */
-  async segmentChinese(text) {
+  async segmentChinese(text, documentId = null, projectId = null) {
     try {
-      const result = await api.segmentation.segmentText(text);
-      return result.tokens || [];
+      // 只取各词的结束位置，在本地从原文切出词语，响应体积远小于逐词返回
+      const result = await api.segmentation.segmentText(text, 'offsets', documentId, projectId);
+      const offsets = result.data && result.data.offsets;
+      if (!Array.isArray(offsets)) {
+        // 不支持 format 参数的分词服务（如 seg_server.py）仍逐词返回
+        return (result.data && result.data.tokens) || result.tokens || [];
+      }
+      const tokens = new Array(offsets.length);
+      let start = 0;
+      for (let i = 0; i < offsets.length; i++) {
+        tokens[i] = { text: text.slice(start, offsets[i]), start, end: offsets[i] };
+        start = offsets[i];
+      }
+      return tokens;
     } catch (error) {
       console.error('分词失败:', error);
       throw new Error(`分词失败: ${error.message}`);